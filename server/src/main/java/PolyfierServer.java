@@ -1,6 +1,9 @@
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import connect.QueryLogAdapter;
 import connect.QueryLogConnection;
+import connect.QueryLogQuery;
+import export.ResultExport;
 import logging.WebSocketAppender;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.cli.*;
@@ -12,10 +15,17 @@ import server.ServerConfig;
 import server.profile.generators.ProfileGenerator;
 import server.messages.ServerMessage;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.util.Arrays;
 
 @Slf4j
 public class PolyfierServer {
+    // Time the ingest queue is given to drain on shutdown
+    private static final long SHUTDOWN_DEADLINE_MILLIS = 30_000;
     private static final CommandLineParser clParser;
     private static final Options cliOptions;
 
@@ -47,9 +57,29 @@ public class PolyfierServer {
                     .desc("Runs the server.")
                     .build()
         );
+        mutuallyExclusiveOptions.addOption(Option.builder()
+                    .hasArg(true)
+                    .argName("file")
+                    .option("e")
+                    .longOpt("export")
+                    .desc("Exports the results of a campaign to a columnar file.")
+                    .build()
+        );
+        mutuallyExclusiveOptions.addOption(Option.builder()
+                    .option("i")
+                    .longOpt("index")
+                    .desc("Builds the secondary indexes of the query log, e.g. after a bulk load with -Dpolyfier.indexes=deferred.")
+                    .build()
+        );
 
         mutuallyExclusiveOptions.setRequired(true);
         cliOptions.addOptionGroup(mutuallyExclusiveOptions);
+
+        // Campaign filter of the export
+        cliOptions.addOption( Option.builder().hasArg(true).argName("branch").longOpt("branch").desc("Only export results of this branch.").build() );
+        cliOptions.addOption( Option.builder().hasArg(true).argName("pdbKey").longOpt("pdb").desc("Only export results of this PolyphenyDB client.").build() );
+        cliOptions.addOption( Option.builder().hasArg(true).argName("millis").longOpt("from").desc("Only export results received at or after this time.").build() );
+        cliOptions.addOption( Option.builder().hasArg(true).argName("millis").longOpt("to").desc("Only export results received before this time.").build() );
         clParser = DefaultParser.builder().build();
     }
 
@@ -73,23 +103,34 @@ public class PolyfierServer {
         if ( ! serverConfig.hasCredentials() ) {
             serverConfig.setCredentials("pa", "");
         }
+        if ( ! serverConfig.hasBaselineBranch() ) {
+            serverConfig.setBaselineBranch( "master" );
+        }
         log.debug("Configuration:");
         log.debug(gson.toJson( serverConfig ));
-        log.info("Connecting to PolyphenyDB Backend...");
+        // Fails on start rather than in every attempt of the background initialization
+        new QueryLogAdapter().indexParameter();
+        log.info("Connecting to PolyphenyDB Backend in the background...");
 
+        // Clients are accepted right away, /ready reports when the backend is initialized.
         ServerMessage.configureServerMessage(
                 ProfileGenerator.getProfileGenerator(),
                 serverConfig
         );
-
-        QueryLogConnection.initialize( serverConfig.getUrl(), serverConfig.getUser(), serverConfig.getPassword() );
-        log.info("Connection established.");
         runServer( serverConfig );
     }
 
 
     private static void runServer( ServerConfig serverConfig ) {
         log.info("Running Server...");
+        // Logging is shut down last, such that the drain can still be logged
+        Runtime.getRuntime().addShutdownHook( new Thread( () -> {
+            log.info("Shutting down...");
+            ServerMessage.shutdown( System.currentTimeMillis() + SHUTDOWN_DEADLINE_MILLIS );
+            Server.stop();
+            log.info("Shut down.");
+            LogManager.shutdown();
+        }, "shutdown" ) );
         Thread server = new Thread( () -> new Server( serverConfig ) );
         server.start();
         displayBanner( serverConfig );
@@ -100,6 +141,51 @@ public class PolyfierServer {
         }
     }
 
+    private static void exportResults( Path file, QueryLogQuery.Filter filter ) {
+        ServerConfig serverConfig = ServerConfig.fetch();
+        log.info("Exporting results to " + file + "...");
+        boolean[] opened = new boolean[1];
+        try ( QueryLogConnection connection = QueryLogConnection.with( serverConfig.getUrl(), serverConfig.getUser(), serverConfig.getPassword() ) ) {
+            long rows = ResultExport.export( connection, filter, () -> {
+                opened[0] = true;
+                return new BufferedOutputStream( Files.newOutputStream( file ) );
+            } );
+            log.info("Exported " + rows + " results to " + file );
+        } catch ( SQLException | IOException e ) {
+            // An incomplete export lacks its footer, it is removed rather than left to be mistaken for a campaign
+            if ( opened[0] ) {
+                try {
+                    Files.deleteIfExists( file );
+                } catch ( IOException deleteException ) {
+                    e.addSuppressed( deleteException );
+                }
+            }
+            throw new RuntimeException( e );
+        }
+    }
+
+    private static Long millisOption( CommandLine commandLine, String option ) throws ParseException {
+        if ( ! commandLine.hasOption( option ) ) {
+            return null;
+        }
+        try {
+            return Long.parseLong( commandLine.getOptionValue( option ) );
+        } catch ( NumberFormatException e ) {
+            throw new ParseException( "Invalid --" + option + ", expected epoch millis: " + commandLine.getOptionValue( option ) );
+        }
+    }
+
+    private static void buildIndexes() {
+        ServerConfig serverConfig = ServerConfig.fetch();
+        log.info("Building secondary indexes...");
+        try ( QueryLogConnection connection = QueryLogConnection.with( serverConfig.getUrl(), serverConfig.getUser(), serverConfig.getPassword() ) ) {
+            connection.createIndexes();
+            log.info("Secondary indexes built.");
+        } catch ( SQLException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+
     private static void displayBanner( ServerConfig serverConfig ) {
         String banner =
                 """
@@ -140,6 +226,16 @@ public class PolyfierServer {
                     String host = rArgs[0];
                     int port = Integer.parseInt( rArgs[1] );
                     runServer( host, port );
+                } else if ( commandLine.hasOption("e") ) {
+                    exportResults( Path.of( commandLine.getOptionValue("e") ), QueryLogQuery.Filter.builder()
+                            .branch( commandLine.getOptionValue("branch") )
+                            .pdbKey( commandLine.getOptionValue("pdb") )
+                            .from( millisOption( commandLine, "from" ) )
+                            .to( millisOption( commandLine, "to" ) )
+                            .build()
+                    );
+                } else if ( commandLine.hasOption("i") ) {
+                    buildIndexes();
                 }
 
             } catch ( ParseException e ) {
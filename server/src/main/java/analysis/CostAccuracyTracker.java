@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis;
+
+import analysis.structures.LogLinearHistogram;
+import connect.ConfigType;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming accuracy of the optimizer's cost predictions, tracked per logical and per physical plan hash. For every
+ * result that carries both a predicted cost and an actual execution time, the q-error max(predicted / actual,
+ * actual / predicted) is recorded in a histogram and the correlation between the logarithms of predicted and actual
+ * values is updated incrementally.
+ * <p>
+ * At most {@link #MAX_PLANS} logical and as many physical plans are tracked; the least recently recorded plans are
+ * forgotten first.
+ */
+public class CostAccuracyTracker {
+    private static final double QERROR_SCALE = 1000d;
+    private static final int SUB_BUCKET_BITS = 4;
+    public static final int MAX_PLANS = 10_000;
+
+    // Access ordered, the eldest entry is the least recently recorded plan
+    private final LinkedHashMap<Long, PlanAccuracy> logicalPlans = new LinkedHashMap<>( 16, 0.75f, true );
+    private final LinkedHashMap<Long, PlanAccuracy> physicalPlans = new LinkedHashMap<>( 16, 0.75f, true );
+    private final PlanAccuracy overall = new PlanAccuracy();
+
+    /**
+     * Records the predicted cost and the actual execution time of a query. Values that are not positive carry no
+     * information on the accuracy and are ignored.
+     *
+     * @param logicalHash The hash of the logical plan, may be null.
+     * @param physicalHash The hash of the physical plan, may be null.
+     * @param predicted The predicted cost.
+     * @param actual The actual execution time.
+     */
+    synchronized public void record( Long logicalHash, Long physicalHash, long predicted, long actual ) {
+        if ( predicted <= 0 || actual <= 0 ) {
+            return;
+        }
+        double logPredicted = Math.log( predicted );
+        double logActual = Math.log( actual );
+        long qError = Math.round( Math.exp( Math.abs( logPredicted - logActual ) ) * QERROR_SCALE );
+
+        overall.add( logPredicted, logActual, qError );
+        if ( logicalHash != null ) {
+            accuracyOf( logicalPlans, logicalHash ).add( logPredicted, logActual, qError );
+        }
+        if ( physicalHash != null ) {
+            accuracyOf( physicalPlans, physicalHash ).add( logPredicted, logActual, qError );
+        }
+    }
+
+    private static PlanAccuracy accuracyOf( LinkedHashMap<Long, PlanAccuracy> plans, long planHash ) {
+        PlanAccuracy accuracy = plans.computeIfAbsent( planHash, key -> new PlanAccuracy() );
+        if ( plans.size() > MAX_PLANS ) {
+            Iterator<PlanAccuracy> iterator = plans.values().iterator();
+            iterator.next();
+            iterator.remove();
+        }
+        return accuracy;
+    }
+
+    /**
+     * Returns the accuracy over all recorded results.
+     */
+    synchronized public PlanAccuracySummary overall() {
+        return overall.summary( null );
+    }
+
+    /**
+     * Returns the plans with the highest 90th percentile q-error.
+     *
+     * @param planType Either {@link ConfigType#LOGICAL_PLAN} or {@link ConfigType#PHYSICAL_PLAN}.
+     * @param minCount The minimum number of results a plan needs to be considered.
+     * @param limit The maximum number of plans returned.
+     */
+    synchronized public List<PlanAccuracySummary> worst( ConfigType planType, long minCount, int limit ) {
+        Map<Long, PlanAccuracy> plans = switch ( planType ) {
+            case LOGICAL_PLAN -> logicalPlans;
+            case PHYSICAL_PLAN -> physicalPlans;
+            default -> throw new IllegalArgumentException( "Not a plan type: " + planType );
+        };
+        return plans.entrySet().stream()
+                .filter( entry -> entry.getValue().qErrors.count() >= minCount )
+                .map( entry -> entry.getValue().summary( entry.getKey() ) )
+                .sorted( Comparator.comparingDouble( PlanAccuracySummary::p90 ).reversed() )
+                .limit( limit )
+                .toList();
+    }
+
+    /**
+     * Histogram of the q-errors of a plan and the co-moments of the logarithms of predicted and actual values, updated
+     * with Welford's method.
+     */
+    private static class PlanAccuracy {
+        private final LogLinearHistogram qErrors = new LogLinearHistogram( SUB_BUCKET_BITS );
+        private long n;
+        private double meanPredicted;
+        private double meanActual;
+        private double m2Predicted;
+        private double m2Actual;
+        private double coMoment;
+
+        private void add( double logPredicted, double logActual, long qError ) {
+            qErrors.record( qError );
+            n++;
+            double deltaPredicted = logPredicted - meanPredicted;
+            meanPredicted += deltaPredicted / n;
+            double deltaActual = logActual - meanActual;
+            meanActual += deltaActual / n;
+            m2Predicted += deltaPredicted * ( logPredicted - meanPredicted );
+            m2Actual += deltaActual * ( logActual - meanActual );
+            coMoment += deltaPredicted * ( logActual - meanActual );
+        }
+
+        private Double correlation() {
+            if ( n < 2 || m2Predicted == 0 || m2Actual == 0 ) {
+                return null;
+            }
+            return coMoment / Math.sqrt( m2Predicted * m2Actual );
+        }
+
+        private PlanAccuracySummary summary( Long planHash ) {
+            return new PlanAccuracySummary(
+                    planHash,
+                    n,
+                    qErrors.valueAtQuantile( 0.5 ) / QERROR_SCALE,
+                    qErrors.valueAtQuantile( 0.9 ) / QERROR_SCALE,
+                    qErrors.valueAtQuantile( 0.99 ) / QERROR_SCALE,
+                    qErrors.max() / QERROR_SCALE,
+                    correlation()
+            );
+        }
+    }
+
+    /**
+     * Q-error quantiles and log-log correlation of predicted and actual values of a plan. The correlation is null as
+     * long as it is undefined, i.e. for fewer than two results or constant values.
+     */
+    public record PlanAccuracySummary( Long planHash, long count, double p50, double p90, double p99, double max, Double correlation ) {}
+
+}
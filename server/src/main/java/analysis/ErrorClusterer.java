@@ -0,0 +1,228 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.MurmurHash2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+
+/**
+ * Streaming clustering of error messages. Every error is normalized by masking the tokens that vary between otherwise
+ * identical errors, i.e. literals, generated identifiers, numbers and line numbers. Errors that share the normalized
+ * form share a signature, for which the clusterer counts the occurrences, keeps first and last sighting and a few
+ * example seeds. Changed signatures are handed out by {@link #pending()} for periodic flushes and are only marked as
+ * flushed by {@link #acknowledge(List)} once the flush is committed.
+ * <p>
+ * At most {@link #MAX_CLUSTERS} signatures are kept in memory. Beyond that, the flushed signature with the fewest
+ * occurrences is evicted; its row in the query log stays and is continued if the signature reappears.
+ */
+@Slf4j
+public class ErrorClusterer {
+    private static final int MAX_TEMPLATE_LENGTH = 2048;
+    private static final int MAX_EXAMPLE_SEEDS = 5;
+    public static final int MAX_CLUSTERS = 10_000;
+
+    private static final Pattern UUID = Pattern.compile( "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}" );
+    private static final Pattern SINGLE_QUOTED = Pattern.compile( "'(?:[^']|'')*'" );
+    private static final Pattern DOUBLE_QUOTED = Pattern.compile( "\"(?:[^\"\\\\]|\\\\.)*\"" );
+    private static final Pattern HEX = Pattern.compile( "\\b0x[0-9a-fA-F]+\\b|@[0-9a-fA-F]{4,}\\b" );
+    private static final Pattern GENERATED_IDENTIFIER = Pattern.compile( "(?<![\\w$])[A-Za-z_$][\\w$]*?\\d+(?![\\w$])" );
+    private static final Pattern NUMBER = Pattern.compile( "-?(?<![\\w$])\\d+(?:\\.\\d+)?(?:[eE][+-]?\\d+)?(?![\\w$])" );
+    private static final Pattern WHITESPACE = Pattern.compile( "\\s+" );
+
+    private final Map<Long, Cluster> clusters = new HashMap<>();
+    private final Map<Long, Cluster> changed = new HashMap<>();
+
+    @Getter
+    private long errorCount;
+
+    /**
+     * Masks the variable tokens of an error message.
+     *
+     * @param error The raw error message.
+     * @return The normalized error message.
+     */
+    public static String normalize( String error ) {
+        String template = UUID.matcher( error ).replaceAll( "<uuid>" );
+        template = SINGLE_QUOTED.matcher( template ).replaceAll( "'?'" );
+        template = DOUBLE_QUOTED.matcher( template ).replaceAll( "\"?\"" );
+        template = HEX.matcher( template ).replaceAll( "<hex>" );
+        template = GENERATED_IDENTIFIER.matcher( template ).replaceAll( "<id>" );
+        template = NUMBER.matcher( template ).replaceAll( "<n>" );
+        template = WHITESPACE.matcher( template ).replaceAll( " " ).trim();
+        if ( template.length() > MAX_TEMPLATE_LENGTH ) {
+            template = template.substring( 0, MAX_TEMPLATE_LENGTH );
+        }
+        return template;
+    }
+
+    /**
+     * Assigns an error to its signature cluster.
+     *
+     * @param error The raw error message.
+     * @param seed The seed of the query that produced the error.
+     * @param time The time the error was received at.
+     * @return The signature hash of the error.
+     */
+    public long record( String error, long seed, long time ) {
+        String template = normalize( error );
+        long signatureHash = MurmurHash2.hash64( template );
+        synchronized ( this ) {
+            errorCount++;
+            Cluster cluster = clusters.get( signatureHash );
+            if ( cluster == null ) {
+                if ( clusters.size() >= MAX_CLUSTERS ) {
+                    evict();
+                }
+                cluster = new Cluster( signatureHash, template, time );
+                clusters.put( signatureHash, cluster );
+                if ( log.isDebugEnabled() ) {
+                    log.debug( "New error signature " + signatureHash + ": " + template );
+                }
+            }
+            cluster.add( seed, time );
+            changed.put( signatureHash, cluster );
+        }
+        return signatureHash;
+    }
+
+    /**
+     * Returns the number of distinct signatures.
+     */
+    synchronized public int size() {
+        return clusters.size();
+    }
+
+    /**
+     * Returns the normalized error message of a signature, null if the signature is unknown.
+     */
+    synchronized public String signature( long signatureHash ) {
+        Cluster cluster = clusters.get( signatureHash );
+        return cluster == null ? null : cluster.template;
+    }
+
+    /**
+     * Returns the clusters ordered by descending count.
+     *
+     * @param limit The maximum number of clusters returned.
+     */
+    synchronized public List<ClusterSummary> top( int limit ) {
+        return clusters.values().stream()
+                .sorted( ( a, b ) -> Long.compare( b.count, a.count ) )
+                .limit( limit )
+                .map( Cluster::summary )
+                .toList();
+    }
+
+    /**
+     * Returns the clusters that changed since the last acknowledged flush, together with the number of occurrences added
+     * since.
+     */
+    synchronized public List<ClusterDelta> pending() {
+        List<ClusterDelta> deltas = new ArrayList<>( changed.size() );
+        for ( Cluster cluster : changed.values() ) {
+            deltas.add( new ClusterDelta( cluster.summary(), cluster.count - cluster.flushedCount ) );
+        }
+        return deltas;
+    }
+
+    /**
+     * Marks the occurrences of the given deltas as flushed, once the flush of them is committed. Clusters that changed
+     * again in the meantime stay pending.
+     */
+    synchronized public void acknowledge( List<ClusterDelta> deltas ) {
+        for ( ClusterDelta delta : deltas ) {
+            Cluster cluster = clusters.get( delta.summary().signatureHash() );
+            if ( cluster == null ) {
+                continue;
+            }
+            cluster.flushedCount += delta.addedCount();
+            if ( cluster.flushedCount == cluster.count ) {
+                changed.remove( cluster.signatureHash );
+            }
+        }
+    }
+
+    /**
+     * Evicts the flushed cluster with the fewest occurrences. If every cluster has pending occurrences, nothing is
+     * evicted until the next flush.
+     */
+    private void evict() {
+        Cluster evicted = null;
+        for ( Cluster cluster : clusters.values() ) {
+            if ( ! changed.containsKey( cluster.signatureHash ) && ( evicted == null || cluster.count < evicted.count ) ) {
+                evicted = cluster;
+            }
+        }
+        if ( evicted != null ) {
+            clusters.remove( evicted.signatureHash );
+        }
+    }
+
+    private static class Cluster {
+        private final long signatureHash;
+        private final String template;
+        private final long firstSeen;
+        private final long[] exampleSeeds = new long[MAX_EXAMPLE_SEEDS];
+        private int examples;
+        private long lastSeen;
+        private long count;
+        private long flushedCount;
+
+        private Cluster( long signatureHash, String template, long firstSeen ) {
+            this.signatureHash = signatureHash;
+            this.template = template;
+            this.firstSeen = firstSeen;
+        }
+
+        private void add( long seed, long time ) {
+            count++;
+            lastSeen = Math.max( lastSeen, time );
+            if ( examples < MAX_EXAMPLE_SEEDS ) {
+                exampleSeeds[examples++] = seed;
+            }
+        }
+
+        private ClusterSummary summary() {
+            StringJoiner seeds = new StringJoiner( "," );
+            Arrays.stream( exampleSeeds, 0, examples ).forEach( seed -> seeds.add( Long.toString( seed ) ) );
+            return new ClusterSummary( signatureHash, template, count, firstSeen, lastSeen, seeds.toString() );
+        }
+    }
+
+    /**
+     * Immutable view on an error signature cluster.
+     */
+    public record ClusterSummary( long signatureHash, String signature, long count, long firstSeen, long lastSeen, String exampleSeeds ) {}
+
+    /**
+     * A cluster that changed since the last flush.
+     *
+     * @param summary The current state of the cluster.
+     * @param addedCount The number of occurrences added since the last flush.
+     */
+    public record ClusterDelta( ClusterSummary summary, long addedCount ) {}
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis;
+
+import analysis.structures.OffHeapTripleLongMap;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Incremental detection of non-deterministic seeds. A seed that runs more than once with the same comparison key and
+ * store configuration, e.g. after a job was re-issued, has to reproduce its result-set hash. The detector keeps one
+ * long per run, packing a 48 bit fingerprint of the first result-set hash and a saturating 15 bit run count.
+ * Runs are keyed by their full comparison key, store configuration and seed, such that distinct runs never share an
+ * entry.
+ * <p>
+ * Once a run flips, the seed is marked flaky for its whole comparison key, as its result-set hashes carry no
+ * information on the divergence of store configurations any more. Both maps are held off-heap and snapshot like the
+ * maps of the {@link ResultComparator}.
+ */
+@Slf4j
+public class FlakinessDetector {
+    private static final String FINGERPRINTS_FILE = "runs.map";
+    private static final String FLAKY_FILE = "flaky-seeds.map";
+
+    private static final long FINGERPRINT_MASK = 0xFFFFFFFFFFFF0000L;
+    // Bit 15 is not part of the count, snapshots of earlier versions set it on runs that flipped
+    private static final long COUNT_MASK = ( 1L << 15 ) - 1;
+
+    private final OffHeapTripleLongMap fingerprints;
+    // Keyed by comparison key and seed, the third key component is 0
+    private final OffHeapTripleLongMap flakySeeds;
+
+    @Getter
+    private long flipCount;
+
+    private FlakinessDetector( OffHeapTripleLongMap fingerprints, OffHeapTripleLongMap flakySeeds ) {
+        this.fingerprints = fingerprints;
+        this.flakySeeds = flakySeeds;
+    }
+
+    public FlakinessDetector() {
+        this( new OffHeapTripleLongMap(), new OffHeapTripleLongMap() );
+    }
+
+    /**
+     * Records the result-set hash of a run.
+     *
+     * @param pdbKey The PolyphenyDB client that deposited the result.
+     * @param comparisonKey The combined hash of the schema, data and query configuration.
+     * @param storeConfigHash The hash of the store configuration the result was produced with.
+     * @param seed The seed of the query.
+     * @param resultSetHash The hash of the result-set.
+     * @return The flip, if the run did not reproduce the fingerprint of the first run.
+     */
+    synchronized public Optional<Flip> record( String pdbKey, long comparisonKey, long storeConfigHash, long seed, long resultSetHash ) {
+        long fingerprint = resultSetHash & FINGERPRINT_MASK;
+        if ( ! fingerprints.containsKey( comparisonKey, storeConfigHash, seed ) ) {
+            fingerprints.put( comparisonKey, storeConfigHash, seed, fingerprint | 1 );
+            return Optional.empty();
+        }
+        long entry = fingerprints.get( comparisonKey, storeConfigHash, seed, 0 );
+        long count = Math.min( ( entry & COUNT_MASK ) + 1, COUNT_MASK );
+        boolean flipped = ( entry & FINGERPRINT_MASK ) != fingerprint;
+        fingerprints.put( comparisonKey, storeConfigHash, seed, ( entry & FINGERPRINT_MASK ) | count );
+        if ( ! flipped ) {
+            return Optional.empty();
+        }
+
+        flipCount++;
+        long seedFlips = flakySeeds.get( comparisonKey, seed, 0, 0 );
+        flakySeeds.put( comparisonKey, seed, 0, seedFlips + 1 );
+        log.warn( "Flaky seed " + seed + " of comparison key " + comparisonKey + " on store configuration " + storeConfigHash
+                + " after " + count + " runs" );
+        return Optional.of( new Flip(
+                pdbKey,
+                comparisonKey,
+                storeConfigHash,
+                seed,
+                entry & FINGERPRINT_MASK,
+                resultSetHash,
+                count,
+                seedFlips == 0,
+                System.currentTimeMillis()
+        ) );
+    }
+
+    /**
+     * Returns whether any run of the seed with the given comparison key flipped.
+     */
+    synchronized public boolean isFlaky( long comparisonKey, long seed ) {
+        return flakySeeds.containsKey( comparisonKey, seed, 0 );
+    }
+
+    /**
+     * Returns the number of seeds marked flaky.
+     */
+    synchronized public int flakySeedCount() {
+        return flakySeeds.size();
+    }
+
+    /**
+     * Returns the number of bytes the maps occupy outside the Java heap.
+     */
+    synchronized public long offHeapBytes() {
+        return fingerprints.offHeapBytes() + flakySeeds.offHeapBytes();
+    }
+
+    /**
+     * Writes both maps to the given directory.
+     *
+     * @param directory The snapshot directory, created if it does not exist.
+     * @throws IOException if a snapshot file cannot be written.
+     */
+    synchronized public void snapshot( Path directory ) throws IOException {
+        Files.createDirectories( directory );
+        fingerprints.snapshot( directory.resolve( FINGERPRINTS_FILE ) );
+        flakySeeds.snapshot( directory.resolve( FLAKY_FILE ) );
+    }
+
+    /**
+     * Reopens a detector from the snapshot files in the given directory. Missing files yield an empty detector.
+     *
+     * @param directory The snapshot directory.
+     * @return The detector holding the state of the last snapshot.
+     * @throws IOException if a snapshot file cannot be read.
+     */
+    public static FlakinessDetector open( Path directory ) throws IOException {
+        Path fingerprintsFile = directory.resolve( FINGERPRINTS_FILE );
+        Path flakyFile = directory.resolve( FLAKY_FILE );
+        if ( ! Files.exists( fingerprintsFile ) || ! Files.exists( flakyFile ) ) {
+            return new FlakinessDetector();
+        }
+        FlakinessDetector flakinessDetector = new FlakinessDetector( OffHeapTripleLongMap.open( fingerprintsFile ), OffHeapTripleLongMap.open( flakyFile ) );
+        log.info( "Reopened " + flakinessDetector.fingerprints.size() + " run fingerprints and " + flakinessDetector.flakySeeds.size()
+                + " flaky seeds from " + directory );
+        return flakinessDetector;
+    }
+
+    /**
+     * A run whose result-set hash differs from the first run of the same seed, comparison key and store configuration.
+     * Only the 48 bit fingerprint of the first run's hash is kept, the lower 16 bits of previousFingerprint are zero.
+     * The first flip of a seed reclassifies it as flaky, mismatches recorded for it before are retracted.
+     */
+    public record Flip(
+            String pdbKey,
+            long comparisonKey,
+            long storeConfigHash,
+            long seed,
+            long previousFingerprint,
+            long resultSetHash,
+            long runCount,
+            boolean firstFlip,
+            long detectedAt
+    ) implements Serializable {}
+
+}
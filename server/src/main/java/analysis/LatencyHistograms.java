@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis;
+
+import analysis.structures.LogLinearHistogram;
+import connect.ConfigType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Streaming execution time histograms, one per physical plan hash and one per store configuration hash. The
+ * histograms are cumulative since the start of the server process and are not restored from their checkpoints, the
+ * count of a checkpoint dropping below the one before it marks a restart. {@link #pending()} hands out the histograms
+ * that received values since the last checkpoint, they are only marked as checkpointed by {@link #acknowledge(List)}
+ * once the checkpoint is committed.
+ * <p>
+ * At most {@link #MAX_HISTOGRAMS} histograms are kept per type; the least recently recorded ones are forgotten first,
+ * their last checkpoint remains in the query log.
+ */
+public class LatencyHistograms {
+    private static final int SUB_BUCKET_BITS = 5;
+    public static final int MAX_HISTOGRAMS = 10_000;
+
+    // Access ordered, the eldest entry is the least recently recorded histogram
+    private final LinkedHashMap<Long, Entry> physicalPlans = new LinkedHashMap<>( 16, 0.75f, true );
+    private final LinkedHashMap<Long, Entry> storeConfigs = new LinkedHashMap<>( 16, 0.75f, true );
+
+    /**
+     * Records the execution time of a result.
+     *
+     * @param physicalHash The hash of the physical plan, may be null.
+     * @param storeConfigHash The hash of the store configuration the result was produced with.
+     * @param execTime The execution time.
+     */
+    synchronized public void record( Long physicalHash, long storeConfigHash, long execTime ) {
+        if ( physicalHash != null ) {
+            entryOf( physicalPlans, physicalHash ).record( execTime );
+        }
+        entryOf( storeConfigs, storeConfigHash ).record( execTime );
+    }
+
+    private static Entry entryOf( LinkedHashMap<Long, Entry> histograms, long hash ) {
+        Entry entry = histograms.computeIfAbsent( hash, key -> new Entry() );
+        if ( histograms.size() > MAX_HISTOGRAMS ) {
+            Iterator<Entry> iterator = histograms.values().iterator();
+            iterator.next();
+            iterator.remove();
+        }
+        return entry;
+    }
+
+    private Map<Long, Entry> histogramsOf( ConfigType type ) {
+        return switch ( type ) {
+            case PHYSICAL_PLAN -> physicalPlans;
+            case STORE -> storeConfigs;
+            default -> throw new IllegalArgumentException( "No latency histograms kept for: " + type );
+        };
+    }
+
+    /**
+     * Returns the summary of a single histogram.
+     *
+     * @param type Either {@link ConfigType#PHYSICAL_PLAN} or {@link ConfigType#STORE}.
+     * @param hash The physical plan or store configuration hash.
+     */
+    synchronized public Optional<LatencySummary> get( ConfigType type, long hash ) {
+        return Optional.ofNullable( histogramsOf( type ).get( hash ) ).map( entry -> summarize( type, hash, entry.histogram ) );
+    }
+
+    /**
+     * Returns the histograms with the highest 99th percentile.
+     *
+     * @param type Either {@link ConfigType#PHYSICAL_PLAN} or {@link ConfigType#STORE}.
+     * @param minCount The minimum number of values a histogram needs to be considered.
+     * @param limit The maximum number of histograms returned.
+     */
+    synchronized public List<LatencySummary> slowest( ConfigType type, long minCount, int limit ) {
+        return histogramsOf( type ).entrySet().stream()
+                .filter( entry -> entry.getValue().histogram.count() >= minCount )
+                .map( entry -> summarize( type, entry.getKey(), entry.getValue().histogram ) )
+                .sorted( Comparator.comparingLong( LatencySummary::p99 ).reversed() )
+                .limit( limit )
+                .toList();
+    }
+
+    /**
+     * Returns the summaries of all histograms that received values since the last acknowledged checkpoint, including
+     * their buckets.
+     */
+    synchronized public List<LatencySummary> pending() {
+        List<LatencySummary> changed = new ArrayList<>();
+        for ( ConfigType type : List.of( ConfigType.PHYSICAL_PLAN, ConfigType.STORE ) ) {
+            histogramsOf( type ).forEach( ( hash, entry ) -> {
+                if ( entry.changed ) {
+                    changed.add( summarize( type, hash, entry.histogram ) );
+                }
+            } );
+        }
+        return changed;
+    }
+
+    /**
+     * Marks the given summaries as checkpointed, once the checkpoint of them is committed. Histograms that received
+     * values in the meantime stay pending.
+     */
+    synchronized public void acknowledge( List<LatencySummary> summaries ) {
+        for ( LatencySummary summary : summaries ) {
+            ConfigType type = summary.type().equals( ConfigType.STORE.getSignature() ) ? ConfigType.STORE : ConfigType.PHYSICAL_PLAN;
+            Entry entry = histogramsOf( type ).get( summary.hash() );
+            if ( entry != null && entry.histogram.count() == summary.count() ) {
+                entry.changed = false;
+            }
+        }
+    }
+
+    private static LatencySummary summarize( ConfigType type, long hash, LogLinearHistogram histogram ) {
+        return new LatencySummary(
+                type.getSignature(),
+                hash,
+                histogram.count(),
+                histogram.min(),
+                histogram.valueAtQuantile( 0.5 ),
+                histogram.valueAtQuantile( 0.9 ),
+                histogram.valueAtQuantile( 0.99 ),
+                histogram.max(),
+                histogram.mean(),
+                histogram.nonEmptyBuckets()
+        );
+    }
+
+    private static class Entry {
+        private final LogLinearHistogram histogram = new LogLinearHistogram( SUB_BUCKET_BITS );
+        private boolean changed;
+
+        private void record( long execTime ) {
+            histogram.record( execTime );
+            changed = true;
+        }
+    }
+
+    /**
+     * Percentiles of a latency histogram. The buckets alternate the highest value of a bucket and its count.
+     */
+    public record LatencySummary(
+            String type,
+            long hash,
+            long count,
+            long min,
+            long p50,
+            long p90,
+            long p99,
+            long max,
+            double mean,
+            long[] buckets
+    ) {}
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis;
+
+import analysis.structures.HyperLogLog;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plan diversity per store configuration, query configuration and branch. For every dimension key and day two
+ * {@link HyperLogLog} sketches count the distinct logical and physical plan hashes. The distinct plans of a time window
+ * are the merge of its days; the plans a key discovered within a window are estimated as the distinct plans up to the
+ * end of the window minus the distinct plans before it.
+ * <p>
+ * Sketches that changed are handed out by {@link #pending()} for persisting, marked as persisted by
+ * {@link #acknowledge(List)} once the write is committed, and restored by {@link #load}.
+ */
+public class PlanCoverage {
+    private static final int PRECISION = 11;
+    private static final long WINDOW_MILLIS = 24L * 60 * 60 * 1000;
+    public static final int RETAINED_WINDOWS = 30;
+
+    private final Map<WindowKey, Window> windows = new HashMap<>();
+    private long latestWindow;
+
+    public enum Dimension {
+        STORE,
+        QUERY,
+        BRANCH
+    }
+
+    /**
+     * Records the plans of a result.
+     *
+     * @param storeConfigHash The hash of the store configuration the result was produced with.
+     * @param queryConfigHash The hash of the query configuration the result was produced with.
+     * @param branch The branch the result was produced on, may be null.
+     * @param logicalHash The hash of the logical plan, may be null.
+     * @param physicalHash The hash of the physical plan, may be null.
+     * @param time The time the result was received at.
+     */
+    synchronized public void record( long storeConfigHash, long queryConfigHash, String branch, Long logicalHash, Long physicalHash, long time ) {
+        long windowStart = time - Math.floorMod( time, WINDOW_MILLIS );
+        if ( windowStart > latestWindow ) {
+            latestWindow = windowStart;
+            windows.keySet().removeIf( key -> key.windowStart() <= latestWindow - RETAINED_WINDOWS * WINDOW_MILLIS );
+        }
+        windowOf( Dimension.STORE, Long.toString( storeConfigHash ), windowStart ).add( logicalHash, physicalHash );
+        windowOf( Dimension.QUERY, Long.toString( queryConfigHash ), windowStart ).add( logicalHash, physicalHash );
+        if ( branch != null ) {
+            windowOf( Dimension.BRANCH, branch, windowStart ).add( logicalHash, physicalHash );
+        }
+    }
+
+    private Window windowOf( Dimension dimension, String dimensionKey, long windowStart ) {
+        return windows.computeIfAbsent( new WindowKey( dimension, dimensionKey, windowStart ), key -> new Window() );
+    }
+
+    /**
+     * Returns the plan coverage of every key of a dimension, ordered by descending number of physical plans discovered
+     * in the time window. Days are the granularity of the sketches, a partially covered day counts as a whole.
+     *
+     * @param dimension The dimension.
+     * @param from The start of the time window in epoch milliseconds.
+     * @param to The end of the time window in epoch milliseconds.
+     */
+    synchronized public List<Coverage> coverage( Dimension dimension, long from, long to ) {
+        Map<String, Accumulator> accumulators = new HashMap<>();
+        windows.forEach( ( key, window ) -> {
+            if ( key.dimension() != dimension ) {
+                return;
+            }
+            Accumulator accumulator = accumulators.computeIfAbsent( key.dimensionKey(), dimensionKey -> new Accumulator() );
+            boolean before = key.windowStart() + WINDOW_MILLIS <= from;
+            boolean within = ! before && key.windowStart() < to;
+            if ( before ) {
+                accumulator.beforeLogical.merge( window.logical );
+                accumulator.beforePhysical.merge( window.physical );
+            }
+            if ( within ) {
+                accumulator.results += window.results;
+                accumulator.windowLogical.merge( window.logical );
+                accumulator.windowPhysical.merge( window.physical );
+            }
+            if ( before || within ) {
+                accumulator.untilLogical.merge( window.logical );
+                accumulator.untilPhysical.merge( window.physical );
+            }
+        } );
+
+        List<Coverage> coverage = new ArrayList<>();
+        accumulators.forEach( ( dimensionKey, accumulator ) -> {
+            long untilLogical = accumulator.untilLogical.estimate();
+            long untilPhysical = accumulator.untilPhysical.estimate();
+            coverage.add( new Coverage(
+                    dimension.name(),
+                    dimensionKey,
+                    accumulator.results,
+                    accumulator.windowLogical.estimate(),
+                    accumulator.windowPhysical.estimate(),
+                    untilLogical,
+                    untilPhysical,
+                    Math.max( 0, untilLogical - accumulator.beforeLogical.estimate() ),
+                    Math.max( 0, untilPhysical - accumulator.beforePhysical.estimate() )
+            ) );
+        } );
+        coverage.sort( Comparator.comparingLong( Coverage::newPhysical ).reversed() );
+        return coverage;
+    }
+
+    /**
+     * Returns the sketches of all windows that changed since the last acknowledged checkpoint.
+     */
+    synchronized public List<WindowSketch> pending() {
+        List<WindowSketch> changed = new ArrayList<>();
+        windows.forEach( ( key, window ) -> {
+            if ( window.changed ) {
+                changed.add( new WindowSketch( key.dimension(), key.dimensionKey(), key.windowStart(), window.results, window.logical.toBytes(), window.physical.toBytes() ) );
+            }
+        } );
+        return changed;
+    }
+
+    /**
+     * Marks the given sketches as persisted, once the write of them is committed. Windows that recorded results in the
+     * meantime stay pending.
+     */
+    synchronized public void acknowledge( List<WindowSketch> sketches ) {
+        for ( WindowSketch sketch : sketches ) {
+            Window window = windows.get( new WindowKey( sketch.dimension(), sketch.dimensionKey(), sketch.windowStart() ) );
+            if ( window != null && window.results == sketch.results() ) {
+                window.changed = false;
+            }
+        }
+    }
+
+    /**
+     * Merges a persisted sketch into the window it belongs to.
+     */
+    synchronized public void load( WindowSketch sketch ) {
+        latestWindow = Math.max( latestWindow, sketch.windowStart() );
+        Window window = windowOf( sketch.dimension(), sketch.dimensionKey(), sketch.windowStart() );
+        window.results += sketch.results();
+        window.logical.merge( HyperLogLog.fromBytes( sketch.logical() ) );
+        window.physical.merge( HyperLogLog.fromBytes( sketch.physical() ) );
+    }
+
+    private record WindowKey( Dimension dimension, String dimensionKey, long windowStart ) {}
+
+    private static class Window {
+        private final HyperLogLog logical = new HyperLogLog( PRECISION );
+        private final HyperLogLog physical = new HyperLogLog( PRECISION );
+        private long results;
+        private boolean changed;
+
+        private void add( Long logicalHash, Long physicalHash ) {
+            results++;
+            if ( logicalHash != null ) {
+                logical.add( logicalHash );
+            }
+            if ( physicalHash != null ) {
+                physical.add( physicalHash );
+            }
+            changed = true;
+        }
+    }
+
+    private static class Accumulator {
+        private final HyperLogLog windowLogical = new HyperLogLog( PRECISION );
+        private final HyperLogLog windowPhysical = new HyperLogLog( PRECISION );
+        private final HyperLogLog beforeLogical = new HyperLogLog( PRECISION );
+        private final HyperLogLog beforePhysical = new HyperLogLog( PRECISION );
+        private final HyperLogLog untilLogical = new HyperLogLog( PRECISION );
+        private final HyperLogLog untilPhysical = new HyperLogLog( PRECISION );
+        private long results;
+    }
+
+    /**
+     * The sketches of a dimension key and day, as persisted in the query log.
+     */
+    public record WindowSketch( Dimension dimension, String dimensionKey, long windowStart, long results, byte[] logical, byte[] physical ) {}
+
+    /**
+     * Plan coverage of a dimension key. The window counts refer to the requested time window, the total counts to all
+     * retained days up to its end and the new counts to the plans first seen within the time window.
+     */
+    public record Coverage(
+            String dimension,
+            String key,
+            long results,
+            long distinctLogical,
+            long distinctPhysical,
+            long totalLogical,
+            long totalPhysical,
+            long newLogical,
+            long newPhysical
+    ) {}
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis;
+
+import analysis.structures.ArrayLongLongMap;
+import analysis.structures.LogLinearHistogram;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Incremental detection of performance regressions between a baseline branch and every other branch. Results are
+ * paired by their pair key, i.e. the profile including the store configuration, and their seed. For every pair the
+ * ratio of the candidate's to the baseline's execution time is added to the ratio distribution of the candidate branch
+ * and the physical plan the candidate executed.
+ * <p>
+ * A distribution is flagged as regression once it holds enough pairs, its geometric mean ratio exceeds the slowdown
+ * threshold and a one-sample t-test on the log ratios rejects that the branches are equally fast. As the test is
+ * repeated while pairs arrive, it is only evaluated at looks where the number of pairs doubled, and the error rate is
+ * spent over the looks: the k-th look tests at {@code ALPHA / 2^k}, such that the error rate over all looks stays
+ * below {@code ALPHA}. Every distribution is flagged at most once, flags are restored from the query log on startup.
+ * <p>
+ * The runs awaiting their pair are bounded by {@link #MAX_TRACKED_SEEDS}; the least recently used pair keys are
+ * forgotten first.
+ */
+@Slf4j
+public class RegressionDetector {
+    private static final int MIN_PAIRS = 30;
+    private static final double SLOWDOWN_THRESHOLD = 1.1;
+    private static final double ALPHA = 0.01;
+    private static final double RATIO_SCALE = 1000d;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int MAX_RECENT = 50;
+    private static final long MAX_TRACKED_SEEDS = 1_000_000;
+
+    @Getter
+    private final String baselineBranch;
+    // Access ordered, the eldest entry is the least recently used pair key of a branch
+    private final LinkedHashMap<RunsKey, BranchRuns> runs = new LinkedHashMap<>( 16, 0.75f, true );
+    private final Set<String> branches = new LinkedHashSet<>();
+    private long trackedSeeds;
+    private final Map<String, Map<Long, RatioDistribution>> distributions = new HashMap<>();
+    private final Deque<Regression> recent = new ArrayDeque<>();
+
+    /**
+     * @param baselineBranch The branch every other branch is compared against.
+     */
+    public RegressionDetector( String baselineBranch ) {
+        this.baselineBranch = Objects.requireNonNull( baselineBranch );
+    }
+
+    /**
+     * Records the execution time of a result and pairs it with the results of the same pair key and seed on the other
+     * side of the comparison. Only the first run of a seed per branch is paired.
+     *
+     * @param branch The branch the result was produced on.
+     * @param pairKey The combined hash of the profile and store configuration.
+     * @param seed The seed of the query.
+     * @param physicalHash The hash of the executed physical plan, may be null.
+     * @param execTime The execution time.
+     * @return The regressions flagged by this result.
+     */
+    synchronized public List<Regression> record( String branch, long pairKey, long seed, Long physicalHash, long execTime ) {
+        if ( branch == null || execTime <= 0 ) {
+            return List.of();
+        }
+        BranchRuns branchRuns = runs.computeIfAbsent( new RunsKey( branch, pairKey ), key -> new BranchRuns() );
+        branches.add( branch );
+        if ( branchRuns.execTimes.containsKey( seed ) ) {
+            return List.of();
+        }
+        long planHash = physicalHash == null ? 0 : physicalHash;
+        branchRuns.execTimes.put( seed, execTime );
+        branchRuns.plans.put( seed, planHash );
+        trackedSeeds++;
+
+        List<Regression> regressions = new ArrayList<>();
+        if ( baselineBranch.equals( branch ) ) {
+            for ( String candidate : branches ) {
+                BranchRuns candidateRuns = candidate.equals( baselineBranch ) ? null : runs.get( new RunsKey( candidate, pairKey ) );
+                if ( candidateRuns == null || ! candidateRuns.execTimes.containsKey( seed ) ) {
+                    continue;
+                }
+                addPair( candidate, candidateRuns.plans.get( seed, 0 ), candidateRuns.execTimes.get( seed, 0 ), execTime, regressions );
+            }
+        } else {
+            BranchRuns baselineRuns = runs.get( new RunsKey( baselineBranch, pairKey ) );
+            if ( baselineRuns != null && baselineRuns.execTimes.containsKey( seed ) ) {
+                addPair( branch, planHash, execTime, baselineRuns.execTimes.get( seed, 0 ), regressions );
+            }
+        }
+        evict();
+        return regressions;
+    }
+
+    /**
+     * Forgets the runs of the least recently used pair keys until the tracked seeds are within the budget. The runs
+     * just recorded are the most recently used and kept, even if they exceed the budget on their own.
+     */
+    private void evict() {
+        Iterator<BranchRuns> iterator = runs.values().iterator();
+        while ( trackedSeeds > MAX_TRACKED_SEEDS && runs.size() > 1 ) {
+            trackedSeeds -= iterator.next().execTimes.size();
+            iterator.remove();
+        }
+    }
+
+    private void addPair( String branch, long planHash, long candidateTime, long baselineTime, List<Regression> regressions ) {
+        RatioDistribution distribution = distributions
+                .computeIfAbsent( branch, key -> new HashMap<>() )
+                .computeIfAbsent( planHash, key -> new RatioDistribution() );
+        distribution.add( (double) candidateTime / baselineTime );
+        if ( distribution.flagged || ! distribution.isSignificantSlowdown() ) {
+            return;
+        }
+        distribution.flagged = true;
+        Regression regression = distribution.regression( branch, baselineBranch, planHash, System.currentTimeMillis() );
+        regressions.add( regression );
+        recent.addFirst( regression );
+        if ( recent.size() > MAX_RECENT ) {
+            recent.removeLast();
+        }
+        log.warn( "Performance regression on branch " + branch + " for physical plan " + planHash + ": "
+                + String.format( "%.2f", regression.geoMeanRatio() ) + "x slower than " + baselineBranch + " over " + regression.pairCount() + " pairs" );
+    }
+
+    /**
+     * Restores regressions flagged before a restart, such that they are not flagged again.
+     *
+     * @param regressions The flagged regressions against the baseline branch, newest first.
+     */
+    synchronized public void restore( List<Regression> regressions ) {
+        for ( Regression regression : regressions ) {
+            if ( ! baselineBranch.equals( regression.baselineBranch() ) ) {
+                continue;
+            }
+            distributions
+                    .computeIfAbsent( regression.branch(), key -> new HashMap<>() )
+                    .computeIfAbsent( regression.planHash(), key -> new RatioDistribution() )
+                    .flagged = true;
+            if ( recent.size() < MAX_RECENT ) {
+                recent.addLast( regression );
+            }
+        }
+    }
+
+    /**
+     * Returns the most recently flagged regressions, newest first.
+     */
+    synchronized public List<Regression> recent() {
+        return List.copyOf( recent );
+    }
+
+    /**
+     * Returns the ratio distributions of a branch with the highest geometric mean ratio, whether flagged or not.
+     *
+     * @param branch The candidate branch.
+     * @param minCount The minimum number of pairs a distribution needs to be considered.
+     * @param limit The maximum number of distributions returned.
+     */
+    synchronized public List<Regression> slowest( String branch, long minCount, int limit ) {
+        long now = System.currentTimeMillis();
+        return distributions.getOrDefault( branch, Map.of() ).entrySet().stream()
+                .filter( entry -> entry.getValue().n >= minCount )
+                .map( entry -> entry.getValue().regression( branch, baselineBranch, entry.getKey(), now ) )
+                .sorted( Comparator.comparingDouble( Regression::geoMeanRatio ).reversed() )
+                .limit( limit )
+                .toList();
+    }
+
+    private record RunsKey( String branch, long pairKey ) {}
+
+    /**
+     * Execution times and physical plans of the seeds a branch ran for a single pair key.
+     */
+    private static class BranchRuns {
+        private final ArrayLongLongMap execTimes = new ArrayLongLongMap();
+        private final ArrayLongLongMap plans = new ArrayLongLongMap();
+    }
+
+    /**
+     * Histogram of the execution time ratios of a branch and plan, together with mean and variance of the log ratios
+     * updated with Welford's method.
+     */
+    private static class RatioDistribution {
+        private final LogLinearHistogram ratios = new LogLinearHistogram( SUB_BUCKET_BITS );
+        private long n;
+        private double mean;
+        private double m2;
+        private boolean flagged;
+
+        private void add( double ratio ) {
+            ratios.record( Math.round( ratio * RATIO_SCALE ) );
+            double logRatio = Math.log( ratio );
+            n++;
+            double delta = logRatio - mean;
+            mean += delta / n;
+            m2 += delta * ( logRatio - mean );
+        }
+
+        private double tStatistic() {
+            if ( n < 2 ) {
+                return 0;
+            }
+            double standardError = Math.max( Math.sqrt( m2 / ( n - 1 ) ), 1e-9 ) / Math.sqrt( n );
+            return mean / standardError;
+        }
+
+        private boolean isSignificantSlowdown() {
+            return isLook() && Math.exp( mean ) >= SLOWDOWN_THRESHOLD && tStatistic() >= threshold();
+        }
+
+        /**
+         * @return Whether the test is evaluated at the current number of pairs: {@code MIN_PAIRS * 2^(k-1)} for the
+         * k-th look.
+         */
+        private boolean isLook() {
+            return n >= MIN_PAIRS && n % MIN_PAIRS == 0 && Long.bitCount( n / MIN_PAIRS ) == 1;
+        }
+
+        /**
+         * The threshold of the k-th look, spending {@code ALPHA / 2^k} of the error rate. The normal tail is bounded by
+         * {@code exp(-z^2 / 2)}, which keeps the threshold conservative without a quantile function.
+         */
+        private double threshold() {
+            int look = Long.numberOfTrailingZeros( n / MIN_PAIRS ) + 1;
+            return Math.sqrt( 2 * ( Math.log( 1 / ALPHA ) + look * Math.log( 2 ) ) );
+        }
+
+        private Regression regression( String branch, String baselineBranch, long planHash, long time ) {
+            return new Regression(
+                    branch,
+                    baselineBranch,
+                    planHash,
+                    n,
+                    Math.exp( mean ),
+                    ratios.valueAtQuantile( 0.5 ) / RATIO_SCALE,
+                    ratios.valueAtQuantile( 0.9 ) / RATIO_SCALE,
+                    tStatistic(),
+                    flagged,
+                    time
+            );
+        }
+    }
+
+    /**
+     * The execution time ratios of a candidate branch against the baseline for a physical plan. A plan hash of 0 stands
+     * for results without a physical plan.
+     */
+    public record Regression(
+            String branch,
+            String baselineBranch,
+            long planHash,
+            long pairCount,
+            double geoMeanRatio,
+            double p50Ratio,
+            double p90Ratio,
+            double tStatistic,
+            boolean flagged,
+            long detectedAt
+    ) implements Serializable {}
+
+}
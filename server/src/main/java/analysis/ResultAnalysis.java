@@ -0,0 +1,299 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis;
+
+import analysis.structures.DirectMemoryBudget;
+import connect.QueryLogConnection;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import server.clients.PDB;
+import server.messages.ClientMessage;
+import server.profile.Config;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point of the incremental analyses that are fed from the result ingest path. Every deposited result passes
+ * {@link #analyze(PDB, ClientMessage.PDBResult, QueryLogConnection.ResultHashes)}; the in-memory state of the
+ * analyses is flushed to the query log and snapshot to the application directory periodically.
+ */
+@Slf4j
+public class ResultAnalysis {
+    private static final String COMPARATOR_DIR = "comparator";
+    private static final String FLAKINESS_DIR = "flakiness";
+    private static final long FLUSH_INTERVAL_SECONDS = 30;
+    private static final long SNAPSHOT_INTERVAL_MINUTES = 10;
+    private static final long CHECKPOINT_INTERVAL_MINUTES = 5;
+    private static final long WINDOW_MILLIS = 24L * 60 * 60 * 1000;
+    private static final long COMPARATOR_MEMORY_MB = Long.getLong( "polyfier.comparatorMemoryMb", 1024 );
+
+    private final Path directory;
+    private final QueryLogConnection queryLogConnection;
+    private final ScheduledExecutorService executorService;
+
+    @Getter
+    private final ResultComparator resultComparator;
+    @Getter
+    private final FlakinessDetector flakinessDetector;
+    @Getter
+    private final ErrorClusterer errorClusterer;
+    @Getter
+    private final CostAccuracyTracker costAccuracyTracker;
+    @Getter
+    private final LatencyHistograms latencyHistograms;
+    @Getter
+    private final RegressionDetector regressionDetector;
+    @Getter
+    private final TopQueries topQueries;
+    @Getter
+    private final PlanCoverage planCoverage;
+
+    private ResultAnalysis(
+            Path directory,
+            QueryLogConnection queryLogConnection,
+            ResultComparator resultComparator,
+            FlakinessDetector flakinessDetector,
+            String baselineBranch
+    ) {
+        this.directory = directory;
+        this.queryLogConnection = queryLogConnection;
+        this.resultComparator = resultComparator;
+        this.flakinessDetector = flakinessDetector;
+        this.errorClusterer = new ErrorClusterer();
+        this.costAccuracyTracker = new CostAccuracyTracker();
+        this.latencyHistograms = new LatencyHistograms();
+        this.regressionDetector = new RegressionDetector( baselineBranch );
+        this.topQueries = new TopQueries();
+        this.planCoverage = new PlanCoverage();
+        this.executorService = Executors.newSingleThreadScheduledExecutor( runnable -> {
+            Thread thread = new Thread( runnable, "result-analysis" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    /**
+     * Opens the analyses, reopening persisted state from the given directory and the query log.
+     *
+     * @param directory The application directory snapshots are kept in.
+     * @param queryLogConnection The connection analysis results are written to.
+     * @param baselineBranch The branch performance regressions are detected against.
+     * @throws IOException if persisted state exists but cannot be read.
+     * @throws SQLException if persisted plan coverage or regressions cannot be read from the query log.
+     */
+    public static ResultAnalysis open( Path directory, QueryLogConnection queryLogConnection, String baselineBranch ) throws IOException, SQLException {
+        ResultAnalysis resultAnalysis = new ResultAnalysis(
+                directory,
+                queryLogConnection,
+                ResultComparator.open( directory.resolve( COMPARATOR_DIR ), new DirectMemoryBudget( COMPARATOR_MEMORY_MB << 20 ) ),
+                FlakinessDetector.open( directory.resolve( FLAKINESS_DIR ) ),
+                baselineBranch
+        );
+        try {
+            // Persisted coverage only outlives a restart since the schema is migrated by version instead of recreated
+            long since = System.currentTimeMillis() - PlanCoverage.RETAINED_WINDOWS * WINDOW_MILLIS;
+            queryLogConnection.loadPlanCoverage( since ).forEach( resultAnalysis.planCoverage::load );
+            resultAnalysis.regressionDetector.restore( queryLogConnection.loadRegressions( baselineBranch ) );
+        } catch ( SQLException | RuntimeException e ) {
+            resultAnalysis.discard();
+            throw e;
+        }
+        return resultAnalysis;
+    }
+
+    /**
+     * Starts the periodic flush, checkpoint and snapshot routines.
+     */
+    public void startRoutines() {
+        executorService.scheduleWithFixedDelay( this::flush, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS );
+        executorService.scheduleWithFixedDelay( this::checkpoint, CHECKPOINT_INTERVAL_MINUTES, CHECKPOINT_INTERVAL_MINUTES, TimeUnit.MINUTES );
+        executorService.scheduleWithFixedDelay( this::snapshot, SNAPSHOT_INTERVAL_MINUTES, SNAPSHOT_INTERVAL_MINUTES, TimeUnit.MINUTES );
+    }
+
+    /**
+     * Stops the routines without writing the state, for analyses that were opened but are not going to be used.
+     */
+    public void discard() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Stops the routines and writes the state a last time: flush, checkpoint and snapshot.
+     */
+    public void close() throws InterruptedException {
+        executorService.shutdown();
+        if ( ! executorService.awaitTermination( 1, TimeUnit.MINUTES ) ) {
+            log.warn( "Analysis routines did not finish in time." );
+        }
+        flush();
+        checkpoint();
+        snapshot();
+    }
+
+    /**
+     * Feeds a deposited result to every analysis.
+     *
+     * @param pdb The PolyphenyDB client that deposited the result.
+     * @param result The deposited result.
+     * @param hashes The hashes of the configurations the result references.
+     * @throws SQLException if a finding cannot be written to the query log.
+     */
+    public void analyze( PDB pdb, ClientMessage.PDBResult result, QueryLogConnection.ResultHashes hashes ) throws SQLException {
+        if ( Boolean.TRUE.equals( result.getSuccess() ) && result.getResultSetHash() != null ) {
+            Optional<FlakinessDetector.Flip> flip = flakinessDetector.record(
+                    pdb.getPdbKey(),
+                    pdb.getComparisonKey(),
+                    pdb.getStoreConfigHash(),
+                    result.getSeed(),
+                    result.getResultSetHash()
+            );
+            if ( flip.isPresent() ) {
+                queryLogConnection.insertFlip( flip.get() );
+                if ( flip.get().firstFlip() ) {
+                    int retracted = queryLogConnection.retractMismatches( pdb.getComparisonKey(), result.getSeed() );
+                    if ( retracted > 0 ) {
+                        log.info( "Retracted " + retracted + " mismatches of flaky seed " + result.getSeed() );
+                    }
+                }
+            }
+        }
+        if ( Boolean.TRUE.equals( result.getSuccess() ) && result.getResultSetHash() != null
+                && ! flakinessDetector.isFlaky( pdb.getComparisonKey(), result.getSeed() ) ) {
+            Optional<ResultComparator.Mismatch> mismatch = resultComparator.compare(
+                    pdb.getPdbKey(),
+                    pdb.getComparisonKey(),
+                    pdb.getStoreConfigHash(),
+                    result.getSeed(),
+                    result.getResultSetHash()
+            );
+            if ( mismatch.isPresent() ) {
+                queryLogConnection.insertMismatch( mismatch.get() );
+            }
+        }
+        long now = System.currentTimeMillis();
+        Long errorSignature = null;
+        if ( result.getError() != null ) {
+            errorSignature = errorClusterer.record( result.getError(), result.getSeed(), now );
+        }
+        topQueries.record( pdb.getBranch(), now, pdb.getPdbKey(), result.getSeed(), hashes.physicalHash(), result.getActual(), errorSignature );
+        planCoverage.record( pdb.getStoreConfigHash(), pdb.getQueryConfigHash(), pdb.getBranch(), hashes.logicalHash(), hashes.physicalHash(), now );
+        if ( result.getPredicted() != null && result.getActual() != null ) {
+            costAccuracyTracker.record( hashes.logicalHash(), hashes.physicalHash(), result.getPredicted(), result.getActual() );
+        }
+        if ( result.getActual() != null ) {
+            latencyHistograms.record( hashes.physicalHash(), pdb.getStoreConfigHash(), result.getActual() );
+            List<RegressionDetector.Regression> regressions = regressionDetector.record(
+                    pdb.getBranch(),
+                    Config.rehash( pdb.getComparisonKey(), pdb.getStoreConfigHash() ),
+                    result.getSeed(),
+                    hashes.physicalHash(),
+                    result.getActual()
+            );
+            for ( RegressionDetector.Regression regression : regressions ) {
+                queryLogConnection.insertRegression( regression );
+            }
+        }
+    }
+
+    /**
+     * Writes the in-memory state that changed since the last flush to the query log.
+     */
+    public void flush() {
+        flushErrorSignatures();
+    }
+
+    private void flushErrorSignatures() {
+        List<ErrorClusterer.ClusterDelta> deltas = errorClusterer.pending();
+        if ( deltas.isEmpty() ) {
+            return;
+        }
+        try {
+            queryLogConnection.flushErrorSignatures( deltas );
+            errorClusterer.acknowledge( deltas );
+            if ( log.isDebugEnabled() ) {
+                log.debug( "Flushed " + deltas.size() + " error signatures." );
+            }
+        } catch ( SQLException e ) {
+            log.error( "Could not flush error signatures: ", e );
+        }
+    }
+
+    /**
+     * Appends the latency histograms and writes the plan coverage sketches that changed since the last checkpoint to
+     * the query log.
+     */
+    public void checkpoint() {
+        checkpointLatencyHistograms();
+        checkpointPlanCoverage();
+    }
+
+    private void checkpointLatencyHistograms() {
+        List<LatencyHistograms.LatencySummary> summaries = latencyHistograms.pending();
+        if ( summaries.isEmpty() ) {
+            return;
+        }
+        try {
+            queryLogConnection.insertLatencyCheckpoint( summaries, System.currentTimeMillis() );
+            latencyHistograms.acknowledge( summaries );
+            if ( log.isDebugEnabled() ) {
+                log.debug( "Checkpointed " + summaries.size() + " latency histograms." );
+            }
+        } catch ( SQLException e ) {
+            log.error( "Could not checkpoint latency histograms: ", e );
+        }
+    }
+
+    private void checkpointPlanCoverage() {
+        List<PlanCoverage.WindowSketch> sketches = planCoverage.pending();
+        if ( sketches.isEmpty() ) {
+            return;
+        }
+        try {
+            queryLogConnection.savePlanCoverage( sketches );
+            planCoverage.acknowledge( sketches );
+            if ( log.isDebugEnabled() ) {
+                log.debug( "Checkpointed " + sketches.size() + " plan coverage sketches." );
+            }
+        } catch ( SQLException e ) {
+            log.error( "Could not checkpoint plan coverage: ", e );
+        }
+    }
+
+    /**
+     * Writes the off-heap state to the application directory.
+     */
+    public void snapshot() {
+        try {
+            resultComparator.snapshot();
+        } catch ( IOException e ) {
+            log.error( "Could not snapshot result comparator: ", e );
+        }
+        try {
+            flakinessDetector.snapshot( directory.resolve( FLAKINESS_DIR ) );
+        } catch ( IOException e ) {
+            log.error( "Could not snapshot flakiness detector: ", e );
+        }
+    }
+
+}
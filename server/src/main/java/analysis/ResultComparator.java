@@ -0,0 +1,307 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis;
+
+import analysis.structures.DirectMemoryBudget;
+import analysis.structures.OffHeapLongLongMap;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental differential comparison of result-set hashes. For every comparison key, i.e. the combination of schema,
+ * data and query configuration, the comparator keeps one seed to result-set hash map per store configuration. A
+ * deposited result is compared against the hashes other store configurations produced for the same seed, such that
+ * a divergence is detected the moment the second, differing hash arrives.
+ * <p>
+ * The seed to hash maps are held off-heap, see {@link OffHeapLongLongMap}, and are snapshot to one file per comparison
+ * key and store configuration, such that the state of a campaign survives restarts within a fixed heap. All maps share
+ * one {@link DirectMemoryBudget}; comparison keys that were idle for {@link #IDLE_MILLIS} are released after their
+ * snapshot and reopened from it once a result of them arrives again.
+ */
+@Slf4j
+public class ResultComparator {
+    private static final String SNAPSHOT_SUFFIX = ".map";
+    static final long IDLE_MILLIS = 60 * 60 * 1000;
+
+    private final Path directory;
+    private final DirectMemoryBudget budget;
+    private final Map<Long, ComparisonResults> comparisons = new HashMap<>();
+    // Comparison keys whose maps are only held in the snapshot directory
+    private final Set<Long> onDisk = new HashSet<>();
+
+    @Getter
+    private long comparedCount;
+    @Getter
+    private long mismatchCount;
+
+    /**
+     * @param directory The snapshot directory, maps of idle comparison keys are released to and reopened from it.
+     * @param budget The direct memory all seed to hash maps hold together.
+     */
+    public ResultComparator( Path directory, DirectMemoryBudget budget ) {
+        this.directory = directory;
+        this.budget = budget;
+    }
+
+    /**
+     * Records the result-set hash of a seed and compares it with the hashes of all other store configurations of the
+     * same comparison key.
+     *
+     * @param pdbKey The PolyphenyDB client that deposited the result.
+     * @param comparisonKey The combined hash of the schema, data and query configuration.
+     * @param storeConfigHash The hash of the store configuration the result was produced with.
+     * @param seed The seed of the query.
+     * @param resultSetHash The hash of the result-set.
+     * @return The first divergence found, if any.
+     */
+    synchronized public Optional<Mismatch> compare( String pdbKey, long comparisonKey, long storeConfigHash, long seed, long resultSetHash ) {
+        ComparisonResults comparisonResults = comparisons.get( comparisonKey );
+        if ( comparisonResults == null ) {
+            comparisonResults = reopen( comparisonKey );
+            comparisons.put( comparisonKey, comparisonResults );
+        }
+        comparisonResults.lastUsed = System.nanoTime();
+
+        Mismatch mismatch = null;
+        for ( int i = 0; i < comparisonResults.size; i++ ) {
+            if ( comparisonResults.storeConfigs[i] == storeConfigHash || ! comparisonResults.results[i].containsKey( seed ) ) {
+                continue;
+            }
+            comparedCount++;
+            long otherResultSetHash = comparisonResults.results[i].get( seed, 0 );
+            if ( otherResultSetHash != resultSetHash ) {
+                mismatch = new Mismatch(
+                        pdbKey,
+                        comparisonKey,
+                        seed,
+                        storeConfigHash,
+                        resultSetHash,
+                        comparisonResults.storeConfigs[i],
+                        otherResultSetHash,
+                        System.currentTimeMillis()
+                );
+                break;
+            }
+        }
+
+        OffHeapLongLongMap results = comparisonResults.resultsOf( storeConfigHash, budget );
+        boolean full = results.isFull();
+        results.put( seed, resultSetHash );
+        if ( ! full && results.isFull() ) {
+            log.warn( "Seed map of comparison key " + comparisonKey + " and store configuration " + storeConfigHash
+                    + " reached its maximum capacity or the direct memory budget of " + ( budget.limit() >> 20 )
+                    + " MiB, new seeds of it are no longer compared." );
+        }
+
+        if ( mismatch != null ) {
+            mismatchCount++;
+            log.warn( "Result mismatch for seed " + seed + " of comparison key " + comparisonKey + " between store configurations "
+                    + storeConfigHash + " and " + mismatch.otherStoreConfigHash() );
+        }
+        return Optional.ofNullable( mismatch );
+    }
+
+    /**
+     * Returns the number of bytes the seed to hash maps occupy outside the Java heap.
+     */
+    synchronized public long offHeapBytes() {
+        long bytes = 0;
+        for ( ComparisonResults comparisonResults : comparisons.values() ) {
+            for ( int i = 0; i < comparisonResults.size; i++ ) {
+                bytes += comparisonResults.results[i].offHeapBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes every seed to hash map to its own file in the snapshot directory and releases the maps of comparison keys
+     * that were idle for {@link #IDLE_MILLIS}. The maps are copied one at a time while holding the lock into a single
+     * scratch map and written without it, such that comparisons only wait for a memory copy and the snapshot holds at
+     * most one additional map.
+     *
+     * @throws IOException if a snapshot file cannot be written, no map is released then.
+     */
+    public void snapshot() throws IOException {
+        snapshot( IDLE_MILLIS );
+    }
+
+    void snapshot( long idleMillis ) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories( directory );
+        Map<Path, OffHeapLongLongMap> maps = new LinkedHashMap<>();
+        synchronized ( this ) {
+            for ( Map.Entry<Long, ComparisonResults> entry : comparisons.entrySet() ) {
+                ComparisonResults comparisonResults = entry.getValue();
+                for ( int i = 0; i < comparisonResults.size; i++ ) {
+                    maps.put( directory.resolve(
+                            Long.toHexString( entry.getKey() ) + "_" + Long.toHexString( comparisonResults.storeConfigs[i] ) + SNAPSHOT_SUFFIX
+                    ), comparisonResults.results[i] );
+                }
+            }
+        }
+        OffHeapLongLongMap scratch = new OffHeapLongLongMap( 0, OffHeapLongLongMap.MAX_CAPACITY, budget );
+        try {
+            for ( Map.Entry<Path, OffHeapLongLongMap> entry : maps.entrySet() ) {
+                synchronized ( this ) {
+                    entry.getValue().copyInto( scratch );
+                }
+                scratch.snapshot( entry.getKey() );
+            }
+        } finally {
+            scratch.release();
+        }
+        int released = releaseIdle( start - TimeUnit.MILLISECONDS.toNanos( idleMillis ) );
+        if ( log.isDebugEnabled() ) {
+            log.debug( "Snapshot of " + maps.size() + " seed maps written to " + directory + ", released " + released + " idle comparison keys." );
+        }
+    }
+
+    /**
+     * Releases the maps of the comparison keys last used before the given time, their snapshot holds their state.
+     */
+    synchronized private int releaseIdle( long usedBefore ) {
+        int released = 0;
+        Iterator<Map.Entry<Long, ComparisonResults>> iterator = comparisons.entrySet().iterator();
+        while ( iterator.hasNext() ) {
+            Map.Entry<Long, ComparisonResults> entry = iterator.next();
+            ComparisonResults comparisonResults = entry.getValue();
+            if ( comparisonResults.lastUsed - usedBefore >= 0 ) {
+                continue;
+            }
+            for ( int i = 0; i < comparisonResults.size; i++ ) {
+                comparisonResults.results[i].release();
+            }
+            iterator.remove();
+            onDisk.add( entry.getKey() );
+            released++;
+        }
+        return released;
+    }
+
+    /**
+     * Reopens the maps of a comparison key from its snapshot files, or starts empty ones if it has none. Files that
+     * cannot be read are logged, their store configurations start over and overwrite them with the next snapshot.
+     */
+    private ComparisonResults reopen( long comparisonKey ) {
+        ComparisonResults comparisonResults = new ComparisonResults();
+        if ( ! onDisk.remove( comparisonKey ) ) {
+            return comparisonResults;
+        }
+        try ( DirectoryStream<Path> files = Files.newDirectoryStream( directory, Long.toHexString( comparisonKey ) + "_*" + SNAPSHOT_SUFFIX ) ) {
+            for ( Path file : files ) {
+                try {
+                    comparisonResults.add( storeConfigOf( file ), OffHeapLongLongMap.open( file, budget ) );
+                } catch ( IOException e ) {
+                    log.error( "Could not reopen seed map " + file + ", its store configuration starts over: ", e );
+                }
+            }
+        } catch ( IOException e ) {
+            log.error( "Could not reopen comparison key " + comparisonKey + ", it starts over: ", e );
+        }
+        return comparisonResults;
+    }
+
+    /**
+     * Reopens a comparator from the snapshot files in the given directory. A missing directory yields an empty
+     * comparator. The maps of a comparison key are only read once a result of it arrives.
+     *
+     * @param directory The snapshot directory.
+     * @param budget The direct memory all seed to hash maps hold together.
+     * @return The comparator holding the state of the last snapshot.
+     * @throws IOException if the snapshot directory cannot be listed.
+     */
+    public static ResultComparator open( Path directory, DirectMemoryBudget budget ) throws IOException {
+        ResultComparator resultComparator = new ResultComparator( directory, budget );
+        if ( ! Files.isDirectory( directory ) ) {
+            return resultComparator;
+        }
+        try ( DirectoryStream<Path> files = Files.newDirectoryStream( directory, "*" + SNAPSHOT_SUFFIX ) ) {
+            for ( Path file : files ) {
+                String name = file.getFileName().toString();
+                resultComparator.onDisk.add( Long.parseUnsignedLong( name.substring( 0, name.indexOf( '_' ) ), 16 ) );
+            }
+        }
+        log.info( "Found " + resultComparator.onDisk.size() + " comparison keys in " + directory + ", reopened once their results arrive." );
+        return resultComparator;
+    }
+
+    private static long storeConfigOf( Path file ) {
+        String name = file.getFileName().toString();
+        return Long.parseUnsignedLong( name.substring( name.indexOf( '_' ) + 1, name.length() - SNAPSHOT_SUFFIX.length() ), 16 );
+    }
+
+    /**
+     * Result-set hashes of a single comparison key, one map per store configuration. The store configurations are held
+     * in a plain array as there are only few of them per comparison key.
+     */
+    private static class ComparisonResults {
+        private long[] storeConfigs = new long[4];
+        private OffHeapLongLongMap[] results = new OffHeapLongLongMap[4];
+        private int size;
+        private long lastUsed;
+
+        private OffHeapLongLongMap resultsOf( long storeConfigHash, DirectMemoryBudget budget ) {
+            for ( int i = 0; i < size; i++ ) {
+                if ( storeConfigs[i] == storeConfigHash ) {
+                    return results[i];
+                }
+            }
+            return add( storeConfigHash, new OffHeapLongLongMap( 1024, OffHeapLongLongMap.DEFAULT_MAX_CAPACITY, budget ) );
+        }
+
+        private OffHeapLongLongMap add( long storeConfigHash, OffHeapLongLongMap map ) {
+            if ( size == storeConfigs.length ) {
+                storeConfigs = Arrays.copyOf( storeConfigs, size << 1 );
+                results = Arrays.copyOf( results, size << 1 );
+            }
+            storeConfigs[size] = storeConfigHash;
+            results[size] = map;
+            return results[size++];
+        }
+    }
+
+    /**
+     * A divergence between the result-set hashes two store configurations produced for the same comparison key and seed.
+     */
+    public record Mismatch(
+            String pdbKey,
+            long comparisonKey,
+            long seed,
+            long storeConfigHash,
+            long resultSetHash,
+            long otherStoreConfigHash,
+            long otherResultSetHash,
+            long detectedAt
+    ) implements Serializable {}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis;
+
+import analysis.structures.SpaceSaving;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Top-K summaries of the result stream, segmented by branch and day. Every segment keeps the slowest results in a
+ * bounded min-heap and the most frequent error signatures and failing physical plans in {@link SpaceSaving} sketches.
+ * Queries over several branches or days merge the segments they cover; segments older than the retention are dropped.
+ */
+public class TopQueries {
+    private static final long WINDOW_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int RETAINED_WINDOWS = 28;
+    private static final int SLOWEST_CAPACITY = 100;
+    private static final int FREQUENCY_CAPACITY = 1000;
+
+    private final Map<Segment, SegmentState> segments = new HashMap<>();
+    private long latestWindow;
+
+    /**
+     * Records a result.
+     *
+     * @param branch The branch the result was produced on.
+     * @param time The time the result was received at.
+     * @param pdbKey The PolyphenyDB client that deposited the result.
+     * @param seed The seed of the query.
+     * @param physicalHash The hash of the physical plan, may be null.
+     * @param execTime The execution time, may be null.
+     * @param errorSignature The signature hash of the error, null for successful results.
+     */
+    synchronized public void record( String branch, long time, String pdbKey, long seed, Long physicalHash, Long execTime, Long errorSignature ) {
+        long window = time - Math.floorMod( time, WINDOW_MILLIS );
+        if ( window > latestWindow ) {
+            latestWindow = window;
+            segments.keySet().removeIf( segment -> segment.windowStart() <= latestWindow - RETAINED_WINDOWS * WINDOW_MILLIS );
+        }
+        SegmentState state = segments.computeIfAbsent( new Segment( branch, window ), key -> new SegmentState() );
+        if ( execTime != null ) {
+            state.addSlow( new SlowResult( branch, pdbKey, seed, physicalHash, execTime, time ) );
+        }
+        if ( errorSignature != null ) {
+            state.errors.add( errorSignature );
+            if ( physicalHash != null ) {
+                state.failingPlans.add( physicalHash );
+            }
+        }
+    }
+
+    private List<SegmentState> covered( String branch, long from, long to ) {
+        List<SegmentState> covered = new ArrayList<>();
+        segments.forEach( ( segment, state ) -> {
+            if ( ( branch == null || branch.equals( segment.branch() ) )
+                    && segment.windowStart() + WINDOW_MILLIS > from && segment.windowStart() < to ) {
+                covered.add( state );
+            }
+        } );
+        return covered;
+    }
+
+    /**
+     * Returns the slowest results of the days overlapping the time window. Days are the granularity of the segments,
+     * results of a partially covered day are included.
+     *
+     * @param branch The branch, null for all branches.
+     * @param from The start of the time window in epoch milliseconds.
+     * @param to The end of the time window in epoch milliseconds.
+     * @param limit The maximum number of results, at most 100.
+     */
+    synchronized public List<SlowResult> slowest( String branch, long from, long to, int limit ) {
+        return covered( branch, from, to ).stream()
+                .flatMap( state -> state.slowest.stream() )
+                .sorted( Comparator.comparingLong( SlowResult::execTime ).reversed() )
+                .limit( limit )
+                .toList();
+    }
+
+    /**
+     * Returns the most frequent error signatures of the days overlapping the time window.
+     *
+     * @see #slowest(String, long, long, int)
+     */
+    synchronized public List<SpaceSaving.Item> frequentErrors( String branch, long from, long to, int limit ) {
+        SpaceSaving merged = new SpaceSaving( FREQUENCY_CAPACITY );
+        covered( branch, from, to ).forEach( state -> merged.add( state.errors ) );
+        return merged.top( limit );
+    }
+
+    /**
+     * Returns the physical plans with the most failed results in the days overlapping the time window.
+     *
+     * @see #slowest(String, long, long, int)
+     */
+    synchronized public List<SpaceSaving.Item> failingPlans( String branch, long from, long to, int limit ) {
+        SpaceSaving merged = new SpaceSaving( FREQUENCY_CAPACITY );
+        covered( branch, from, to ).forEach( state -> merged.add( state.failingPlans ) );
+        return merged.top( limit );
+    }
+
+    private record Segment( String branch, long windowStart ) {}
+
+    private static class SegmentState {
+        private final PriorityQueue<SlowResult> slowest = new PriorityQueue<>( Comparator.comparingLong( SlowResult::execTime ) );
+        private final SpaceSaving errors = new SpaceSaving( FREQUENCY_CAPACITY );
+        private final SpaceSaving failingPlans = new SpaceSaving( FREQUENCY_CAPACITY );
+
+        private void addSlow( SlowResult result ) {
+            if ( slowest.size() < SLOWEST_CAPACITY ) {
+                slowest.add( result );
+            } else if ( slowest.peek().execTime() < result.execTime() ) {
+                slowest.poll();
+                slowest.add( result );
+            }
+        }
+    }
+
+    public record SlowResult( String branch, String pdbKey, long seed, Long physicalHash, long execTime, long receivedAt ) implements Serializable {}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis.structures;
+
+/**
+ * Open-addressing {@link LongLongMap} with linear probing over two parallel long arrays. The key 0 marks an empty
+ * slot in the arrays, an actual 0 key is therefore kept aside in a dedicated field.
+ */
+public class ArrayLongLongMap implements LongLongMap {
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    public ArrayLongLongMap() {
+        this( 16 );
+    }
+
+    /**
+     * @param expectedSize The number of entries the map should hold before it needs to grow.
+     */
+    public ArrayLongLongMap( int expectedSize ) {
+        allocate( capacityFor( expectedSize ) );
+    }
+
+    private static int capacityFor( int expectedSize ) {
+        int capacity = Integer.highestOneBit( Math.max( 2, (int) Math.ceil( expectedSize / LOAD_FACTOR ) ) - 1 ) << 1;
+        return Math.max( capacity, 2 );
+    }
+
+    private void allocate( int capacity ) {
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+        this.mask = capacity - 1;
+        this.threshold = (int) ( capacity * LOAD_FACTOR );
+    }
+
+    private int slot( long key ) {
+        int pos = (int) LongLongMap.mix( key ) & mask;
+        while ( keys[pos] != 0 && keys[pos] != key ) {
+            pos = ( pos + 1 ) & mask;
+        }
+        return pos;
+    }
+
+    @Override
+    public boolean containsKey( long key ) {
+        if ( key == 0 ) {
+            return hasZeroKey;
+        }
+        return keys[slot( key )] != 0;
+    }
+
+    @Override
+    public long get( long key, long defaultValue ) {
+        if ( key == 0 ) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int pos = slot( key );
+        return keys[pos] != 0 ? values[pos] : defaultValue;
+    }
+
+    @Override
+    public void put( long key, long value ) {
+        if ( key == 0 ) {
+            if ( ! hasZeroKey ) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int pos = slot( key );
+        if ( keys[pos] == 0 ) {
+            keys[pos] = key;
+            size++;
+        }
+        values[pos] = value;
+        if ( size > threshold ) {
+            rehash();
+        }
+    }
+
+    /**
+     * Removes a key. The entries following the freed slot in its probe sequence are shifted back, such that no
+     * tombstones are needed.
+     */
+    public void remove( long key ) {
+        if ( key == 0 ) {
+            if ( hasZeroKey ) {
+                hasZeroKey = false;
+                size--;
+            }
+            return;
+        }
+        int pos = slot( key );
+        if ( keys[pos] == 0 ) {
+            return;
+        }
+        size--;
+        int next = ( pos + 1 ) & mask;
+        while ( keys[next] != 0 ) {
+            int home = (int) LongLongMap.mix( keys[next] ) & mask;
+            // Move the entry back if its home slot does not lie cyclically within (pos, next]
+            if ( ( ( next - home ) & mask ) >= ( ( next - pos ) & mask ) ) {
+                keys[pos] = keys[next];
+                values[pos] = values[next];
+                pos = next;
+            }
+            next = ( next + 1 ) & mask;
+        }
+        keys[pos] = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void rehash() {
+        long[] oldKeys = this.keys;
+        long[] oldValues = this.values;
+        allocate( oldKeys.length << 1 );
+        for ( int i = 0; i < oldKeys.length; i++ ) {
+            if ( oldKeys[i] != 0 ) {
+                int pos = slot( oldKeys[i] );
+                keys[pos] = oldKeys[i];
+                values[pos] = oldValues[i];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis.structures;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bytes of direct memory a group of off-heap maps may hold together. Maps reserve their buffers before they grow and
+ * stop growing once the budget is spent, such that the group stays within a fixed amount of direct memory however
+ * many maps it holds. Released buffers are freed once they are garbage collected, which the JVM forces before it fails
+ * a direct allocation.
+ */
+public class DirectMemoryBudget {
+    public static final DirectMemoryBudget UNBOUNDED = new DirectMemoryBudget( Long.MAX_VALUE );
+
+    private final long limit;
+    private final AtomicLong reserved = new AtomicLong();
+
+    /**
+     * @param limit The number of bytes the maps of the budget may hold together.
+     */
+    public DirectMemoryBudget( long limit ) {
+        if ( limit <= 0 ) {
+            throw new IllegalArgumentException( "Invalid direct memory budget " + limit );
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Reserves the given bytes if the budget still holds them.
+     *
+     * @return false if the reservation would exceed the budget, nothing is reserved then.
+     */
+    public boolean tryReserve( long bytes ) {
+        long current;
+        do {
+            current = reserved.get();
+            if ( current + bytes > limit ) {
+                return false;
+            }
+        } while ( ! reserved.compareAndSet( current, current + bytes ) );
+        return true;
+    }
+
+    /**
+     * Reserves the given bytes even if that exceeds the budget, for the small initial buffer of a map or a map reopened
+     * from a snapshot, which cannot do without.
+     */
+    public void reserve( long bytes ) {
+        reserved.addAndGet( bytes );
+    }
+
+    public boolean canReserve( long bytes ) {
+        return reserved.get() + bytes <= limit;
+    }
+
+    public void release( long bytes ) {
+        reserved.addAndGet( -bytes );
+    }
+
+    public long reserved() {
+        return reserved.get();
+    }
+
+    public long limit() {
+        return limit;
+    }
+
+}
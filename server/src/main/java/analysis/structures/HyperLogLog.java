@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis.structures;
+
+/**
+ * HyperLogLog sketch estimating the number of distinct long values with 2^precision byte registers. The relative
+ * standard error is about 1.04 / sqrt(2^precision). Values are mixed before they are registered, such that plain
+ * hashes and sequential values are equally suited. Small cardinalities are estimated by linear counting.
+ * <p>
+ * Sketches of the same precision are merged by taking the register-wise maximum, which makes the sketch of a union
+ * of windows the merge of the sketches of the windows.
+ */
+public class HyperLogLog {
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * @param precision The number of index bits, between 4 and 18.
+     */
+    public HyperLogLog( int precision ) {
+        if ( precision < 4 || precision > 18 ) {
+            throw new IllegalArgumentException( "precision must be between 4 and 18." );
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Restores a sketch from its registers, see {@link #toBytes()}.
+     */
+    public static HyperLogLog fromBytes( byte[] registers ) {
+        int precision = Integer.numberOfTrailingZeros( registers.length );
+        if ( registers.length != 1 << precision ) {
+            throw new IllegalArgumentException( "Register count is not a power of two: " + registers.length );
+        }
+        HyperLogLog hyperLogLog = new HyperLogLog( precision );
+        System.arraycopy( registers, 0, hyperLogLog.registers, 0, registers.length );
+        return hyperLogLog;
+    }
+
+    /**
+     * Registers a value.
+     *
+     * @return true if a register changed, i.e. the value might not have been seen before.
+     */
+    public boolean add( long value ) {
+        long hash = LongLongMap.mix( value );
+        int index = (int) ( hash >>> ( 64 - precision ) );
+        // The remaining bits, with a guard bit that bounds the rank to 64 - precision + 1
+        long rest = ( hash << precision ) | ( 1L << ( precision - 1 ) );
+        byte rank = (byte) ( Long.numberOfLeadingZeros( rest ) + 1 );
+        if ( rank > registers[index] ) {
+            registers[index] = rank;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Merges another sketch of the same precision into this one.
+     */
+    public void merge( HyperLogLog other ) {
+        if ( other.precision != precision ) {
+            throw new IllegalArgumentException( "Sketches of different precision cannot be merged." );
+        }
+        for ( int i = 0; i < registers.length; i++ ) {
+            if ( other.registers[i] > registers[i] ) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated number of distinct values.
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for ( byte register : registers ) {
+            sum += 1d / ( 1L << register );
+            if ( register == 0 ) {
+                zeros++;
+            }
+        }
+        double alpha = switch ( m ) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / ( 1 + 1.079 / m );
+        };
+        double estimate = alpha * m * m / sum;
+        if ( estimate <= 2.5 * m && zeros > 0 ) {
+            estimate = m * Math.log( (double) m / zeros );
+        }
+        return Math.round( estimate );
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * Returns a copy of the registers.
+     */
+    public byte[] toBytes() {
+        return registers.clone();
+    }
+
+    public HyperLogLog copy() {
+        return fromBytes( registers );
+    }
+
+}
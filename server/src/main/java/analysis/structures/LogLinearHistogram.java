@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis.structures;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative long values in the manner of HdrHistogram. Values are grouped by their power of two, and
+ * every power of two is split into 2^subBucketBits linear sub-buckets, which bounds the relative error of a reported
+ * value by 2^-subBucketBits. Values below 2^subBucketBits are counted exactly. The bucket array only grows as far as
+ * the largest recorded value requires.
+ */
+public class LogLinearHistogram {
+    private final int subBucketBits;
+    private final int subBucketCount;
+
+    private long[] counts;
+    private long totalCount;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private double sum;
+
+    /**
+     * @param subBucketBits The number of bits of precision kept per power of two, between 1 and 16.
+     */
+    public LogLinearHistogram( int subBucketBits ) {
+        if ( subBucketBits < 1 || subBucketBits > 16 ) {
+            throw new IllegalArgumentException( "subBucketBits must be between 1 and 16." );
+        }
+        this.subBucketBits = subBucketBits;
+        this.subBucketCount = 1 << subBucketBits;
+        this.counts = new long[subBucketCount << 1];
+    }
+
+    private int indexOf( long value ) {
+        if ( value < subBucketCount ) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros( value ) - subBucketBits;
+        return subBucketCount + ( shift * subBucketCount ) + (int) ( ( value >>> shift ) - subBucketCount );
+    }
+
+    private long highestValueOf( int index ) {
+        if ( index < subBucketCount ) {
+            return index;
+        }
+        int shift = ( index - subBucketCount ) / subBucketCount;
+        long lowest = (long) ( subBucketCount + ( index - subBucketCount ) % subBucketCount ) << shift;
+        return lowest + ( 1L << shift ) - 1;
+    }
+
+    /**
+     * Records a single value, negative values are counted as 0.
+     */
+    public void record( long value ) {
+        record( value, 1 );
+    }
+
+    /**
+     * Records a value a given number of times, negative values are counted as 0.
+     */
+    public void record( long value, long count ) {
+        value = Math.max( value, 0 );
+        int index = indexOf( value );
+        if ( index >= counts.length ) {
+            counts = Arrays.copyOf( counts, Math.max( index + 1, counts.length + subBucketCount ) );
+        }
+        counts[index] += count;
+        totalCount += count;
+        sum += (double) value * count;
+        min = Math.min( min, value );
+        max = Math.max( max, value );
+    }
+
+    /**
+     * Adds all values recorded by another histogram of the same precision.
+     */
+    public void add( LogLinearHistogram other ) {
+        if ( other.subBucketBits != subBucketBits ) {
+            throw new IllegalArgumentException( "Histograms of different precision cannot be added." );
+        }
+        if ( other.counts.length > counts.length ) {
+            counts = Arrays.copyOf( counts, other.counts.length );
+        }
+        for ( int i = 0; i < other.counts.length; i++ ) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min( min, other.min );
+        max = Math.max( max, other.max );
+    }
+
+    /**
+     * Returns the value below or at which the given fraction of recorded values lies, within the precision of the
+     * histogram. Returns 0 for an empty histogram.
+     *
+     * @param quantile The quantile between 0 and 1.
+     */
+    public long valueAtQuantile( double quantile ) {
+        if ( totalCount == 0 ) {
+            return 0;
+        }
+        long rank = Math.max( 1, (long) Math.ceil( Math.min( Math.max( quantile, 0 ), 1 ) * totalCount ) );
+        long seen = 0;
+        for ( int i = 0; i < counts.length; i++ ) {
+            seen += counts[i];
+            if ( seen >= rank ) {
+                return Math.min( highestValueOf( i ), max );
+            }
+        }
+        return max;
+    }
+
+    public long count() {
+        return totalCount;
+    }
+
+    public long min() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    public int subBucketBits() {
+        return subBucketBits;
+    }
+
+    /**
+     * Returns the non-empty buckets as pairs of the highest value of the bucket and its count, suited for persisting
+     * the histogram in a compact form.
+     */
+    public long[] nonEmptyBuckets() {
+        int nonEmpty = 0;
+        for ( long count : counts ) {
+            if ( count != 0 ) {
+                nonEmpty++;
+            }
+        }
+        long[] buckets = new long[nonEmpty << 1];
+        int pos = 0;
+        for ( int i = 0; i < counts.length; i++ ) {
+            if ( counts[i] != 0 ) {
+                buckets[pos++] = highestValueOf( i );
+                buckets[pos++] = counts[i];
+            }
+        }
+        return buckets;
+    }
+
+}
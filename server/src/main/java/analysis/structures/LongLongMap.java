@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis.structures;
+
+/**
+ * The LongLongMap interface describes a map from primitive long keys to primitive long values. Implementations
+ * avoid boxing entirely, such that millions of seed to hash entries can be held without allocating an object per entry.
+ */
+public interface LongLongMap {
+
+    /**
+     * Returns true if a value is associated with the given key.
+     */
+    boolean containsKey( long key );
+
+    /**
+     * Returns the value associated with the given key, or the given default if the key is absent.
+     */
+    long get( long key, long defaultValue );
+
+    /**
+     * Associates the given value with the given key, replacing any previous value.
+     */
+    void put( long key, long value );
+
+    /**
+     * Returns the number of entries in the map.
+     */
+    int size();
+
+    /**
+     * Finalizer of the 64-bit MurmurHash3, spreads the bits of a key over the whole range before masking.
+     */
+    static long mix( long key ) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis.structures;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Open-addressing {@link LongLongMap} with linear probing, held in a direct {@link ByteBuffer} outside the Java heap.
+ * Every slot occupies 16 bytes, the key followed by the value. As in {@link ArrayLongLongMap} the key 0 marks an empty
+ * slot and an actual 0 key is kept aside. The map can be written to a snapshot file and reopened from it, such that
+ * its state outlives a restart of the server.
+ * <p>
+ * The map grows up to its maximum capacity, by default {@link #DEFAULT_MAX_CAPACITY} slots, and only as long as its
+ * {@link DirectMemoryBudget} holds the larger buffer. Once it is full, values of present keys are still updated, but
+ * new keys are dropped and counted, see {@link #isFull()} and {@link #droppedCount()}.
+ */
+public class OffHeapLongLongMap implements LongLongMap {
+    private static final long MAGIC = 0x50464c4c4d415031L; // PFLLMAP1
+    private static final int HEADER_BYTES = 5 * Long.BYTES;
+    private static final int SLOT_BYTES = 2 * Long.BYTES;
+    public static final int MAX_CAPACITY = 1 << 26;
+    // 64 MiB
+    public static final int DEFAULT_MAX_CAPACITY = 1 << 22;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private ByteBuffer buffer;
+    private int capacity;
+    private int mask;
+    private int size;
+    private int threshold;
+    private final int maxCapacity;
+    private final DirectMemoryBudget budget;
+    private long droppedCount;
+
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    public OffHeapLongLongMap() {
+        this( 1024 );
+    }
+
+    /**
+     * @param expectedSize The number of entries the map should hold before it needs to grow.
+     */
+    public OffHeapLongLongMap( int expectedSize ) {
+        this( expectedSize, DEFAULT_MAX_CAPACITY );
+    }
+
+    /**
+     * @param expectedSize The number of entries the map should hold before it needs to grow.
+     * @param maxCapacity The number of slots the map grows to at most, a power of two up to {@link #MAX_CAPACITY}.
+     */
+    public OffHeapLongLongMap( int expectedSize, int maxCapacity ) {
+        this( expectedSize, maxCapacity, DirectMemoryBudget.UNBOUNDED );
+    }
+
+    /**
+     * @param expectedSize The number of entries the map should hold before it needs to grow.
+     * @param maxCapacity The number of slots the map grows to at most, a power of two up to {@link #MAX_CAPACITY}.
+     * @param budget The direct memory the map shares with others. The initial buffer is reserved even if the budget is
+     * spent, the map then holds it but does not grow.
+     */
+    public OffHeapLongLongMap( int expectedSize, int maxCapacity, DirectMemoryBudget budget ) {
+        if ( Integer.bitCount( maxCapacity ) != 1 || maxCapacity < 2 || maxCapacity > MAX_CAPACITY ) {
+            throw new IllegalArgumentException( "Invalid maximum capacity " + maxCapacity );
+        }
+        this.maxCapacity = maxCapacity;
+        this.budget = budget;
+        int capacity = Integer.highestOneBit( Math.max( 2, (int) Math.ceil( expectedSize / LOAD_FACTOR ) ) - 1 ) << 1;
+        capacity = Math.min( Math.max( capacity, 2 ), maxCapacity );
+        budget.reserve( (long) capacity * SLOT_BYTES );
+        allocate( capacity );
+    }
+
+    private void allocate( int capacity ) {
+        this.buffer = ByteBuffer.allocateDirect( capacity * SLOT_BYTES ).order( ByteOrder.LITTLE_ENDIAN );
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.threshold = (int) ( capacity * LOAD_FACTOR );
+    }
+
+    private int slot( long key ) {
+        int pos = (int) LongLongMap.mix( key ) & mask;
+        long current;
+        while ( ( current = buffer.getLong( pos * SLOT_BYTES ) ) != 0 && current != key ) {
+            pos = ( pos + 1 ) & mask;
+        }
+        return pos;
+    }
+
+    @Override
+    public boolean containsKey( long key ) {
+        if ( key == 0 ) {
+            return hasZeroKey;
+        }
+        return buffer.getLong( slot( key ) * SLOT_BYTES ) != 0;
+    }
+
+    @Override
+    public long get( long key, long defaultValue ) {
+        if ( key == 0 ) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int offset = slot( key ) * SLOT_BYTES;
+        return buffer.getLong( offset ) != 0 ? buffer.getLong( offset + Long.BYTES ) : defaultValue;
+    }
+
+    @Override
+    public void put( long key, long value ) {
+        if ( key == 0 ) {
+            if ( ! hasZeroKey ) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int offset = slot( key ) * SLOT_BYTES;
+        if ( buffer.getLong( offset ) == 0 ) {
+            if ( size >= threshold ) {
+                if ( ! grow() ) {
+                    droppedCount++;
+                    return;
+                }
+                offset = slot( key ) * SLOT_BYTES;
+            }
+            buffer.putLong( offset, key );
+            size++;
+        }
+        buffer.putLong( offset + Long.BYTES, value );
+    }
+
+    /**
+     * Returns true if the map reached its maximum capacity, or its budget does not hold a larger buffer, and drops new
+     * keys.
+     */
+    public boolean isFull() {
+        return size >= threshold && ( capacity == maxCapacity || ! budget.canReserve( (long) capacity * SLOT_BYTES << 1 ) );
+    }
+
+    /**
+     * Returns the number of new keys dropped since the map is full.
+     */
+    public long droppedCount() {
+        return droppedCount;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes held outside the Java heap.
+     */
+    public long offHeapBytes() {
+        return (long) capacity * SLOT_BYTES;
+    }
+
+    /**
+     * Returns an independent copy of the map, e.g. to write a snapshot of it without holding up writers.
+     */
+    public OffHeapLongLongMap copy() {
+        OffHeapLongLongMap copy = new OffHeapLongLongMap( 0, maxCapacity );
+        return copyInto( copy );
+    }
+
+    /**
+     * Copies the map into another one, whose buffer is reused if it is large enough, e.g. to snapshot many maps one after
+     * another through a single buffer instead of a copy each. The previous content of the target is replaced.
+     *
+     * @return The target.
+     */
+    public OffHeapLongLongMap copyInto( OffHeapLongLongMap target ) {
+        if ( target.buffer.capacity() < capacity * SLOT_BYTES ) {
+            target.budget.release( target.buffer.capacity() );
+            target.budget.reserve( (long) capacity * SLOT_BYTES );
+            target.allocate( capacity );
+        } else {
+            target.capacity = capacity;
+            target.mask = mask;
+            target.threshold = threshold;
+        }
+        target.buffer.clear();
+        target.buffer.put( content() );
+        target.size = size;
+        target.hasZeroKey = hasZeroKey;
+        target.zeroValue = zeroValue;
+        return target;
+    }
+
+    /**
+     * Returns the slots of the map, the buffer may be larger if it is reused by {@link #copyInto}.
+     */
+    private ByteBuffer content() {
+        return buffer.duplicate().clear().limit( capacity * SLOT_BYTES );
+    }
+
+    /**
+     * Releases the buffer from the budget. The map must not be used afterwards, its memory is freed once it is garbage
+     * collected.
+     */
+    public void release() {
+        budget.release( buffer.capacity() );
+        buffer = ByteBuffer.allocateDirect( 0 );
+        capacity = 0;
+        size = 0;
+    }
+
+    private boolean grow() {
+        if ( capacity == maxCapacity || ! budget.tryReserve( (long) capacity * SLOT_BYTES << 1 ) ) {
+            return false;
+        }
+        budget.release( buffer.capacity() );
+        rehash();
+        return true;
+    }
+
+    private void rehash() {
+        ByteBuffer old = this.buffer;
+        int oldCapacity = this.capacity;
+        allocate( oldCapacity << 1 );
+        for ( int i = 0; i < oldCapacity; i++ ) {
+            long key = old.getLong( i * SLOT_BYTES );
+            if ( key != 0 ) {
+                int offset = slot( key ) * SLOT_BYTES;
+                buffer.putLong( offset, key );
+                buffer.putLong( offset + Long.BYTES, old.getLong( i * SLOT_BYTES + Long.BYTES ) );
+            }
+        }
+    }
+
+    /**
+     * Writes the map to the given file. The snapshot is written to a temporary file first and moved in place
+     * afterwards, such that an interrupted snapshot never replaces a complete one.
+     *
+     * @param path The snapshot file.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void snapshot( Path path ) throws IOException {
+        Path temporary = path.resolveSibling( path.getFileName() + ".tmp" );
+        try ( FileChannel channel = FileChannel.open(
+                temporary,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+        ) ) {
+            ByteBuffer header = ByteBuffer.allocate( HEADER_BYTES ).order( ByteOrder.LITTLE_ENDIAN );
+            header.putLong( MAGIC ).putLong( capacity ).putLong( size ).putLong( hasZeroKey ? 1 : 0 ).putLong( zeroValue );
+            header.flip();
+            writeFully( channel, header );
+            writeFully( channel, content() );
+            channel.force( false );
+        }
+        Files.move( temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    /**
+     * Reopens a map from a snapshot file written by {@link #snapshot(Path)}.
+     *
+     * @param path The snapshot file.
+     * @return The map as it was at the time of the snapshot.
+     * @throws IOException if the file cannot be read or is not a snapshot.
+     */
+    public static OffHeapLongLongMap open( Path path ) throws IOException {
+        return open( path, DirectMemoryBudget.UNBOUNDED );
+    }
+
+    /**
+     * Reopens a map from a snapshot file written by {@link #snapshot(Path)}, its buffer is reserved from the given
+     * budget even if that exceeds it.
+     */
+    public static OffHeapLongLongMap open( Path path, DirectMemoryBudget budget ) throws IOException {
+        try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) ) {
+            ByteBuffer header = ByteBuffer.allocate( HEADER_BYTES ).order( ByteOrder.LITTLE_ENDIAN );
+            readFully( channel, header );
+            header.flip();
+            if ( header.getLong() != MAGIC ) {
+                throw new IOException( "Not a map snapshot: " + path );
+            }
+            int capacity = (int) header.getLong();
+            if ( Integer.bitCount( capacity ) != 1 || capacity > MAX_CAPACITY ) {
+                throw new IOException( "Invalid capacity " + capacity + " in map snapshot: " + path );
+            }
+            // Snapshots of larger maps, e.g. written before the default maximum was lowered, keep their capacity
+            OffHeapLongLongMap map = new OffHeapLongLongMap( 0, Math.max( capacity, DEFAULT_MAX_CAPACITY ), budget );
+            budget.release( map.offHeapBytes() );
+            budget.reserve( (long) capacity * SLOT_BYTES );
+            map.allocate( capacity );
+            map.size = (int) header.getLong();
+            map.hasZeroKey = header.getLong() == 1;
+            map.zeroValue = header.getLong();
+            readFully( channel, map.buffer.duplicate().clear() );
+            return map;
+        }
+    }
+
+    static void writeFully( FileChannel channel, ByteBuffer source ) throws IOException {
+        while ( source.hasRemaining() ) {
+            channel.write( source );
+        }
+    }
+
+    static void readFully( FileChannel channel, ByteBuffer target ) throws IOException {
+        while ( target.hasRemaining() ) {
+            if ( channel.read( target ) < 0 ) {
+                throw new IOException( "Unexpected end of map snapshot." );
+            }
+        }
+    }
+
+}
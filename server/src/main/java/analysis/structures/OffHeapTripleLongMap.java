@@ -0,0 +1,234 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis.structures;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Open-addressing map from a key of three longs to a long value, with linear probing, held in a direct
+ * {@link ByteBuffer} outside the Java heap. Unlike a {@link LongLongMap} keyed by a hash of the components, the full
+ * key is stored and compared, such that distinct keys never collide. Every slot occupies 40 bytes: an occupied marker,
+ * the three key components and the value. Keys with fewer components pass 0 for the unused ones.
+ * <p>
+ * Growth, the maximum capacity and snapshots behave as in {@link OffHeapLongLongMap}.
+ */
+public class OffHeapTripleLongMap {
+    private static final long MAGIC = 0x50465452504d4131L; // PFTRPMA1
+    private static final int HEADER_BYTES = 2 * Long.BYTES;
+    private static final int SLOT_BYTES = 5 * Long.BYTES;
+    public static final int MAX_CAPACITY = 1 << 24;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private ByteBuffer buffer;
+    private int capacity;
+    private int mask;
+    private int size;
+    private int threshold;
+    private final int maxCapacity;
+    private long droppedCount;
+
+    public OffHeapTripleLongMap() {
+        this( 1024 );
+    }
+
+    /**
+     * @param expectedSize The number of entries the map should hold before it needs to grow.
+     */
+    public OffHeapTripleLongMap( int expectedSize ) {
+        this( expectedSize, MAX_CAPACITY );
+    }
+
+    /**
+     * @param expectedSize The number of entries the map should hold before it needs to grow.
+     * @param maxCapacity The number of slots the map grows to at most, a power of two up to {@link #MAX_CAPACITY}.
+     */
+    public OffHeapTripleLongMap( int expectedSize, int maxCapacity ) {
+        if ( Integer.bitCount( maxCapacity ) != 1 || maxCapacity < 2 || maxCapacity > MAX_CAPACITY ) {
+            throw new IllegalArgumentException( "Invalid maximum capacity " + maxCapacity );
+        }
+        this.maxCapacity = maxCapacity;
+        int capacity = Integer.highestOneBit( Math.max( 2, (int) Math.ceil( expectedSize / LOAD_FACTOR ) ) - 1 ) << 1;
+        allocate( Math.min( Math.max( capacity, 2 ), maxCapacity ) );
+    }
+
+    private void allocate( int capacity ) {
+        this.buffer = ByteBuffer.allocateDirect( capacity * SLOT_BYTES ).order( ByteOrder.LITTLE_ENDIAN );
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.threshold = (int) ( capacity * LOAD_FACTOR );
+    }
+
+    private static long hash( long a, long b, long c ) {
+        return LongLongMap.mix( LongLongMap.mix( LongLongMap.mix( a ) ^ b ) ^ c );
+    }
+
+    private int slot( long a, long b, long c ) {
+        int pos = (int) hash( a, b, c ) & mask;
+        while ( buffer.getLong( pos * SLOT_BYTES ) != 0 && ! matches( pos * SLOT_BYTES, a, b, c ) ) {
+            pos = ( pos + 1 ) & mask;
+        }
+        return pos;
+    }
+
+    private boolean matches( int offset, long a, long b, long c ) {
+        return buffer.getLong( offset + Long.BYTES ) == a
+                && buffer.getLong( offset + 2 * Long.BYTES ) == b
+                && buffer.getLong( offset + 3 * Long.BYTES ) == c;
+    }
+
+    /**
+     * Returns true if a value is associated with the given key.
+     */
+    public boolean containsKey( long a, long b, long c ) {
+        return buffer.getLong( slot( a, b, c ) * SLOT_BYTES ) != 0;
+    }
+
+    /**
+     * Returns the value associated with the given key, or the given default if the key is absent.
+     */
+    public long get( long a, long b, long c, long defaultValue ) {
+        int offset = slot( a, b, c ) * SLOT_BYTES;
+        return buffer.getLong( offset ) != 0 ? buffer.getLong( offset + 4 * Long.BYTES ) : defaultValue;
+    }
+
+    /**
+     * Associates the given value with the given key, replacing any previous value. Once the map is full, new keys are
+     * dropped.
+     */
+    public void put( long a, long b, long c, long value ) {
+        int offset = slot( a, b, c ) * SLOT_BYTES;
+        if ( buffer.getLong( offset ) == 0 ) {
+            if ( isFull() ) {
+                droppedCount++;
+                return;
+            }
+            buffer.putLong( offset, 1 );
+            buffer.putLong( offset + Long.BYTES, a );
+            buffer.putLong( offset + 2 * Long.BYTES, b );
+            buffer.putLong( offset + 3 * Long.BYTES, c );
+            size++;
+        }
+        buffer.putLong( offset + 4 * Long.BYTES, value );
+        if ( size > threshold && capacity < maxCapacity ) {
+            rehash();
+        }
+    }
+
+    /**
+     * Returns true if the map reached its maximum capacity and drops new keys.
+     */
+    public boolean isFull() {
+        return capacity == maxCapacity && size > threshold;
+    }
+
+    /**
+     * Returns the number of new keys dropped since the map is full.
+     */
+    public long droppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes held outside the Java heap.
+     */
+    public long offHeapBytes() {
+        return (long) capacity * SLOT_BYTES;
+    }
+
+    private void rehash() {
+        ByteBuffer old = this.buffer;
+        int oldCapacity = this.capacity;
+        allocate( oldCapacity << 1 );
+        for ( int i = 0; i < oldCapacity; i++ ) {
+            int oldOffset = i * SLOT_BYTES;
+            if ( old.getLong( oldOffset ) != 0 ) {
+                int offset = slot(
+                        old.getLong( oldOffset + Long.BYTES ),
+                        old.getLong( oldOffset + 2 * Long.BYTES ),
+                        old.getLong( oldOffset + 3 * Long.BYTES )
+                ) * SLOT_BYTES;
+                buffer.put( offset, old, oldOffset, SLOT_BYTES );
+            }
+        }
+    }
+
+    /**
+     * Writes the map to the given file, through a temporary file as {@link OffHeapLongLongMap#snapshot(Path)}.
+     *
+     * @param path The snapshot file.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void snapshot( Path path ) throws IOException {
+        Path temporary = path.resolveSibling( path.getFileName() + ".tmp" );
+        try ( FileChannel channel = FileChannel.open(
+                temporary,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+        ) ) {
+            ByteBuffer header = ByteBuffer.allocate( HEADER_BYTES ).order( ByteOrder.LITTLE_ENDIAN );
+            header.putLong( MAGIC ).putInt( capacity ).putInt( size );
+            header.flip();
+            OffHeapLongLongMap.writeFully( channel, header );
+            OffHeapLongLongMap.writeFully( channel, buffer.duplicate().clear() );
+            channel.force( false );
+        }
+        Files.move( temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    /**
+     * Reopens a map from a snapshot file written by {@link #snapshot(Path)}.
+     *
+     * @param path The snapshot file.
+     * @return The map as it was at the time of the snapshot.
+     * @throws IOException if the file cannot be read or is not a snapshot.
+     */
+    public static OffHeapTripleLongMap open( Path path ) throws IOException {
+        try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) ) {
+            ByteBuffer header = ByteBuffer.allocate( HEADER_BYTES ).order( ByteOrder.LITTLE_ENDIAN );
+            OffHeapLongLongMap.readFully( channel, header );
+            header.flip();
+            if ( header.getLong() != MAGIC ) {
+                throw new IOException( "Not a map snapshot: " + path );
+            }
+            int capacity = header.getInt();
+            if ( Integer.bitCount( capacity ) != 1 || capacity > MAX_CAPACITY ) {
+                throw new IOException( "Invalid capacity " + capacity + " in map snapshot: " + path );
+            }
+            OffHeapTripleLongMap map = new OffHeapTripleLongMap( 0 );
+            map.allocate( capacity );
+            map.size = header.getInt();
+            OffHeapLongLongMap.readFully( channel, map.buffer.duplicate().clear() );
+            return map;
+        }
+    }
+
+}
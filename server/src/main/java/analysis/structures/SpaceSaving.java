@@ -0,0 +1,203 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis.structures;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Space-Saving sketch of the most frequent long keys of a stream, in a fixed number of counters. A key that is not
+ * monitored replaces the key with the lowest count and inherits that count as its overestimation error. Every key that
+ * occurs more often than n / capacity times is guaranteed to be monitored.
+ * <p>
+ * The counters form a min-heap on their counts, such that the minimum is found in constant and a count updated in
+ * logarithmic time. Keys are located through an {@link ArrayLongLongMap} from key to heap position.
+ */
+public class SpaceSaving {
+    private final int capacity;
+    private final long[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private final ArrayLongLongMap positions;
+    private int size;
+    private long total;
+
+    /**
+     * @param capacity The number of counters.
+     */
+    public SpaceSaving( int capacity ) {
+        if ( capacity < 1 ) {
+            throw new IllegalArgumentException( "capacity must be positive." );
+        }
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.positions = new ArrayLongLongMap( capacity );
+    }
+
+    /**
+     * Counts a key once.
+     */
+    public void add( long key ) {
+        add( key, 1 );
+    }
+
+    /**
+     * Counts a key the given number of times.
+     */
+    public void add( long key, long count ) {
+        total += count;
+        int pos = (int) positions.get( key, -1 );
+        if ( pos >= 0 ) {
+            counts[pos] += count;
+            siftDown( pos );
+            return;
+        }
+        if ( size < capacity ) {
+            pos = size++;
+            keys[pos] = key;
+            counts[pos] = count;
+            errors[pos] = 0;
+            positions.put( key, pos );
+            siftUp( pos );
+            return;
+        }
+        // Replace the minimum at the root
+        positions.remove( keys[0] );
+        errors[0] = counts[0];
+        counts[0] += count;
+        keys[0] = key;
+        positions.put( key, 0 );
+        siftDown( 0 );
+    }
+
+    /**
+     * Adds all counters of another sketch. The error of a key that is monitored by only one of the sketches grows by
+     * the minimum count of the other sketch, if that one is full.
+     */
+    public void add( SpaceSaving other ) {
+        long ownMin = size == capacity ? counts[0] : 0;
+        long otherMin = other.size == other.capacity ? other.counts[0] : 0;
+        List<Item> merged = new ArrayList<>();
+        for ( int i = 0; i < size; i++ ) {
+            int otherPos = (int) other.positions.get( keys[i], -1 );
+            if ( otherPos >= 0 ) {
+                merged.add( new Item( keys[i], counts[i] + other.counts[otherPos], errors[i] + other.errors[otherPos] ) );
+            } else {
+                merged.add( new Item( keys[i], counts[i] + otherMin, errors[i] + otherMin ) );
+            }
+        }
+        for ( int i = 0; i < other.size; i++ ) {
+            if ( ! positions.containsKey( other.keys[i] ) ) {
+                merged.add( new Item( other.keys[i], other.counts[i] + ownMin, other.errors[i] + ownMin ) );
+            }
+        }
+        merged.sort( Comparator.comparingLong( Item::count ).reversed() );
+
+        long mergedTotal = total + other.total;
+        clear();
+        for ( Item item : merged.subList( 0, Math.min( capacity, merged.size() ) ) ) {
+            keys[size] = item.key();
+            counts[size] = item.count();
+            errors[size] = item.error();
+            positions.put( item.key(), size );
+            siftUp( size++ );
+        }
+        total = mergedTotal;
+    }
+
+    private void clear() {
+        for ( int i = 0; i < size; i++ ) {
+            positions.remove( keys[i] );
+        }
+        size = 0;
+        total = 0;
+    }
+
+    /**
+     * Returns the monitored keys ordered by descending count.
+     *
+     * @param limit The maximum number of keys returned.
+     */
+    public List<Item> top( int limit ) {
+        List<Item> items = new ArrayList<>( size );
+        for ( int i = 0; i < size; i++ ) {
+            items.add( new Item( keys[i], counts[i], errors[i] ) );
+        }
+        items.sort( Comparator.comparingLong( Item::count ).reversed() );
+        return items.subList( 0, Math.min( limit, items.size() ) );
+    }
+
+    /**
+     * Returns the number of counted occurrences.
+     */
+    public long total() {
+        return total;
+    }
+
+    private void siftUp( int pos ) {
+        while ( pos > 0 ) {
+            int parent = ( pos - 1 ) >> 1;
+            if ( counts[parent] <= counts[pos] ) {
+                return;
+            }
+            swap( pos, parent );
+            pos = parent;
+        }
+    }
+
+    private void siftDown( int pos ) {
+        while ( true ) {
+            int smallest = pos;
+            int left = ( pos << 1 ) + 1;
+            int right = left + 1;
+            if ( left < size && counts[left] < counts[smallest] ) {
+                smallest = left;
+            }
+            if ( right < size && counts[right] < counts[smallest] ) {
+                smallest = right;
+            }
+            if ( smallest == pos ) {
+                return;
+            }
+            swap( pos, smallest );
+            pos = smallest;
+        }
+    }
+
+    private void swap( int a, int b ) {
+        long key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        long count = counts[a];
+        counts[a] = counts[b];
+        counts[b] = count;
+        long error = errors[a];
+        errors[a] = errors[b];
+        errors[b] = error;
+        positions.put( keys[a], a );
+        positions.put( keys[b], b );
+    }
+
+    /**
+     * A monitored key. The count overestimates the true count by at most the error.
+     */
+    public record Item( long key, long count, long error ) {}
+
+}
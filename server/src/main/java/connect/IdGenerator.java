@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package connect;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered 64-bit identifiers of the query log rows: 41 bits of milliseconds since {@link #EPOCH}, 10 bits of node
+ * id and 12 bits of sequence within the millisecond. Identifiers of a node are strictly increasing, such that inserts
+ * append to the primary key index. The last millisecond and sequence share a single {@link AtomicLong}, generating an
+ * identifier takes a compare-and-set and no allocation.
+ * <p>
+ * Once the 4096 identifiers of a millisecond are used up, or if the clock goes back, identifiers continue after the
+ * last one, borrowing from the following milliseconds.
+ */
+public final class IdGenerator {
+    // 2023-01-01T00:00:00Z, the 41 bits of milliseconds last until 2092
+    public static final long EPOCH = 1672531200000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = ( 1L << SEQUENCE_BITS ) - 1;
+    public static final int MAX_NODE = ( 1 << NODE_BITS ) - 1;
+
+    // The node id is set with -Dpolyfier.node, servers sharing a query log need distinct ids
+    public static final int NODE = Integer.getInteger( "polyfier.node", 0 );
+    private static final IdGenerator SERVER = new IdGenerator( NODE );
+
+    private final long node;
+    // Milliseconds since the epoch shifted by the sequence bits, plus the sequence of the last identifier
+    private final AtomicLong last = new AtomicLong();
+
+    public IdGenerator( int node ) {
+        if ( node < 0 || node > MAX_NODE ) {
+            throw new IllegalArgumentException( "Node id " + node + " is not within 0 and " + MAX_NODE + "." );
+        }
+        this.node = node;
+    }
+
+    /**
+     * A generator whose identifiers follow the given one, e.g. to continue keying rows where an interrupted run left.
+     */
+    public IdGenerator( int node, long after ) {
+        this( node );
+        this.last.set( positionOf( after ) );
+    }
+
+    private static long positionOf( long id ) {
+        return ( id >>> ( NODE_BITS + SEQUENCE_BITS ) ) << SEQUENCE_BITS | ( id & SEQUENCE_MASK );
+    }
+
+    /**
+     * Continues the identifiers of the server after the given one, unless they are past it already. Seeded with the
+     * largest identifier of the query log, a clock that went back across a restart does not repeat identifiers.
+     */
+    public static void seed( long after ) {
+        SERVER.last.accumulateAndGet( positionOf( after ), Math::max );
+    }
+
+    /**
+     * @return The next identifier of the server.
+     */
+    public static long nextId() {
+        return SERVER.next();
+    }
+
+    public long next() {
+        return next( System.currentTimeMillis() );
+    }
+
+    /**
+     * @return The next identifier, of the given time unless it is before the last identifier, e.g. to key rows written
+     * before in the order of their time. Such rows are keyed by a generator of their own, identifiers of the server's
+     * clock would borrow far ahead of them.
+     */
+    public long next( long millis ) {
+        long now = ( millis - EPOCH ) << SEQUENCE_BITS;
+        long previous;
+        long current;
+        do {
+            previous = last.get();
+            current = now > previous ? now : previous + 1;
+        } while ( ! last.compareAndSet( previous, current ) );
+        return ( current >>> SEQUENCE_BITS ) << ( NODE_BITS + SEQUENCE_BITS ) | node << SEQUENCE_BITS | ( current & SEQUENCE_MASK );
+    }
+
+    /**
+     * @return The time in epoch millis an identifier was generated at.
+     */
+    public static long millisOf( long id ) {
+        return ( id >>> ( NODE_BITS + SEQUENCE_BITS ) ) + EPOCH;
+    }
+
+}
@@ -17,6 +17,7 @@
 package connect;
 
 import lombok.AllArgsConstructor;
+import metrics.TimedStatement;
 
 import java.sql.*;
 
@@ -51,17 +52,17 @@ public enum PolySQL {
     /**
      * <pre>
      * INSERT INTO polyfier.pctrl (
-     *      pctrlKey, branch, registeredAt
+     *      pctrlId, pctrlKey, branch, registeredAt
      * ) VALUES (
-     *      ?, ?, ?
+     *      ?, ?, ?, ?
      * )
      * </pre>
      */
     REGISTER_PCTRL("""
                     INSERT INTO polyfier.pctrl (
-                        pctrlKey, branch, registeredAt
+                        pctrlId, pctrlKey, branch, registeredAt
                     ) VALUES (
-                        ?, ?, ?
+                        ?, ?, ?, ?
                     )
             """),
     /**
@@ -121,17 +122,17 @@ public enum PolySQL {
     /**
      * <pre>
      * INSERT INTO polyfier.pdb (
-     *      pdbKey, branch, registeredAt, pctrl_key, schema_config_hash, data_config_hash, query_config_hash, store_config_hash, start_config_hash, part_config_hash
+     *      pdbId, pdbKey, branch, registeredAt, pctrl_key, schema_config_hash, data_config_hash, query_config_hash, store_config_hash, start_config_hash, part_config_hash
      * ) VALUES (
-     *      ?, ?, ?, ?, ?, ?, ?, ?, ?
+     *      ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?
      * )
      * </pre>
      */
     REGISTER_PDB("""
                 INSERT INTO polyfier.pdb (
-                    pdbKey, branch, registeredAt, pctrlKey, schema_config_hash, data_config_hash, query_config_hash, store_config_hash, start_config_hash, part_config_hash
+                    pdbId, pdbKey, branch, registeredAt, pctrlKey, schema_config_hash, data_config_hash, query_config_hash, store_config_hash, start_config_hash, part_config_hash
                 ) VALUES (
-                    ?, ?, ?, ?, ?, ?, ?, ?, ?, ?
+                    ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?
                 )
             """),
 //    /**
@@ -262,18 +263,299 @@ public enum PolySQL {
     /**
      * <pre>
      * INSERT INTO polyfier.results (
-     * resultKey#1, pdbKey#2, seed#3, success#4, receivedAt#5, errorHash#6, resultSetHash#7, logicalHash#8, physicalHash#9, execTime#10
+     * resultKey#1, pdbKey#2, seed#3, success#4, receivedAt#5, errorHash#6, resultSetHash#7, logicalHash#8, physicalHash#9, execTime#10, predicted#11
      * ) VALUES (
-     * #1, #2, #3, #4, #5, #6, #7, #8, #9, #10
+     * #1, #2, #3, #4, #5, #6, #7, #8, #9, #10, #11
      * )
      * </pre>
      */
     INSERT_RESULT("""
                 INSERT INTO polyfier.results (
-                    resultKey, pdbKey, seed, success, receivedAt, errorHash, resultSetHash, logicalHash, physicalHash, execTime
+                    resultKey, pdbKey, seed, success, receivedAt, errorHash, resultSetHash, logicalHash, physicalHash, execTime, predicted
+                ) VALUES (
+                    ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?
+                )
+            """),
+    /**
+     * <pre>
+     * INSERT INTO polyfier.mismatches (
+     * mismatchKey#1, pdbKey#2, comparisonKey#3, seed#4, storeConfigHash#5, resultSetHash#6, otherStoreConfigHash#7, otherResultSetHash#8, detectedAt#9
+     * ) VALUES (
+     * #1, #2, #3, #4, #5, #6, #7, #8, #9
+     * )
+     * </pre>
+     */
+    INSERT_MISMATCH("""
+                INSERT INTO polyfier.mismatches (
+                    mismatchKey, pdbKey, comparisonKey, seed, storeConfigHash, resultSetHash, otherStoreConfigHash, otherResultSetHash, detectedAt
+                ) VALUES (
+                    ?, ?, ?, ?, ?, ?, ?, ?, ?
+                )
+            """),
+    /**
+     * <pre>
+     * DELETE FROM polyfier.mismatches WHERE (
+     *      comparisonKey = #1 AND seed = #2
+     * )
+     * </pre>
+     */
+    DELETE_MISMATCHES("""
+                DELETE FROM polyfier.mismatches WHERE (
+                    comparisonKey = ? AND seed = ?
+                )
+            """),
+    /**
+     * <pre>
+     * UPDATE polyfier.error_signatures SET errorCount = errorCount + ?, lastSeen = ?, exampleSeeds = ? WHERE (
+     *      signatureHash = ?
+     * )
+     * </pre>
+     */
+    UPDATE_ERROR_SIGNATURE("""
+                UPDATE polyfier.error_signatures SET errorCount = errorCount + ?, lastSeen = ?, exampleSeeds = ? WHERE (
+                    signatureHash = ?
+                )
+            """),
+    /**
+     * <pre>
+     * INSERT INTO polyfier.error_signatures (
+     * signatureHash#1, signature#2, errorCount#3, firstSeen#4, lastSeen#5, exampleSeeds#6
+     * ) VALUES (
+     * #1, #2, #3, #4, #5, #6
+     * )
+     * </pre>
+     */
+    INSERT_ERROR_SIGNATURE("""
+                INSERT INTO polyfier.error_signatures (
+                    signatureHash, signature, errorCount, firstSeen, lastSeen, exampleSeeds
+                ) VALUES (
+                    ?, ?, ?, ?, ?, ?
+                )
+            """),
+    /**
+     * <pre>
+     * INSERT INTO polyfier.latency_histograms (
+     * histogramType#1, hash#2, checkpointedAt#3, valueCount#4, p50#5, p90#6, p99#7, maxValue#8, buckets#9
+     * ) VALUES (
+     * #1, #2, #3, #4, #5, #6, #7, #8, #9
+     * )
+     * </pre>
+     */
+    INSERT_LATENCY_HISTOGRAM("""
+                INSERT INTO polyfier.latency_histograms (
+                    histogramType, hash, checkpointedAt, valueCount, p50, p90, p99, maxValue, buckets
+                ) VALUES (
+                    ?, ?, ?, ?, ?, ?, ?, ?, ?
+                )
+            """),
+    /**
+     * <pre>
+     * INSERT INTO polyfier.regressions (
+     * regressionKey#1, branch#2, baselineBranch#3, planHash#4, pairCount#5, geoMeanRatio#6, p50Ratio#7, p90Ratio#8,
+     * tStatistic#9, detectedAt#10
+     * ) VALUES (
+     * #1, #2, #3, #4, #5, #6, #7, #8, #9, #10
+     * )
+     * </pre>
+     */
+    INSERT_REGRESSION("""
+                INSERT INTO polyfier.regressions (
+                    regressionKey, branch, baselineBranch, planHash, pairCount, geoMeanRatio, p50Ratio, p90Ratio, tStatistic, detectedAt
                 ) VALUES (
                     ?, ?, ?, ?, ?, ?, ?, ?, ?, ?
                 )
+            """),
+    /**
+     * <pre>
+     * SELECT branch, baselineBranch, planHash, pairCount, geoMeanRatio, p50Ratio, p90Ratio, tStatistic, detectedAt
+     * FROM polyfier.regressions WHERE (
+     *      baselineBranch = #1
+     * ) ORDER BY detectedAt DESC
+     * </pre>
+     */
+    GET_REGRESSIONS("""
+                SELECT branch, baselineBranch, planHash, pairCount, geoMeanRatio, p50Ratio, p90Ratio, tStatistic, detectedAt
+                FROM polyfier.regressions WHERE (
+                    baselineBranch = ?
+                ) ORDER BY detectedAt DESC
+            """),
+    /**
+     * <pre>
+     * INSERT INTO polyfier.flips (
+     * flipKey#1, pdbKey#2, comparisonKey#3, storeConfigHash#4, seed#5, previousFingerprint#6, resultSetHash#7,
+     * runCount#8, detectedAt#9
+     * ) VALUES (
+     * #1, #2, #3, #4, #5, #6, #7, #8, #9
+     * )
+     * </pre>
+     */
+    INSERT_FLIP("""
+                INSERT INTO polyfier.flips (
+                    flipKey, pdbKey, comparisonKey, storeConfigHash, seed, previousFingerprint, resultSetHash, runCount, detectedAt
+                ) VALUES (
+                    ?, ?, ?, ?, ?, ?, ?, ?, ?
+                )
+            """),
+    /**
+     * <pre>
+     * UPDATE polyfier.plan_coverage SET resultCount = #1, logicalSketch = #2, physicalSketch = #3
+     * WHERE (
+     *      dimension = #4 AND dimensionKey = #5 AND windowStart = #6
+     * )
+     * </pre>
+     */
+    UPDATE_PLAN_COVERAGE("""
+                UPDATE polyfier.plan_coverage SET resultCount = ?, logicalSketch = ?, physicalSketch = ? WHERE (
+                    dimension = ? AND dimensionKey = ? AND windowStart = ?
+                )
+            """),
+    /**
+     * <pre>
+     * INSERT INTO polyfier.plan_coverage (
+     * dimension#1, dimensionKey#2, windowStart#3, resultCount#4, logicalSketch#5, physicalSketch#6
+     * ) VALUES (
+     * #1, #2, #3, #4, #5, #6
+     * )
+     * </pre>
+     */
+    INSERT_PLAN_COVERAGE("""
+                INSERT INTO polyfier.plan_coverage (
+                    dimension, dimensionKey, windowStart, resultCount, logicalSketch, physicalSketch
+                ) VALUES (
+                    ?, ?, ?, ?, ?, ?
+                )
+            """),
+    /**
+     * <pre>
+     * SELECT dimension, dimensionKey, windowStart, resultCount, logicalSketch, physicalSketch
+     * FROM polyfier.plan_coverage WHERE (
+     *      windowStart >= #1
+     * )
+     * </pre>
+     */
+    GET_PLAN_COVERAGE("""
+                SELECT dimension, dimensionKey, windowStart, resultCount, logicalSketch, physicalSketch
+                FROM polyfier.plan_coverage WHERE (
+                    windowStart >= ?
+                )
+            """),
+    /**
+     * <pre>
+     * UPDATE polyfier.result_rollups SET resultCount = resultCount + #1, successCount = successCount + #2,
+     * errorCount = errorCount + #3, execTimeSum = execTimeSum + #4, execTimeCount = execTimeCount + #5
+     * WHERE (
+     *      dimension = #6 AND dimensionKey = #7 AND hourStart = #8
+     * )
+     * </pre>
+     */
+    UPDATE_ROLLUP("""
+                UPDATE polyfier.result_rollups SET
+                    resultCount = resultCount + ?,
+                    successCount = successCount + ?,
+                    errorCount = errorCount + ?,
+                    execTimeSum = execTimeSum + ?,
+                    execTimeCount = execTimeCount + ?
+                WHERE (
+                    dimension = ? AND dimensionKey = ? AND hourStart = ?
+                )
+            """),
+    /**
+     * <pre>
+     * INSERT INTO polyfier.result_rollups (
+     * dimension#1, dimensionKey#2, hourStart#3, resultCount#4, successCount#5, errorCount#6, execTimeSum#7, execTimeCount#8
+     * ) VALUES (
+     * #1, #2, #3, #4, #5, #6, #7, #8
+     * )
+     * </pre>
+     */
+    INSERT_ROLLUP("""
+                INSERT INTO polyfier.result_rollups (
+                    dimension, dimensionKey, hourStart, resultCount, successCount, errorCount, execTimeSum, execTimeCount
+                ) VALUES (
+                    ?, ?, ?, ?, ?, ?, ?, ?
+                )
+            """),
+    /**
+     * <pre>
+     * SELECT dimensionKey, SUM(resultCount), SUM(successCount), SUM(errorCount), SUM(execTimeSum), SUM(execTimeCount)
+     * FROM polyfier.result_rollups WHERE (
+     *      dimension = #1 AND hourStart >= #2 AND hourStart < #3
+     * ) GROUP BY dimensionKey
+     * </pre>
+     */
+    GET_ROLLUP_TOTALS("""
+                SELECT dimensionKey, SUM(resultCount), SUM(successCount), SUM(errorCount), SUM(execTimeSum), SUM(execTimeCount)
+                FROM polyfier.result_rollups WHERE (
+                    dimension = ? AND hourStart >= ? AND hourStart < ?
+                ) GROUP BY dimensionKey
+            """),
+    /**
+     * <pre>
+     * SELECT hourStart, resultCount, successCount, errorCount, execTimeSum, execTimeCount
+     * FROM polyfier.result_rollups WHERE (
+     *      dimension = #1 AND dimensionKey = #2 AND hourStart >= #3 AND hourStart < #4
+     * ) ORDER BY hourStart
+     * </pre>
+     */
+    GET_ROLLUP_HOURS("""
+                SELECT hourStart, resultCount, successCount, errorCount, execTimeSum, execTimeCount
+                FROM polyfier.result_rollups WHERE (
+                    dimension = ? AND dimensionKey = ? AND hourStart >= ? AND hourStart < ?
+                ) ORDER BY hourStart
+            """),
+    /**
+     * <pre>
+     * INSERT INTO polyfier.pdb_jobs (
+     * pdbKey#1, registeredAt#2, job#3
+     * ) VALUES (
+     * #1, #2, #3
+     * )
+     * </pre>
+     */
+    INSERT_PDB_JOB("""
+                INSERT INTO polyfier.pdb_jobs (
+                    pdbKey, registeredAt, job
+                ) VALUES (
+                    ?, ?, ?
+                )
+            """),
+    /**
+     * <pre>
+     * SELECT pctrlKey, branch, registeredAt FROM polyfier.pctrl WHERE (
+     *      registeredAt >= #1
+     * )
+     * </pre>
+     */
+    GET_RECENT_PCTRLS("""
+                SELECT pctrlKey, branch, registeredAt FROM polyfier.pctrl WHERE (
+                    registeredAt >= ?
+                )
+            """),
+    /**
+     * <pre>
+     * SELECT pdbKey, branch, registeredAt, pctrlKey, schema_config_hash, data_config_hash, query_config_hash,
+     * store_config_hash FROM polyfier.pdb WHERE (
+     *      registeredAt >= #1
+     * )
+     * </pre>
+     */
+    GET_RECENT_PDBS("""
+                SELECT pdbKey, branch, registeredAt, pctrlKey, schema_config_hash, data_config_hash, query_config_hash, store_config_hash
+                FROM polyfier.pdb WHERE (
+                    registeredAt >= ?
+                )
+            """),
+    /**
+     * <pre>
+     * SELECT pdbKey, job FROM polyfier.pdb_jobs WHERE (
+     *      registeredAt >= #1
+     * )
+     * </pre>
+     */
+    GET_RECENT_PDB_JOBS("""
+                SELECT pdbKey, job FROM polyfier.pdb_jobs WHERE (
+                    registeredAt >= ?
+                )
             """);
 
     private final String polySql;
@@ -299,9 +581,10 @@ public enum PolySQL {
 //            }
             case REGISTER_PCTRL -> {
                 PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
-                preparedStatement.setString( 1, (String) args[0]);
-                preparedStatement.setString( 2, (String) args[1] );
-                preparedStatement.setTimestamp( 3, (Timestamp) args[2]);
+                preparedStatement.setLong( 1, (Long) args[0]);
+                preparedStatement.setString( 2, (String) args[1]);
+                preparedStatement.setString( 3, (String) args[2] );
+                preparedStatement.setTimestamp( 4, (Timestamp) args[3]);
                 statement = preparedStatement;
             }
             case SIGN_IN_PCTRL, GET_PCTRL, GET_PDB -> {
@@ -325,16 +608,17 @@ public enum PolySQL {
             }
             case REGISTER_PDB -> {
                 PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
-                preparedStatement.setString( 1, (String) args[0]);
+                preparedStatement.setLong( 1, (Long) args[0]);
                 preparedStatement.setString( 2, (String) args[1]);
-                preparedStatement.setTimestamp( 3, (Timestamp) args[2]);
-                preparedStatement.setString( 4, (String) args[3]);
-                preparedStatement.setLong( 5, (Long) args[4]);
+                preparedStatement.setString( 3, (String) args[2]);
+                preparedStatement.setTimestamp( 4, (Timestamp) args[3]);
+                preparedStatement.setString( 5, (String) args[4]);
                 preparedStatement.setLong( 6, (Long) args[5]);
                 preparedStatement.setLong( 7, (Long) args[6]);
                 preparedStatement.setLong( 8, (Long) args[7]);
                 preparedStatement.setLong( 9, (Long) args[8]);
                 preparedStatement.setLong( 10, (Long) args[9]);
+                preparedStatement.setLong( 11, (Long) args[10]);
                 statement = preparedStatement;
             }
 //            case INSERT_ORDER -> {
@@ -366,7 +650,7 @@ public enum PolySQL {
 //            }
             case INSERT_RESULT -> {
                 PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
-                preparedStatement.setString( 1, (String) args[0]);
+                preparedStatement.setLong( 1, (Long) args[0]);
                 preparedStatement.setString( 2, (String) args[1]);
                 preparedStatement.setObject( 3, args[2], Types.BIGINT);
                 preparedStatement.setBoolean( 4, (Boolean) args[3] );
@@ -376,6 +660,165 @@ public enum PolySQL {
                 preparedStatement.setObject( 8, args[7], Types.BIGINT);
                 preparedStatement.setObject( 9, args[8], Types.BIGINT);
                 preparedStatement.setObject( 10, args[9], Types.BIGINT );
+                preparedStatement.setObject( 11, args[10], Types.BIGINT );
+                statement = preparedStatement;
+            }
+            case INSERT_MISMATCH -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setString( 1, (String) args[0]);
+                preparedStatement.setString( 2, (String) args[1]);
+                preparedStatement.setLong( 3, (Long) args[2]);
+                preparedStatement.setLong( 4, (Long) args[3]);
+                preparedStatement.setLong( 5, (Long) args[4]);
+                preparedStatement.setLong( 6, (Long) args[5]);
+                preparedStatement.setLong( 7, (Long) args[6]);
+                preparedStatement.setLong( 8, (Long) args[7]);
+                preparedStatement.setTimestamp( 9, (Timestamp) args[8]);
+                statement = preparedStatement;
+            }
+            case DELETE_MISMATCHES -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setLong( 1, (Long) args[0]);
+                preparedStatement.setLong( 2, (Long) args[1]);
+                statement = preparedStatement;
+            }
+            case UPDATE_ERROR_SIGNATURE -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setLong( 1, (Long) args[0]);
+                preparedStatement.setTimestamp( 2, (Timestamp) args[1]);
+                preparedStatement.setString( 3, (String) args[2]);
+                preparedStatement.setLong( 4, (Long) args[3]);
+                statement = preparedStatement;
+            }
+            case INSERT_ERROR_SIGNATURE -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setLong( 1, (Long) args[0]);
+                preparedStatement.setString( 2, (String) args[1]);
+                preparedStatement.setLong( 3, (Long) args[2]);
+                preparedStatement.setTimestamp( 4, (Timestamp) args[3]);
+                preparedStatement.setTimestamp( 5, (Timestamp) args[4]);
+                preparedStatement.setString( 6, (String) args[5]);
+                statement = preparedStatement;
+            }
+            case INSERT_LATENCY_HISTOGRAM -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setString( 1, (String) args[0]);
+                preparedStatement.setLong( 2, (Long) args[1]);
+                preparedStatement.setTimestamp( 3, (Timestamp) args[2]);
+                preparedStatement.setLong( 4, (Long) args[3]);
+                preparedStatement.setLong( 5, (Long) args[4]);
+                preparedStatement.setLong( 6, (Long) args[5]);
+                preparedStatement.setLong( 7, (Long) args[6]);
+                preparedStatement.setLong( 8, (Long) args[7]);
+                preparedStatement.setString( 9, (String) args[8]);
+                statement = preparedStatement;
+            }
+            case INSERT_REGRESSION -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setString( 1, (String) args[0]);
+                preparedStatement.setString( 2, (String) args[1]);
+                preparedStatement.setString( 3, (String) args[2]);
+                preparedStatement.setLong( 4, (Long) args[3]);
+                preparedStatement.setLong( 5, (Long) args[4]);
+                preparedStatement.setDouble( 6, (Double) args[5]);
+                preparedStatement.setDouble( 7, (Double) args[6]);
+                preparedStatement.setDouble( 8, (Double) args[7]);
+                preparedStatement.setDouble( 9, (Double) args[8]);
+                preparedStatement.setTimestamp( 10, (Timestamp) args[9]);
+                statement = preparedStatement;
+            }
+            case INSERT_FLIP -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setString( 1, (String) args[0]);
+                preparedStatement.setString( 2, (String) args[1]);
+                preparedStatement.setLong( 3, (Long) args[2]);
+                preparedStatement.setLong( 4, (Long) args[3]);
+                preparedStatement.setLong( 5, (Long) args[4]);
+                preparedStatement.setLong( 6, (Long) args[5]);
+                preparedStatement.setLong( 7, (Long) args[6]);
+                preparedStatement.setLong( 8, (Long) args[7]);
+                preparedStatement.setTimestamp( 9, (Timestamp) args[8]);
+                statement = preparedStatement;
+            }
+            case UPDATE_PLAN_COVERAGE -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setLong( 1, (Long) args[0]);
+                preparedStatement.setString( 2, (String) args[1]);
+                preparedStatement.setString( 3, (String) args[2]);
+                preparedStatement.setString( 4, (String) args[3]);
+                preparedStatement.setString( 5, (String) args[4]);
+                preparedStatement.setTimestamp( 6, (Timestamp) args[5]);
+                statement = preparedStatement;
+            }
+            case INSERT_PLAN_COVERAGE -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setString( 1, (String) args[0]);
+                preparedStatement.setString( 2, (String) args[1]);
+                preparedStatement.setTimestamp( 3, (Timestamp) args[2]);
+                preparedStatement.setLong( 4, (Long) args[3]);
+                preparedStatement.setString( 5, (String) args[4]);
+                preparedStatement.setString( 6, (String) args[5]);
+                statement = preparedStatement;
+            }
+            case GET_REGRESSIONS -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setString( 1, (String) args[0]);
+                statement = preparedStatement;
+            }
+            case GET_PLAN_COVERAGE -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setTimestamp( 1, (Timestamp) args[0]);
+                statement = preparedStatement;
+            }
+            case UPDATE_ROLLUP -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setLong( 1, (Long) args[0]);
+                preparedStatement.setLong( 2, (Long) args[1]);
+                preparedStatement.setLong( 3, (Long) args[2]);
+                preparedStatement.setLong( 4, (Long) args[3]);
+                preparedStatement.setLong( 5, (Long) args[4]);
+                preparedStatement.setString( 6, (String) args[5]);
+                preparedStatement.setString( 7, (String) args[6]);
+                preparedStatement.setTimestamp( 8, (Timestamp) args[7]);
+                statement = preparedStatement;
+            }
+            case INSERT_ROLLUP -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setString( 1, (String) args[0]);
+                preparedStatement.setString( 2, (String) args[1]);
+                preparedStatement.setTimestamp( 3, (Timestamp) args[2]);
+                preparedStatement.setLong( 4, (Long) args[3]);
+                preparedStatement.setLong( 5, (Long) args[4]);
+                preparedStatement.setLong( 6, (Long) args[5]);
+                preparedStatement.setLong( 7, (Long) args[6]);
+                preparedStatement.setLong( 8, (Long) args[7]);
+                statement = preparedStatement;
+            }
+            case GET_ROLLUP_TOTALS -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setString( 1, (String) args[0]);
+                preparedStatement.setTimestamp( 2, (Timestamp) args[1]);
+                preparedStatement.setTimestamp( 3, (Timestamp) args[2]);
+                statement = preparedStatement;
+            }
+            case GET_ROLLUP_HOURS -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setString( 1, (String) args[0]);
+                preparedStatement.setString( 2, (String) args[1]);
+                preparedStatement.setTimestamp( 3, (Timestamp) args[2]);
+                preparedStatement.setTimestamp( 4, (Timestamp) args[3]);
+                statement = preparedStatement;
+            }
+            case INSERT_PDB_JOB -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setString( 1, (String) args[0]);
+                preparedStatement.setTimestamp( 2, (Timestamp) args[1]);
+                preparedStatement.setString( 3, (String) args[2]);
+                statement = preparedStatement;
+            }
+            case GET_RECENT_PCTRLS, GET_RECENT_PDBS, GET_RECENT_PDB_JOBS -> {
+                PreparedStatement preparedStatement = connection.prepareStatement( polySQL.get() );
+                preparedStatement.setTimestamp( 1, (Timestamp) args[0]);
                 statement = preparedStatement;
             }
 //            case COMPOSITE_JOB2 -> {
@@ -393,7 +836,7 @@ public enum PolySQL {
             }
         }
 
-        return statement;
+        return TimedStatement.wrap( statement, polySQL.name() );
     }
 
 }
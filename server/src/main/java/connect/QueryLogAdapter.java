@@ -20,8 +20,19 @@ import lombok.extern.slf4j.Slf4j;
 import org.polypheny.jdbc.Driver;
 import java.sql.Connection;
 
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.StringJoiner;
@@ -38,6 +49,74 @@ public class QueryLogAdapter {
     public static final String RELATIONAL_ADAPTER_CONFIG = """
             '{"mode":"docker","password":"polypheny","instanceId":"0","port":"5436","maxConnections":"25"}'""";
     public static final String SCHEMA_NAME = "polyfier";
+    // Increment with every migration added to configure
+    public static final int SCHEMA_VERSION = 4;
+    private static final int MIGRATION_BATCH_SIZE = 1000;
+    private static final String FOREIGN_KEY = """
+                ALTER TABLE polyfier.%s ADD CONSTRAINT %s FOREIGN KEY ( %s ) REFERENCES polyfier.%s ( %s ) ON UPDATE RESTRICT ON DELETE NONE
+            """;
+    // Secondary indexes of the access paths of the analyses and the REST API, as table, index name and columns
+    private static final List<Index> INDEXES = List.of(
+            new Index( "results", "res_idx1", "pdbKey" ),
+            new Index( "results", "res_idx2", "seed" ),
+            new Index( "results", "res_idx3", "receivedAt" ),
+            new Index( "results", "res_idx4", "logicalHash" ),
+            new Index( "results", "res_idx5", "physicalHash" ),
+            new Index( "results", "res_idx6", "errorHash" ),
+            new Index( "pdb", "pdb_idx1", "pctrlKey" ),
+            new Index( "pdb", "pdb_idx2", "registeredAt" ),
+            new Index( "pdb", "pdb_idx3", "schema_config_hash" ),
+            new Index( "pdb", "pdb_idx4", "data_config_hash" ),
+            new Index( "pdb", "pdb_idx5", "query_config_hash" ),
+            new Index( "pdb", "pdb_idx6", "store_config_hash" ),
+            new Index( "pdb", "pdb_idx7", "start_config_hash" ),
+            new Index( "pdb", "pdb_idx8", "part_config_hash" )
+    );
+
+    // The columns every table of the current schema has, checked before the version is recorded
+    private static final Map<String, List<String>> TABLE_COLUMNS = Map.ofEntries(
+            Map.entry( "schema_configs", List.of( "schema_config_hash", "schema_config" ) ),
+            Map.entry( "query_configs", List.of( "query_config_hash", "query_config" ) ),
+            Map.entry( "data_configs", List.of( "data_config_hash", "data_config" ) ),
+            Map.entry( "error_configs", List.of( "error_config_hash", "error_config" ) ),
+            Map.entry( "physical_configs", List.of( "physical_config_hash", "physical_config" ) ),
+            Map.entry( "logical_configs", List.of( "logical_config_hash", "logical_config" ) ),
+            Map.entry( "store_configs", List.of( "store_config_hash", "store_config" ) ),
+            Map.entry( "part_configs", List.of( "part_config_hash", "part_config" ) ),
+            Map.entry( "start_configs", List.of( "start_config_hash", "start_config" ) ),
+            Map.entry( "pctrl", List.of( "pctrlId", "pctrlKey", "branch", "registeredAt" ) ),
+            Map.entry( "pdb", List.of(
+                    "pdbId", "pdbKey", "branch", "registeredAt", "pctrlKey", "schema_config_hash", "data_config_hash",
+                    "query_config_hash", "store_config_hash", "start_config_hash", "part_config_hash"
+            ) ),
+            Map.entry( "pdb_jobs", List.of( "pdbKey", "registeredAt", "job" ) ),
+            Map.entry( "results", List.of(
+                    "resultKey", "pdbKey", "seed", "success", "receivedAt", "errorHash", "resultSetHash", "logicalHash",
+                    "physicalHash", "execTime", "predicted"
+            ) ),
+            Map.entry( "mismatches", List.of(
+                    "mismatchKey", "pdbKey", "comparisonKey", "seed", "storeConfigHash", "resultSetHash",
+                    "otherStoreConfigHash", "otherResultSetHash", "detectedAt"
+            ) ),
+            Map.entry( "error_signatures", List.of( "signatureHash", "signature", "errorCount", "firstSeen", "lastSeen", "exampleSeeds" ) ),
+            Map.entry( "latency_histograms", List.of(
+                    "histogramType", "hash", "checkpointedAt", "valueCount", "p50", "p90", "p99", "maxValue", "buckets"
+            ) ),
+            Map.entry( "regressions", List.of(
+                    "regressionKey", "branch", "baselineBranch", "planHash", "pairCount", "geoMeanRatio", "p50Ratio",
+                    "p90Ratio", "tStatistic", "detectedAt"
+            ) ),
+            Map.entry( "flips", List.of(
+                    "flipKey", "pdbKey", "comparisonKey", "storeConfigHash", "seed", "previousFingerprint", "resultSetHash",
+                    "runCount", "detectedAt"
+            ) ),
+            Map.entry( "plan_coverage", List.of( "dimension", "dimensionKey", "windowStart", "resultCount", "logicalSketch", "physicalSketch" ) ),
+            Map.entry( "result_rollups", List.of(
+                    "dimension", "dimensionKey", "hourStart", "resultCount", "successCount", "errorCount", "execTimeSum",
+                    "execTimeCount"
+            ) )
+    );
+
     public QueryLogAdapter() {}
 
     public Optional<Connection> connect( String url, String user, String password ) {
@@ -58,45 +137,395 @@ public class QueryLogAdapter {
         props.setProperty( "password", password );
         try {
             Driver driver = new Driver();
-            Connection connection = DRIVER.connect( url, props );
-            configure( connection );
-            connection.commit();
+            try ( Connection connection = DRIVER.connect( url, props ) ) {
+                configure( connection );
+                connection.commit();
+            }
         } catch ( SQLException e ) {
             throw new RuntimeException(e);
         }
     }
 
-    public boolean isConfigured() {
+    /**
+     * @return The version of the query log schema recorded in the schema_version table, 0 if there is none.
+     */
+    public int schemaVersion( Connection connection ) throws SQLException {
+        if ( ! tableExists( connection, "schema_version" ) ) {
+            return 0;
+        }
+        try ( Statement statement = connection.createStatement();
+              ResultSet resultSet = statement.executeQuery( "SELECT MAX(version) FROM polyfier.schema_version" ) ) {
+            return resultSet.next() ? resultSet.getInt( 1 ) : 0;
+        }
+    }
 
-        return false;
+    /**
+     * @return The largest identifier of the rows keyed by {@link IdGenerator}, 0 if there are none.
+     */
+    public long maxId( Connection connection ) throws SQLException {
+        long maxId = 0;
+        try ( Statement statement = connection.createStatement() ) {
+            for ( Map.Entry<String, String> key : Map.of( "results", "resultKey", "pctrl", "pctrlId", "pdb", "pdbId" ).entrySet() ) {
+                try ( ResultSet resultSet = statement.executeQuery( "SELECT MAX(%s) FROM %s.%s".formatted( key.getValue(), SCHEMA_NAME, key.getKey() ) ) ) {
+                    if ( resultSet.next() ) {
+                        maxId = Math.max( maxId, resultSet.getLong( 1 ) );
+                    }
+                }
+            }
+        }
+        return maxId;
     }
 
     public boolean resetParameter() {
         // Todo implement reset -> UI
-        return true;
+        return Boolean.getBoolean( "polyfier.reset" );
+    }
+
+    /**
+     * @return How the secondary indexes are built by the migration, set with -Dpolyfier.indexes: eager by default,
+     * deferred to skip them until {@link #createIndexes} is called after a bulk load, none to never build them.
+     */
+    public IndexMode indexParameter() {
+        String indexes = System.getProperty( "polyfier.indexes", "eager" );
+        try {
+            return IndexMode.valueOf( indexes.toUpperCase( Locale.ROOT ) );
+        } catch ( IllegalArgumentException e ) {
+            throw new IllegalArgumentException( "Invalid -Dpolyfier.indexes=" + indexes + ", expected eager, deferred or none." );
+        }
     }
 
+    /**
+     * Migrates the query log schema to {@link #SCHEMA_VERSION}. A current schema is left untouched, such that a restart
+     * reattaches to the existing adapters and tables without any DDL, except for secondary indexes that are missing in
+     * eager mode, e.g. after an earlier start deferred them. Migrations check the catalog and only create what
+     * is missing, tables as well as each of their foreign keys, a migration interrupted halfway is completed on the next
+     * start. The tables are checked for the columns of the current schema before the version is recorded.
+     * <p>
+     * With -Dpolyfier.reset=true, the tables are dropped first and the schema is created from scratch.
+     */
     public void configure( Connection connection ) throws SQLException {
+        Statement statement = (Statement) connection.createStatement();
 
-        if ( ! isConfigured() || resetParameter() ) {
-            Statement statement = (Statement) connection.createStatement();
+        if ( resetParameter() ) {
+            log.info("Reset Parameter is set...");
+            dropTables( statement );
+            dropSchema( statement );
+            //dropAdapter( statement );
+            connection.commit();
+        }
 
-            if ( resetParameter() ) {
-                log.info("Reset Parameter is set...");
-                dropTables( statement );
-                dropSchema( statement );
-                //dropAdapter( statement );
-            } else {
-                log.info("Backend is not configured...");
+        int version = schemaVersion( connection );
+        if ( version == SCHEMA_VERSION ) {
+            log.info("Query log schema is at version " + version + ", skipping configuration.");
+            if ( indexParameter() == IndexMode.EAGER ) {
+                // Only the missing ones are created, a restart with all indexes in place runs no DDL
+                createIndexes( connection );
             }
+            return;
+        }
+        if ( version > SCHEMA_VERSION ) {
+            throw new IllegalStateException( "Query log schema version " + version + " is newer than the supported version " + SCHEMA_VERSION + "." );
+        }
 
-            log.info("Configuring Backend...");
+        log.info("Migrating query log schema from version " + version + " to " + SCHEMA_VERSION + "...");
+        if ( version < 1 ) {
             // Todo Implement Prepared Statements
             configureAdapter( statement );
             configureSchema( statement );
             configureTables( statement );
+        }
+        if ( version < 2 ) {
+            // The jobs handed out, such that the PDB registry can be restored after a restart
+            createTable( statement, "pdb_jobs", """
+                    CREATE TABLE polyfier.pdb_jobs (
+                        pdbKey varchar(36) NOT NULL,
+                        registeredAt timestamp NOT NULL,
+                        job varchar NOT NULL,
+                        PRIMARY KEY ( pdbKey )
+                    ) ON STORE %s""".formatted( DOCUMENT_ADAPTER_UNIQUE_NAME ) );
+        }
+        if ( version < 4 ) {
+            // Time-ordered numeric result keys and numeric surrogate ids of the registry, see IdGenerator
+            migrateResultKeys( statement );
+            // Separate from the copy, such that they are also added if a migration was interrupted after it
+            addResultForeignKeys( statement );
+            addSurrogateId( statement, "pctrl", "pctrlId", "pctrlKey", "pct_uk1" );
+            addSurrogateId( statement, "pdb", "pdbId", "pdbKey", "pdb_uk1" );
+            // Introduced with version 3 and rebuilt for version 4, whose migration recreates the results table without
+            // them. Built last such that they cover the recreated tables, only the missing ones are created.
+            switch ( indexParameter() ) {
+                case EAGER -> createIndexes( connection );
+                case DEFERRED -> log.info("Secondary indexes are deferred, build them with --index after the bulk load.");
+                case NONE -> log.info("Secondary indexes are disabled.");
+            }
+        }
+        // Subsequent migrations go here as "if ( version < n )", each checking the catalog before it alters anything.
+
+        validateTables( connection );
+        createTable( statement, "schema_version", """
+                CREATE TABLE polyfier.schema_version (
+                    version integer NOT NULL,
+                    appliedAt bigint NOT NULL,
+                    PRIMARY KEY ( version )
+                ) ON STORE %s""".formatted( RELATIONAL_ADAPTER_UNIQUE_NAME ) );
+        statement.execute( "INSERT INTO polyfier.schema_version ( version, appliedAt ) VALUES ( %d, %d )".formatted( SCHEMA_VERSION, System.currentTimeMillis() ) );
+        connection.commit();
+    }
+
+    private boolean tableExists( Connection connection, String table ) throws SQLException {
+        try ( ResultSet resultSet = connection.getMetaData().getTables( null, SCHEMA_NAME, table, null ) ) {
+            return resultSet.next();
+        }
+    }
+
+    /**
+     * Creates the table if the catalog does not know it.
+     */
+    private void createTable( Statement statement, String table, String polySql ) throws SQLException {
+        if ( tableExists( statement.getConnection(), table ) ) {
+            log.debug("Table " + table + " exists.");
+            return;
+        }
+        log.debug("Create Table: \n\n" + polySql );
+        statement.execute( polySql );
+    }
+
+    /**
+     * Checks that every table of the current schema exists with all its columns, such that a schema altered by hand or
+     * by a failed migration is not recorded as current.
+     *
+     * @throws IllegalStateException if a table or column is missing.
+     */
+    private void validateTables( Connection connection ) throws SQLException {
+        List<String> missing = new ArrayList<>();
+        for ( Map.Entry<String, List<String>> table : TABLE_COLUMNS.entrySet() ) {
+            if ( ! tableExists( connection, table.getKey() ) ) {
+                missing.add( table.getKey() );
+                continue;
+            }
+            for ( String column : table.getValue() ) {
+                if ( columnType( connection, table.getKey(), column ) == null ) {
+                    missing.add( table.getKey() + "." + column );
+                }
+            }
+        }
+        if ( ! missing.isEmpty() ) {
+            throw new IllegalStateException( "Query log schema lacks " + String.join( ", ", missing ) + ", not recording version " + SCHEMA_VERSION + "." );
+        }
+    }
+
+    /**
+     * @return The SQL type of the column, see {@link Types}, null if the table has no such column.
+     */
+    private Integer columnType( Connection connection, String table, String column ) throws SQLException {
+        try ( ResultSet resultSet = connection.getMetaData().getColumns( null, SCHEMA_NAME, table, null ) ) {
+            while ( resultSet.next() ) {
+                if ( column.equalsIgnoreCase( resultSet.getString( "COLUMN_NAME" ) ) ) {
+                    return resultSet.getInt( "DATA_TYPE" );
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Whether the column admits null values, false if the table has no such column.
+     */
+    private boolean nullable( Connection connection, String table, String column ) throws SQLException {
+        try ( ResultSet resultSet = connection.getMetaData().getColumns( null, SCHEMA_NAME, table, null ) ) {
+            while ( resultSet.next() ) {
+                if ( column.equalsIgnoreCase( resultSet.getString( "COLUMN_NAME" ) ) ) {
+                    return resultSet.getInt( "NULLABLE" ) != DatabaseMetaData.columnNoNulls;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rekeys the results of a schema with random UUID string keys. The table is renamed to results_uuid and its rows are
+     * copied to a new results table in the order they were received, keyed by time-ordered ids of their receive time.
+     * The copy commits in batches that end between two receive times, an interrupted copy resumes after the latest
+     * receive time copied. The old table is only dropped once the copy is complete.
+     */
+    private void migrateResultKeys( Statement statement ) throws SQLException {
+        Connection connection = statement.getConnection();
+        if ( tableExists( connection, "results_uuid" ) ) {
+            log.info("Resuming the interrupted migration of the result keys...");
+        } else {
+            Integer type = columnType( connection, "results", "resultKey" );
+            if ( type == null || type != Types.VARCHAR ) {
+                return;
+            }
+            log.info("Migrating the result keys to time-ordered ids...");
+            statement.execute( "ALTER TABLE %s.results RENAME TO results_uuid".formatted( SCHEMA_NAME ) );
+        }
+        createTable( statement, "results", resultsTable() );
+
+        Timestamp copiedUntil = null;
+        IdGenerator ids = new IdGenerator( IdGenerator.NODE );
+        try ( ResultSet resultSet = statement.executeQuery( "SELECT MAX(resultKey) FROM %s.results".formatted( SCHEMA_NAME ) ) ) {
+            if ( resultSet.next() && resultSet.getObject( 1 ) != null ) {
+                ids = new IdGenerator( IdGenerator.NODE, resultSet.getLong( 1 ) );
+            }
+        }
+        try ( ResultSet resultSet = statement.executeQuery( "SELECT MAX(receivedAt) FROM %s.results".formatted( SCHEMA_NAME ) ) ) {
+            if ( resultSet.next() ) {
+                copiedUntil = resultSet.getTimestamp( 1 );
+            }
+        }
+
+        long rows = 0;
+        try (
+                PreparedStatement select = connection.prepareStatement( """
+                        SELECT pdbKey, seed, success, receivedAt, errorHash, resultSetHash, logicalHash, physicalHash, execTime, predicted
+                        FROM polyfier.results_uuid%s ORDER BY receivedAt
+                        """.formatted( copiedUntil == null ? "" : " WHERE receivedAt > ?" ) );
+                PreparedStatement insert = connection.prepareStatement( """
+                        INSERT INTO polyfier.results (
+                            resultKey, pdbKey, seed, success, receivedAt, errorHash, resultSetHash, logicalHash, physicalHash, execTime, predicted
+                        ) VALUES (
+                            ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?
+                        )
+                        """ )
+        ) {
+            if ( copiedUntil != null ) {
+                select.setTimestamp( 1, copiedUntil );
+            }
+            select.setFetchSize( MIGRATION_BATCH_SIZE );
+            try ( ResultSet resultSet = select.executeQuery() ) {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                int batched = 0;
+                Timestamp previous = null;
+                while ( resultSet.next() ) {
+                    Timestamp receivedAt = resultSet.getTimestamp( 4 );
+                    // Committed between two receive times, such that the resumption can continue after the latest one
+                    if ( batched >= MIGRATION_BATCH_SIZE && ! receivedAt.equals( previous ) ) {
+                        insert.executeBatch();
+                        connection.commit();
+                        rows += batched;
+                        batched = 0;
+                        if ( rows % ( MIGRATION_BATCH_SIZE * 100L ) < MIGRATION_BATCH_SIZE ) {
+                            log.info("Copied " + rows + " results...");
+                        }
+                    }
+                    insert.setLong( 1, ids.next( receivedAt.getTime() ) );
+                    for ( int i = 1; i <= metaData.getColumnCount(); i++ ) {
+                        insert.setObject( i + 1, resultSet.getObject( i ), metaData.getColumnType( i ) );
+                    }
+                    insert.addBatch();
+                    batched++;
+                    previous = receivedAt;
+                }
+                insert.executeBatch();
+                connection.commit();
+                rows += batched;
+            }
+        }
+        statement.execute( "DROP TABLE %s.results_uuid".formatted( SCHEMA_NAME ) );
+        connection.commit();
+        log.info("Migrated the keys of " + rows + " results.");
+    }
+
+    /**
+     * Adds a numeric surrogate id column to a registry table that lacks it, assigning time-ordered ids of the time the
+     * rows were registered, in that order, and makes it unique.
+     */
+    private void addSurrogateId( Statement statement, String table, String idColumn, String keyColumn, String uniqueName ) throws SQLException {
+        Connection connection = statement.getConnection();
+        if ( columnType( connection, table, idColumn ) == null ) {
+            log.debug("Adding " + idColumn + " to " + table + "...");
+            statement.execute( "ALTER TABLE %s.%s ADD COLUMN %s bigint NULL".formatted( SCHEMA_NAME, table, idColumn ) );
+        }
+        if ( nullable( connection, table, idColumn ) ) {
+            // A generator per table, a shared one would hand out ids of the latest time of the table before
+            IdGenerator generator = new IdGenerator( IdGenerator.NODE );
+            Map<String, Long> ids = new LinkedHashMap<>();
+            try ( ResultSet resultSet = statement.executeQuery( "SELECT %s, registeredAt FROM %s.%s ORDER BY registeredAt".formatted( keyColumn, SCHEMA_NAME, table ) ) ) {
+                while ( resultSet.next() ) {
+                    ids.put( resultSet.getString( 1 ), generator.next( resultSet.getTimestamp( 2 ).getTime() ) );
+                }
+            }
+            try ( PreparedStatement update = connection.prepareStatement( "UPDATE %s.%s SET %s = ? WHERE %s = ?".formatted( SCHEMA_NAME, table, idColumn, keyColumn ) ) ) {
+                for ( Map.Entry<String, Long> entry : ids.entrySet() ) {
+                    update.setLong( 1, entry.getValue() );
+                    update.setString( 2, entry.getKey() );
+                    update.addBatch();
+                }
+                update.executeBatch();
+            }
             connection.commit();
+            statement.execute( "ALTER TABLE %s.%s MODIFY COLUMN %s SET NOT NULL".formatted( SCHEMA_NAME, table, idColumn ) );
+        }
+        if ( indexExists( connection, table, uniqueName ) ) {
+            log.debug("Unique constraint " + uniqueName + " exists.");
+        } else {
+            statement.execute( "ALTER TABLE %s.%s ADD CONSTRAINT %s UNIQUE ( %s )".formatted( SCHEMA_NAME, table, uniqueName, idColumn ) );
+        }
+        connection.commit();
+    }
+
+    private boolean indexExists( Connection connection, String table, String index ) throws SQLException {
+        try ( ResultSet resultSet = connection.getMetaData().getIndexInfo( null, SCHEMA_NAME, table, false, false ) ) {
+            while ( resultSet.next() ) {
+                if ( index.equalsIgnoreCase( resultSet.getString( "INDEX_NAME" ) ) ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates the secondary indexes of the results and pdb tables the catalog does not know yet. Building them after a
+     * bulk load is cheaper than maintaining them on every insert of it.
+     */
+    public void createIndexes( Connection connection ) throws SQLException {
+        try ( Statement statement = connection.createStatement() ) {
+            for ( Index index : INDEXES ) {
+                if ( indexExists( connection, index.table(), index.name() ) ) {
+                    log.debug("Index " + index.name() + " exists.");
+                    continue;
+                }
+                log.info("Creating index " + index.name() + " on " + index.table() + " ( " + index.column() + " )...");
+                statement.execute( "ALTER TABLE %s.%s ADD INDEX %s ON %s ON STORE %s".formatted(
+                        SCHEMA_NAME,
+                        index.table(),
+                        index.name(),
+                        index.column(),
+                        RELATIONAL_ADAPTER_UNIQUE_NAME
+                ) );
+            }
+        }
+        connection.commit();
+    }
+
+    /**
+     * @return Whether the table has a foreign key of the given name, or one of the column on the referenced table.
+     */
+    private boolean foreignKeyExists( Connection connection, String table, String name, String column, String referencedTable ) throws SQLException {
+        try ( ResultSet resultSet = connection.getMetaData().getImportedKeys( null, SCHEMA_NAME, table ) ) {
+            while ( resultSet.next() ) {
+                if ( name.equalsIgnoreCase( resultSet.getString( "FK_NAME" ) ) ) {
+                    return true;
+                }
+                if ( column.equalsIgnoreCase( resultSet.getString( "FKCOLUMN_NAME" ) ) && referencedTable.equalsIgnoreCase( resultSet.getString( "PKTABLE_NAME" ) ) ) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a foreign key the catalog does not know yet, be the table created by this migration or before.
+     */
+    private void addForeignKey( Statement statement, String constraint, String table, String name, String column, String referencedTable, String referencedColumn ) throws SQLException {
+        if ( foreignKeyExists( statement.getConnection(), table, name, column, referencedTable ) ) {
+            log.debug("Foreign key " + name + " exists.");
+            return;
         }
+        statement.execute( String.format( constraint, table, name, column, referencedTable, referencedColumn ) );
     }
 
     private void configureAdapter( Statement statement ) {
@@ -127,9 +556,15 @@ public class QueryLogAdapter {
 
 
     private void configureSchema( Statement statement ) {
-        log.debug("Creating Schema...");
         String polySql = "CREATE SCHEMA polyfier";
         try {
+            try ( ResultSet resultSet = statement.getConnection().getMetaData().getSchemas( null, SCHEMA_NAME ) ) {
+                if ( resultSet.next() ) {
+                    log.debug("Schema exists.");
+                    return;
+                }
+            }
+            log.debug("Creating Schema...");
             statement.execute( polySql );
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -155,8 +590,7 @@ public class QueryLogAdapter {
                     .append(") ").append("ON STORE ").append( DOCUMENT_ADAPTER_UNIQUE_NAME )
                     .toString();
 
-            log.debug("Create Table \n\n" + schemaConfigs );
-            statement.execute( schemaConfigs );
+            createTable( statement, "schema_configs", schemaConfigs );
 
             String queryConfigs = new StringBuilder()
                 .append("CREATE TABLE ").append( "polyfier.query_configs " ).append("(\n")
@@ -172,8 +606,7 @@ public class QueryLogAdapter {
                 .append(") ").append("ON STORE ").append( DOCUMENT_ADAPTER_UNIQUE_NAME )
                 .toString();
 
-            log.debug("Create Table \n\n" + queryConfigs );
-            statement.execute( queryConfigs );
+            createTable( statement, "query_configs", queryConfigs );
 
             String dataConfigs = new StringBuilder()
                     .append("CREATE TABLE ").append( "polyfier.data_configs " ).append("(\n")
@@ -189,8 +622,7 @@ public class QueryLogAdapter {
                     .append(") ").append("ON STORE ").append( DOCUMENT_ADAPTER_UNIQUE_NAME )
                     .toString();
 
-            log.debug("Create Table \n\n" + dataConfigs );
-            statement.execute( dataConfigs );
+            createTable( statement, "data_configs", dataConfigs );
 
             String errors = new StringBuilder()
                     .append("CREATE TABLE ").append( "polyfier.error_configs " ).append("(\n")
@@ -206,8 +638,7 @@ public class QueryLogAdapter {
                     .append(") ").append("ON STORE ").append( DOCUMENT_ADAPTER_UNIQUE_NAME )
                     .toString();
 
-            log.debug("Create Table \n\n" + errors );
-            statement.execute( errors );
+            createTable( statement, "error_configs", errors );
 
             String physicalPlansDocument = new StringBuilder()
                     .append("CREATE TABLE ").append( "polyfier.physical_configs " ).append("(\n")
@@ -223,8 +654,7 @@ public class QueryLogAdapter {
                     .append(") ").append("ON STORE ").append( DOCUMENT_ADAPTER_UNIQUE_NAME )
                     .toString();
 
-            log.debug("Create Table \n\n" + physicalPlansDocument );
-            statement.execute( physicalPlansDocument );
+            createTable( statement, "physical_configs", physicalPlansDocument );
 
             String logicalPlans = new StringBuilder()
                     .append("CREATE TABLE ").append( "polyfier.logical_configs " ).append("(\n")
@@ -240,8 +670,7 @@ public class QueryLogAdapter {
                     .append(") ").append("ON STORE ").append( DOCUMENT_ADAPTER_UNIQUE_NAME )
                     .toString();
 
-            log.debug("Create Table \n\n" + logicalPlans );
-            statement.execute( logicalPlans );
+            createTable( statement, "logical_configs", logicalPlans );
 
             String storeConfigs = new StringBuilder()
                     .append("CREATE TABLE ").append( "polyfier.store_configs " ).append("(\n")
@@ -257,8 +686,7 @@ public class QueryLogAdapter {
                     .append(") ").append("ON STORE ").append( DOCUMENT_ADAPTER_UNIQUE_NAME )
                     .toString();
 
-            log.debug("Create Table \n\n" + storeConfigs );
-            statement.execute( storeConfigs );
+            createTable( statement, "store_configs", storeConfigs );
 
             String partConfigs = new StringBuilder()
                     .append("CREATE TABLE ").append( "polyfier.part_configs " ).append("(\n")
@@ -274,8 +702,7 @@ public class QueryLogAdapter {
                     .append(") ").append("ON STORE ").append( DOCUMENT_ADAPTER_UNIQUE_NAME )
                     .toString();
 
-            log.debug("Create Table \n\n" + partConfigs );
-            statement.execute( partConfigs );
+            createTable( statement, "part_configs", partConfigs );
 
             String startConfigs = new StringBuilder()
                     .append("CREATE TABLE ").append( "polyfier.start_configs " ).append("(\n")
@@ -292,12 +719,12 @@ public class QueryLogAdapter {
                     .toString();
 
 
-            log.debug("Create Table \n\n" + startConfigs );
-            statement.execute( startConfigs );
+            createTable( statement, "start_configs", startConfigs );
 
             String pctrl = new StringBuilder()
                     .append("CREATE TABLE ").append( "polyfier.pctrl " ).append("(\n")
 
+                    .append("\t").append("pctrlId ").append("bigint ").append("NOT NULL").append(",\n")
                     .append("\t").append("pctrlKey ").append("varchar(36) ").append("NOT NULL").append(",\n")
                     .append("\t").append("branch ").append("varchar ").append("NOT NULL").append(",\n")
                     .append("\t").append("registeredAt ").append("timestamp ").append("NOT NULL").append(",\n")
@@ -309,13 +736,13 @@ public class QueryLogAdapter {
                     .append(") ").append("ON STORE ").append( RELATIONAL_ADAPTER_UNIQUE_NAME )
                     .toString();
 
-            log.debug("Create Table \n\n" + pctrl );
-            statement.execute( pctrl );
+            createTable( statement, "pctrl", pctrl );
 
             String pdb = new StringBuilder()
                     .append("CREATE TABLE ").append( "polyfier.pdb " ).append("(\n")
 
                     // Fields
+                    .append("\t").append("pdbId ").append("bigint ").append("NOT NULL").append(",\n")
                     .append("\t").append("pdbKey ").append("varchar(36) ").append("NOT NULL ").append(",\n")
                     .append("\t").append("branch ").append("varchar ").append("NOT NULL").append(",\n")
                     .append("\t").append("registeredAt ").append("timestamp ").append("NOT NULL").append(",\n")
@@ -334,57 +761,189 @@ public class QueryLogAdapter {
                     .append(") ").append("ON STORE ").append( RELATIONAL_ADAPTER_UNIQUE_NAME )
                     .toString();
 
-            log.debug("Create Table \n\n" + pdb );
-            statement.execute( pdb );
+            createTable( statement, "pdb", pdb );
+
+            createTable( statement, "results", resultsTable() );
 
-            // Create polyfier_results Table
-            String results = new StringBuilder()
-                    .append("CREATE TABLE ").append( "polyfier.results " ).append("(\n")
+            // Create polyfier_mismatches Table
+            String mismatches = new StringBuilder()
+                    .append("CREATE TABLE ").append( "polyfier.mismatches " ).append("(\n")
 
                     // Fields
-                    .append("\t").append("resultKey ").append("varchar(36) ").append("NOT NULL ").append(",\n")
+                    .append("\t").append("mismatchKey ").append("varchar(36) ").append("NOT NULL ").append(",\n")
                     .append("\t").append("pdbKey ").append("varchar(36) ").append("NOT NULL").append(",\n")
+                    .append("\t").append("comparisonKey ").append("bigint ").append("NOT NULL").append(",\n")
                     .append("\t").append("seed ").append("bigint ").append("NOT NULL").append(",\n")
-                    .append("\t").append("success ").append("boolean ").append("NOT NULL").append(",\n")
-                    .append("\t").append("receivedAt ").append("timestamp ").append("NOT NULL").append(",\n")
-                    .append("\t").append("errorHash ").append("bigint ").append("NULL ").append("DEFAULT NULL").append(",\n")
-                    .append("\t").append("resultSetHash ").append("bigint ").append("NULL ").append("DEFAULT NULL").append(",\n")
-                    .append("\t").append("logicalHash ").append("bigint ").append("NULL ").append("DEFAULT NULL").append(",\n")
-                    .append("\t").append("physicalHash ").append("bigint ").append("NULL ").append("DEFAULT NULL").append(",\n")
-                    .append("\t").append("execTime ").append("bigint ").append("NULL ").append("DEFAULT NULL").append(",\n")
+                    .append("\t").append("storeConfigHash ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("resultSetHash ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("otherStoreConfigHash ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("otherResultSetHash ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("detectedAt ").append("timestamp ").append("NOT NULL").append(",\n")
 
                     // Constraints
-                    .append("\t").append("PRIMARY KEY ( ").append("resultKey").append(" )\n")
+                    .append("\t").append("PRIMARY KEY ( ").append("mismatchKey").append(" )\n")
 
                     // Store
                     .append(") ").append("ON STORE ").append( RELATIONAL_ADAPTER_UNIQUE_NAME )
                     .toString();
 
-            log.debug("Create Table: \n\n" + results );
-            statement.execute( results );
+            createTable( statement, "mismatches", mismatches );
 
+            // Create polyfier_error_signatures Table
+            String errorSignatures = new StringBuilder()
+                    .append("CREATE TABLE ").append( "polyfier.error_signatures " ).append("(\n")
 
-            String constraint;
+                    // Fields
+                    .append("\t").append("signatureHash ").append("bigint ").append("NOT NULL ").append(",\n")
+                    .append("\t").append("signature ").append("varchar ").append("NOT NULL").append(",\n")
+                    .append("\t").append("errorCount ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("firstSeen ").append("timestamp ").append("NOT NULL").append(",\n")
+                    .append("\t").append("lastSeen ").append("timestamp ").append("NOT NULL").append(",\n")
+                    .append("\t").append("exampleSeeds ").append("varchar ").append("NOT NULL").append(",\n")
+
+                    // Constraints
+                    .append("\t").append("PRIMARY KEY ( ").append("signatureHash").append(" )\n")
+
+                    // Store
+                    .append(") ").append("ON STORE ").append( RELATIONAL_ADAPTER_UNIQUE_NAME )
+                    .toString();
+
+            createTable( statement, "error_signatures", errorSignatures );
+
+            // Create polyfier_latency_histograms Table
+            String latencyHistograms = new StringBuilder()
+                    .append("CREATE TABLE ").append( "polyfier.latency_histograms " ).append("(\n")
+
+                    // Fields
+                    .append("\t").append("histogramType ").append("varchar(16) ").append("NOT NULL ").append(",\n")
+                    .append("\t").append("hash ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("checkpointedAt ").append("timestamp ").append("NOT NULL").append(",\n")
+                    .append("\t").append("valueCount ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("p50 ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("p90 ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("p99 ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("maxValue ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("buckets ").append("varchar ").append("NOT NULL").append(",\n")
+
+                    // Constraints
+                    .append("\t").append("PRIMARY KEY ( ").append("histogramType, hash, checkpointedAt").append(" )\n")
+
+                    // Store
+                    .append(") ").append("ON STORE ").append( RELATIONAL_ADAPTER_UNIQUE_NAME )
+                    .toString();
+
+            createTable( statement, "latency_histograms", latencyHistograms );
+
+            // Create polyfier_regressions Table
+            String regressions = new StringBuilder()
+                    .append("CREATE TABLE ").append( "polyfier.regressions " ).append("(\n")
+
+                    // Fields
+                    .append("\t").append("regressionKey ").append("varchar(36) ").append("NOT NULL ").append(",\n")
+                    .append("\t").append("branch ").append("varchar ").append("NOT NULL").append(",\n")
+                    .append("\t").append("baselineBranch ").append("varchar ").append("NOT NULL").append(",\n")
+                    .append("\t").append("planHash ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("pairCount ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("geoMeanRatio ").append("double ").append("NOT NULL").append(",\n")
+                    .append("\t").append("p50Ratio ").append("double ").append("NOT NULL").append(",\n")
+                    .append("\t").append("p90Ratio ").append("double ").append("NOT NULL").append(",\n")
+                    .append("\t").append("tStatistic ").append("double ").append("NOT NULL").append(",\n")
+                    .append("\t").append("detectedAt ").append("timestamp ").append("NOT NULL").append(",\n")
+
+                    // Constraints
+                    .append("\t").append("PRIMARY KEY ( ").append("regressionKey").append(" )\n")
+
+                    // Store
+                    .append(") ").append("ON STORE ").append( RELATIONAL_ADAPTER_UNIQUE_NAME )
+                    .toString();
+
+            createTable( statement, "regressions", regressions );
+
+            // Create polyfier_flips Table
+            String flips = new StringBuilder()
+                    .append("CREATE TABLE ").append( "polyfier.flips " ).append("(\n")
+
+                    // Fields
+                    .append("\t").append("flipKey ").append("varchar(36) ").append("NOT NULL ").append(",\n")
+                    .append("\t").append("pdbKey ").append("varchar(36) ").append("NOT NULL").append(",\n")
+                    .append("\t").append("comparisonKey ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("storeConfigHash ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("seed ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("previousFingerprint ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("resultSetHash ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("runCount ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("detectedAt ").append("timestamp ").append("NOT NULL").append(",\n")
+
+                    // Constraints
+                    .append("\t").append("PRIMARY KEY ( ").append("flipKey").append(" )\n")
+
+                    // Store
+                    .append(") ").append("ON STORE ").append( RELATIONAL_ADAPTER_UNIQUE_NAME )
+                    .toString();
+
+            createTable( statement, "flips", flips );
+
+            // Create polyfier_plan_coverage Table
+            String planCoverage = new StringBuilder()
+                    .append("CREATE TABLE ").append( "polyfier.plan_coverage " ).append("(\n")
+
+                    // Fields
+                    .append("\t").append("dimension ").append("varchar(16) ").append("NOT NULL").append(",\n")
+                    .append("\t").append("dimensionKey ").append("varchar ").append("NOT NULL").append(",\n")
+                    .append("\t").append("windowStart ").append("timestamp ").append("NOT NULL").append(",\n")
+                    .append("\t").append("resultCount ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("logicalSketch ").append("varchar ").append("NOT NULL").append(",\n")
+                    .append("\t").append("physicalSketch ").append("varchar ").append("NOT NULL").append(",\n")
+
+                    // Constraints
+                    .append("\t").append("PRIMARY KEY ( ").append("dimension, dimensionKey, windowStart").append(" )\n")
+
+                    // Store
+                    .append(") ").append("ON STORE ").append( RELATIONAL_ADAPTER_UNIQUE_NAME )
+                    .toString();
+
+            createTable( statement, "plan_coverage", planCoverage );
+
+            // Create polyfier_result_rollups Table
+            String resultRollups = new StringBuilder()
+                    .append("CREATE TABLE ").append( "polyfier.result_rollups " ).append("(\n")
+
+                    // Fields
+                    .append("\t").append("dimension ").append("varchar(16) ").append("NOT NULL").append(",\n")
+                    .append("\t").append("dimensionKey ").append("varchar ").append("NOT NULL").append(",\n")
+                    .append("\t").append("hourStart ").append("timestamp ").append("NOT NULL").append(",\n")
+                    .append("\t").append("resultCount ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("successCount ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("errorCount ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("execTimeSum ").append("bigint ").append("NOT NULL").append(",\n")
+                    .append("\t").append("execTimeCount ").append("bigint ").append("NOT NULL").append(",\n")
+
+                    // Constraints
+                    .append("\t").append("PRIMARY KEY ( ").append("dimension, dimensionKey, hourStart").append(" )\n")
+
+                    // Store
+                    .append(") ").append("ON STORE ").append( RELATIONAL_ADAPTER_UNIQUE_NAME )
+                    .toString();
+
+            createTable( statement, "result_rollups", resultRollups );
 
-            constraint = """
-                ALTER TABLE polyfier.%s ADD CONSTRAINT %s FOREIGN KEY ( %s ) REFERENCES polyfier.%s ( %s ) ON UPDATE RESTRICT ON DELETE NONE
-            """;
 
             // Results
-            statement.execute( String.format( constraint, "results", "res_fk1", "pdbKey", "pdb", "pdbKey" ) );
-            statement.execute( String.format( constraint, "results", "res_fk2", "errorHash", "error_configs", "error_config_hash" ) );
-            statement.execute( String.format( constraint, "results", "res_fk3", "logicalHash", "logical_configs", "logical_config_hash" ) );
-            statement.execute( String.format( constraint, "results", "res_fk4", "physicalHash", "physical_configs", "physical_config_hash" ) );
+            addResultForeignKeys( statement );
+
+            // Mismatches
+            addForeignKey( statement, FOREIGN_KEY, "mismatches", "mis_fk1", "pdbKey", "pdb", "pdbKey" );
+            addForeignKey( statement, FOREIGN_KEY, "flips", "flp_fk1", "pdbKey", "pdb", "pdbKey" );
 
 
             // Results
-            statement.execute( String.format( constraint, "pdb", "pdb_fk1", "pctrlKey", "pctrl", "pctrlKey" ) );
-            statement.execute( String.format( constraint, "pdb", "pro_fk1", "start_config_hash", "start_configs", "start_config_hash" ) );
-            statement.execute( String.format( constraint, "pdb", "pro_fk2", "schema_config_hash", "schema_configs", "schema_config_hash" ) );
-            statement.execute( String.format( constraint, "pdb", "pro_fk3", "query_config_hash", "query_configs", "query_config_hash" ) );
-            statement.execute( String.format( constraint, "pdb", "pro_fk4", "data_config_hash", "data_configs", "data_config_hash" ) );
-            statement.execute( String.format( constraint, "pdb", "pro_fk5", "store_config_hash", "store_configs", "store_config_hash" ) );
-            statement.execute( String.format( constraint, "pdb", "pro_fk6", "part_config_hash", "part_configs", "part_config_hash" ) );
+            addForeignKey( statement, FOREIGN_KEY, "pdb", "pdb_fk1", "pctrlKey", "pctrl", "pctrlKey" );
+            addForeignKey( statement, FOREIGN_KEY, "pdb", "pro_fk1", "start_config_hash", "start_configs", "start_config_hash" );
+            addForeignKey( statement, FOREIGN_KEY, "pdb", "pro_fk2", "schema_config_hash", "schema_configs", "schema_config_hash" );
+            addForeignKey( statement, FOREIGN_KEY, "pdb", "pro_fk3", "query_config_hash", "query_configs", "query_config_hash" );
+            addForeignKey( statement, FOREIGN_KEY, "pdb", "pro_fk4", "data_config_hash", "data_configs", "data_config_hash" );
+            addForeignKey( statement, FOREIGN_KEY, "pdb", "pro_fk5", "store_config_hash", "store_configs", "store_config_hash" );
+            addForeignKey( statement, FOREIGN_KEY, "pdb", "pro_fk6", "part_config_hash", "part_configs", "part_config_hash" );
 
 
         } catch (SQLException e) {
@@ -392,20 +951,63 @@ public class QueryLogAdapter {
         }
     }
 
+    private String resultsTable() {
+        return new StringBuilder()
+                .append("CREATE TABLE ").append( "polyfier.results " ).append("(\n")
+
+                // Fields
+                .append("\t").append("resultKey ").append("bigint ").append("NOT NULL ").append(",\n")
+                .append("\t").append("pdbKey ").append("varchar(36) ").append("NOT NULL").append(",\n")
+                .append("\t").append("seed ").append("bigint ").append("NOT NULL").append(",\n")
+                .append("\t").append("success ").append("boolean ").append("NOT NULL").append(",\n")
+                .append("\t").append("receivedAt ").append("timestamp ").append("NOT NULL").append(",\n")
+                .append("\t").append("errorHash ").append("bigint ").append("NULL ").append("DEFAULT NULL").append(",\n")
+                .append("\t").append("resultSetHash ").append("bigint ").append("NULL ").append("DEFAULT NULL").append(",\n")
+                .append("\t").append("logicalHash ").append("bigint ").append("NULL ").append("DEFAULT NULL").append(",\n")
+                .append("\t").append("physicalHash ").append("bigint ").append("NULL ").append("DEFAULT NULL").append(",\n")
+                .append("\t").append("execTime ").append("bigint ").append("NULL ").append("DEFAULT NULL").append(",\n")
+                .append("\t").append("predicted ").append("bigint ").append("NULL ").append("DEFAULT NULL").append(",\n")
+
+                // Constraints
+                .append("\t").append("PRIMARY KEY ( ").append("resultKey").append(" )\n")
+
+                // Store
+                .append(") ").append("ON STORE ").append( RELATIONAL_ADAPTER_UNIQUE_NAME )
+                .toString();
+    }
+
+    private void addResultForeignKeys( Statement statement ) throws SQLException {
+        addForeignKey( statement, FOREIGN_KEY, "results", "res_fk1", "pdbKey", "pdb", "pdbKey" );
+        addForeignKey( statement, FOREIGN_KEY, "results", "res_fk2", "errorHash", "error_configs", "error_config_hash" );
+        addForeignKey( statement, FOREIGN_KEY, "results", "res_fk3", "logicalHash", "logical_configs", "logical_config_hash" );
+        addForeignKey( statement, FOREIGN_KEY, "results", "res_fk4", "physicalHash", "physical_configs", "physical_config_hash" );
+    }
+
     private void dropTables( Statement statement ) {
         log.debug("Dropping Tables...");
         String polySql = """
                 DROP TABLE IF EXISTS %s.%s
         """;
         try {
+            statement.execute( polySql.formatted( SCHEMA_NAME, "schema_version" ) );
+            statement.execute( polySql.formatted( SCHEMA_NAME, "pdb_jobs" ) );
+            statement.execute( polySql.formatted( SCHEMA_NAME, "result_rollups" ) );
+            statement.execute( polySql.formatted( SCHEMA_NAME, "plan_coverage" ) );
+            statement.execute( polySql.formatted( SCHEMA_NAME, "flips" ) );
+            statement.execute( polySql.formatted( SCHEMA_NAME, "regressions" ) );
+            statement.execute( polySql.formatted( SCHEMA_NAME, "latency_histograms" ) );
+            statement.execute( polySql.formatted( SCHEMA_NAME, "error_signatures" ) );
+            statement.execute( polySql.formatted( SCHEMA_NAME, "mismatches" ) );
+            statement.execute( polySql.formatted( SCHEMA_NAME, "results_uuid" ) );
             statement.execute( polySql.formatted( SCHEMA_NAME, "results" ) );
             statement.execute( polySql.formatted( SCHEMA_NAME, "pdb" ) );
             statement.execute( polySql.formatted( SCHEMA_NAME, "pctrl" ) );
-            statement.execute( polySql.formatted( SCHEMA_NAME, "query_config" ) );
+            statement.execute( polySql.formatted( SCHEMA_NAME, "schema_configs" ) );
+            statement.execute( polySql.formatted( SCHEMA_NAME, "query_configs" ) );
             statement.execute( polySql.formatted( SCHEMA_NAME, "data_configs" ) );
-            statement.execute( polySql.formatted( SCHEMA_NAME, "errors" ) );
-            statement.execute( polySql.formatted( SCHEMA_NAME, "phy_plans" ) );
-            statement.execute( polySql.formatted( SCHEMA_NAME, "log_plans" ) );
+            statement.execute( polySql.formatted( SCHEMA_NAME, "error_configs" ) );
+            statement.execute( polySql.formatted( SCHEMA_NAME, "physical_configs" ) );
+            statement.execute( polySql.formatted( SCHEMA_NAME, "logical_configs" ) );
             statement.execute( polySql.formatted( SCHEMA_NAME, "store_configs" ) );
             statement.execute( polySql.formatted( SCHEMA_NAME, "part_configs" ) );
             statement.execute( polySql.formatted( SCHEMA_NAME, "start_configs" ) );
@@ -440,6 +1042,14 @@ public class QueryLogAdapter {
         }
     }
 
+    public enum IndexMode {
+        EAGER,
+        DEFERRED,
+        NONE
+    }
+
+    private record Index( String table, String name, String column ) {}
+
     private static class TableCreator {
         private final Statement statement;
         private static final String SQL = """
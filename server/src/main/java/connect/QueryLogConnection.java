@@ -19,6 +19,12 @@ package connect;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import analysis.ErrorClusterer;
+import analysis.FlakinessDetector;
+import analysis.LatencyHistograms;
+import analysis.PlanCoverage;
+import analysis.RegressionDetector;
+import analysis.ResultComparator;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.tuple.Pair;
 import server.clients.PCtrl;
@@ -27,13 +33,23 @@ import server.profile.*;
 import server.profile.Profile;
 import server.messages.ClientMessage;
 
+import java.io.IOException;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Getter(AccessLevel.PRIVATE)
 @AllArgsConstructor
-public class QueryLogConnection {
+public class QueryLogConnection implements AutoCloseable {
+    private static final int FETCH_SIZE = 1000;
+
     @Getter
     private Connection connection;
 
@@ -41,29 +57,103 @@ public class QueryLogConnection {
         new QueryLogAdapter().setUp( url, user, password );
     }
 
+    /**
+     * Opens a connection with auto-commit disabled. Every writing method commits its own work before it returns.
+     */
     public static QueryLogConnection with( String url, String user, String password ) throws SQLException {
         Connection connection = new QueryLogAdapter().connect( url, user, password ).orElseThrow();
+        connection.setAutoCommit( false );
         return new QueryLogConnection( connection );
     }
 
+    /**
+     * @return The version of the query log schema, 0 if it has not been set up yet.
+     */
+    public int schemaVersion() throws SQLException {
+        try {
+            return new QueryLogAdapter().schemaVersion( connection );
+        } finally {
+            connection.rollback();
+        }
+    }
+
+    /**
+     * @return The largest identifier of the query log rows, see {@link IdGenerator#seed}.
+     */
+    public long maxId() throws SQLException {
+        try {
+            return new QueryLogAdapter().maxId( connection );
+        } finally {
+            connection.rollback();
+        }
+    }
+
+    /**
+     * Builds the secondary indexes of the query log that are missing, e.g. after a bulk load with deferred indexes.
+     */
+    public void createIndexes() throws SQLException {
+        new QueryLogAdapter().createIndexes( connection );
+    }
+
+    @Override
     public void close() throws SQLException {
         this.connection.commit();
         this.connection.close();
     }
 
+    /**
+     * Rolls back the open transaction and closes the connection, for a connection whose writer commits its own
+     * transactions and may still be running, such that a partial transaction of it is never committed.
+     */
+    public void abort() throws SQLException {
+        try {
+            this.connection.rollback();
+        } finally {
+            this.connection.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Transaction<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * Runs the writes of a method as a transaction of their own, committed before the method returns or rolled back on
+     * failure, such that rows written on a shared connection are visible to other connections right away.
+     */
+    private <T> T inTransaction( Transaction<T> transaction ) throws SQLException {
+        try {
+            T result = transaction.run();
+            connection.commit();
+            return result;
+        } catch ( SQLException | RuntimeException e ) {
+            try {
+                connection.rollback();
+            } catch ( SQLException rollbackException ) {
+                e.addSuppressed( rollbackException );
+            }
+            throw e;
+        }
+    }
+
+    private int executeUpdate( PolySQL polySQL, Object... args ) throws SQLException {
+        try ( PreparedStatement preparedStatement = PolySQL.prepare( getConnection(), polySQL, args ) ) {
+            return preparedStatement.executeUpdate();
+        }
+    }
+
     synchronized public void registerPctrl( PCtrl pCtrl ) throws SQLException {
         if ( log.isDebugEnabled() ) {
             log.debug( "Registering Pctrl: " + pCtrl.getPctrlKey() );
         }
-        try ( PreparedStatement preparedStatement = PolySQL.prepare(
-                getConnection(),
+        inTransaction( () -> executeUpdate(
                 PolySQL.REGISTER_PCTRL,
+                IdGenerator.nextId(),
                 pCtrl.getPctrlKey(),
                 pCtrl.getBranch(),
                 new Timestamp( pCtrl.getRegisteredAt() )
-        )) {
-            preparedStatement.execute();
-        }
+        ) );
     }
 
 //    private boolean ctrlIsSignedIn( String apiKey ) throws SQLException {
@@ -165,10 +255,22 @@ public class QueryLogConnection {
 //        return profileCompositeExists;
 //    }
 
-    synchronized public void registerPdb( PDB pdb, Profile profile ) throws SQLException {
+    /**
+     * Registers a PDB client with the configurations of its profile and the job it was handed.
+     *
+     * @param job The serialized profile handed to the client.
+     */
+    synchronized public void registerPdb( PDB pdb, Profile profile, String job ) throws SQLException {
         if ( log.isDebugEnabled() ) {
             log.debug( "Registering PDB: " + pdb.getPdbKey() + " associated with Pctrl" + pdb.getPctrlKey() );
         }
+        inTransaction( () -> {
+            insertPdb( pdb, profile, job );
+            return null;
+        } );
+    }
+
+    private void insertPdb( PDB pdb, Profile profile, String job ) throws SQLException {
 
         Pair<Long, String> schemaConfig = profile.getSchemaConfig().hashAndString();
         if ( configDoesNotExists( ConfigType.SCHEMA, schemaConfig.getLeft() ) ) {
@@ -203,6 +305,7 @@ public class QueryLogConnection {
         try ( PreparedStatement preparedStatement = PolySQL.prepare(
                 getConnection(),
                 PolySQL.REGISTER_PDB,
+                IdGenerator.nextId(),
                 pdb.getPdbKey(),
                 pdb.getBranch(),
                 new Timestamp( pdb.getRegisteredAt() ),
@@ -217,8 +320,90 @@ public class QueryLogConnection {
         )) {
             preparedStatement.execute();
         }
+
+        try ( PreparedStatement preparedStatement = PolySQL.prepare(
+                getConnection(),
+                PolySQL.INSERT_PDB_JOB,
+                pdb.getPdbKey(),
+                new Timestamp( pdb.getRegisteredAt() ),
+                job
+        )) {
+            preparedStatement.execute();
+        }
+    }
+
+    /**
+     * Returns the PCTRL clients registered since the given time, without session and with status DISCONNECTED.
+     */
+    synchronized public List<PCtrl> recentPctrls( long since ) throws SQLException {
+        List<PCtrl> pctrls = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        try (
+                PreparedStatement preparedStatement = PolySQL.prepare( getConnection(), PolySQL.GET_RECENT_PCTRLS, new Timestamp( since ) );
+                ResultSet resultSet = preparedStatement.executeQuery()
+        ) {
+            while ( resultSet.next() ) {
+                pctrls.add( new PCtrl(
+                        null,
+                        resultSet.getString( 1 ),
+                        null,
+                        null,
+                        resultSet.getString( 2 ),
+                        "DISCONNECTED",
+                        false,
+                        resultSet.getTimestamp( 3 ).getTime(),
+                        now
+                ) );
+            }
+        }
+        return pctrls;
+    }
+
+    /**
+     * Returns the PDB clients registered since the given time.
+     */
+    synchronized public List<RegisteredPdb> recentPdbs( long since ) throws SQLException {
+        List<RegisteredPdb> pdbs = new ArrayList<>();
+        try (
+                PreparedStatement preparedStatement = PolySQL.prepare( getConnection(), PolySQL.GET_RECENT_PDBS, new Timestamp( since ) );
+                ResultSet resultSet = preparedStatement.executeQuery()
+        ) {
+            while ( resultSet.next() ) {
+                pdbs.add( new RegisteredPdb(
+                        resultSet.getString( 1 ),
+                        resultSet.getString( 2 ),
+                        resultSet.getTimestamp( 3 ).getTime(),
+                        resultSet.getString( 4 ),
+                        Config.rehash( resultSet.getLong( 5 ), resultSet.getLong( 6 ), resultSet.getLong( 7 ) ),
+                        resultSet.getLong( 8 ),
+                        resultSet.getLong( 7 )
+                ) );
+            }
+        }
+        return pdbs;
     }
 
+    /**
+     * Returns the jobs handed to the PDB clients registered since the given time by PDB key.
+     */
+    synchronized public Map<String, String> recentPdbJobs( long since ) throws SQLException {
+        Map<String, String> jobs = new HashMap<>();
+        try (
+                PreparedStatement preparedStatement = PolySQL.prepare( getConnection(), PolySQL.GET_RECENT_PDB_JOBS, new Timestamp( since ) );
+                ResultSet resultSet = preparedStatement.executeQuery()
+        ) {
+            while ( resultSet.next() ) {
+                jobs.put( resultSet.getString( 1 ), resultSet.getString( 2 ) );
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * A PDB client as registered in the pdb table, the comparison key is derived from its configuration hashes.
+     */
+    public record RegisteredPdb( String pdbKey, String branch, long registeredAt, String pctrlKey, long comparisonKey, long storeConfigHash, long queryConfigHash ) {}
+
 //    /**
 //     * Issues an order for a profile and saves it to the database if it doesn't already exist. Moreover, this function
 //     * inserts newly generated configurations which are not already present in the database. If the configurations are
@@ -386,7 +571,12 @@ public class QueryLogConnection {
         return hasNext;
     }
 
-    public void insertResult( PDB pdb, ClientMessage.PDBResult pdbResult ) throws SQLException {
+    /**
+     * Inserts a deposited result together with the error and plan configurations it references.
+     *
+     * @return The hashes of the error and plan configurations of the result, each null if not present.
+     */
+    public ResultHashes insertResult( PDB pdb, ClientMessage.PDBResult pdbResult, long receivedAt ) throws SQLException {
 
         Long errorHash = null;
         if ( pdbResult.getError() != null ) {
@@ -423,22 +613,378 @@ public class QueryLogConnection {
                 PreparedStatement preparedStatement = PolySQL.prepare(
                         getConnection(),
                         PolySQL.INSERT_RESULT,
-                        UUID.randomUUID().toString(),
+                        IdGenerator.nextId(),
                         pdb.getPdbKey(),
                         pdbResult.getSeed(),
                         pdbResult.getSuccess(),
-                        new Timestamp( pdb.getUpdateTime() ),
+                        new Timestamp( receivedAt ),
                         errorHash,
                         pdbResult.getResultSetHash(),
                         logicalPlanHash,
                         physicalPlanHash,
-                        pdbResult.getActual()
+                        pdbResult.getActual(),
+                        pdbResult.getPredicted()
                 )
 
         ) {
             preparedStatement.execute();
         }
 
+        return new ResultHashes( errorHash, logicalPlanHash, physicalPlanHash );
+    }
+
+    /**
+     * Adds the counts of a batch to the result_rollups table, inserting the rows of hours that are not yet present.
+     */
+    public void addRollup( ResultRollup rollup ) throws SQLException {
+        for ( Map.Entry<ResultRollup.Key, ResultRollup.Counts> entry : rollup.counts().entrySet() ) {
+            ResultRollup.Key key = entry.getKey();
+            ResultRollup.Counts counts = entry.getValue();
+            int updated;
+            try ( PreparedStatement preparedStatement = PolySQL.prepare(
+                    getConnection(),
+                    PolySQL.UPDATE_ROLLUP,
+                    counts.results(),
+                    counts.successes(),
+                    counts.errors(),
+                    counts.execTimeSum(),
+                    counts.execTimeCount(),
+                    key.dimension().name(),
+                    key.dimensionKey(),
+                    new Timestamp( key.hourStart() )
+            )) {
+                updated = preparedStatement.executeUpdate();
+            }
+            if ( updated == 0 ) {
+                try ( PreparedStatement preparedStatement = PolySQL.prepare(
+                        getConnection(),
+                        PolySQL.INSERT_ROLLUP,
+                        key.dimension().name(),
+                        key.dimensionKey(),
+                        new Timestamp( key.hourStart() ),
+                        counts.results(),
+                        counts.successes(),
+                        counts.errors(),
+                        counts.execTimeSum(),
+                        counts.execTimeCount()
+                )) {
+                    preparedStatement.execute();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sums the rollups of every key of a dimension over the hours starting within the time window.
+     */
+    synchronized public List<ResultRollup.Row> rollupTotals( ResultRollup.Dimension dimension, long from, long to ) throws SQLException {
+        List<ResultRollup.Row> rows = new ArrayList<>();
+        try (
+                PreparedStatement preparedStatement = PolySQL.prepare(
+                        getConnection(),
+                        PolySQL.GET_ROLLUP_TOTALS,
+                        dimension.name(),
+                        new Timestamp( from ),
+                        new Timestamp( to )
+                );
+                ResultSet resultSet = preparedStatement.executeQuery()
+        ) {
+            while ( resultSet.next() ) {
+                rows.add( rollupRow( dimension, resultSet.getString( 1 ), null, resultSet, 2 ) );
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the hourly rollups of a key within the time window, ordered by hour.
+     */
+    synchronized public List<ResultRollup.Row> rollupHours( ResultRollup.Dimension dimension, String key, long from, long to ) throws SQLException {
+        List<ResultRollup.Row> rows = new ArrayList<>();
+        try (
+                PreparedStatement preparedStatement = PolySQL.prepare(
+                        getConnection(),
+                        PolySQL.GET_ROLLUP_HOURS,
+                        dimension.name(),
+                        key,
+                        new Timestamp( from ),
+                        new Timestamp( to )
+                );
+                ResultSet resultSet = preparedStatement.executeQuery()
+        ) {
+            while ( resultSet.next() ) {
+                rows.add( rollupRow( dimension, key, resultSet.getTimestamp( 1 ).getTime(), resultSet, 2 ) );
+            }
+        }
+        return rows;
+    }
+
+    private static ResultRollup.Row rollupRow( ResultRollup.Dimension dimension, String key, Long hourStart, ResultSet resultSet, int column ) throws SQLException {
+        long execTimeSum = resultSet.getLong( column + 3 );
+        long execTimeCount = resultSet.getLong( column + 4 );
+        return new ResultRollup.Row(
+                dimension.name(),
+                key,
+                hourStart,
+                resultSet.getLong( column ),
+                resultSet.getLong( column + 1 ),
+                resultSet.getLong( column + 2 ),
+                execTimeSum,
+                execTimeCount,
+                execTimeCount == 0 ? null : (double) execTimeSum / execTimeCount
+        );
+    }
+
+    /**
+     * Executes a page of a read query and hands the open cursor to the given sink, which consumes the rows one by one.
+     * The cursor is closed once the sink returns.
+     *
+     * @param query The read query.
+     * @param filter The filter narrowing the rows.
+     * @param after The key of the last row of the previous page, null for the first page.
+     * @param limit The maximum number of rows of the page, null for all rows.
+     * @param sink The consumer of the cursor.
+     */
+    public void stream( QueryLogQuery query, QueryLogQuery.Filter filter, String after, Integer limit, RowSink sink ) throws SQLException, IOException {
+        try (
+                PreparedStatement preparedStatement = query.prepare( getConnection(), filter, after, limit, FETCH_SIZE );
+                ResultSet resultSet = preparedStatement.executeQuery()
+        ) {
+            sink.accept( resultSet );
+        }
+    }
+
+    @FunctionalInterface
+    public interface RowSink {
+        void accept( ResultSet resultSet ) throws SQLException, IOException;
+    }
+
+    /**
+     * Hashes of the configurations a result references.
+     */
+    public record ResultHashes( Long errorHash, Long logicalHash, Long physicalHash ) {}
+
+    synchronized public void insertMismatch( ResultComparator.Mismatch mismatch ) throws SQLException {
+        inTransaction( () -> executeUpdate(
+                PolySQL.INSERT_MISMATCH,
+                UUID.randomUUID().toString(),
+                mismatch.pdbKey(),
+                mismatch.comparisonKey(),
+                mismatch.seed(),
+                mismatch.storeConfigHash(),
+                mismatch.resultSetHash(),
+                mismatch.otherStoreConfigHash(),
+                mismatch.otherResultSetHash(),
+                new Timestamp( mismatch.detectedAt() )
+        ) );
+    }
+
+    /**
+     * Retracts the mismatches recorded for a seed that turned out to be flaky.
+     *
+     * @return The number of retracted mismatches.
+     */
+    synchronized public int retractMismatches( long comparisonKey, long seed ) throws SQLException {
+        return inTransaction( () -> executeUpdate( PolySQL.DELETE_MISMATCHES, comparisonKey, seed ) );
+    }
+
+    synchronized public void insertFlip( FlakinessDetector.Flip flip ) throws SQLException {
+        inTransaction( () -> executeUpdate(
+                PolySQL.INSERT_FLIP,
+                UUID.randomUUID().toString(),
+                flip.pdbKey(),
+                flip.comparisonKey(),
+                flip.storeConfigHash(),
+                flip.seed(),
+                flip.previousFingerprint(),
+                flip.resultSetHash(),
+                flip.runCount(),
+                new Timestamp( flip.detectedAt() )
+        ) );
+    }
+
+    /**
+     * Adds the occurrences of changed error signatures to the error_signatures table, inserting signatures that are
+     * not yet present. The deltas are committed together or rolled back.
+     */
+    synchronized public void flushErrorSignatures( List<ErrorClusterer.ClusterDelta> deltas ) throws SQLException {
+        inTransaction( () -> {
+            writeErrorSignatures( deltas );
+            return null;
+        } );
+    }
+
+    private void writeErrorSignatures( List<ErrorClusterer.ClusterDelta> deltas ) throws SQLException {
+        for ( ErrorClusterer.ClusterDelta delta : deltas ) {
+            ErrorClusterer.ClusterSummary summary = delta.summary();
+            int updated;
+            try ( PreparedStatement preparedStatement = PolySQL.prepare(
+                    getConnection(),
+                    PolySQL.UPDATE_ERROR_SIGNATURE,
+                    delta.addedCount(),
+                    new Timestamp( summary.lastSeen() ),
+                    summary.exampleSeeds(),
+                    summary.signatureHash()
+            )) {
+                updated = preparedStatement.executeUpdate();
+            }
+            if ( updated == 0 ) {
+                try ( PreparedStatement preparedStatement = PolySQL.prepare(
+                        getConnection(),
+                        PolySQL.INSERT_ERROR_SIGNATURE,
+                        summary.signatureHash(),
+                        summary.signature(),
+                        summary.count(),
+                        new Timestamp( summary.firstSeen() ),
+                        new Timestamp( summary.lastSeen() ),
+                        summary.exampleSeeds()
+                )) {
+                    preparedStatement.execute();
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a checkpoint of the given latency histograms to the latency_histograms table.
+     */
+    synchronized public void insertLatencyCheckpoint( List<LatencyHistograms.LatencySummary> summaries, long checkpointedAt ) throws SQLException {
+        inTransaction( () -> {
+            writeLatencyCheckpoint( summaries, checkpointedAt );
+            return null;
+        } );
+    }
+
+    private void writeLatencyCheckpoint( List<LatencyHistograms.LatencySummary> summaries, long checkpointedAt ) throws SQLException {
+        for ( LatencyHistograms.LatencySummary summary : summaries ) {
+            try ( PreparedStatement preparedStatement = PolySQL.prepare(
+                    getConnection(),
+                    PolySQL.INSERT_LATENCY_HISTOGRAM,
+                    summary.type(),
+                    summary.hash(),
+                    new Timestamp( checkpointedAt ),
+                    summary.count(),
+                    summary.p50(),
+                    summary.p90(),
+                    summary.p99(),
+                    summary.max(),
+                    Arrays.stream( summary.buckets() ).mapToObj( Long::toString ).collect( Collectors.joining( "," ) )
+            )) {
+                preparedStatement.execute();
+            }
+        }
+    }
+
+    /**
+     * Writes the given plan coverage sketches to the plan_coverage table, replacing earlier states of their windows.
+     */
+    synchronized public void savePlanCoverage( List<PlanCoverage.WindowSketch> sketches ) throws SQLException {
+        inTransaction( () -> {
+            writePlanCoverage( sketches );
+            return null;
+        } );
+    }
+
+    private void writePlanCoverage( List<PlanCoverage.WindowSketch> sketches ) throws SQLException {
+        Base64.Encoder encoder = Base64.getEncoder();
+        for ( PlanCoverage.WindowSketch sketch : sketches ) {
+            String logical = encoder.encodeToString( sketch.logical() );
+            String physical = encoder.encodeToString( sketch.physical() );
+            int updated;
+            try ( PreparedStatement preparedStatement = PolySQL.prepare(
+                    getConnection(),
+                    PolySQL.UPDATE_PLAN_COVERAGE,
+                    sketch.results(),
+                    logical,
+                    physical,
+                    sketch.dimension().name(),
+                    sketch.dimensionKey(),
+                    new Timestamp( sketch.windowStart() )
+            )) {
+                updated = preparedStatement.executeUpdate();
+            }
+            if ( updated == 0 ) {
+                try ( PreparedStatement preparedStatement = PolySQL.prepare(
+                        getConnection(),
+                        PolySQL.INSERT_PLAN_COVERAGE,
+                        sketch.dimension().name(),
+                        sketch.dimensionKey(),
+                        new Timestamp( sketch.windowStart() ),
+                        sketch.results(),
+                        logical,
+                        physical
+                )) {
+                    preparedStatement.execute();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the plan coverage sketches of the windows starting at or after the given time.
+     */
+    synchronized public List<PlanCoverage.WindowSketch> loadPlanCoverage( long since ) throws SQLException {
+        Base64.Decoder decoder = Base64.getDecoder();
+        List<PlanCoverage.WindowSketch> sketches = new ArrayList<>();
+        try (
+                PreparedStatement preparedStatement = PolySQL.prepare( getConnection(), PolySQL.GET_PLAN_COVERAGE, new Timestamp( since ) );
+                ResultSet resultSet = preparedStatement.executeQuery()
+        ) {
+            while ( resultSet.next() ) {
+                sketches.add( new PlanCoverage.WindowSketch(
+                        PlanCoverage.Dimension.valueOf( resultSet.getString( 1 ) ),
+                        resultSet.getString( 2 ),
+                        resultSet.getTimestamp( 3 ).getTime(),
+                        resultSet.getLong( 4 ),
+                        decoder.decode( resultSet.getString( 5 ) ),
+                        decoder.decode( resultSet.getString( 6 ) )
+                ) );
+            }
+        }
+        return sketches;
+    }
+
+    /**
+     * Reads the regressions flagged against the given baseline branch, newest first.
+     */
+    synchronized public List<RegressionDetector.Regression> loadRegressions( String baselineBranch ) throws SQLException {
+        List<RegressionDetector.Regression> regressions = new ArrayList<>();
+        try (
+                PreparedStatement preparedStatement = PolySQL.prepare( getConnection(), PolySQL.GET_REGRESSIONS, baselineBranch );
+                ResultSet resultSet = preparedStatement.executeQuery()
+        ) {
+            while ( resultSet.next() ) {
+                regressions.add( new RegressionDetector.Regression(
+                        resultSet.getString( 1 ),
+                        resultSet.getString( 2 ),
+                        resultSet.getLong( 3 ),
+                        resultSet.getLong( 4 ),
+                        resultSet.getDouble( 5 ),
+                        resultSet.getDouble( 6 ),
+                        resultSet.getDouble( 7 ),
+                        resultSet.getDouble( 8 ),
+                        true,
+                        resultSet.getTimestamp( 9 ).getTime()
+                ) );
+            }
+        }
+        return regressions;
+    }
+
+    synchronized public void insertRegression( RegressionDetector.Regression regression ) throws SQLException {
+        inTransaction( () -> executeUpdate(
+                PolySQL.INSERT_REGRESSION,
+                UUID.randomUUID().toString(),
+                regression.branch(),
+                regression.baselineBranch(),
+                regression.planHash(),
+                regression.pairCount(),
+                regression.geoMeanRatio(),
+                regression.p50Ratio(),
+                regression.p90Ratio(),
+                regression.tStatistic(),
+                new Timestamp( regression.detectedAt() )
+        ) );
     }
 
 
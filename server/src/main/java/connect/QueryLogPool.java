@@ -0,0 +1,148 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package connect;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of read connections to the query log, shared by the requests that read from it instead of opening a
+ * connection per request. Connections are opened lazily and at most {@code size} of them are lent out at once, further
+ * borrowers wait up to the given timeout. A returned connection ends its transaction and is kept for the next borrower;
+ * connections that fail to do so, or are no longer valid when borrowed, are discarded.
+ */
+@Slf4j
+public class QueryLogPool implements AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final Semaphore permits;
+    private final Deque<QueryLogConnection> idle = new ArrayDeque<>();
+    private boolean closed;
+
+    public QueryLogPool( String url, String user, String password, int size ) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.permits = new Semaphore( size, true );
+    }
+
+    /**
+     * Borrows a connection, to be returned by closing the lease.
+     *
+     * @param timeoutMillis The time to wait for a connection while all of them are lent out.
+     * @throws SQLTransientConnectionException if no connection became available in time.
+     * @throws SQLException if a new connection cannot be opened.
+     */
+    public Lease borrow( long timeoutMillis ) throws SQLException {
+        try {
+            if ( ! permits.tryAcquire( timeoutMillis, TimeUnit.MILLISECONDS ) ) {
+                throw new SQLTransientConnectionException( "No query log connection available." );
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException( "Interrupted while waiting for a query log connection.", e );
+        }
+        try {
+            QueryLogConnection connection;
+            while ( ( connection = poll() ) != null ) {
+                if ( connection.getConnection().isValid( VALIDATION_TIMEOUT_SECONDS ) ) {
+                    return new Lease( connection );
+                }
+                discard( connection );
+            }
+            return new Lease( QueryLogConnection.with( url, user, password ) );
+        } catch ( SQLException | RuntimeException e ) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private synchronized QueryLogConnection poll() {
+        return idle.pollFirst();
+    }
+
+    private void giveBack( QueryLogConnection connection ) {
+        try {
+            connection.getConnection().rollback();
+            synchronized ( this ) {
+                if ( ! closed ) {
+                    idle.addFirst( connection );
+                    return;
+                }
+            }
+        } catch ( SQLException e ) {
+            log.debug( "Discarding query log connection: ", e );
+        } finally {
+            permits.release();
+        }
+        discard( connection );
+    }
+
+    private static void discard( QueryLogConnection connection ) {
+        try {
+            connection.getConnection().close();
+        } catch ( SQLException e ) {
+            log.debug( "Could not close query log connection: ", e );
+        }
+    }
+
+    /**
+     * Closes the idle connections. Connections lent out are closed once they are returned.
+     */
+    @Override
+    public void close() {
+        synchronized ( this ) {
+            closed = true;
+        }
+        QueryLogConnection connection;
+        while ( ( connection = poll() ) != null ) {
+            discard( connection );
+        }
+    }
+
+    /**
+     * A borrowed connection, returned to the pool on close.
+     */
+    public final class Lease implements AutoCloseable {
+        @Getter
+        private final QueryLogConnection connection;
+        private boolean returned;
+
+        private Lease( QueryLogConnection connection ) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void close() {
+            if ( ! returned ) {
+                returned = true;
+                giveBack( connection );
+            }
+        }
+    }
+
+}
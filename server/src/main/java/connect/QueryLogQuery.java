@@ -0,0 +1,184 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package connect;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import metrics.TimedStatement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read queries over the query log that are exposed through the REST API. Every query selects from a fixed join and is
+ * narrowed by an optional {@link Filter}. Pages are addressed by keyset pagination on a unique key column: a page
+ * holds the rows with a key greater than the last key of the previous page, ordered by that key.
+ */
+@AllArgsConstructor
+public enum QueryLogQuery {
+    /**
+     * <pre>
+     * SELECT r.resultKey, r.pdbKey, p.branch, r.seed, r.success, r.receivedAt, r.errorHash, r.resultSetHash,
+     *        r.logicalHash, r.physicalHash, r.execTime, r.predicted
+     * FROM polyfier.results r JOIN polyfier.pdb p ON r.pdbKey = p.pdbKey
+     * </pre>
+     */
+    RESULTS("""
+                SELECT r.resultKey, r.pdbKey, p.branch, r.seed, r.success, r.receivedAt, r.errorHash, r.resultSetHash,
+                       r.logicalHash, r.physicalHash, r.execTime, r.predicted
+                FROM polyfier.results r JOIN polyfier.pdb p ON r.pdbKey = p.pdbKey
+            """, "r.resultKey", true, "r.receivedAt", true ),
+    /**
+     * <pre>
+     * SELECT r.resultKey, r.pdbKey, p.branch, r.seed, r.receivedAt, r.errorHash, e.error_config
+     * FROM polyfier.results r JOIN polyfier.pdb p ON r.pdbKey = p.pdbKey
+     *      JOIN polyfier.error_configs e ON r.errorHash = e.error_config_hash
+     * </pre>
+     */
+    ERRORS("""
+                SELECT r.resultKey, r.pdbKey, p.branch, r.seed, r.receivedAt, r.errorHash, e.error_config
+                FROM polyfier.results r JOIN polyfier.pdb p ON r.pdbKey = p.pdbKey
+                     JOIN polyfier.error_configs e ON r.errorHash = e.error_config_hash
+            """, "r.resultKey", true, "r.receivedAt", false ),
+    /**
+     * <pre>
+     * SELECT r.resultKey, r.pdbKey, p.branch, r.seed, r.success, r.receivedAt, r.execTime, r.predicted,
+     *        r.logicalHash, l.logical_config, r.physicalHash, f.physical_config
+     * FROM polyfier.results r JOIN polyfier.pdb p ON r.pdbKey = p.pdbKey
+     *      LEFT JOIN polyfier.logical_configs l ON r.logicalHash = l.logical_config_hash
+     *      LEFT JOIN polyfier.physical_configs f ON r.physicalHash = f.physical_config_hash
+     * </pre>
+     */
+    PLANS("""
+                SELECT r.resultKey, r.pdbKey, p.branch, r.seed, r.success, r.receivedAt, r.execTime, r.predicted,
+                       r.logicalHash, l.logical_config, r.physicalHash, f.physical_config
+                FROM polyfier.results r JOIN polyfier.pdb p ON r.pdbKey = p.pdbKey
+                     LEFT JOIN polyfier.logical_configs l ON r.logicalHash = l.logical_config_hash
+                     LEFT JOIN polyfier.physical_configs f ON r.physicalHash = f.physical_config_hash
+            """, "r.resultKey", true, "r.receivedAt", true ),
+    /**
+     * <pre>
+     * SELECT m.mismatchKey, m.pdbKey, p.branch, m.comparisonKey, m.seed, m.storeConfigHash, m.resultSetHash,
+     *        m.otherStoreConfigHash, m.otherResultSetHash, m.detectedAt
+     * FROM polyfier.mismatches m JOIN polyfier.pdb p ON m.pdbKey = p.pdbKey
+     * </pre>
+     */
+    MISMATCHES("""
+                SELECT m.mismatchKey, m.pdbKey, p.branch, m.comparisonKey, m.seed, m.storeConfigHash, m.resultSetHash,
+                       m.otherStoreConfigHash, m.otherResultSetHash, m.detectedAt
+                FROM polyfier.mismatches m JOIN polyfier.pdb p ON m.pdbKey = p.pdbKey
+            """, "m.mismatchKey", false, "m.detectedAt", false );
+
+    private final String select;
+    @Getter
+    private final String keyColumn;
+    // Result keys are time-ordered ids, see IdGenerator
+    private final boolean numericKey;
+    private final String timeColumn;
+    private final boolean hasSuccess;
+
+    /**
+     * Prepares a page of the query.
+     *
+     * @param connection The connection to prepare the statement on.
+     * @param filter The filter narrowing the rows.
+     * @param after The key of the last row of the previous page, null for the first page.
+     * @param limit The maximum number of rows of the page, null for all rows.
+     * @param fetchSize The number of rows the driver fetches per round trip.
+     * @return The prepared statement, ready to be executed.
+     * @throws IllegalArgumentException if the filter uses a condition the query does not support or the key is malformed.
+     */
+    public PreparedStatement prepare( Connection connection, Filter filter, String after, Integer limit, int fetchSize ) throws SQLException {
+        // pdbKey and seed are taken from the table of the key column, the branch from the joined polyfier.pdb.
+        String prefix = keyColumn.substring( 0, keyColumn.indexOf( '.' ) + 1 );
+        List<String> conditions = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+        if ( after != null ) {
+            conditions.add( keyColumn + " > ?" );
+            parameters.add( numericKey ? Long.valueOf( after ) : after );
+        }
+        if ( filter.getPdbKey() != null ) {
+            conditions.add( prefix + "pdbKey = ?" );
+            parameters.add( filter.getPdbKey() );
+        }
+        if ( filter.getBranch() != null ) {
+            conditions.add( "p.branch = ?" );
+            parameters.add( filter.getBranch() );
+        }
+        if ( filter.getSeedFrom() != null ) {
+            conditions.add( prefix + "seed >= ?" );
+            parameters.add( filter.getSeedFrom() );
+        }
+        if ( filter.getSeedTo() != null ) {
+            conditions.add( prefix + "seed <= ?" );
+            parameters.add( filter.getSeedTo() );
+        }
+        if ( filter.getSuccess() != null ) {
+            if ( ! hasSuccess ) {
+                throw new IllegalArgumentException( "Filter success is not supported by " + name().toLowerCase() );
+            }
+            conditions.add( "r.success = ?" );
+            parameters.add( filter.getSuccess() );
+        }
+        if ( filter.getFrom() != null ) {
+            conditions.add( timeColumn + " >= ?" );
+            parameters.add( new Timestamp( filter.getFrom() ) );
+        }
+        if ( filter.getTo() != null ) {
+            conditions.add( timeColumn + " < ?" );
+            parameters.add( new Timestamp( filter.getTo() ) );
+        }
+
+        StringBuilder sql = new StringBuilder( select );
+        if ( ! conditions.isEmpty() ) {
+            sql.append( "WHERE " ).append( String.join( " AND ", conditions ) ).append( "\n" );
+        }
+        sql.append( "ORDER BY " ).append( keyColumn ).append( "\n" );
+        if ( limit != null ) {
+            sql.append( "LIMIT " ).append( limit );
+        }
+
+        PreparedStatement preparedStatement = connection.prepareStatement( sql.toString() );
+        for ( int i = 0; i < parameters.size(); i++ ) {
+            preparedStatement.setObject( i + 1, parameters.get( i ) );
+        }
+        preparedStatement.setFetchSize( fetchSize );
+        return TimedStatement.wrap( preparedStatement, "QUERY_" + name() );
+    }
+
+    /**
+     * Conditions a query is narrowed by, every condition is optional. The time window is half-open, from inclusive and
+     * to exclusive, in epoch milliseconds.
+     */
+    @Getter
+    @Builder
+    public static class Filter {
+        private final String pdbKey;
+        private final String branch;
+        private final Long seedFrom;
+        private final Long seedTo;
+        private final Boolean success;
+        private final Long from;
+        private final Long to;
+    }
+
+}
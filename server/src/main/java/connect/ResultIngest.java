@@ -0,0 +1,264 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package connect;
+
+import analysis.ResultAnalysis;
+import lombok.extern.slf4j.Slf4j;
+import server.clients.PDB;
+import server.messages.ClientMessage;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batched ingest of deposited results. Deposits are put on a bounded queue, which blocks the depositing client while
+ * the queue is full. A single writer thread drains the queue in batches and writes every batch, the configurations it
+ * references and its {@link ResultRollup} increments in one transaction on a dedicated connection. A batch that fails
+ * twice is written row by row. Committed results are fed to the {@link ResultAnalysis} afterwards.
+ * <p>
+ * The queue accepts deposits before the writer is started, such that results are buffered while the backend is still
+ * initializing. Until then, {@link #offer} rejects deposits once the queue is full instead of blocking.
+ * <p>
+ * {@link #stop} rejects further deposits and drains the queue within a deadline before it closes the connection.
+ */
+@Slf4j
+public class ResultIngest {
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final int BATCH_SIZE = 500;
+    private static final long POLL_MILLIS = 200;
+    private static final long INTERRUPT_JOIN_MILLIS = 5000;
+
+    private final BlockingQueue<Deposit> queue = new ArrayBlockingQueue<>( QUEUE_CAPACITY );
+    private final Thread writer;
+    // Set before the writer is started
+    private QueryLogConnection queryLogConnection;
+    private ResultAnalysis resultAnalysis;
+    private volatile boolean started;
+    private volatile boolean stopping;
+    private final AtomicLong writtenResults = new AtomicLong();
+    private final AtomicLong failedResults = new AtomicLong();
+
+    public ResultIngest() {
+        this.writer = new Thread( this::run, "result-ingest" );
+        this.writer.setDaemon( true );
+    }
+
+    /**
+     * Starts writing the queued results.
+     *
+     * @param queryLogConnection The connection dedicated to the ingest, its auto-commit is disabled.
+     * @param resultAnalysis The analyses committed results are fed to.
+     */
+    public synchronized void start( QueryLogConnection queryLogConnection, ResultAnalysis resultAnalysis ) throws SQLException {
+        if ( started ) {
+            throw new IllegalStateException( "Result ingest already started." );
+        }
+        this.queryLogConnection = queryLogConnection;
+        this.resultAnalysis = resultAnalysis;
+        this.queryLogConnection.getConnection().setAutoCommit( false );
+        writer.start();
+        started = true;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Queues a deposited result, waiting while the queue is full.
+     *
+     * @param pdb The PolyphenyDB client that deposited the result.
+     * @param result The deposited result.
+     * @param receivedAt The time the result was received at.
+     * @return false if the ingest is stopping and the result was not queued.
+     * @throws InterruptedException if interrupted while waiting for space in the queue.
+     */
+    public boolean put( PDB pdb, ClientMessage.PDBResult result, long receivedAt ) throws InterruptedException {
+        Deposit deposit = new Deposit( pdb, result, receivedAt );
+        while ( ! stopping ) {
+            if ( queue.offer( deposit, POLL_MILLIS, TimeUnit.MILLISECONDS ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Queues a deposited result if there is space in the queue.
+     *
+     * @return false if the queue is full.
+     */
+    public boolean offer( PDB pdb, ClientMessage.PDBResult result, long receivedAt ) {
+        return ! stopping && queue.offer( new Deposit( pdb, result, receivedAt ) );
+    }
+
+    /**
+     * Rejects further deposits, writes the queued results and closes the connection.
+     *
+     * @param deadlineMillis The time in epoch millis by which the queue has to be drained.
+     * @return The number of queued results that could not be written before the deadline, they are logged as lost.
+     */
+    public int stop( long deadlineMillis ) throws InterruptedException {
+        stopping = true;
+        if ( started ) {
+            drain( deadlineMillis );
+        }
+        List<Deposit> lost = new ArrayList<>();
+        queue.drainTo( lost );
+        for ( Deposit deposit : lost ) {
+            log.error( "Lost result of seed " + deposit.result().getSeed() + " of PDB " + deposit.pdb().getPdbKey() + "." );
+        }
+        failedResults.addAndGet( lost.size() );
+        return lost.size();
+    }
+
+    private void drain( long deadlineMillis ) throws InterruptedException {
+        try {
+            writer.join( Math.max( 1, deadlineMillis - System.currentTimeMillis() ) );
+            if ( writer.isAlive() ) {
+                writer.interrupt();
+                writer.join( INTERRUPT_JOIN_MILLIS );
+                if ( writer.isAlive() ) {
+                    // Stuck in a query that ignores the interrupt, closing the connection below should release it
+                    log.warn( "Result ingest did not stop within " + INTERRUPT_JOIN_MILLIS + "ms of its interrupt." );
+                }
+            }
+        } finally {
+            // Only the writer commits, a batch it did not finish is rolled back and its results are lost
+            try {
+                queryLogConnection.abort();
+            } catch ( SQLException e ) {
+                log.error( "Could not close the ingest connection: ", e );
+            }
+        }
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public long writtenResults() {
+        return writtenResults.get();
+    }
+
+    public long failedResults() {
+        return failedResults.get();
+    }
+
+    private void run() {
+        List<Deposit> batch = new ArrayList<>( BATCH_SIZE );
+        while ( ! Thread.currentThread().isInterrupted() ) {
+            try {
+                Deposit first = queue.poll( POLL_MILLIS, TimeUnit.MILLISECONDS );
+                if ( first == null ) {
+                    // Results queued after the poll timed out are still written
+                    if ( stopping && queue.isEmpty() ) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add( first );
+                queue.drainTo( batch, BATCH_SIZE - 1 );
+                write( batch );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            } catch ( RuntimeException e ) {
+                // The writer must survive a faulty batch, otherwise depositing clients block forever
+                log.error( "Unexpected error while ingesting results: ", e );
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes a batch in one transaction. A failed batch is retried once, e.g. after a transient failure of the
+     * connection, and then written row by row, such that a single faulty result does not take the whole batch with it.
+     * Only the results that cannot be written on their own are counted as failed.
+     */
+    private void write( List<Deposit> batch ) {
+        List<QueryLogConnection.ResultHashes> hashes = writeTransaction( batch );
+        if ( hashes == null ) {
+            hashes = writeTransaction( batch );
+        }
+        if ( hashes != null ) {
+            writtenResults.addAndGet( batch.size() );
+            if ( log.isDebugEnabled() ) {
+                log.debug( "Wrote a batch of " + batch.size() + " results." );
+            }
+            analyze( batch, hashes );
+            return;
+        }
+
+        log.warn( "Writing the batch of " + batch.size() + " results row by row." );
+        for ( Deposit deposit : batch ) {
+            List<Deposit> row = List.of( deposit );
+            List<QueryLogConnection.ResultHashes> rowHashes = writeTransaction( row );
+            if ( rowHashes == null ) {
+                log.error( "Lost result of seed " + deposit.result().getSeed() + " of PDB " + deposit.pdb().getPdbKey() + "." );
+                failedResults.incrementAndGet();
+            } else {
+                writtenResults.incrementAndGet();
+                analyze( row, rowHashes );
+            }
+        }
+    }
+
+    /**
+     * @return The hashes of the written results, or null if the transaction failed and was rolled back.
+     */
+    private List<QueryLogConnection.ResultHashes> writeTransaction( List<Deposit> deposits ) {
+        List<QueryLogConnection.ResultHashes> hashes = new ArrayList<>( deposits.size() );
+        ResultRollup rollup = new ResultRollup();
+        try {
+            for ( Deposit deposit : deposits ) {
+                hashes.add( queryLogConnection.insertResult( deposit.pdb(), deposit.result(), deposit.receivedAt() ) );
+                rollup.add( deposit.pdb(), deposit.result(), deposit.receivedAt() );
+            }
+            queryLogConnection.addRollup( rollup );
+            queryLogConnection.getConnection().commit();
+            return hashes;
+        } catch ( SQLException e ) {
+            log.error( "Could not write " + deposits.size() + " results: ", e );
+            try {
+                queryLogConnection.getConnection().rollback();
+            } catch ( SQLException rollbackException ) {
+                log.error( "Could not roll back the results: ", rollbackException );
+            }
+            return null;
+        }
+    }
+
+    private void analyze( List<Deposit> deposits, List<QueryLogConnection.ResultHashes> hashes ) {
+        for ( int i = 0; i < deposits.size(); i++ ) {
+            Deposit deposit = deposits.get( i );
+            try {
+                resultAnalysis.analyze( deposit.pdb(), deposit.result(), hashes.get( i ) );
+            } catch ( SQLException e ) {
+                log.error( "Could not analyze result of seed " + deposit.result().getSeed() + ": ", e );
+            }
+        }
+    }
+
+    private record Deposit( PDB pdb, ClientMessage.PDBResult result, long receivedAt ) {}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package connect;
+
+import server.clients.PDB;
+import server.messages.ClientMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The increments a batch of results adds to the result_rollups table. Results are counted per PolyphenyDB client,
+ * store configuration and query configuration and hour, such that reports read a few rollup rows instead of
+ * aggregating the results table.
+ */
+public class ResultRollup {
+    public static final long HOUR_MILLIS = 60L * 60 * 1000;
+
+    private final Map<Key, Counts> counts = new HashMap<>();
+
+    public enum Dimension {
+        PDB,
+        STORE,
+        QUERY
+    }
+
+    /**
+     * Counts a result.
+     *
+     * @param pdb The PolyphenyDB client that deposited the result.
+     * @param result The deposited result.
+     * @param receivedAt The time the result was received at.
+     */
+    public void add( PDB pdb, ClientMessage.PDBResult result, long receivedAt ) {
+        long hourStart = receivedAt - Math.floorMod( receivedAt, HOUR_MILLIS );
+        countsOf( Dimension.PDB, pdb.getPdbKey(), hourStart ).add( result );
+        countsOf( Dimension.STORE, Long.toString( pdb.getStoreConfigHash() ), hourStart ).add( result );
+        countsOf( Dimension.QUERY, Long.toString( pdb.getQueryConfigHash() ), hourStart ).add( result );
+    }
+
+    private Counts countsOf( Dimension dimension, String dimensionKey, long hourStart ) {
+        return counts.computeIfAbsent( new Key( dimension, dimensionKey, hourStart ), key -> new Counts() );
+    }
+
+    public Map<Key, Counts> counts() {
+        return counts;
+    }
+
+    public boolean isEmpty() {
+        return counts.isEmpty();
+    }
+
+    public record Key( Dimension dimension, String dimensionKey, long hourStart ) {}
+
+    public static class Counts {
+        private long results;
+        private long successes;
+        private long errors;
+        private long execTimeSum;
+        private long execTimeCount;
+
+        private void add( ClientMessage.PDBResult result ) {
+            results++;
+            if ( Boolean.TRUE.equals( result.getSuccess() ) ) {
+                successes++;
+            }
+            if ( result.getError() != null ) {
+                errors++;
+            }
+            if ( result.getActual() != null ) {
+                execTimeSum += result.getActual();
+                execTimeCount++;
+            }
+        }
+
+        public long results() {
+            return results;
+        }
+
+        public long successes() {
+            return successes;
+        }
+
+        public long errors() {
+            return errors;
+        }
+
+        public long execTimeSum() {
+            return execTimeSum;
+        }
+
+        public long execTimeCount() {
+            return execTimeCount;
+        }
+    }
+
+    /**
+     * Rolled up counts of a dimension key, either of a single hour or summed over a time window.
+     */
+    public record Row(
+            String dimension,
+            String key,
+            Long hourStart,
+            long results,
+            long successes,
+            long errors,
+            long execTimeSum,
+            long execTimeCount,
+            Double meanExecTime
+    ) {}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package export;
+
+import export.ColumnarWriter.Column;
+import export.ColumnarWriter.ColumnType;
+import lombok.Getter;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reader of the columnar file format written by the {@link ColumnarWriter}, row by row. A single row group is decoded
+ * at a time. Files without footer, e.g. of an aborted export, or whose footer disagrees with the rows read are
+ * rejected once the reader reaches their end.
+ */
+public class ColumnarReader implements Closeable {
+    private final DataInputStream in;
+    @Getter
+    private final List<Column> columns;
+    private final List<List<Object>> dictionaries = new ArrayList<>();
+
+    private Object[][] group;
+    private int groupRows;
+    private int groupRow;
+    private long groupedRows;
+    @Getter
+    private long rowCount;
+    private boolean finished;
+
+    /**
+     * @param in The stream the file is read from, closed with the reader.
+     * @throws IOException if the stream does not start with the header of a columnar file.
+     */
+    public ColumnarReader( InputStream in ) throws IOException {
+        this.in = new DataInputStream( in );
+        byte[] magic = this.in.readNBytes( ColumnarWriter.MAGIC.length );
+        if ( ! Arrays.equals( magic, ColumnarWriter.MAGIC ) ) {
+            throw new IOException( "Not a columnar file." );
+        }
+        int columnCount = this.in.readInt();
+        List<Column> columns = new ArrayList<>( columnCount );
+        ColumnType[] types = ColumnType.values();
+        for ( int i = 0; i < columnCount; i++ ) {
+            String name = this.in.readUTF();
+            int type = this.in.readUnsignedByte();
+            if ( type >= types.length ) {
+                throw new IOException( "Unknown type " + type + " of column " + name );
+            }
+            columns.add( new Column( name, types[type] ) );
+            dictionaries.add( new ArrayList<>() );
+        }
+        this.columns = List.copyOf( columns );
+    }
+
+    /**
+     * Reads the next row.
+     *
+     * @return One value per column, a Long, Boolean or String according to the column type, or null. Null once all
+     * rows are read.
+     * @throws EOFException if the file ends before its footer.
+     * @throws IOException if the file cannot be read or is corrupt.
+     */
+    public Object[] readRow() throws IOException {
+        while ( groupRow == groupRows ) {
+            if ( finished ) {
+                return null;
+            }
+            readRowGroup();
+        }
+        Object[] row = new Object[columns.size()];
+        for ( int i = 0; i < row.length; i++ ) {
+            row[i] = group[i][groupRow];
+        }
+        groupRow++;
+        rowCount++;
+        return row;
+    }
+
+    private void readRowGroup() throws IOException {
+        int rows = in.readInt();
+        groupRow = 0;
+        if ( rows == 0 ) {
+            long totalRows = in.readLong();
+            if ( totalRows != groupedRows ) {
+                throw new IOException( "Footer counts " + totalRows + " rows but the file holds " + groupedRows );
+            }
+            groupRows = 0;
+            finished = true;
+            return;
+        }
+        if ( rows < 0 ) {
+            throw new IOException( "Invalid row group size " + rows );
+        }
+        group = new Object[columns.size()][];
+        for ( int i = 0; i < group.length; i++ ) {
+            int blockLength = in.readInt();
+            byte[] block = in.readNBytes( blockLength );
+            if ( block.length != blockLength ) {
+                throw new EOFException( "Columnar file ends within a row group." );
+            }
+            try ( DataInputStream data = new DataInputStream( new InflaterInputStream( new ByteArrayInputStream( block ) ) ) ) {
+                group[i] = readBlock( data, columns.get( i ).type(), dictionaries.get( i ), rows );
+            }
+        }
+        groupRows = rows;
+        groupedRows += rows;
+    }
+
+    private static Object[] readBlock( DataInputStream data, ColumnType type, List<Object> dictionary, int rows ) throws IOException {
+        byte[] nulls = new byte[( rows + 7 ) >> 3];
+        data.readFully( nulls );
+        boolean dictionaryEncoded = false;
+        if ( type == ColumnType.DICTIONARY_LONG || type == ColumnType.DICTIONARY_STRING ) {
+            dictionaryEncoded = data.readByte() == ColumnarWriter.DICTIONARY_ENCODING;
+            if ( dictionaryEncoded ) {
+                int entryCount = data.readInt();
+                for ( int i = 0; i < entryCount; i++ ) {
+                    dictionary.add( type == ColumnType.DICTIONARY_LONG ? (Object) data.readLong() : data.readUTF() );
+                }
+            }
+        }
+        Object[] values = new Object[rows];
+        for ( int row = 0; row < rows; row++ ) {
+            if ( ( nulls[row >> 3] & ( 1 << ( row & 7 ) ) ) != 0 ) {
+                continue;
+            }
+            if ( dictionaryEncoded ) {
+                int id = data.readInt();
+                if ( id < 0 || id >= dictionary.size() ) {
+                    throw new IOException( "Unknown dictionary id " + id );
+                }
+                values[row] = dictionary.get( id );
+            } else {
+                values[row] = switch ( type ) {
+                    case LONG, DICTIONARY_LONG -> data.readLong();
+                    case BOOLEAN -> data.readByte() != 0;
+                    case STRING, DICTIONARY_STRING -> data.readUTF();
+                };
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
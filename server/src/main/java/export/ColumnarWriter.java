@@ -0,0 +1,273 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package export;
+
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writer of a simple compressed columnar file format. Rows are buffered into row groups of a fixed size; a full row
+ * group is written column by column, every column as its own deflate compressed block, such that the memory held by
+ * the writer is bounded by a single row group and the dictionaries. Files are read with the {@link ColumnarReader}.
+ * <p>
+ * Layout, all numbers big-endian:
+ * <pre>
+ * file      := MAGIC columnCount:int ( name:utf type:byte ){columnCount} rowGroup* 0:int totalRows:long
+ * rowGroup  := rowCount:int ( blockLength:int deflate(block) ){columnCount}
+ * block     := nullBitmap:byte[ceil(rowCount / 8)] encoding:byte? dictionary? value*
+ * dictionary:= entryCount:int entry{entryCount}
+ * </pre>
+ * Values are only written for non-null rows. Blocks of dictionary columns start with their encoding. Dictionary
+ * encoded blocks hold the entries that are new in the row group in front of their values, the values are then the int
+ * ids of the entries, assigned in order of first appearance over the whole file. Once a dictionary holds the maximum
+ * number of entries, the column falls back to plain encoded blocks from the next row group on and the dictionary is
+ * dropped. Long values are written as long, booleans as byte and strings as modified UTF-8.
+ * <p>
+ * The footer is only written by {@link #close()}, a file cut off by an {@link #abort() aborted} export has none.
+ */
+public class ColumnarWriter implements Closeable {
+    static final byte[] MAGIC = { 'P', 'F', 'C', 'O', 'L', '0', '0', '2' };
+    static final byte DICTIONARY_ENCODING = 0;
+    static final byte PLAIN_ENCODING = 1;
+    public static final int DEFAULT_ROW_GROUP_SIZE = 1 << 16;
+    public static final int DEFAULT_MAX_DICTIONARY_SIZE = 1 << 16;
+
+    private final DataOutputStream out;
+    private final int rowGroupSize;
+    private final ColumnBuffer[] buffers;
+
+    private int groupRows;
+    @Getter
+    private long rowCount;
+    private boolean closed;
+
+    /**
+     * @param out The stream the file is written to, closed with the writer.
+     * @param columns The columns of the file.
+     * @param rowGroupSize The number of rows buffered before they are written.
+     */
+    public ColumnarWriter( OutputStream out, List<Column> columns, int rowGroupSize ) throws IOException {
+        this( out, columns, rowGroupSize, DEFAULT_MAX_DICTIONARY_SIZE );
+    }
+
+    /**
+     * @param out The stream the file is written to, closed with the writer.
+     * @param columns The columns of the file.
+     * @param rowGroupSize The number of rows buffered before they are written.
+     * @param maxDictionarySize The number of entries after which dictionary columns fall back to plain encoding.
+     */
+    public ColumnarWriter( OutputStream out, List<Column> columns, int rowGroupSize, int maxDictionarySize ) throws IOException {
+        this.out = new DataOutputStream( out );
+        this.rowGroupSize = rowGroupSize;
+        this.buffers = new ColumnBuffer[columns.size()];
+        for ( int i = 0; i < buffers.length; i++ ) {
+            buffers[i] = new ColumnBuffer( columns.get( i ).type(), maxDictionarySize );
+        }
+
+        this.out.write( MAGIC );
+        this.out.writeInt( columns.size() );
+        for ( Column column : columns ) {
+            this.out.writeUTF( column.name() );
+            this.out.writeByte( column.type().ordinal() );
+        }
+    }
+
+    /**
+     * Appends a row.
+     *
+     * @param values One value per column, a Long, Boolean or String according to the column type, or null.
+     */
+    public void writeRow( Object... values ) throws IOException {
+        if ( values.length != buffers.length ) {
+            throw new IllegalArgumentException( "Expected " + buffers.length + " values but got " + values.length );
+        }
+        for ( int i = 0; i < buffers.length; i++ ) {
+            buffers[i].add( groupRows, values[i] );
+        }
+        groupRows++;
+        rowCount++;
+        if ( groupRows == rowGroupSize ) {
+            writeRowGroup();
+        }
+    }
+
+    private void writeRowGroup() throws IOException {
+        out.writeInt( groupRows );
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        for ( ColumnBuffer buffer : buffers ) {
+            compressed.reset();
+            Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+            try ( DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream( compressed, deflater ) ) {
+                buffer.writeTo( deflaterOutputStream, groupRows );
+            } finally {
+                deflater.end();
+            }
+            out.writeInt( compressed.size() );
+            compressed.writeTo( out );
+            buffer.reset();
+        }
+        groupRows = 0;
+    }
+
+    /**
+     * Writes the buffered rows and the footer, and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if ( closed ) {
+            return;
+        }
+        closed = true;
+        try {
+            if ( groupRows > 0 ) {
+                writeRowGroup();
+            }
+            out.writeInt( 0 );
+            out.writeLong( rowCount );
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Closes the underlying stream without writing the buffered rows and the footer, e.g. if the rows cannot be read
+     * to the end. Readers reject the incomplete file.
+     */
+    public void abort() throws IOException {
+        if ( closed ) {
+            return;
+        }
+        closed = true;
+        out.close();
+    }
+
+    public enum ColumnType {
+        LONG,
+        BOOLEAN,
+        STRING,
+        DICTIONARY_LONG,
+        DICTIONARY_STRING
+    }
+
+    public record Column( String name, ColumnType type ) {}
+
+    /**
+     * Values of a single column of the current row group together with its null bitmap. Dictionary columns keep their
+     * dictionary over the whole file and the entries added in the current row group, until it holds the maximum number
+     * of entries. As the switch to plain encoding happens between row groups, a dictionary holds at most the maximum
+     * number of entries plus a row group.
+     */
+    private static class ColumnBuffer {
+        private final ColumnType type;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream values = new DataOutputStream( bytes );
+        private byte[] nulls = new byte[64];
+
+        private final int maxDictionarySize;
+        private final boolean dictionaryType;
+        private Map<Object, Integer> dictionary = new HashMap<>();
+        private final ByteArrayOutputStream newEntryBytes = new ByteArrayOutputStream();
+        private final DataOutputStream newEntries = new DataOutputStream( newEntryBytes );
+        private int newEntryCount;
+
+        private ColumnBuffer( ColumnType type, int maxDictionarySize ) {
+            this.type = type;
+            this.maxDictionarySize = maxDictionarySize;
+            this.dictionaryType = type == ColumnType.DICTIONARY_LONG || type == ColumnType.DICTIONARY_STRING;
+        }
+
+        private boolean isPlain() {
+            return dictionary == null;
+        }
+
+        private void add( int row, Object value ) throws IOException {
+            if ( value == null ) {
+                if ( ( row >> 3 ) >= nulls.length ) {
+                    nulls = Arrays.copyOf( nulls, Math.max( nulls.length << 1, ( row >> 3 ) + 1 ) );
+                }
+                nulls[row >> 3] |= (byte) ( 1 << ( row & 7 ) );
+                return;
+            }
+            switch ( type ) {
+                case LONG -> values.writeLong( (Long) value );
+                case BOOLEAN -> values.writeByte( (Boolean) value ? 1 : 0 );
+                case STRING -> values.writeUTF( (String) value );
+                case DICTIONARY_LONG, DICTIONARY_STRING -> {
+                    if ( isPlain() ) {
+                        if ( type == ColumnType.DICTIONARY_LONG ) {
+                            values.writeLong( (Long) value );
+                        } else {
+                            values.writeUTF( (String) value );
+                        }
+                        return;
+                    }
+                    Integer id = dictionary.get( value );
+                    if ( id == null ) {
+                        id = dictionary.size();
+                        dictionary.put( value, id );
+                        if ( type == ColumnType.DICTIONARY_LONG ) {
+                            newEntries.writeLong( (Long) value );
+                        } else {
+                            newEntries.writeUTF( (String) value );
+                        }
+                        newEntryCount++;
+                    }
+                    values.writeInt( id );
+                }
+            }
+        }
+
+        private void writeTo( OutputStream out, int rows ) throws IOException {
+            int bitmapLength = ( rows + 7 ) >> 3;
+            if ( nulls.length < bitmapLength ) {
+                nulls = Arrays.copyOf( nulls, bitmapLength );
+            }
+            out.write( nulls, 0, bitmapLength );
+            if ( dictionaryType ) {
+                out.write( isPlain() ? PLAIN_ENCODING : DICTIONARY_ENCODING );
+                if ( ! isPlain() ) {
+                    new DataOutputStream( out ).writeInt( newEntryCount );
+                    newEntryBytes.writeTo( out );
+                }
+            }
+            bytes.writeTo( out );
+        }
+
+        private void reset() {
+            bytes.reset();
+            Arrays.fill( nulls, (byte) 0 );
+            newEntryBytes.reset();
+            newEntryCount = 0;
+            if ( dictionaryType && ! isPlain() && dictionary.size() >= maxDictionarySize ) {
+                dictionary = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package export;
+
+import connect.QueryLogConnection;
+import connect.QueryLogQuery;
+import export.ColumnarWriter.Column;
+import export.ColumnarWriter.ColumnType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Export of the results of a campaign, i.e. the results matching a {@link QueryLogQuery.Filter}, to the columnar
+ * format of the {@link ColumnarWriter}. Rows are read from a cursor and handed to the writer one by one, the plan and
+ * error hashes as well as the PolyphenyDB keys and branches are dictionary encoded.
+ * <p>
+ * The target stream is only opened once the first row is read, such that a failing query leaves no file behind and an
+ * HTTP response can still answer with an error status. If reading fails afterwards, the file is cut off without
+ * footer and is rejected by the {@link ColumnarReader}.
+ */
+@Slf4j
+public final class ResultExport {
+    private static final int LOG_INTERVAL_ROWS = 1_000_000;
+
+    // In the order of the columns of QueryLogQuery.RESULTS
+    private static final List<Column> COLUMNS = List.of(
+            new Column( "resultKey", ColumnType.LONG ),
+            new Column( "pdbKey", ColumnType.DICTIONARY_STRING ),
+            new Column( "branch", ColumnType.DICTIONARY_STRING ),
+            new Column( "seed", ColumnType.LONG ),
+            new Column( "success", ColumnType.BOOLEAN ),
+            new Column( "receivedAt", ColumnType.LONG ),
+            new Column( "errorHash", ColumnType.DICTIONARY_LONG ),
+            new Column( "resultSetHash", ColumnType.LONG ),
+            new Column( "logicalHash", ColumnType.DICTIONARY_LONG ),
+            new Column( "physicalHash", ColumnType.DICTIONARY_LONG ),
+            new Column( "execTime", ColumnType.LONG ),
+            new Column( "predicted", ColumnType.LONG )
+    );
+
+    private ResultExport() {}
+
+    /**
+     * Writes the results matching the filter to the given target, whose stream is closed afterwards.
+     *
+     * @param connection The connection the results are read from.
+     * @param filter The filter selecting the campaign.
+     * @param target Opens the stream the columnar file is written to, once the first row is read.
+     * @return The number of exported results.
+     */
+    public static long export( QueryLogConnection connection, QueryLogQuery.Filter filter, Target target ) throws SQLException, IOException {
+        long[] rowCount = new long[1];
+        connection.stream( QueryLogQuery.RESULTS, filter, null, null, resultSet -> {
+            boolean hasRow = resultSet.next();
+            ColumnarWriter writer = new ColumnarWriter( target.open(), COLUMNS, ColumnarWriter.DEFAULT_ROW_GROUP_SIZE );
+            try {
+                Object[] values = new Object[COLUMNS.size()];
+                while ( hasRow ) {
+                    for ( int i = 0; i < values.length; i++ ) {
+                        values[i] = valueOf( resultSet, i + 1, COLUMNS.get( i ).type() );
+                    }
+                    writer.writeRow( values );
+                    if ( writer.getRowCount() % LOG_INTERVAL_ROWS == 0 ) {
+                        log.info( "Exported " + writer.getRowCount() + " results..." );
+                    }
+                    hasRow = resultSet.next();
+                }
+            } catch ( SQLException | IOException | RuntimeException e ) {
+                writer.abort();
+                throw e;
+            }
+            writer.close();
+            rowCount[0] = writer.getRowCount();
+        } );
+        return rowCount[0];
+    }
+
+    /**
+     * Opens the stream an export is written to.
+     */
+    @FunctionalInterface
+    public interface Target {
+        OutputStream open() throws IOException;
+    }
+
+    private static Object valueOf( ResultSet resultSet, int column, ColumnType type ) throws SQLException {
+        Object value = resultSet.getObject( column );
+        if ( value == null ) {
+            return null;
+        }
+        return switch ( type ) {
+            case LONG, DICTIONARY_LONG -> value instanceof Timestamp timestamp ? timestamp.getTime() : ( (Number) value ).longValue();
+            case BOOLEAN -> value;
+            case STRING, DICTIONARY_STRING -> value.toString();
+        };
+    }
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package logging;
+
+import com.google.gson.Gson;
+import io.javalin.websocket.WsContext;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Fans the log lines of a {@link LogRing} out to the log subscribers on a single thread. Every tick the published
+ * lines are appended to a bounded queue per subscriber, and every subscriber without a frame in flight receives its
+ * queued lines in one frame, sent asynchronously. Lines that do not fit into a subscriber's queue are dropped and
+ * reported with the next frame; a subscriber whose frame is in flight for too long is evicted.
+ * <p>
+ * Every line is also appended to the {@link LogHistory}, which numbers the lines. A new subscriber first receives the
+ * recent history, a reconnecting subscriber the history after the last line it saw, in one gzip compressed binary
+ * frame, and joins the live stream afterwards. Live frames carry the sequence number of their last line.
+ * <p>
+ * The fan-out does not log itself, since its own lines would feed back into the ring.
+ */
+class LogFanOut implements Runnable {
+    private static final int RING_CAPACITY = 8192;
+    private static final int SUBSCRIBER_CAPACITY = 2000;
+    private static final long TICK_MILLIS = 100;
+    private static final long EVICT_MILLIS = 10000;
+    private static final int HISTORY_BYTES = 4 * 1024 * 1024;
+    private static final int DEFAULT_CATCH_UP_LINES = 2000;
+
+    private final LogRing ring = new LogRing( RING_CAPACITY );
+    private final LogHistory history = new LogHistory( HISTORY_BYTES );
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final Gson gson = new Gson();
+    private volatile Thread thread;
+    // Updated by the fan-out thread once per tick, read by the metrics scrape
+    private volatile long queuedLines;
+    private volatile long framesInFlight;
+    private volatile long droppedLines;
+
+    synchronized void start() {
+        if ( thread != null ) {
+            return;
+        }
+        thread = new Thread( this, "log-fan-out" );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    synchronized void stop() {
+        if ( thread == null ) {
+            return;
+        }
+        thread.interrupt();
+        thread = null;
+    }
+
+    /**
+     * Publishes a line, never blocks.
+     */
+    void publish( String line ) {
+        ring.publish( line );
+    }
+
+    /**
+     * Subscribes a session, repeated subscriptions of the same session are ignored.
+     *
+     * @param session The session.
+     * @param after The sequence number of the last line a reconnecting subscriber saw, null for a new subscriber.
+     */
+    void subscribe( WsContext session, Long after ) {
+        subscribers.putIfAbsent( session.getSessionId(), new Subscriber( session, after ) );
+    }
+
+    void unsubscribe( WsContext session ) {
+        subscribers.remove( session.getSessionId() );
+    }
+
+    int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * @return The lines queued for the subscribers and not yet sent, as of the last tick.
+     */
+    long queuedLines() {
+        return queuedLines;
+    }
+
+    /**
+     * @return The subscribers with a frame that has not been written yet, as of the last tick.
+     */
+    long framesInFlight() {
+        return framesInFlight;
+    }
+
+    /**
+     * @return The lines that were overwritten in the ring before the fan-out thread drained them, plus the lines
+     * dropped from the queues of subscribers that fell behind, once per subscriber.
+     */
+    long droppedLines() {
+        return droppedLines;
+    }
+
+    @Override
+    public void run() {
+        List<String> lines = new ArrayList<>();
+        while ( ! Thread.currentThread().isInterrupted() ) {
+            try {
+                TimeUnit.MILLISECONDS.sleep( TICK_MILLIS );
+            } catch ( InterruptedException e ) {
+                return;
+            }
+            long dropped = ring.drainTo( lines, RING_CAPACITY );
+            lines.forEach( history::append );
+            long now = System.currentTimeMillis();
+            long queued = 0;
+            long inFlight = 0;
+            long droppedByQueues = 0;
+            for ( Subscriber subscriber : subscribers.values() ) {
+                if ( subscriber.caughtUp ) {
+                    droppedByQueues += subscriber.enqueue( lines, dropped );
+                } else {
+                    // The history already holds the lines of this tick
+                    subscriber.catchUp( now );
+                }
+                if ( ! subscriber.flush( now ) ) {
+                    subscribers.remove( subscriber.context.getSessionId() );
+                    continue;
+                }
+                queued += subscriber.queue.size();
+                inFlight += subscriber.inFlightSince != 0 ? 1 : 0;
+            }
+            queuedLines = queued;
+            framesInFlight = inFlight;
+            droppedLines += dropped + droppedByQueues;
+            lines.clear();
+        }
+    }
+
+    private class Subscriber {
+        private final WsContext context;
+        private final ArrayDeque<String> queue = new ArrayDeque<>();
+        private final Long after;
+        private boolean caughtUp;
+        private long dropped;
+        private volatile long inFlightSince;
+        private volatile boolean failed;
+
+        private Subscriber( WsContext context, Long after ) {
+            this.context = context;
+            this.after = after;
+        }
+
+        /**
+         * Sends the history the subscriber has not seen yet in one compressed frame. A subscriber that saw lines beyond
+         * the history, i.e. of the server before a restart, is caught up like a new one.
+         */
+        private void catchUp( long now ) {
+            caughtUp = true;
+            Long after = this.after != null && this.after < history.nextSequence() ? this.after : null;
+            long from = after == null
+                    ? Math.max( history.firstSequence(), history.nextSequence() - DEFAULT_CATCH_UP_LINES )
+                    : after + 1;
+            StringBuilder log = new StringBuilder();
+            long first = history.replay( from, log );
+            // Lines a reconnecting subscriber missed that are no longer retained
+            long missed = after == null ? 0 : Math.max( 0, first - from );
+            String frame = gson.toJson( new LogMessage( log.toString(), missed == 0 ? null : missed, history.nextSequence() - 1, true ) );
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try ( GZIPOutputStream gzip = new GZIPOutputStream( bytes ) ) {
+                gzip.write( frame.getBytes( StandardCharsets.UTF_8 ) );
+            } catch ( IOException e ) {
+                // Not thrown by in-memory streams
+                throw new IllegalStateException( e );
+            }
+            inFlightSince = now;
+            context.session.getRemote().sendBytes( ByteBuffer.wrap( bytes.toByteArray() ), callback() );
+        }
+
+        /**
+         * @return The number of queued lines dropped to make room for the new ones.
+         */
+        private long enqueue( List<String> lines, long droppedByRing ) {
+            long droppedByQueue = 0;
+            for ( String line : lines ) {
+                if ( queue.size() == SUBSCRIBER_CAPACITY ) {
+                    queue.poll();
+                    droppedByQueue++;
+                }
+                queue.add( line );
+            }
+            dropped += droppedByRing + droppedByQueue;
+            return droppedByQueue;
+        }
+
+        /**
+         * Sends the queued lines if no frame is in flight.
+         *
+         * @return false if the subscriber failed or stalled and has to be evicted.
+         */
+        private boolean flush( long now ) {
+            if ( failed || ! context.session.isOpen() ) {
+                return false;
+            }
+            if ( inFlightSince != 0 ) {
+                if ( now - inFlightSince > EVICT_MILLIS ) {
+                    context.session.close();
+                    return false;
+                }
+                return true;
+            }
+            if ( queue.isEmpty() && dropped == 0 ) {
+                return true;
+            }
+            StringBuilder log = new StringBuilder();
+            queue.forEach( log::append );
+            queue.clear();
+            String frame = gson.toJson( new LogMessage( log.toString(), dropped == 0 ? null : dropped, history.nextSequence() - 1, null ) );
+            dropped = 0;
+            inFlightSince = now;
+            context.session.getRemote().sendString( frame, callback() );
+            return true;
+        }
+
+        private WriteCallback callback() {
+            return new WriteCallback() {
+                @Override
+                public void writeFailed( Throwable throwable ) {
+                    failed = true;
+                    inFlightSince = 0;
+                }
+
+                @Override
+                public void writeSuccess() {
+                    inFlightSince = 0;
+                }
+            };
+        }
+    }
+
+    /**
+     * A frame of log lines. {@code dropped} counts the lines lost before this frame, it is omitted if none were lost.
+     * {@code last} is the sequence number of the last line of the stream at the time of the frame, {@code catchUp}
+     * marks the replayed history.
+     */
+    private record LogMessage( String log, Long dropped, long last, Boolean catchUp ) implements Serializable {}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package logging;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-size off-heap history of the most recent log lines. Lines are numbered consecutively and stored as records of
+ * length, sequence number and UTF-8 bytes in a circular direct buffer; appending a line evicts the oldest records it
+ * needs the space of. Not thread-safe, the history is only accessed by the {@link LogFanOut} thread.
+ */
+class LogHistory {
+    private static final int HEADER = Integer.BYTES + Long.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final ByteBuffer header = ByteBuffer.allocate( HEADER );
+    private long head;
+    private long tail;
+    private long firstSequence;
+    private long nextSequence;
+
+    /**
+     * @param capacity The size of the buffer in bytes.
+     */
+    LogHistory( int capacity ) {
+        this.capacity = capacity;
+        this.buffer = ByteBuffer.allocateDirect( capacity );
+    }
+
+    /**
+     * Appends a line, lines longer than the buffer are truncated.
+     *
+     * @return The sequence number of the line.
+     */
+    long append( String line ) {
+        byte[] bytes = line.getBytes( StandardCharsets.UTF_8 );
+        int length = Math.min( bytes.length, capacity - HEADER );
+        while ( tail + HEADER + length - head > capacity ) {
+            read( head, header.array(), HEADER );
+            head += HEADER + header.getInt( 0 );
+            firstSequence++;
+        }
+        long sequence = nextSequence++;
+        header.putInt( 0, length ).putLong( Integer.BYTES, sequence );
+        write( tail, header.array(), HEADER );
+        write( tail + HEADER, bytes, length );
+        tail += HEADER + length;
+        return sequence;
+    }
+
+    /**
+     * Returns the sequence number of the oldest retained line.
+     */
+    long firstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * Returns the sequence number the next line will get.
+     */
+    long nextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Appends the retained lines from the given sequence number on to the builder.
+     *
+     * @return The sequence number of the first line appended, or the next sequence number if none was.
+     */
+    long replay( long from, StringBuilder builder ) {
+        long position = head;
+        long first = -1;
+        while ( position < tail ) {
+            read( position, header.array(), HEADER );
+            int length = header.getInt( 0 );
+            long sequence = header.getLong( Integer.BYTES );
+            if ( sequence >= from ) {
+                byte[] bytes = new byte[length];
+                read( position + HEADER, bytes, length );
+                builder.append( new String( bytes, StandardCharsets.UTF_8 ) );
+                if ( first < 0 ) {
+                    first = sequence;
+                }
+            }
+            position += HEADER + length;
+        }
+        return first < 0 ? nextSequence : first;
+    }
+
+    private void write( long position, byte[] source, int length ) {
+        int offset = (int) ( position % capacity );
+        int first = Math.min( length, capacity - offset );
+        buffer.put( offset, source, 0, first );
+        buffer.put( 0, source, first, length - first );
+    }
+
+    private void read( long position, byte[] target, int length ) {
+        int offset = (int) ( position % capacity );
+        int first = Math.min( length, capacity - offset );
+        buffer.get( offset, target, 0, first );
+        buffer.get( 0, target, first, length - first );
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package logging;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free ring buffer of log lines with many publishers and a single consumer. Publishers claim a sequence number
+ * and never wait: if the consumer falls behind by more than the capacity, the oldest lines are overwritten and
+ * counted as dropped by the consumer.
+ * <p>
+ * Every slot carries the sequence number of the line it holds. A publisher marks the slot as being written before it
+ * writes the line and sets the sequence number after. The consumer reads the sequence number before and after the
+ * line and only accepts the line if both match the sequence it expects, such that a line overwritten while it is read
+ * is never taken for the one expected.
+ */
+class LogRing {
+    private static final long WRITING = -1;
+
+    private final int mask;
+    private final AtomicReferenceArray<String> lines;
+    private final AtomicLongArray sequences;
+    private final AtomicLong next = new AtomicLong();
+    private long cursor;
+
+    /**
+     * @param capacity The number of slots, rounded up to a power of two.
+     */
+    LogRing( int capacity ) {
+        int size = Integer.highestOneBit( Math.max( 2, capacity ) - 1 ) << 1;
+        this.mask = size - 1;
+        this.lines = new AtomicReferenceArray<>( size );
+        this.sequences = new AtomicLongArray( size );
+        for ( int i = 0; i < size; i++ ) {
+            // Slot i first expects sequence i, mark it as not yet published
+            sequences.set( i, i - size );
+        }
+    }
+
+    /**
+     * Publishes a line, called by any thread.
+     */
+    void publish( String line ) {
+        long sequence = next.getAndIncrement();
+        int slot = (int) sequence & mask;
+        sequences.set( slot, WRITING );
+        lines.set( slot, line );
+        sequences.lazySet( slot, sequence );
+    }
+
+    /**
+     * Moves the published lines to the given list, called by the consumer thread only.
+     *
+     * @param drain The list the lines are appended to.
+     * @param limit The maximum number of lines moved.
+     * @return The number of lines that were overwritten before they could be consumed.
+     */
+    long drainTo( List<String> drain, int limit ) {
+        long dropped = 0;
+        int drained = 0;
+        while ( drained < limit ) {
+            int slot = (int) cursor & mask;
+            long before = sequences.get( slot );
+            if ( before < cursor ) {
+                // Not yet published, or being overwritten and retried with the next drain
+                break;
+            }
+            String line = lines.get( slot );
+            long after = sequences.get( slot );
+            if ( before == cursor && after == cursor ) {
+                drain.add( line );
+                cursor++;
+                drained++;
+                continue;
+            }
+            // Overwritten, continue with the oldest line that is still retained
+            long oldest = Math.max( cursor + 1, next.get() - mask - 1 );
+            dropped += oldest - cursor;
+            cursor = oldest;
+        }
+        return dropped;
+    }
+
+    /**
+     * Returns the sequence number of the next line the consumer reads.
+     */
+    long cursor() {
+        return cursor;
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package logging;
+
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Logging for hot paths. Lines are logged per key, e.g. per message code, with a sample rate and a rate limit:
+ * a sample rate of n logs one in n lines at random, and at most {@code maxPerSecond} sampled lines per key and
+ * second pass. The line is only built if it passes, such that a suppressed line costs a level check and a random
+ * number.
+ * <p>
+ * Lines are structured as {@code key=value} pairs, see {@link #fields(Object...)}. Every line carries the sample rate
+ * and the number of sampled lines the rate limit suppressed before it, such that the volume can be reconstructed.
+ */
+public class SampledLog {
+    private final Logger logger;
+    private final Level level;
+    private final int maxPerSecond;
+    private final Map<String, Limit> limits = new ConcurrentHashMap<>();
+
+    /**
+     * @param logger The logger to log to.
+     * @param level The level of the lines.
+     * @param maxPerSecond The maximum number of lines per key and second.
+     */
+    public SampledLog( Logger logger, Level level, int maxPerSecond ) {
+        this.logger = logger;
+        this.level = level;
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    /**
+     * @param key The key the sample rate and the rate limit apply to.
+     * @param sampleRate Logs one in this many lines, 1 logs every line up to the rate limit.
+     * @param message The line, only built if it is logged.
+     */
+    public void log( String key, int sampleRate, Supplier<String> message ) {
+        if ( ! logger.isEnabledForLevel( level ) ) {
+            return;
+        }
+        if ( sampleRate > 1 && ThreadLocalRandom.current().nextInt( sampleRate ) != 0 ) {
+            return;
+        }
+        long suppressed = limits.computeIfAbsent( key, k -> new Limit() ).acquire( System.nanoTime() / 1_000_000_000L );
+        if ( suppressed < 0 ) {
+            return;
+        }
+        StringBuilder line = new StringBuilder( message.get() );
+        if ( sampleRate > 1 ) {
+            line.append( " sample=1/" ).append( sampleRate );
+        }
+        if ( suppressed > 0 ) {
+            line.append( " suppressed=" ).append( suppressed );
+        }
+        logger.atLevel( level ).log( line.toString() );
+    }
+
+    /**
+     * Formats alternating keys and values as {@code key=value} pairs. Values containing spaces are quoted.
+     */
+    public static String fields( Object... keyValues ) {
+        StringBuilder builder = new StringBuilder();
+        for ( int i = 0; i + 1 < keyValues.length; i += 2 ) {
+            if ( i > 0 ) {
+                builder.append( ' ' );
+            }
+            String value = String.valueOf( keyValues[i + 1] );
+            builder.append( keyValues[i] ).append( '=' );
+            if ( value.indexOf( ' ' ) >= 0 ) {
+                builder.append( '"' ).append( value.replace( "\"", "\\\"" ) ).append( '"' );
+            } else {
+                builder.append( value );
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Fixed one second window of a key.
+     */
+    private class Limit {
+        private long second;
+        private int count;
+        private long suppressed;
+
+        /**
+         * @return The number of lines suppressed since the last line that passed, -1 if this line is suppressed.
+         */
+        private synchronized long acquire( long now ) {
+            if ( now != second ) {
+                second = now;
+                count = 0;
+            }
+            if ( count == maxPerSecond ) {
+                suppressed++;
+                return -1;
+            }
+            count++;
+            long passed = suppressed;
+            suppressed = 0;
+            return passed;
+        }
+    }
+
+}
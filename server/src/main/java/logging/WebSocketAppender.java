@@ -16,9 +16,8 @@
 
 package logging;
 
-import com.google.gson.Gson;
 import io.javalin.websocket.WsContext;
-import lombok.AllArgsConstructor;
+import metrics.LogAppendEvent;
 import org.apache.logging.log4j.core.Filter;
 import org.apache.logging.log4j.core.LogEvent;
 import org.apache.logging.log4j.core.appender.AbstractAppender;
@@ -28,42 +27,73 @@ import org.apache.logging.log4j.core.config.plugins.PluginFactory;
 import org.apache.logging.log4j.core.layout.PatternLayout;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.LinkedList;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Streams log lines to the browsers subscribed through BROWSER_LOG. Appending only formats the event and publishes the
+ * line to the lock-free ring of the {@link LogFanOut}, which sends the lines to the subscribers on its own thread.
+ * Logging therefore never waits for a browser. The fan-out keeps a history of the recent lines for subscribers that
+ * join late or reconnect.
+ */
 @Plugin(name = "WebSocket", category = "Core", elementType = "appender", printObject = true)
 public class WebSocketAppender extends AbstractAppender {
-    private static final CopyOnWriteArraySet<WsContext> sessions = new CopyOnWriteArraySet<>();
-    private static final LinkedList<WsContext> toRemove = new LinkedList<>();
+    private static final LogFanOut FAN_OUT = new LogFanOut();
 
     private WebSocketAppender( String name, @Nullable Filter filter, @Nullable PatternLayout patternLayout ) {
         super( name, filter, patternLayout, false, null );
     }
 
-    public static void addSession( WsContext session ) {
-        if ( sessions.contains( session ) ) {
-            return;
-        }
-        sessions.add( session );
+    /**
+     * @param session The subscribing session.
+     * @param after The sequence number of the last line a reconnecting session saw, null for a new session.
+     */
+    public static void addSession( WsContext session, Long after ) {
+        FAN_OUT.subscribe( session, after );
     }
 
     public static void removeSession(WsContext session) {
-        sessions.remove( session );
+        FAN_OUT.unsubscribe( session );
+    }
+
+    public static int subscriberCount() {
+        return FAN_OUT.subscriberCount();
+    }
+
+    public static long queuedLines() {
+        return FAN_OUT.queuedLines();
+    }
+
+    public static long framesInFlight() {
+        return FAN_OUT.framesInFlight();
+    }
+
+    public static long droppedLines() {
+        return FAN_OUT.droppedLines();
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        FAN_OUT.start();
+    }
+
+    @Override
+    public boolean stop( long timeout, TimeUnit timeUnit ) {
+        FAN_OUT.stop();
+        return super.stop( timeout, timeUnit );
     }
 
     @Override
     public void append(LogEvent event) {
-        final String logMessage = ( (PatternLayout) getLayout() ).toSerializable( event );
-        for (WsContext session : sessions) {
-            try {
-                session.send(new Gson().toJson(new LogMessage(logMessage)));
-            } catch ( Exception exception ) {
-                toRemove.add( session );
-            }
-        }
-        if ( ! toRemove.isEmpty() ) {
-            toRemove.forEach( sessions::remove );
-            toRemove.clear();
+        LogAppendEvent appendEvent = new LogAppendEvent();
+        appendEvent.begin();
+        String line = ( (PatternLayout) getLayout() ).toSerializable( event );
+        FAN_OUT.publish( line );
+        appendEvent.end();
+        if ( appendEvent.shouldCommit() ) {
+            appendEvent.logger = event.getLoggerName();
+            appendEvent.bytes = line.length();
+            appendEvent.commit();
         }
     }
 
@@ -73,9 +103,4 @@ public class WebSocketAppender extends AbstractAppender {
         return new WebSocketAppender( name, null, PatternLayout.newBuilder().withPattern("D [%-6p] %c{3} - %m%n").build() );
     }
 
-    @AllArgsConstructor
-    private static class LogMessage {
-        private final String log;
-    }
-
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters, one per value of an optional label, backed by {@link LongAdder}s.
+ */
+public class CounterFamily {
+    private final String name;
+    private final String help;
+    private final String label;
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * @param label The name of the label, null for a single unlabeled counter.
+     */
+    CounterFamily( String name, String help, String label ) {
+        this.name = name;
+        this.help = help;
+        this.label = label;
+    }
+
+    public void increment() {
+        increment( "" );
+    }
+
+    public void increment( String labelValue ) {
+        counters.computeIfAbsent( labelValue, value -> new LongAdder() ).increment();
+    }
+
+    void write( StringBuilder builder ) {
+        builder.append( "# TYPE " ).append( name ).append( " counter\n" );
+        builder.append( "# HELP " ).append( name ).append( ' ' ).append( help ).append( '\n' );
+        new TreeMap<>( counters ).forEach( ( labelValue, counter ) -> {
+            builder.append( name ).append( "_total" );
+            if ( label != null ) {
+                builder.append( '{' ).append( label ).append( "=\"" ).append( Metrics.escape( labelValue ) ).append( "\"}" );
+            }
+            builder.append( ' ' ).append( counter.sum() ).append( '\n' );
+        } );
+    }
+
+}
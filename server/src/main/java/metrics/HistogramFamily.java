@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms in seconds with fixed buckets, one per value of an optional label. Observations are counted in
+ * {@link LongAdder}s, such that concurrent observers do not contend.
+ */
+public class HistogramFamily {
+    private static final double[] BOUNDS = { 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+    private static final long[] BOUND_NANOS = new long[BOUNDS.length];
+
+    static {
+        for ( int i = 0; i < BOUNDS.length; i++ ) {
+            BOUND_NANOS[i] = (long) ( BOUNDS[i] * 1e9 );
+        }
+    }
+
+    private final String name;
+    private final String help;
+    private final String label;
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * @param label The name of the label, null for a single unlabeled histogram.
+     */
+    HistogramFamily( String name, String help, String label ) {
+        this.name = name;
+        this.help = help;
+        this.label = label;
+    }
+
+    /**
+     * Observes a duration of the unlabeled histogram.
+     */
+    public void observe( long nanos ) {
+        observe( "", nanos );
+    }
+
+    /**
+     * Observes a duration of the histogram of the label value.
+     */
+    public void observe( String labelValue, long nanos ) {
+        histograms.computeIfAbsent( labelValue, value -> new Histogram() ).observe( nanos );
+    }
+
+    void write( StringBuilder builder ) {
+        builder.append( "# TYPE " ).append( name ).append( " histogram\n" );
+        builder.append( "# HELP " ).append( name ).append( ' ' ).append( help ).append( '\n' );
+        new TreeMap<>( histograms ).forEach( ( labelValue, histogram ) -> {
+            String labels = label == null ? "" : label + "=\"" + Metrics.escape( labelValue ) + "\",";
+            long cumulative = 0;
+            for ( int i = 0; i <= BOUNDS.length; i++ ) {
+                cumulative += histogram.buckets[i].sum();
+                builder.append( name ).append( "_bucket{" ).append( labels ).append( "le=\"" )
+                        .append( i < BOUNDS.length ? Double.toString( BOUNDS[i] ) : "+Inf" ).append( "\"} " )
+                        .append( cumulative ).append( '\n' );
+            }
+            String braces = label == null ? "" : "{" + labels.substring( 0, labels.length() - 1 ) + "}";
+            builder.append( name ).append( "_sum" ).append( braces ).append( ' ' ).append( histogram.nanos.sum() / 1e9 ).append( '\n' );
+            builder.append( name ).append( "_count" ).append( braces ).append( ' ' ).append( cumulative ).append( '\n' );
+        } );
+    }
+
+    private static class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+        private final LongAdder nanos = new LongAdder();
+
+        private Histogram() {
+            for ( int i = 0; i < buckets.length; i++ ) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void observe( long nanos ) {
+            int bucket = 0;
+            while ( bucket < BOUND_NANOS.length && nanos > BOUND_NANOS[bucket] ) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            this.nanos.add( nanos );
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning the execution of a query log statement.
+ */
+@Name("polyfier.Jdbc")
+@Label("Query Log Statement")
+@Category({ "Polyfier", "JDBC" })
+@Description("Execution of a query log statement.")
+@StackTrace(false)
+public class JdbcEvent extends Event {
+    @Label("Statement")
+    public String statement;
+
+    @Label("Method")
+    public String method;
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning the creation and serialization of the profile of a job.
+ */
+@Name("polyfier.Job")
+@Label("Job Creation")
+@Category({ "Polyfier", "Jobs" })
+@Description("Creation and serialization of the profile of a job.")
+@StackTrace(false)
+public class JobEvent extends Event {
+    @Label("PCTRL Key")
+    public String pctrlKey;
+
+    @Label("PDB Key")
+    public String pdbKey;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning the formatting and publishing of a log line for the browsers.
+ */
+@Name("polyfier.LogAppend")
+@Label("Log Append")
+@Category({ "Polyfier", "WebSocket" })
+@Description("Formatting and publishing of a log line for the browsers.")
+@StackTrace(false)
+public class LogAppendEvent extends Event {
+    @Label("Logger")
+    public String logger;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+}
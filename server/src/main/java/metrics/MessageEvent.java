@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning the decoding and handling of a WebSocket message.
+ */
+@Name("polyfier.Message")
+@Label("WebSocket Message")
+@Category({ "Polyfier", "WebSocket" })
+@Description("Decoding and handling of a WebSocket message.")
+@StackTrace(false)
+public class MessageEvent extends Event {
+    @Label("Message Code")
+    public String messageCode;
+
+    @Label("Client Key")
+    @Description("The key of the PCTRL or PDB client, the session id for browsers.")
+    public String clientKey;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+}
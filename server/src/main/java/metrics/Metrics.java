@@ -0,0 +1,123 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package metrics;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the server metrics, exposed in the OpenMetrics text format on /metrics. Counters and histograms are
+ * updated on the hot paths and only cost a few {@link java.util.concurrent.atomic.LongAdder} increments; gauges and
+ * counters maintained elsewhere are read from suppliers when scraped.
+ */
+public abstract class Metrics {
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final List<CounterFamily> COUNTERS = new ArrayList<>();
+    private static final List<HistogramFamily> HISTOGRAMS = new ArrayList<>();
+    private static final Map<String, Supplied> SUPPLIED = new ConcurrentHashMap<>();
+
+    public static final CounterFamily MESSAGES = counterFamily(
+            "polyfier_ws_messages",
+            "WebSocket messages received per message code.",
+            "message_code"
+    );
+    public static final CounterFamily MESSAGE_ERRORS = counterFamily(
+            "polyfier_ws_message_errors",
+            "WebSocket messages that could not be decoded or handled.",
+            null
+    );
+    public static final HistogramFamily DECODE = histogramFamily(
+            "polyfier_ws_message_decode_seconds",
+            "Time to decode a WebSocket message.",
+            null
+    );
+    public static final HistogramFamily HANDLER = histogramFamily(
+            "polyfier_ws_message_handler_seconds",
+            "Time to handle a decoded WebSocket message per message code.",
+            "message_code"
+    );
+    public static final HistogramFamily HTTP = histogramFamily(
+            "polyfier_http_request_seconds",
+            "Time to handle an HTTP request per endpoint.",
+            "path"
+    );
+    public static final HistogramFamily JDBC = histogramFamily(
+            "polyfier_jdbc_statement_seconds",
+            "Time to execute a query log statement per statement.",
+            "statement"
+    );
+
+    private static CounterFamily counterFamily( String name, String help, String label ) {
+        CounterFamily counter = new CounterFamily( name, help, label );
+        COUNTERS.add( counter );
+        return counter;
+    }
+
+    private static HistogramFamily histogramFamily( String name, String help, String label ) {
+        HistogramFamily histogram = new HistogramFamily( name, help, label );
+        HISTOGRAMS.add( histogram );
+        return histogram;
+    }
+
+    /**
+     * Registers a gauge that is read when scraped, replacing a gauge of the same name.
+     */
+    public static void gauge( String name, String help, LongSupplier value ) {
+        SUPPLIED.put( name, new Supplied( "gauge", help, value ) );
+    }
+
+    /**
+     * Registers a counter that is maintained elsewhere and read when scraped, replacing a counter of the same name.
+     */
+    public static void counter( String name, String help, LongSupplier value ) {
+        SUPPLIED.put( name, new Supplied( "counter", help, value ) );
+    }
+
+    /**
+     * Returns all metrics in the OpenMetrics text format.
+     */
+    public static String scrape() {
+        StringBuilder builder = new StringBuilder();
+        COUNTERS.forEach( counter -> counter.write( builder ) );
+        HISTOGRAMS.forEach( histogram -> histogram.write( builder ) );
+        SUPPLIED.forEach( ( name, supplied ) -> {
+            builder.append( "# TYPE " ).append( name ).append( ' ' ).append( supplied.type() ).append( '\n' );
+            builder.append( "# HELP " ).append( name ).append( ' ' ).append( supplied.help() ).append( '\n' );
+            builder.append( name ).append( "counter".equals( supplied.type() ) ? "_total " : " " ).append( supplied.value().getAsLong() ).append( '\n' );
+        } );
+        builder.append( "# EOF\n" );
+        return builder.toString();
+    }
+
+    public static void handleMetricsResponse( Context ctx ) {
+        ctx.status( HttpStatus.OK ).contentType( CONTENT_TYPE ).result( scrape() );
+    }
+
+    static String escape( String labelValue ) {
+        return labelValue.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ).replace( "\n", "\\n" );
+    }
+
+    private record Supplied( String type, String help, LongSupplier value ) {}
+
+}
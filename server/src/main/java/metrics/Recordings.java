@@ -0,0 +1,189 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package metrics;
+
+import io.javalin.http.Context;
+import io.javalin.http.ForbiddenResponse;
+import io.javalin.http.HttpStatus;
+import io.javalin.http.UnauthorizedResponse;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Flight recordings of the server. A continuous recording with the low overhead default settings keeps the last
+ * {@value #CONTINUOUS_MAX_AGE_MINUTES} minutes in a ring, such that a stall can be analyzed after the fact. An on-demand
+ * recording, e.g. with the profile settings, can be started alongside. Dumps are served as .jfr files through the admin
+ * endpoints.
+ * <p>
+ * A dump holds the JVM arguments, system properties and environment, including the query log credentials. The admin
+ * endpoints therefore require the token set with {@code -Dpolyfier.adminToken} as bearer token, or, without a token,
+ * only answer requests from the loopback interface.
+ */
+@Slf4j
+public abstract class Recordings {
+    private static final long CONTINUOUS_MAX_AGE_MINUTES = 30;
+    private static final long MAX_SIZE_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_DURATION_SECONDS = 60;
+    private static final long MAX_DURATION_SECONDS = 3600;
+    private static final String ADMIN_TOKEN = System.getProperty( "polyfier.adminToken" );
+    private static final String BEARER = "Bearer ";
+
+    private static Recording continuous;
+    private static Recording onDemand;
+
+    /**
+     * Starts the continuous recording, if flight recording is available in this JVM.
+     */
+    public static synchronized void startContinuous() {
+        if ( continuous != null ) {
+            return;
+        }
+        try {
+            continuous = new Recording( Configuration.getConfiguration( "default" ) );
+        } catch ( IOException | ParseException | IllegalStateException | SecurityException e ) {
+            log.warn( "Flight recording not available: " + e.getMessage() );
+            return;
+        }
+        continuous.setName( "polyfier-continuous" );
+        continuous.setToDisk( true );
+        continuous.setMaxAge( Duration.ofMinutes( CONTINUOUS_MAX_AGE_MINUTES ) );
+        continuous.setMaxSize( MAX_SIZE_BYTES );
+        continuous.start();
+        log.info( "Started continuous flight recording." );
+    }
+
+    /**
+     * Rejects requests to the admin endpoints that neither carry the admin token nor, if no token is set, come from the
+     * loopback interface.
+     */
+    public static void authorize( Context ctx ) {
+        if ( ADMIN_TOKEN != null ) {
+            String authorization = ctx.header( "Authorization" );
+            if ( authorization == null || ! authorization.startsWith( BEARER ) || ! MessageDigest.isEqual(
+                    authorization.substring( BEARER.length() ).getBytes( StandardCharsets.UTF_8 ),
+                    ADMIN_TOKEN.getBytes( StandardCharsets.UTF_8 ) ) ) {
+                throw new UnauthorizedResponse();
+            }
+            return;
+        }
+        boolean loopback;
+        try {
+            // A literal address, no lookup takes place
+            loopback = InetAddress.getByName( ctx.req().getRemoteAddr() ).isLoopbackAddress();
+        } catch ( UnknownHostException e ) {
+            loopback = false;
+        }
+        if ( ! loopback ) {
+            throw new ForbiddenResponse( "Admin endpoints are only available from localhost unless polyfier.adminToken is set." );
+        }
+    }
+
+    /**
+     * Starts an on-demand recording.
+     * <p>
+     * Query parameters: {@code settings} ({@code default} or {@code profile}, default {@code profile}) and
+     * {@code duration} in seconds after which the recording stops by itself.
+     */
+    public static synchronized void handleStartResponse( Context ctx ) {
+        if ( onDemand != null && onDemand.getState() == RecordingState.RUNNING ) {
+            ctx.status( HttpStatus.CONFLICT ).result( "Recording " + onDemand.getName() + " is running." );
+            return;
+        }
+        String settings = Optional.ofNullable( ctx.queryParam( "settings" ) ).orElse( "profile" );
+        long duration;
+        try {
+            duration = Optional.ofNullable( ctx.queryParam( "duration" ) ).map( Long::parseLong ).orElse( DEFAULT_DURATION_SECONDS );
+        } catch ( NumberFormatException e ) {
+            ctx.status( HttpStatus.BAD_REQUEST ).result( "Invalid number: " + e.getMessage() );
+            return;
+        }
+        if ( ! settings.equals( "default" ) && ! settings.equals( "profile" ) ) {
+            ctx.status( HttpStatus.BAD_REQUEST ).result( "Unknown settings: " + settings );
+            return;
+        }
+        if ( duration <= 0 || duration > MAX_DURATION_SECONDS ) {
+            ctx.status( HttpStatus.BAD_REQUEST ).result( "Duration out of range: " + duration );
+            return;
+        }
+
+        Recording recording;
+        try {
+            recording = new Recording( Configuration.getConfiguration( settings ) );
+        } catch ( IOException | ParseException e ) {
+            ctx.status( HttpStatus.INTERNAL_SERVER_ERROR ).result( e.getMessage() );
+            return;
+        }
+        if ( onDemand != null ) {
+            onDemand.close();
+        }
+        recording.setName( "polyfier-" + System.currentTimeMillis() );
+        recording.setToDisk( true );
+        recording.setMaxSize( MAX_SIZE_BYTES );
+        recording.setDuration( Duration.ofSeconds( duration ) );
+        recording.start();
+        onDemand = recording;
+        log.info( "Started flight recording " + recording.getName() + " for " + duration + "s with " + settings + " settings." );
+        ctx.status( HttpStatus.OK ).result( recording.getName() );
+    }
+
+    /**
+     * Stops the on-demand recording, it can still be dumped until the next one is started.
+     */
+    public static synchronized void handleStopResponse( Context ctx ) {
+        if ( onDemand == null || onDemand.getState() != RecordingState.RUNNING ) {
+            ctx.status( HttpStatus.NOT_FOUND );
+            return;
+        }
+        onDemand.stop();
+        ctx.status( HttpStatus.OK ).result( onDemand.getName() );
+    }
+
+    /**
+     * Dumps the on-demand recording if there is one, the continuous recording otherwise.
+     */
+    public static synchronized void handleDumpResponse( Context ctx ) {
+        Recording recording = onDemand != null && onDemand.getState() != RecordingState.CLOSED ? onDemand : continuous;
+        if ( recording == null ) {
+            ctx.status( HttpStatus.NOT_FOUND );
+            return;
+        }
+        try {
+            Path file = Files.createTempFile( recording.getName(), ".jfr" );
+            recording.dump( file );
+            ctx.header( "Content-Disposition", "attachment; filename=\"" + recording.getName() + ".jfr\"" );
+            // The file is removed once the response is written
+            ctx.status( HttpStatus.OK ).contentType( "application/octet-stream" )
+                    .result( Files.newInputStream( file, StandardOpenOption.DELETE_ON_CLOSE ) );
+        } catch ( IOException e ) {
+            ctx.status( HttpStatus.INTERNAL_SERVER_ERROR ).result( e.getMessage() );
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+
+/**
+ * Wraps a {@link PreparedStatement} such that the duration of its execute methods is observed by
+ * {@link Metrics#JDBC} and recorded as {@link JdbcEvent}. All other methods are passed through.
+ */
+public class TimedStatement implements InvocationHandler {
+    private final PreparedStatement statement;
+    private final String label;
+
+    private TimedStatement( PreparedStatement statement, String label ) {
+        this.statement = statement;
+        this.label = label;
+    }
+
+    /**
+     * @param statement The statement to wrap.
+     * @param label The label the executions are observed under, e.g. the name of the statement.
+     */
+    public static PreparedStatement wrap( PreparedStatement statement, String label ) {
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{ PreparedStatement.class },
+                new TimedStatement( statement, label )
+        );
+    }
+
+    @Override
+    public Object invoke( Object proxy, Method method, Object[] args ) throws Throwable {
+        if ( ! method.getName().startsWith( "execute" ) ) {
+            try {
+                return method.invoke( statement, args );
+            } catch ( InvocationTargetException e ) {
+                throw e.getCause();
+            }
+        }
+        JdbcEvent event = new JdbcEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            return method.invoke( statement, args );
+        } catch ( InvocationTargetException e ) {
+            throw e.getCause();
+        } finally {
+            Metrics.JDBC.observe( label, System.nanoTime() - start );
+            event.end();
+            if ( event.shouldCommit() ) {
+                event.statement = label;
+                event.method = method.getName();
+                event.commit();
+            }
+        }
+    }
+
+}
@@ -1,48 +1,104 @@
 package server;
 
+import connect.QueryLogQuery;
 import io.javalin.Javalin;
+import io.javalin.http.ServiceUnavailableResponse;
+import logging.SampledLog;
 import lombok.extern.slf4j.Slf4j;
+import metrics.Metrics;
+import metrics.Recordings;
+import org.slf4j.event.Level;
 import server.messages.ClientMessage;
 import server.messages.ServerMessage;
 
+import java.io.IOException;
 import java.util.Objects;
 
 @Slf4j
 public class Server {
+    private static final String REQUEST_START = "requestStart";
+    private static final SampledLog REQUEST_LOG = new SampledLog( log, Level.DEBUG, 20 );
     private static Javalin app;
 
     public Server( ServerConfig serverConfig ) {
+        Recordings.startContinuous();
         setUpAPI();
         app.start( serverConfig.getHost(), serverConfig.getPort() );
     }
 
+    /**
+     * Stops the HTTP server and closes the open WebSocket sessions.
+     */
+    public static void stop() {
+        if ( app != null ) {
+            app.stop();
+        }
+    }
+
     private void setUpAPI() {
         app = Javalin.create();
 
-        app.before( ctx -> log.debug("REQ: [" + ctx.ip() + "] - [" + ctx.req().getMethod() + "] ~" + ctx.req().getPathInfo() + "\t" + ctx.body() ) );
-        app.after( ctx -> {} ); //
+        app.before( ctx -> {
+            ctx.attribute( REQUEST_START, System.nanoTime() );
+            REQUEST_LOG.log( ctx.method().name(), 1, () -> SampledLog.fields(
+                    "ip", ctx.ip(),
+                    "method", ctx.method(),
+                    "path", ctx.path(),
+                    "bytes", ctx.contentLength()
+            ) );
+        } );
+        app.after( ctx -> {
+            Long start = ctx.attribute( REQUEST_START );
+            if ( start != null ) {
+                // Labeled by route rather than path, such that path parameters do not multiply the histograms
+                String route = ctx.endpointHandlerPath();
+                Metrics.HTTP.observe( route.isEmpty() ? "unmatched" : route, System.nanoTime() - start );
+            }
+        } );
+
+        // Readiness, the REST API needs the backend
+        app.get("/ready", ServerMessage::handleReadinessResponse );
+        app.before("/api/*", ctx -> {
+            if ( ! ServerMessage.isReady() ) {
+                throw new ServiceUnavailableResponse( "Backend is initializing." );
+            }
+        } );
+
+        // Metrics
+        app.get("/metrics", Metrics::handleMetricsResponse );
 
-        // HTML
-        app.get("/", ctx -> ServerMessage.handleStringResponse( ctx, "text/html", "web/html/base.html"));
-        app.get("/log", ctx -> ServerMessage.handleStringResponse( ctx, "text/html", "web/html/log.html"));
-        app.get("/sys", ctx -> ServerMessage.handleStringResponse( ctx, "text/html", "web/html/sys.html"));
+        // Flight Recordings
+        app.before("/admin/*", Recordings::authorize );
+        app.post("/admin/recordings", Recordings::handleStartResponse );
+        app.delete("/admin/recordings", Recordings::handleStopResponse );
+        app.get("/admin/recordings/dump", Recordings::handleDumpResponse );
 
-        // CSS
-        app.get("/web/css/base.css", ctx -> ServerMessage.handleStringResponse( ctx, "text/css", "web/css/base.css"));
-        app.get("/web/css/log.css", ctx -> ServerMessage.handleStringResponse( ctx, "text/css", "web/css/log.css"));
-        app.get("/web/css/sys.css", ctx -> ServerMessage.handleStringResponse( ctx, "text/css", "web/css/sys.css"));
+        // Static Assets
+        StaticAssets staticAssets;
+        try {
+            staticAssets = StaticAssets.load();
+        } catch ( IOException e ) {
+            throw new RuntimeException( e );
+        }
+        app.get("/", ctx -> staticAssets.servePage( ctx, "/web/html/base.html" ) );
+        app.get("/log", ctx -> staticAssets.servePage( ctx, "/web/html/log.html" ) );
+        app.get("/sys", ctx -> staticAssets.servePage( ctx, "/web/html/sys.html" ) );
+        app.get("/web/*", staticAssets::serve );
 
-        // JavaScript
-        app.get("/web/js/log.js", ctx -> ServerMessage.handleStringResponse( ctx, "text/javascript", "web/js/log.js"));
-        app.get("/web/js/base.js", ctx -> ServerMessage.handleStringResponse( ctx, "text/javascript","web/js/base.js"));
-        app.get("/web/js/sys.js", ctx -> ServerMessage.handleStringResponse( ctx, "text/javascript","web/js/sys.js"));
+        // Query Log
+        app.get("/api/results", ctx -> ServerMessage.handleQueryResponse( ctx, QueryLogQuery.RESULTS ) );
+        app.get("/api/errors", ctx -> ServerMessage.handleQueryResponse( ctx, QueryLogQuery.ERRORS ) );
+        app.get("/api/plans", ctx -> ServerMessage.handleQueryResponse( ctx, QueryLogQuery.PLANS ) );
+        app.get("/api/mismatches", ctx -> ServerMessage.handleQueryResponse( ctx, QueryLogQuery.MISMATCHES ) );
+        app.get("/api/export", ServerMessage::handleExportResponse );
+        app.get("/api/rollups", ServerMessage::handleRollupResponse );
 
-        // Other Files
-        app.get("/web/img/polyphenydb-logo.png", ctx -> ServerMessage.handleMediaResponse( ctx, "image/png", "web/img/polyphenydb-logo.png" ));
-        app.get("/web/img/log-icon.png", ctx -> ServerMessage.handleMediaResponse( ctx, "image/png", "web/img/log-icon.png" ));
-        app.get("/web/img/icon.png", ctx -> ServerMessage.handleMediaResponse( ctx, "image/png", "web/img/icon.png" ));
-        app.get("/web/img/polyfier-schema.png", ctx -> ServerMessage.handleMediaResponse( ctx, "image/png", "web/img/polyfier-schema.png" ));
-        app.get("/web/fonts/jetbrains_mono/JetBrainsMono-Italic-VariableFont_wght.ttf", ctx -> ServerMessage.handleMediaResponse( ctx, "font/ttf", "web/fonts/jetbrains_mono/JetBrainsMono-Italic-VariableFont_wght.ttf" ));
+        // Analysis
+        app.get("/api/analysis/costs", ServerMessage::handleCostAccuracyResponse );
+        app.get("/api/analysis/latency", ServerMessage::handleLatencyResponse );
+        app.get("/api/analysis/regressions", ServerMessage::handleRegressionResponse );
+        app.get("/api/analysis/top", ServerMessage::handleTopResponse );
+        app.get("/api/analysis/coverage", ServerMessage::handleCoverageResponse );
 
         // API WebSocket
         app.ws("/ws", ws -> {
@@ -59,7 +115,6 @@ public class Server {
             });
             // API Message Processing
             ws.onMessage( session -> {
-                log.info("WebSocket Message for /ws: " + session.message() );
                 try {
                     ClientMessage.processMessage( session );
                 } catch (Exception e) {
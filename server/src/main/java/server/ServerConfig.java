@@ -30,6 +30,8 @@ public class ServerConfig implements Serializable {
     private String host;
     @Getter
     private Integer port;
+    @Getter
+    private String baselineBranch;
 
     // --------------------------------
 
@@ -45,6 +47,10 @@ public class ServerConfig implements Serializable {
         return this.user != null && this.password != null;
     }
 
+    public boolean hasBaselineBranch() {
+        return this.baselineBranch != null;
+    }
+
     public void setUrl(String url ) {
         this.url = url;
         this.save();
@@ -62,6 +68,11 @@ public class ServerConfig implements Serializable {
         this.save();
     }
 
+    public void setBaselineBranch( String baselineBranch ) {
+        this.baselineBranch = baselineBranch;
+        this.save();
+    }
+
     public static ServerConfig fetch() {
         return new ServerConfig().refresh();
     }
@@ -73,7 +84,7 @@ public class ServerConfig implements Serializable {
         return this;
     }
 
-    private static Path getAppDirPath() {
+    public static Path getAppDirPath() {
         return Paths.get(SystemUtils.getUserHome().getAbsolutePath(), APP_DIR);
     }
 
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package server;
+
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The web/ resource tree, read once into memory. Every asset is kept with its content type, a strong ETag and a gzip
+ * variant if compressing pays off, such that a request costs a map lookup. The tree is read through the class loader,
+ * from the resource directory or from within the jar.
+ * <p>
+ * Pages and the assets they reference are revalidated on every load, since their URLs are not versioned and a cached
+ * script must not outlive a deploy. Revalidation is answered with 304 Not Modified while the ETag matches.
+ */
+@Slf4j
+public class StaticAssets {
+    private static final String ROOT = "web";
+    private static final String CACHE_CONTROL = "no-cache";
+    private static final double MIN_COMPRESSION_RATIO = 0.9;
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "html", "text/html; charset=utf-8",
+            "css", "text/css; charset=utf-8",
+            "js", "text/javascript; charset=utf-8",
+            "md", "text/markdown; charset=utf-8",
+            "txt", "text/plain; charset=utf-8",
+            "png", "image/png",
+            "ttf", "font/ttf"
+    );
+
+    private final Map<String, Asset> assets;
+
+    private StaticAssets( Map<String, Asset> assets ) {
+        this.assets = assets;
+    }
+
+    /**
+     * Reads the web/ resource tree.
+     *
+     * @throws IOException if the tree cannot be read.
+     */
+    public static StaticAssets load() throws IOException {
+        URL url = Objects.requireNonNull( StaticAssets.class.getClassLoader().getResource( ROOT ), "Resource directory web/ not found." );
+        Path root;
+        try {
+            URI uri = url.toURI();
+            if ( "jar".equals( uri.getScheme() ) ) {
+                try {
+                    FileSystems.newFileSystem( uri, Collections.emptyMap() );
+                } catch ( FileSystemAlreadyExistsException e ) {
+                    // Opened before
+                }
+            }
+            root = Path.of( uri );
+        } catch ( URISyntaxException e ) {
+            throw new IOException( e );
+        }
+
+        Map<String, Asset> assets = new HashMap<>();
+        List<Path> files;
+        try ( Stream<Path> paths = Files.walk( root ) ) {
+            files = paths.filter( Files::isRegularFile ).toList();
+        }
+        long identityBytes = 0;
+        long gzipBytes = 0;
+        for ( Path file : files ) {
+            String path = "/" + ROOT + "/" + root.relativize( file ).toString().replace( file.getFileSystem().getSeparator(), "/" );
+            Asset asset = Asset.of( path, Files.readAllBytes( file ) );
+            assets.put( path, asset );
+            identityBytes += asset.identity().length;
+            gzipBytes += asset.gzip() == null ? asset.identity().length : asset.gzip().length;
+        }
+        log.info( "Loaded " + assets.size() + " static assets, " + identityBytes / 1024 + " KiB, " + gzipBytes / 1024 + " KiB compressed." );
+        return new StaticAssets( Map.copyOf( assets ) );
+    }
+
+    /**
+     * Serves the asset of the request path.
+     */
+    public void serve( Context ctx ) {
+        serve( ctx, ctx.path() );
+    }
+
+    /**
+     * Serves a page.
+     *
+     * @param path The path of the page within the tree, e.g. /web/html/sys.html.
+     */
+    public void servePage( Context ctx, String path ) {
+        serve( ctx, path );
+    }
+
+    private void serve( Context ctx, String path ) {
+        Asset asset = assets.get( path );
+        if ( asset == null ) {
+            ctx.status( HttpStatus.NOT_FOUND );
+            return;
+        }
+        String acceptEncoding = ctx.header( "Accept-Encoding" );
+        boolean gzip = asset.gzip() != null && acceptEncoding != null && acceptEncoding.contains( "gzip" );
+        String etag = gzip ? asset.gzipEtag() : asset.etag();
+
+        ctx.header( "Cache-Control", CACHE_CONTROL );
+        ctx.header( "ETag", etag );
+        if ( asset.gzip() != null ) {
+            ctx.header( "Vary", "Accept-Encoding" );
+        }
+        String ifNoneMatch = ctx.header( "If-None-Match" );
+        if ( ifNoneMatch != null && ( ifNoneMatch.contains( etag ) || ifNoneMatch.trim().equals( "*" ) ) ) {
+            ctx.status( HttpStatus.NOT_MODIFIED );
+            return;
+        }
+        if ( gzip ) {
+            ctx.header( "Content-Encoding", "gzip" );
+        }
+        ctx.status( HttpStatus.OK ).contentType( asset.contentType() ).result( gzip ? asset.gzip() : asset.identity() );
+    }
+
+    /**
+     * An asset with its gzip variant, null if compressing does not pay off.
+     */
+    private record Asset( String contentType, byte[] identity, byte[] gzip, String etag, String gzipEtag ) {
+
+        private static Asset of( String path, byte[] identity ) throws IOException {
+            String extension = path.substring( path.lastIndexOf( '.' ) + 1 );
+            String contentType = CONTENT_TYPES.getOrDefault( extension, "application/octet-stream" );
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try ( GZIPOutputStream gzipOutputStream = new GZIPOutputStream( compressed ) ) {
+                gzipOutputStream.write( identity );
+            }
+            byte[] gzip = compressed.size() < identity.length * MIN_COMPRESSION_RATIO ? compressed.toByteArray() : null;
+
+            byte[] digest;
+            try {
+                digest = MessageDigest.getInstance( "SHA-256" ).digest( identity );
+            } catch ( NoSuchAlgorithmException e ) {
+                throw new IllegalStateException( e );
+            }
+            StringBuilder hash = new StringBuilder();
+            for ( int i = 0; i < 16; i++ ) {
+                hash.append( String.format( "%02x", digest[i] ) );
+            }
+            return new Asset( contentType, identity, gzip, "\"" + hash + "\"", "\"" + hash + "-gzip\"" );
+        }
+    }
+
+}
@@ -37,6 +37,9 @@ public class PDB implements Serializable {
 
     private String pdbKey;
     private String pctrlKey;
+    private long comparisonKey;
+    private long storeConfigHash;
+    private long queryConfigHash;
     private String sessionId;
     private String branch;
     private String status;
@@ -23,14 +23,22 @@ import io.javalin.websocket.WsMessageContext;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
+import logging.SampledLog;
 import lombok.extern.slf4j.Slf4j;
+import metrics.MessageEvent;
+import metrics.Metrics;
 import org.apache.commons.lang3.tuple.Triple;
+import org.slf4j.event.Level;
 
 import java.io.Serializable;
 
 @Getter
 @Slf4j
 public class ClientMessage implements Serializable {
+    private static final SampledLog MESSAGE_LOG = new SampledLog( log, Level.INFO, 20 );
+    // Sample rate of messages without a valid message code
+    private static final int DEFAULT_LOG_SAMPLE_RATE = 1;
+
     @Setter
     private transient WsContext wsContext;
     private String apiKey;
@@ -71,6 +79,11 @@ public class ClientMessage implements Serializable {
     }
 
 
+    @Getter
+    public static class LogPosition implements Serializable {
+        private Long after;
+    }
+
     @Getter
     public static class PDBResult implements Serializable {
         private String pdbKey;
@@ -94,34 +107,40 @@ public class ClientMessage implements Serializable {
     @AllArgsConstructor
     private enum MessageCode {
         // PCTRL
-        PCTRL_SIGN_IN( ClientCode.PCTRL, Key.class ),
-        PCTRL_SIGN_OUT( ClientCode.PCTRL, Key.class ),
-        PCTRL_STATUS_UPD( ClientCode.PCTRL, KeyStatus.class ),
-        PCTRL_REQ_JOB( ClientCode.PCTRL, KeyPair.class ),
+        PCTRL_SIGN_IN( ClientCode.PCTRL, Key.class, 1 ),
+        PCTRL_SIGN_OUT( ClientCode.PCTRL, Key.class, 1 ),
+        PCTRL_STATUS_UPD( ClientCode.PCTRL, KeyStatus.class, 10 ),
+        PCTRL_REQ_JOB( ClientCode.PCTRL, KeyPair.class, 1 ),
+        PCTRL_RESUME( ClientCode.PCTRL, Key.class, 1 ),
         // PDB
-        PDB_SIGN_IN( ClientCode.PDB, Key.class ),
-        PDB_SIGN_OUT( ClientCode.PDB, Key.class ),
-        PDB_REQ_JOB( ClientCode.PDB, Key.class ),
-        PDB_STATUS_UPD( ClientCode.PDB, KeyStatus.class ),
-        PDB_RESULT_DEP( ClientCode.PDB, PDBResult.class ),
+        PDB_SIGN_IN( ClientCode.PDB, Key.class, 1 ),
+        PDB_SIGN_OUT( ClientCode.PDB, Key.class, 1 ),
+        PDB_REQ_JOB( ClientCode.PDB, Key.class, 1 ),
+        PDB_STATUS_UPD( ClientCode.PDB, KeyStatus.class, 10 ),
+        PDB_RESULT_DEP( ClientCode.PDB, PDBResult.class, 100 ),
+        PDB_RESUME( ClientCode.PDB, Key.class, 1 ),
         // BROWSER
-        BROWSER_LOG( ClientCode.BROWSER, null ),
-        BROWSER_SYS( ClientCode.BROWSER, null );
+        BROWSER_LOG( ClientCode.BROWSER, LogPosition.class, 1 ),
+        BROWSER_SYS( ClientCode.BROWSER, null, 10 );
 
         private final ClientCode clientCode;
         private final Class<?> clazz;
+        // One in this many messages is logged
+        private final int logSampleRate;
 
     }
 
     private static Triple<ClientMessage, Object, Integer> read(String message ) throws JsonSyntaxException {
         ClientMessage clientMessage = null;
         try {
-            log.debug(message);
             Gson gson = new Gson();
             clientMessage = gson.fromJson( message, ClientMessage.class );
 
             if ( clientMessage.getClientCode() == ClientCode.BROWSER ) {
-                return Triple.of( clientMessage, null, 0 );
+                if ( clientMessage.getBody() == null || clientMessage.getMessageCode().getClazz() == null ) {
+                    return Triple.of( clientMessage, null, 0 );
+                }
+                return Triple.of( clientMessage, gson.fromJson( clientMessage.getBody(), clientMessage.getMessageCode().getClazz() ), 0 );
             }
 
             return Triple.of( clientMessage, gson.fromJson( clientMessage.getBody(), clientMessage.getMessageCode().getClazz() ), clientMessage.getBody().length() );
@@ -136,17 +155,68 @@ public class ClientMessage implements Serializable {
     }
 
     private static boolean verifyApiKey( String apiKey ) {
-        log.debug("Verifying: " + apiKey);
         // Todo;
         return true;
     }
 
     public static void processMessage( WsMessageContext session ) {
         // Read Message according to API Specifications.
-        Triple<ClientMessage, Object, Integer> triple = ClientMessage.read( session.message() );
+        MessageEvent event = new MessageEvent();
+        event.begin();
+        Triple<ClientMessage, Object, Integer> triple;
+        long start = System.nanoTime();
+        try {
+            triple = ClientMessage.read( session.message() );
+        } catch ( RuntimeException e ) {
+            Metrics.MESSAGE_ERRORS.increment();
+            throw e;
+        }
+        Metrics.DECODE.observe( System.nanoTime() - start );
         ClientMessage clientMessage = triple.getLeft();
         clientMessage.setWsContext( session );
 
+        String messageCode = String.valueOf( clientMessage.getMessageCode() );
+        Metrics.MESSAGES.increment( messageCode );
+        start = System.nanoTime();
+        try {
+            dispatch( session, clientMessage, triple );
+        } catch ( RuntimeException e ) {
+            Metrics.MESSAGE_ERRORS.increment();
+            throw e;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            Metrics.HANDLER.observe( messageCode, nanos );
+            int sampleRate = clientMessage.getMessageCode() == null ? DEFAULT_LOG_SAMPLE_RATE : clientMessage.getMessageCode().getLogSampleRate();
+            MESSAGE_LOG.log( messageCode, sampleRate, () -> SampledLog.fields(
+                    "message", messageCode,
+                    "client", clientKey( session, triple.getMiddle() ),
+                    "bytes", session.message().length(),
+                    "micros", nanos / 1000
+            ) );
+            event.end();
+            if ( event.shouldCommit() ) {
+                event.messageCode = messageCode;
+                event.clientKey = clientKey( session, triple.getMiddle() );
+                event.bytes = session.message().length();
+                event.commit();
+            }
+        }
+    }
+
+    private static String clientKey( WsContext session, Object body ) {
+        if ( body instanceof Key key ) {
+            return key.getKey();
+        } else if ( body instanceof KeyStatus keyStatus ) {
+            return keyStatus.getKey();
+        } else if ( body instanceof KeyPair keyPair ) {
+            return keyPair.getKey1();
+        } else if ( body instanceof PDBResult pdbResult ) {
+            return pdbResult.getPdbKey();
+        }
+        return session.getSessionId();
+    }
+
+    private static void dispatch( WsMessageContext session, ClientMessage clientMessage, Triple<ClientMessage, Object, Integer> triple ) {
         switch ( clientMessage.getClientCode() ) {
             case PCTRL -> {
                 if ( log.isDebugEnabled() ) {
@@ -170,6 +240,9 @@ public class ClientMessage implements Serializable {
                         KeyPair keyPair = ((KeyPair) triple.getMiddle());
                         ServerMessage.handlePCTRLJob( clientMessage, keyPair.getKey1(), keyPair.getKey2() );
                     }
+                    case PCTRL_RESUME -> {
+                        ServerMessage.handlePCTRLResume( clientMessage, ((Key) triple.getMiddle()).getKey() );
+                    }
                 }
             }
             case PDB -> {
@@ -196,6 +269,9 @@ public class ClientMessage implements Serializable {
                     case PDB_RESULT_DEP -> {
                         ServerMessage.handlePDBResult( clientMessage, ((PDBResult) triple.getMiddle()), triple.getRight() );
                     }
+                    case PDB_RESUME -> {
+                        ServerMessage.handlePDBResume( clientMessage, ((Key) triple.getMiddle()).getKey() );
+                    }
                 }
             }
             case BROWSER -> {
@@ -205,7 +281,8 @@ public class ClientMessage implements Serializable {
                 switch ( clientMessage.getMessageCode() ) {
                     case BROWSER_LOG -> {
                         ServerMessage.unsubscribeSys( session );
-                        ServerMessage.subscribeLog( session );
+                        LogPosition logPosition = (LogPosition) triple.getMiddle();
+                        ServerMessage.subscribeLog( session, logPosition == null ? null : logPosition.getAfter() );
                     }
                     case BROWSER_SYS -> {
                         ServerMessage.unsubscribeLog( session );
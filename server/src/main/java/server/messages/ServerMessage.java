@@ -16,8 +16,23 @@
 
 package server.messages;
 
+import analysis.CostAccuracyTracker;
+import analysis.LatencyHistograms;
+import analysis.RegressionDetector;
+import analysis.ResultAnalysis;
+import analysis.PlanCoverage;
+import analysis.TopQueries;
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import connect.ConfigType;
+import connect.IdGenerator;
+import connect.QueryLogAdapter;
 import connect.QueryLogConnection;
+import connect.QueryLogPool;
+import connect.QueryLogQuery;
+import connect.ResultIngest;
+import connect.ResultRollup;
+import export.ResultExport;
 import io.javalin.http.Context;
 import io.javalin.http.HttpStatus;
 import io.javalin.websocket.WsContext;
@@ -28,25 +43,46 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import server.ServerConfig;
 import logging.WebSocketAppender;
+import metrics.JobEvent;
+import metrics.Metrics;
 import server.clients.Browser;
 import server.clients.PCtrl;
 import server.clients.PDB;
 import server.profile.SeedsConfig;
 import server.profile.Profile;
 import server.profile.generators.ProfileGenerator;
-import server.requests.Requests;
 
 import java.io.*;
-import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public abstract class ServerMessage {
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final int MAX_PAGE_SIZE = 100000;
+    private static final int FLUSH_ROWS = 500;
+    private static final long BACKOFF_MIN_MILLIS = 1000;
+    private static final long BACKOFF_MAX_MILLIS = 30000;
+    private static final long RECOVERY_WINDOW_HOURS = 48;
+    private static final int READ_CONNECTIONS = 4;
+    private static final long READ_CONNECTION_TIMEOUT_MILLIS = 10000;
+
     @Getter
     @Setter
     private static ServerConfig serverConfig;
@@ -55,41 +91,321 @@ public abstract class ServerMessage {
     private static ProfileGenerator profileGenerator;
 
     private static QueryLogConnection queryLogConnection;
+    // Shared by the requests reading from the query log
+    private static QueryLogPool readConnections;
+
+    @Getter
+    private static ResultAnalysis resultAnalysis;
+
+    @Getter
+    private static ResultIngest resultIngest;
 
     @Getter
     private static final Object REGISTER_LOCK = new Object();
 
+    private static volatile boolean ready;
+    private static volatile boolean registryRestored;
+    private static volatile boolean draining;
+    private static volatile String readinessState = "STARTING";
+    // PCTRL clients signed in before the backend was ready, registered once it is
+    private static final List<PCtrl> PENDING_PCTRLS = new ArrayList<>();
+
+    /**
+     * Configures the message handling and initializes the backend in the background, such that the server can accept
+     * clients right away. Until the backend is {@link #isReady() ready}, PCTRL clients are admitted in memory, result
+     * deposits are buffered in the bounded ingest queue and everything else that needs the backend is asked to retry.
+     */
     public static void configureServerMessage(
             ProfileGenerator initialProfileGenerator,
             ServerConfig initialServerConfig
     ) {
         serverConfig = initialServerConfig;
         profileGenerator = initialProfileGenerator;
-        try {
-            queryLogConnection = QueryLogConnection.with( serverConfig.getUrl(), serverConfig.getUser(), serverConfig.getPassword() );
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        resultIngest = new ResultIngest();
+        readConnections = new QueryLogPool( serverConfig.getUrl(), serverConfig.getUser(), serverConfig.getPassword(), READ_CONNECTIONS );
+        registerMetrics();
         Thread browserStatusThread = new Thread( ServerMessage::runBrowserRoutine );
         browserStatusThread.setDaemon( true );
         browserStatusThread.start();
+        Thread backendThread = new Thread( ServerMessage::initializeBackend, "backend-init" );
+        backendThread.setDaemon( true );
+        backendThread.start();
+    }
+
+    /**
+     * Sets up the query log, restores the analyses and starts the ingest, retrying with backoff until the backend is
+     * reachable. The resources of a failed attempt are closed before the next one, and the ingest is started last, such
+     * that it is never bound to the connection or analyses of an attempt that failed after it.
+     */
+    private static void initializeBackend() {
+        long backoffMillis = BACKOFF_MIN_MILLIS;
+        while ( ! ready && ! draining ) {
+            QueryLogConnection connection = null;
+            QueryLogConnection ingestConnection = null;
+            ResultAnalysis analysis = null;
+            try {
+                readinessState = "RESTORING";
+                connection = QueryLogConnection.with( serverConfig.getUrl(), serverConfig.getUser(), serverConfig.getPassword() );
+                if ( ! registryRestored && connection.schemaVersion() == QueryLogAdapter.SCHEMA_VERSION ) {
+                    // Restored ahead of the schema work if there is none, such that resuming clients are bound right away
+                    restoreRegistry( connection );
+                }
+                readinessState = "MIGRATING";
+                // The schema has to be in place before the analyses restore their persisted state from it.
+                QueryLogConnection.initialize( serverConfig.getUrl(), serverConfig.getUser(), serverConfig.getPassword() );
+                readinessState = "RESTORING";
+                // Before the first row is keyed, such that keys continue after the existing ones
+                IdGenerator.seed( connection.maxId() );
+                if ( ! registryRestored ) {
+                    restoreRegistry( connection );
+                }
+                analysis = ResultAnalysis.open( ServerConfig.getAppDirPath(), connection, serverConfig.getBaselineBranch() );
+                ingestConnection = QueryLogConnection.with( serverConfig.getUrl(), serverConfig.getUser(), serverConfig.getPassword() );
+                synchronized ( PENDING_PCTRLS ) {
+                    for ( PCtrl pctrl : PENDING_PCTRLS ) {
+                        connection.registerPctrl( pctrl );
+                    }
+                    PENDING_PCTRLS.clear();
+                    analysis.startRoutines();
+                    resultIngest.start( ingestConnection, analysis );
+                    queryLogConnection = connection;
+                    resultAnalysis = analysis;
+                    readinessState = "READY";
+                    ready = true;
+                }
+                log.info("Backend ready, " + resultIngest.queueDepth() + " buffered results queued for ingest.");
+            } catch ( SQLException | IOException | RuntimeException e ) {
+                readinessState = "RETRYING";
+                log.error("Backend initialization failed, retrying in " + backoffMillis + "ms: ", e);
+                if ( analysis != null ) {
+                    analysis.discard();
+                }
+                if ( ! resultIngest.isStarted() ) {
+                    closeQuietly( ingestConnection );
+                }
+                closeQuietly( connection );
+                try {
+                    TimeUnit.MILLISECONDS.sleep( backoffMillis );
+                } catch ( InterruptedException interruptedException ) {
+                    return;
+                }
+                backoffMillis = Math.min( backoffMillis * 2, BACKOFF_MAX_MILLIS );
+            }
+        }
+    }
+
+    private static void closeQuietly( QueryLogConnection connection ) {
+        if ( connection == null ) {
+            return;
+        }
+        try {
+            connection.getConnection().close();
+        } catch ( SQLException e ) {
+            log.debug( "Could not close query log connection: ", e );
+        }
+    }
+
+    /**
+     * Restores the PCTRL and PDB clients registered within {@value #RECOVERY_WINDOW_HOURS} hours and the jobs of the
+     * PDB clients, such that clients that kept running through a restart can resume. The three tables are read in
+     * parallel on separate connections. Restored clients are inactive until they resume or sign in. Only committed
+     * registrations are found, which is why every registration commits before the client is answered.
+     */
+    private static void restoreRegistry( QueryLogConnection connection ) throws SQLException {
+        long since = System.currentTimeMillis() - TimeUnit.HOURS.toMillis( RECOVERY_WINDOW_HOURS );
+        CompletableFuture<List<PCtrl>> pctrls = CompletableFuture.supplyAsync( () -> withConnection( reader -> reader.recentPctrls( since ) ) );
+        CompletableFuture<Map<String, String>> jobs = CompletableFuture.supplyAsync( () -> withConnection( reader -> reader.recentPdbJobs( since ) ) );
+        List<QueryLogConnection.RegisteredPdb> pdbs;
+        try {
+            pdbs = connection.recentPdbs( since );
+        } finally {
+            // Ends the read, such that the connection does not keep a view of the query log from before its migration
+            connection.getConnection().rollback();
+        }
+
+        Gson gson = new Gson();
+        long now = System.currentTimeMillis();
+        int restoredPctrls = 0;
+        int restoredPdbs = 0;
+        try {
+            for ( PCtrl pctrl : pctrls.join() ) {
+                PCTRL_CLIENTS.putIfAbsent( pctrl.getPctrlKey(), pctrl );
+                restoredPctrls++;
+            }
+            Map<String, String> restoredJobs = jobs.join();
+            synchronized ( PDB_CLIENTS ) {
+                for ( QueryLogConnection.RegisteredPdb registered : pdbs ) {
+                    String job = restoredJobs.get( registered.pdbKey() );
+                    if ( job == null ) {
+                        // Registered before jobs were kept, it cannot continue
+                        continue;
+                    }
+                    PDB_JOBS.putIfAbsent( registered.pdbKey(), job );
+                    PDB_CLIENTS.putIfAbsent( registered.pdbKey(), new PDB(
+                            null,
+                            0,
+                            0.0,
+                            gson.fromJson( job, Profile.class ).getStoreConfig().getStores(),
+                            registered.pdbKey(),
+                            registered.pctrlKey(),
+                            registered.comparisonKey(),
+                            registered.storeConfigHash(),
+                            registered.queryConfigHash(),
+                            null,
+                            registered.branch(),
+                            "DISCONNECTED",
+                            false,
+                            registered.registeredAt(),
+                            now
+                    ) );
+                    restoredPdbs++;
+                }
+            }
+        } catch ( CompletionException e ) {
+            if ( e.getCause() instanceof UncheckedSQLException sqlException ) {
+                throw sqlException.getCause();
+            }
+            throw e;
+        }
+        registryRestored = true;
+        log.info("Restored " + restoredPctrls + " PCTRL and " + restoredPdbs + " PDB clients.");
+    }
+
+    private static <T> T withConnection( SQLFunction<T> function ) {
+        try ( QueryLogPool.Lease lease = readConnections.borrow( READ_CONNECTION_TIMEOUT_MILLIS ) ) {
+            return function.apply( lease.getConnection() );
+        } catch ( SQLException e ) {
+            throw new UncheckedSQLException( e );
+        }
+    }
+
+    private interface SQLFunction<T> {
+        T apply( QueryLogConnection connection ) throws SQLException;
     }
 
-    private static final HashMap<String, PDB> PDB_CLIENTS = new HashMap<>();
-    private static final HashMap<String, PCtrl> PCTRL_CLIENTS = new HashMap<>();
-    private static final HashMap<String, Browser> BROWSER_SUBS = new HashMap<>();
-    private static final HashMap<String, String> PDB_JOBS = new HashMap<>();
+    private static class UncheckedSQLException extends RuntimeException {
+        private UncheckedSQLException( SQLException cause ) {
+            super( cause );
+        }
 
-    public static void subscribeLog( WsContext wsContext ) {
-        WebSocketAppender.addSession( wsContext );
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+    public static boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Shuts the backend down in order: no further jobs are issued and deposits are refused, the PCTRL clients are told
+     * to pause, the queued results are written, the analyses are flushed and the query log connections are closed.
+     *
+     * @param deadlineMillis The time in epoch millis by which the ingest queue has to be drained.
+     */
+    public static void shutdown( long deadlineMillis ) {
+        draining = true;
+        ready = false;
+        readinessState = "DRAINING";
+        log.info( "Draining, " + resultIngest.queueDepth() + " results queued for ingest." );
+
+        String pause = new Gson().toJson( new ResponseMessage( ResponseMessageCode.PAUSE.name(), "" ) );
+        PCTRL_CLIENTS.values().forEach( pctrl -> {
+            if ( pctrl.getWsContext() != null ) {
+                try {
+                    pctrl.getWsContext().send( pause );
+                } catch ( RuntimeException e ) {
+                    log.debug( "Could not pause PCTRL " + pctrl.getPctrlKey() + ": ", e );
+                }
+            }
+        } );
+
+        boolean interrupted = false;
+        try {
+            int lost = resultIngest.stop( deadlineMillis );
+            if ( lost > 0 ) {
+                log.warn( lost + " queued results could not be written before the deadline." );
+            }
+        } catch ( InterruptedException e ) {
+            interrupted = true;
+        } finally {
+            // The analysis state is written even if the drain was interrupted, the interrupt is restored afterwards
+            interrupted |= Thread.interrupted();
+            if ( resultAnalysis != null ) {
+                try {
+                    resultAnalysis.close();
+                } catch ( InterruptedException e ) {
+                    interrupted = true;
+                }
+            }
+            if ( queryLogConnection != null ) {
+                try {
+                    queryLogConnection.close();
+                } catch ( SQLException e ) {
+                    log.error( "Could not close the query log connection: ", e );
+                }
+            }
+            readConnections.close();
+            if ( interrupted ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info( "Drained." );
+    }
+
+    public static void handleReadinessResponse( Context ctx ) {
+        ctx.status( ready ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE ).contentType( "application/json" ).result( new Gson().toJson(
+                new ReadinessResponse( ready, readinessState, resultIngest.queueDepth() )
+        ) );
+    }
+
+    private static void registerMetrics() {
+        Metrics.gauge( "polyfier_ingest_queue_depth", "Results waiting to be written to the query log.", resultIngest::queueDepth );
+        Metrics.counter( "polyfier_ingest_written_results", "Results written to the query log.", resultIngest::writtenResults );
+        Metrics.counter( "polyfier_ingest_failed_results", "Results that could not be written to the query log.", resultIngest::failedResults );
+        Metrics.gauge( "polyfier_pdb_clients", "Signed in PDB clients.", PDB_CLIENTS::size );
+        Metrics.gauge( "polyfier_pctrl_clients", "Signed in PCTRL clients.", PCTRL_CLIENTS::size );
+        Metrics.gauge( "polyfier_pdb_jobs", "Jobs handed out to PDB clients.", PDB_JOBS::size );
+        Metrics.gauge( "polyfier_browser_sys_subscribers", "Browsers subscribed to the system status.", BROWSER_SUBS::size );
+        Metrics.gauge( "polyfier_browser_log_subscribers", "Browsers subscribed to the log.", WebSocketAppender::subscriberCount );
+        Metrics.gauge( "polyfier_ws_log_queued_lines", "Log lines queued for browsers and not yet sent.", WebSocketAppender::queuedLines );
+        Metrics.gauge( "polyfier_ws_log_frames_in_flight", "Log frames handed to the WebSocket and not yet written.", WebSocketAppender::framesInFlight );
+        Metrics.counter( "polyfier_ws_log_dropped_lines", "Log lines dropped before they could be sent to browsers.", WebSocketAppender::droppedLines );
+    }
+
+    // Concurrent, as the registries are restored in the background while clients are already served
+    private static final Map<String, PDB> PDB_CLIENTS = new ConcurrentHashMap<>();
+    private static final Map<String, PCtrl> PCTRL_CLIENTS = new ConcurrentHashMap<>();
+    private static final Map<String, Browser> BROWSER_SUBS = new ConcurrentHashMap<>();
+    private static final Map<String, String> PDB_JOBS = new ConcurrentHashMap<>();
+    private static final StatusBroadcast STATUS_BROADCAST = new StatusBroadcast();
+
+    public static void subscribeLog( WsContext wsContext, Long after ) {
+        WebSocketAppender.addSession( wsContext, after );
     }
 
     public static void unsubscribeLog( WsContext wsContext ) {
         WebSocketAppender.removeSession( wsContext );
     }
 
+    /**
+     * Subscribes a browser to the system status. A new subscriber receives a snapshot and the deltas following it,
+     * repeated subscriptions of the same session only keep the connection open.
+     */
     public static void subscribeSys( WsContext wsContext ) {
-        BROWSER_SUBS.put( wsContext.getSessionId(), new Browser( wsContext ) );
+        STATUS_BROADCAST.subscribe(
+                wsContext.getSessionId(),
+                new Browser( wsContext ),
+                PDB_CLIENTS.values(),
+                PCTRL_CLIENTS.values(),
+                recentRegressions(),
+                BROWSER_SUBS
+        );
+    }
+
+    private static List<?> recentRegressions() {
+        return ready ? resultAnalysis.getRegressionDetector().recent() : List.of();
     }
 
     public static void unsubscribeSys( WsContext wsContext ) {
@@ -98,15 +414,12 @@ public abstract class ServerMessage {
 
     public static void runBrowserRoutine() {
         ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor( Thread::new );
-        final Gson gson = new Gson();
-        executorService.scheduleAtFixedRate( () -> {
-            if ( ! BROWSER_SUBS.isEmpty() ) {
-                String statusMessage = gson.toJson( statusResponse() );
-                BROWSER_SUBS.values().forEach( browser -> {
-                    browser.getWsContext().send( statusMessage );
-                });
-            }
-        }, 5, 5, TimeUnit.SECONDS);
+        executorService.scheduleAtFixedRate( () -> STATUS_BROADCAST.tick(
+                PDB_CLIENTS.values(),
+                PCTRL_CLIENTS.values(),
+                recentRegressions(),
+                BROWSER_SUBS.values()
+        ), 5, 5, TimeUnit.SECONDS);
     }
 
     synchronized public static void handlePCTRLSignIn( ClientMessage clientMessage, String pctrlKey ) {
@@ -122,10 +435,16 @@ public abstract class ServerMessage {
                 System.currentTimeMillis()
         );
 
-        try {
-            queryLogConnection.registerPctrl( pctrl );
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        synchronized ( PENDING_PCTRLS ) {
+            if ( ready ) {
+                try {
+                    queryLogConnection.registerPctrl( pctrl );
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            } else {
+                PENDING_PCTRLS.add( pctrl );
+            }
         }
 
         PCTRL_CLIENTS.put( pctrlKey, pctrl );
@@ -133,34 +452,44 @@ public abstract class ServerMessage {
     }
 
     public static void handlePCTRLSignOut( ClientMessage clientMessage, String pctrlKey  ) {
-        PCtrl pctrl = PCTRL_CLIENTS.get( pctrlKey );
-
-        if (!Objects.equals(pctrl.getSessionId(), clientMessage.getWsContext().getSessionId())) {
-            pctrl.setSessionId( clientMessage.getWsContext().getSessionId() );
-            pctrl.setWsContext( clientMessage.getWsContext() );
+        PCtrl pctrl = bindPctrl( clientMessage, pctrlKey );
+        if ( pctrl == null ) {
+            return;
         }
 
         pctrl.setActive( false );
         pctrl.setUpdateTime( System.currentTimeMillis() );
 
-        PCTRL_CLIENTS.remove( clientMessage.getWsContext().getSessionId() );
+        PCTRL_CLIENTS.remove( pctrlKey );
         respondOk( clientMessage.getWsContext() );
     }
 
     public static void handlePCTRLJob( ClientMessage clientMessage, String pctrlKey, String pdbKey ) {
+        if ( ! ready || draining ) {
+            respondRetry( clientMessage.getWsContext() );
+            return;
+        }
         synchronized ( PDB_CLIENTS ) {
             Gson gson = new Gson();
 
-            PCtrl pctrl = PCTRL_CLIENTS.get( pctrlKey );
-            if (!Objects.equals(pctrl.getSessionId(), clientMessage.getWsContext().getSessionId())) {
-                pctrl.setSessionId( clientMessage.getWsContext().getSessionId() );
-                pctrl.setWsContext( clientMessage.getWsContext() );
+            PCtrl pctrl = bindPctrl( clientMessage, pctrlKey );
+            if ( pctrl == null ) {
+                return;
             }
             pctrl.setUpdateTime( System.currentTimeMillis() );
 
+            JobEvent jobEvent = new JobEvent();
+            jobEvent.begin();
             Profile profile = profileGenerator.createProfile( new SeedsConfig.SeedsBuilder().addRange( 0, 1000 ).build() ); // Todo
 
             String job = gson.toJson( profile );
+            jobEvent.end();
+            if ( jobEvent.shouldCommit() ) {
+                jobEvent.pctrlKey = pctrlKey;
+                jobEvent.pdbKey = pdbKey;
+                jobEvent.bytes = job.length();
+                jobEvent.commit();
+            }
 
             PDB pdb = new PDB(
                     null,
@@ -169,6 +498,9 @@ public abstract class ServerMessage {
                     profile.getStoreConfig().getStores(),
                     pdbKey,
                     pctrlKey,
+                    profile.comparisonKey(),
+                    profile.getStoreConfig().hashAndString().getLeft(),
+                    profile.getQueryConfig().hashAndString().getLeft(),
                     null,
                     profile.getStartConfig().getParameters().get("Branch"),
                     "ORDERED",
@@ -178,7 +510,7 @@ public abstract class ServerMessage {
             );
 
             try {
-                queryLogConnection.registerPdb( pdb, profile );
+                queryLogConnection.registerPdb( pdb, profile, job );
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
@@ -196,11 +528,9 @@ public abstract class ServerMessage {
     }
 
     public static void handlePCTRLStatus( ClientMessage clientMessage, String pctrlKey, String status ) {
-        PCtrl pctrl = PCTRL_CLIENTS.get( pctrlKey );
-
-        if (!Objects.equals(pctrl.getSessionId(), clientMessage.getWsContext().getSessionId())) {
-            pctrl.setSessionId( clientMessage.getWsContext().getSessionId() );
-            pctrl.setWsContext( clientMessage.getWsContext() );
+        PCtrl pctrl = bindPctrl( clientMessage, pctrlKey );
+        if ( pctrl == null ) {
+            return;
         }
 
         pctrl.setStatus( status );
@@ -211,11 +541,9 @@ public abstract class ServerMessage {
 
     public static void handlePDBSignIn( ClientMessage clientMessage, String pdbKey ) {
         synchronized ( PDB_CLIENTS ) {
-            PDB pdb = PDB_CLIENTS.get( pdbKey );
-
-            if (!Objects.equals(pdb.getSessionId(), clientMessage.getWsContext().getSessionId())) {
-                pdb.setSessionId( clientMessage.getWsContext().getSessionId() );
-                pdb.setWsContext( clientMessage.getWsContext() );
+            PDB pdb = bindPdb( clientMessage, pdbKey );
+            if ( pdb == null ) {
+                return;
             }
 
             pdb.setActive( true );
@@ -230,13 +558,11 @@ public abstract class ServerMessage {
     }
 
     public static void handlePDBSignOut( ClientMessage clientMessage, String pdbKey ) {
-        PDB pdb = PDB_CLIENTS.get( pdbKey );
-
         log.debug("RECEIVED UUID FOR PDB2 " + pdbKey );
 
-        if (!Objects.equals(pdb.getSessionId(), clientMessage.getWsContext().getSessionId())) {
-            pdb.setSessionId( clientMessage.getWsContext().getSessionId() );
-            pdb.setWsContext( clientMessage.getWsContext() );
+        PDB pdb = bindPdb( clientMessage, pdbKey );
+        if ( pdb == null ) {
+            return;
         }
 
         pdb.setActive( false );
@@ -248,11 +574,9 @@ public abstract class ServerMessage {
     }
 
     public static void handlePDBStatus(ClientMessage clientMessage, String pdbKey, String status ) {
-        PDB pdb = PDB_CLIENTS.get( pdbKey );
-
-        if (!Objects.equals(pdb.getSessionId(), clientMessage.getWsContext().getSessionId())) {
-            pdb.setSessionId( clientMessage.getWsContext().getSessionId() );
-            pdb.setWsContext( clientMessage.getWsContext() );
+        PDB pdb = bindPdb( clientMessage, pdbKey );
+        if ( pdb == null ) {
+            return;
         }
 
         pdb.setStatus( status );
@@ -262,11 +586,9 @@ public abstract class ServerMessage {
     }
 
     public static void handlePDBJob( ClientMessage clientMessage, String pdbKey ) {
-        PDB pdb = PDB_CLIENTS.get( pdbKey );
-
-        if (!Objects.equals(pdb.getSessionId(), clientMessage.getWsContext().getSessionId())) {
-            pdb.setSessionId( clientMessage.getWsContext().getSessionId() );
-            pdb.setWsContext( clientMessage.getWsContext() );
+        PDB pdb = bindPdb( clientMessage, pdbKey );
+        if ( pdb == null ) {
+            return;
         }
 
         pdb.setUpdateTime( System.currentTimeMillis() );
@@ -277,17 +599,33 @@ public abstract class ServerMessage {
     }
 
     public static void handlePDBResult( ClientMessage clientMessage, ClientMessage.PDBResult result, Integer size ) {
-        PDB pdb = PDB_CLIENTS.get( result.getPdbKey() );
-
-        if (!Objects.equals(pdb.getSessionId(), clientMessage.getWsContext().getSessionId())) {
-            pdb.setSessionId( clientMessage.getWsContext().getSessionId() );
-            pdb.setWsContext( clientMessage.getWsContext() );
+        PDB pdb = bindPdb( clientMessage, result.getPdbKey() );
+        if ( pdb == null ) {
+            return;
         }
 
-        try {
-            queryLogConnection.insertResult( pdb, result );
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        if ( draining ) {
+            // Refused while shutting down, the client deposits the result again after the restart
+            respondRetry( clientMessage.getWsContext() );
+            return;
+        }
+        if ( ! resultIngest.isStarted() ) {
+            // Buffered until the backend is ready, the client retries once the buffer is full
+            if ( ! resultIngest.offer( pdb, result, System.currentTimeMillis() ) ) {
+                respondRetry( clientMessage.getWsContext() );
+                return;
+            }
+        } else {
+            try {
+                // Blocks while the ingest queue is full, which holds the client back until the writer caught up
+                if ( ! resultIngest.put( pdb, result, System.currentTimeMillis() ) ) {
+                    respondRetry( clientMessage.getWsContext() );
+                    return;
+                }
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                return;
+            }
         }
 
         pdb.addDataCount( size * 0.001d );
@@ -298,54 +636,425 @@ public abstract class ServerMessage {
         respondOk( clientMessage.getWsContext() );
     }
 
-    public static BrowserStatusResponse statusResponse() {
-        return new BrowserStatusResponse(
-                System.currentTimeMillis(),
-                PDB_CLIENTS.values().toArray(),
-                PCTRL_CLIENTS.values().toArray()
-        );
+
+    /**
+     * Re-binds a PCTRL client that survived a restart of the server to the session of the message.
+     */
+    public static void handlePCTRLResume( ClientMessage clientMessage, String pctrlKey ) {
+        PCtrl pctrl = bindPctrl( clientMessage, pctrlKey );
+        if ( pctrl == null ) {
+            return;
+        }
+        pctrl.setApiKey( clientMessage.getApiKey() );
+        pctrl.setActive( true );
+        pctrl.setUpdateTime( System.currentTimeMillis() );
+        respondOk( clientMessage.getWsContext() );
+    }
+
+    /**
+     * Re-binds a PDB client that survived a restart of the server to the session of the message, such that it can
+     * continue its job.
+     */
+    public static void handlePDBResume( ClientMessage clientMessage, String pdbKey ) {
+        PDB pdb = bindPdb( clientMessage, pdbKey );
+        if ( pdb == null ) {
+            return;
+        }
+        pdb.setActive( true );
+        if ( "DISCONNECTED".equals( pdb.getStatus() ) ) {
+            pdb.setStatus( "IDLE" );
+        }
+        pdb.setUpdateTime( System.currentTimeMillis() );
+        respondOk( clientMessage.getWsContext() );
     }
 
+    /**
+     * Looks up a PCTRL client and binds it to the session of the message. An unknown client is asked to retry while
+     * the registry is being restored and told that it is unknown afterwards, such that it signs in anew.
+     *
+     * @return The client, null if it is unknown and the response has been sent.
+     */
+    private static PCtrl bindPctrl( ClientMessage clientMessage, String pctrlKey ) {
+        PCtrl pctrl = pctrlKey == null ? null : PCTRL_CLIENTS.get( pctrlKey );
+        if ( pctrl == null ) {
+            respondUnknown( clientMessage.getWsContext() );
+            return null;
+        }
+        if (!Objects.equals(pctrl.getSessionId(), clientMessage.getWsContext().getSessionId())) {
+            pctrl.setSessionId( clientMessage.getWsContext().getSessionId() );
+            pctrl.setWsContext( clientMessage.getWsContext() );
+        }
+        return pctrl;
+    }
+
+    /**
+     * Looks up a PDB client and binds it to the session of the message, see {@link #bindPctrl}.
+     *
+     * @return The client, null if it is unknown and the response has been sent.
+     */
+    private static PDB bindPdb( ClientMessage clientMessage, String pdbKey ) {
+        PDB pdb = pdbKey == null ? null : PDB_CLIENTS.get( pdbKey );
+        if ( pdb == null ) {
+            respondUnknown( clientMessage.getWsContext() );
+            return null;
+        }
+        if (!Objects.equals(pdb.getSessionId(), clientMessage.getWsContext().getSessionId())) {
+            pdb.setSessionId( clientMessage.getWsContext().getSessionId() );
+            pdb.setWsContext( clientMessage.getWsContext() );
+        }
+        return pdb;
+    }
 
-    private record BrowserStatusResponse( Long time, Object[] pdbClients, Object[] pctrlClients) implements Serializable {}
+    private static void respondUnknown( WsContext wsContext ) {
+        if ( registryRestored ) {
+            wsContext.send( new Gson().toJson( new ResponseMessage( ResponseMessageCode.UNKNOWN.name(), "" ) ) );
+        } else {
+            respondRetry( wsContext );
+        }
+    }
 
     private static void respondOk( WsContext wsContext ) {
         wsContext.send( new Gson().toJson( new ResponseMessage( ResponseMessageCode.OK.name(), "" ) ) );
     }
 
-    public static void handleStringResponse(Context ctx, String contentType, String path ) {
+    private static void respondRetry( WsContext wsContext ) {
+        wsContext.send( new Gson().toJson( new ResponseMessage( ResponseMessageCode.RETRY.name(), "" ) ) );
+    }
+
+    private static void respondBadNumber( Context ctx, NumberFormatException e ) {
+        ctx.status( HttpStatus.BAD_REQUEST ).result( "Invalid number: " + e.getMessage() );
+    }
+
+    public static void handleCostAccuracyResponse( Context ctx ) {
+        ConfigType planType = "logical".equals( ctx.queryParam( "plan" ) ) ? ConfigType.LOGICAL_PLAN : ConfigType.PHYSICAL_PLAN;
+        int limit;
+        long minCount;
         try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(
-                    Objects.requireNonNull(
-                            Requests.class.getClassLoader().getResource( path )
-                    ).openStream()
-            ));
-            StringBuilder sb = new StringBuilder();
-            while ( reader.ready() ) {
-                sb.append( reader.readLine() ).append("\n");
+            limit = Optional.ofNullable( ctx.queryParam( "limit" ) ).map( Integer::parseInt ).orElse( 50 );
+            minCount = Optional.ofNullable( ctx.queryParam( "minCount" ) ).map( Long::parseLong ).orElse( 10L );
+        } catch ( NumberFormatException e ) {
+            respondBadNumber( ctx, e );
+            return;
+        }
+        CostAccuracyTracker costAccuracyTracker = resultAnalysis.getCostAccuracyTracker();
+        ctx.status( HttpStatus.OK ).contentType( "application/json" ).result( new Gson().toJson( new CostAccuracyResponse(
+                System.currentTimeMillis(),
+                costAccuracyTracker.overall(),
+                costAccuracyTracker.worst( planType, minCount, limit ).toArray()
+        ) ) );
+    }
+
+    public static void handleLatencyResponse( Context ctx ) {
+        ConfigType type = "store".equals( ctx.queryParam( "by" ) ) ? ConfigType.STORE : ConfigType.PHYSICAL_PLAN;
+        LatencyHistograms latencyHistograms = resultAnalysis.getLatencyHistograms();
+        String hash = ctx.queryParam( "hash" );
+        int limit;
+        long minCount;
+        Long hashValue;
+        try {
+            hashValue = hash == null ? null : Long.parseLong( hash );
+            limit = Optional.ofNullable( ctx.queryParam( "limit" ) ).map( Integer::parseInt ).orElse( 50 );
+            minCount = Optional.ofNullable( ctx.queryParam( "minCount" ) ).map( Long::parseLong ).orElse( 10L );
+        } catch ( NumberFormatException e ) {
+            respondBadNumber( ctx, e );
+            return;
+        }
+        if ( hashValue != null ) {
+            Optional<LatencyHistograms.LatencySummary> summary = latencyHistograms.get( type, hashValue );
+            if ( summary.isEmpty() ) {
+                ctx.status( HttpStatus.NOT_FOUND );
+                return;
             }
-            ctx.status(HttpStatus.OK).contentType( contentType ).result( sb.toString() );
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            ctx.status( HttpStatus.OK ).contentType( "application/json" ).result( new Gson().toJson( summary.get() ) );
+            return;
         }
+        ctx.status( HttpStatus.OK ).contentType( "application/json" ).result( new Gson().toJson(
+                latencyHistograms.slowest( type, minCount, limit )
+        ) );
     }
 
-    public static void handleMediaResponse( Context ctx, String contentType, String path ) {
-        OutputStream outputStream = ctx.status(HttpStatus.OK).contentType( contentType ).outputStream();
+    public static void handleRegressionResponse( Context ctx ) {
+        RegressionDetector regressionDetector = resultAnalysis.getRegressionDetector();
+        String branch = ctx.queryParam( "branch" );
+        if ( branch == null ) {
+            ctx.status( HttpStatus.OK ).contentType( "application/json" ).result( new Gson().toJson( regressionDetector.recent() ) );
+            return;
+        }
+        int limit;
+        long minCount;
         try {
-            File file = new File(Objects.requireNonNull( Requests.class.getClassLoader().getResource(path)).getFile());
-            Files.copy(file.toPath(), outputStream);
-            outputStream.close();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            limit = Optional.ofNullable( ctx.queryParam( "limit" ) ).map( Integer::parseInt ).orElse( 50 );
+            minCount = Optional.ofNullable( ctx.queryParam( "minCount" ) ).map( Long::parseLong ).orElse( 10L );
+        } catch ( NumberFormatException e ) {
+            respondBadNumber( ctx, e );
+            return;
         }
+        ctx.status( HttpStatus.OK ).contentType( "application/json" ).result( new Gson().toJson(
+                regressionDetector.slowest( branch, minCount, limit )
+        ) );
+    }
+
+    public static void handleTopResponse( Context ctx ) {
+        String branch = ctx.queryParam( "branch" );
+        long to;
+        long from;
+        int limit;
+        try {
+            to = Optional.ofNullable( ctx.queryParam( "to" ) ).map( Long::parseLong ).orElse( System.currentTimeMillis() );
+            from = Optional.ofNullable( ctx.queryParam( "from" ) ).map( Long::parseLong ).orElse( to - TimeUnit.DAYS.toMillis( 7 ) );
+            limit = Optional.ofNullable( ctx.queryParam( "limit" ) ).map( Integer::parseInt ).orElse( 100 );
+        } catch ( NumberFormatException e ) {
+            respondBadNumber( ctx, e );
+            return;
+        }
+        if ( limit <= 0 ) {
+            ctx.status( HttpStatus.BAD_REQUEST ).result( "The limit has to be positive." );
+            return;
+        }
+        TopQueries topQueries = resultAnalysis.getTopQueries();
+        // Hashes are written as strings, JSON numbers lose the lower bits of 64 bit values in JavaScript
+        ctx.status( HttpStatus.OK ).contentType( "application/json" ).result( new Gson().toJson( new TopResponse(
+                System.currentTimeMillis(),
+                topQueries.slowest( branch, from, to, limit ).stream().map( result -> new SlowResult(
+                        result.branch(),
+                        result.pdbKey(),
+                        result.seed(),
+                        result.physicalHash() == null ? null : Long.toString( result.physicalHash() ),
+                        result.execTime(),
+                        result.receivedAt()
+                ) ).toArray(),
+                topQueries.frequentErrors( branch, from, to, limit ).stream().map( item -> new FrequentError(
+                        Long.toString( item.key() ),
+                        resultAnalysis.getErrorClusterer().signature( item.key() ),
+                        item.count(),
+                        item.error()
+                ) ).toArray(),
+                topQueries.failingPlans( branch, from, to, limit ).stream().map( item -> new FailingPlan(
+                        Long.toString( item.key() ),
+                        item.count(),
+                        item.error()
+                ) ).toArray()
+        ) ) );
     }
 
+    public static void handleCoverageResponse( Context ctx ) {
+        PlanCoverage.Dimension dimension;
+        try {
+            dimension = PlanCoverage.Dimension.valueOf( Optional.ofNullable( ctx.queryParam( "by" ) ).orElse( "store" ).toUpperCase() );
+        } catch ( IllegalArgumentException e ) {
+            ctx.status( HttpStatus.BAD_REQUEST ).result( "Unknown dimension: " + ctx.queryParam( "by" ) );
+            return;
+        }
+        long to;
+        long from;
+        try {
+            to = Optional.ofNullable( ctx.queryParam( "to" ) ).map( Long::parseLong ).orElse( System.currentTimeMillis() );
+            from = Optional.ofNullable( ctx.queryParam( "from" ) ).map( Long::parseLong ).orElse( to - TimeUnit.DAYS.toMillis( 7 ) );
+        } catch ( NumberFormatException e ) {
+            respondBadNumber( ctx, e );
+            return;
+        }
+        ctx.status( HttpStatus.OK ).contentType( "application/json" ).result( new Gson().toJson(
+                resultAnalysis.getPlanCoverage().coverage( dimension, from, to )
+        ) );
+    }
+
+    public static void handleRollupResponse( Context ctx ) {
+        ResultRollup.Dimension dimension;
+        try {
+            dimension = ResultRollup.Dimension.valueOf( Optional.ofNullable( ctx.queryParam( "by" ) ).orElse( "pdb" ).toUpperCase() );
+        } catch ( IllegalArgumentException e ) {
+            ctx.status( HttpStatus.BAD_REQUEST ).result( "Unknown dimension: " + ctx.queryParam( "by" ) );
+            return;
+        }
+        long to;
+        long from;
+        try {
+            to = Optional.ofNullable( ctx.queryParam( "to" ) ).map( Long::parseLong ).orElse( System.currentTimeMillis() );
+            from = Optional.ofNullable( ctx.queryParam( "from" ) ).map( Long::parseLong ).orElse( to - TimeUnit.DAYS.toMillis( 1 ) );
+        } catch ( NumberFormatException e ) {
+            respondBadNumber( ctx, e );
+            return;
+        }
+        String key = ctx.queryParam( "key" );
+        // Read on a pooled connection, which ends the read when given back, instead of the main write connection
+        try ( QueryLogPool.Lease lease = readConnections.borrow( READ_CONNECTION_TIMEOUT_MILLIS ) ) {
+            List<ResultRollup.Row> rows = key == null
+                    ? lease.getConnection().rollupTotals( dimension, from, to )
+                    : lease.getConnection().rollupHours( dimension, key, from, to );
+            ctx.status( HttpStatus.OK ).contentType( "application/json" ).result( new Gson().toJson( rows ) );
+        } catch ( SQLTransientConnectionException e ) {
+            ctx.status( HttpStatus.SERVICE_UNAVAILABLE ).result( e.getMessage() );
+        } catch ( SQLException e ) {
+            log.error( "Could not read rollups: ", e );
+            ctx.status( HttpStatus.INTERNAL_SERVER_ERROR );
+        }
+    }
+
+    private record TopResponse( Long time, Object[] slowest, Object[] errors, Object[] failingPlans ) implements Serializable {}
+
+    private record SlowResult( String branch, String pdbKey, long seed, String physicalHash, long execTime, long receivedAt ) implements Serializable {}
+
+    private record FrequentError( String signatureHash, String signature, long count, long error ) implements Serializable {}
+
+    private record FailingPlan( String key, long count, long error ) implements Serializable {}
+
+    /**
+     * Streams a page of a query log query to the client. The page is read from a cursor on a dedicated connection and
+     * written row by row, as a JSON object holding the rows and the key to continue after, or as NDJSON with one row
+     * per line if format=ndjson is requested.
+     */
+    public static void handleQueryResponse( Context ctx, QueryLogQuery query ) {
+        try {
+            QueryLogQuery.Filter filter = filterOf( ctx );
+            int limit = Optional.ofNullable( ctx.queryParam( "limit" ) ).map( Integer::parseInt ).orElse( DEFAULT_PAGE_SIZE );
+            if ( limit <= 0 ) {
+                throw new IllegalArgumentException( "The limit has to be positive." );
+            }
+            int pageSize = Math.min( limit, MAX_PAGE_SIZE );
+            boolean ndjson = "ndjson".equals( ctx.queryParam( "format" ) );
+            try ( QueryLogPool.Lease lease = readConnections.borrow( READ_CONNECTION_TIMEOUT_MILLIS ) ) {
+                lease.getConnection().stream( query, filter, ctx.queryParam( "after" ), pageSize, resultSet -> writeRows( ctx, resultSet, pageSize, ndjson ) );
+            }
+        } catch ( IllegalArgumentException e ) {
+            ctx.status( HttpStatus.BAD_REQUEST ).result( e.getMessage() );
+        } catch ( SQLTransientConnectionException e ) {
+            ctx.status( HttpStatus.SERVICE_UNAVAILABLE ).result( e.getMessage() );
+        } catch ( SQLException | IOException e ) {
+            log.error( "Could not stream " + query.name().toLowerCase() + ": ", e );
+            ctx.status( HttpStatus.INTERNAL_SERVER_ERROR );
+        }
+    }
+
+    /**
+     * Streams the results matching the filter as columnar file, see {@link ResultExport}.
+     */
+    public static void handleExportResponse( Context ctx ) {
+        try {
+            QueryLogQuery.Filter filter = filterOf( ctx );
+            try ( QueryLogPool.Lease lease = readConnections.borrow( READ_CONNECTION_TIMEOUT_MILLIS ) ) {
+                ResultExport.export( lease.getConnection(), filter, () -> {
+                    ctx.status( HttpStatus.OK ).contentType( "application/octet-stream" ).header( "Content-Disposition", "attachment; filename=\"results.pfcol\"" );
+                    return ctx.outputStream();
+                } );
+            }
+        } catch ( IllegalArgumentException e ) {
+            ctx.status( HttpStatus.BAD_REQUEST ).result( e.getMessage() );
+        } catch ( SQLTransientConnectionException e ) {
+            ctx.status( HttpStatus.SERVICE_UNAVAILABLE ).result( e.getMessage() );
+        } catch ( SQLException | IOException e ) {
+            log.error( "Could not export results: ", e );
+            ctx.status( HttpStatus.INTERNAL_SERVER_ERROR );
+        }
+    }
+
+    private static QueryLogQuery.Filter filterOf( Context ctx ) {
+        return QueryLogQuery.Filter.builder()
+                .pdbKey( ctx.queryParam( "pdbKey" ) )
+                .branch( ctx.queryParam( "branch" ) )
+                .seedFrom( Optional.ofNullable( ctx.queryParam( "seedFrom" ) ).map( Long::parseLong ).orElse( null ) )
+                .seedTo( Optional.ofNullable( ctx.queryParam( "seedTo" ) ).map( Long::parseLong ).orElse( null ) )
+                .success( Optional.ofNullable( ctx.queryParam( "success" ) ).map( Boolean::parseBoolean ).orElse( null ) )
+                .from( Optional.ofNullable( ctx.queryParam( "from" ) ).map( Long::parseLong ).orElse( null ) )
+                .to( Optional.ofNullable( ctx.queryParam( "to" ) ).map( Long::parseLong ).orElse( null ) )
+                .build();
+    }
+
+    /**
+     * Writes the rows of a page, terminated by the cursor: the {@code next} member of the JSON object, or a last
+     * {@code {"next": ...}} line for NDJSON. The status is sent once the first row is fetched, a failing query still
+     * answers with an error status. If reading fails once the status is sent, the page ends early with an
+     * {@code error} member next to the cursor, whose {@code next} resumes after the last row written. A response
+     * without the cursor was cut off.
+     */
+    private static void writeRows( Context ctx, ResultSet resultSet, int limit, boolean ndjson ) throws SQLException, IOException {
+        boolean hasRow = resultSet.next();
+        ctx.status( HttpStatus.OK ).contentType( ndjson ? "application/x-ndjson" : "application/json" );
+        Gson gson = new Gson();
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        boolean[] stringColumns = stringColumns( metaData );
+        Writer writer = new BufferedWriter( new OutputStreamWriter( ctx.outputStream(), StandardCharsets.UTF_8 ) );
+        if ( ! ndjson ) {
+            writer.write( "{\"rows\":[" );
+        }
+        int rows = 0;
+        String lastKey = null;
+        String error = null;
+        try {
+            while ( hasRow ) {
+                if ( rows > 0 && ! ndjson ) {
+                    writer.write( ',' );
+                }
+                writer.write( gson.toJson( toJson( resultSet, metaData, stringColumns ) ) );
+                if ( ndjson ) {
+                    writer.write( '\n' );
+                }
+                lastKey = resultSet.getString( 1 );
+                if ( ++rows % FLUSH_ROWS == 0 ) {
+                    writer.flush();
+                }
+                hasRow = resultSet.next();
+            }
+        } catch ( SQLException e ) {
+            log.error( "Stream failed after " + rows + " rows: ", e );
+            error = Objects.requireNonNullElse( e.getMessage(), e.getClass().getSimpleName() );
+        }
+        String next = error != null || rows == limit ? lastKey : null;
+        String cursor = "\"next\":" + gson.toJson( next ) + ( error == null ? "" : ",\"error\":" + gson.toJson( error ) );
+        writer.write( ndjson ? "{" + cursor + "}\n" : "]," + cursor + "}" );
+        writer.flush();
+    }
+
+    /**
+     * @return Whether a column is written as string, by column index starting at 1: the 64-bit keys and ids, which
+     * exceed the integers JavaScript numbers represent exactly.
+     */
+    private static boolean[] stringColumns( ResultSetMetaData metaData ) throws SQLException {
+        boolean[] stringColumns = new boolean[metaData.getColumnCount() + 1];
+        for ( int i = 1; i <= metaData.getColumnCount(); i++ ) {
+            String column = metaData.getColumnLabel( i );
+            stringColumns[i] = metaData.getColumnType( i ) == Types.BIGINT && ( column.endsWith( "Key" ) || column.endsWith( "Id" ) );
+        }
+        return stringColumns;
+    }
+
+    private static JsonObject toJson( ResultSet resultSet, ResultSetMetaData metaData, boolean[] stringColumns ) throws SQLException {
+        JsonObject row = new JsonObject();
+        for ( int i = 1; i <= metaData.getColumnCount(); i++ ) {
+            String column = metaData.getColumnLabel( i );
+            Object value = resultSet.getObject( i );
+            if ( value == null ) {
+                row.add( column, null );
+            } else if ( stringColumns[i] ) {
+                row.addProperty( column, value.toString() );
+            } else if ( value instanceof Timestamp timestamp ) {
+                row.addProperty( column, timestamp.getTime() );
+            } else if ( value instanceof Number number ) {
+                row.addProperty( column, number );
+            } else if ( value instanceof Boolean bool ) {
+                row.addProperty( column, bool );
+            } else {
+                row.addProperty( column, value.toString() );
+            }
+        }
+        return row;
+    }
+
+    private record CostAccuracyResponse( Long time, CostAccuracyTracker.PlanAccuracySummary overall, Object[] worstPlans ) implements Serializable {}
+
+    private record ReadinessResponse( boolean ready, String state, int bufferedResults ) implements Serializable {}
+
     @Getter
     @AllArgsConstructor
     private enum ResponseMessageCode {
         OK( null ),
-        JOB( Profile.class );
+        JOB( Profile.class ),
+        // The backend is not ready yet, the client repeats the message later
+        RETRY( null ),
+        // The key is not registered, the client signs in anew
+        UNKNOWN( null ),
+        // The server is shutting down, the client stops requesting jobs until it reconnects
+        PAUSE( null );
 
         private final Class<?> clazz;
     }
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package server.messages;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import lombok.extern.slf4j.Slf4j;
+import server.clients.Browser;
+import server.clients.PCtrl;
+import server.clients.PDB;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Versioned system status for the sys subscribers. The status last sent is kept per client record; every tick compares
+ * the current records against it and sends only the changed records, and the keys of the records that disappeared, as
+ * a delta tagged with the next sequence number. Disappeared records are pruned from the status.
+ * A subscriber receives one snapshot of the status at the current sequence number and the deltas following it, and
+ * subscribes anew if it detects a gap in the sequence numbers.
+ */
+@Slf4j
+class StatusBroadcast {
+    private static final String SNAPSHOT = "snapshot";
+    private static final String DELTA = "delta";
+
+    private final Gson gson = new Gson();
+    private final Map<String, JsonElement> sentPdbs = new HashMap<>();
+    private final Map<String, JsonElement> sentPctrls = new HashMap<>();
+    private JsonElement sentRegressions;
+    private long sequence;
+
+    /**
+     * Sends the records that changed since the last tick to all subscribers. Nothing is sent if nothing changed.
+     */
+    synchronized void tick( Collection<PDB> pdbs, Collection<PCtrl> pctrls, List<?> regressions, Collection<Browser> subscribers ) {
+        List<JsonElement> changedPdbs = changed( sentPdbs, pdbs, PDB::getPdbKey );
+        List<JsonElement> changedPctrls = changed( sentPctrls, pctrls, PCtrl::getPctrlKey );
+        List<String> removedPdbs = removed( sentPdbs, pdbs, PDB::getPdbKey );
+        List<String> removedPctrls = removed( sentPctrls, pctrls, PCtrl::getPctrlKey );
+        JsonElement regressionTree = gson.toJsonTree( regressions );
+        JsonElement changedRegressions = regressionTree.equals( sentRegressions ) ? null : regressionTree;
+        sentRegressions = regressionTree;
+        if ( changedPdbs.isEmpty() && changedPctrls.isEmpty() && removedPdbs.isEmpty() && removedPctrls.isEmpty() && changedRegressions == null ) {
+            return;
+        }
+        sequence++;
+        if ( subscribers.isEmpty() ) {
+            return;
+        }
+        String frame = gson.toJson( new StatusFrame(
+                DELTA,
+                sequence,
+                System.currentTimeMillis(),
+                changedPdbs,
+                changedPctrls,
+                removedPdbs,
+                removedPctrls,
+                changedRegressions
+        ) );
+        subscribers.forEach( browser -> send( browser, frame ) );
+    }
+
+    /**
+     * Brings the status up to date and sends a snapshot of it to a new subscriber, all other subscribers receive the
+     * delta as usual. The subscriber is only added to the subscribers once it received the snapshot, under the lock of
+     * {@link #tick}, such that it never receives a delta before its snapshot.
+     *
+     * @param sessionId The session the subscriber is registered under.
+     * @param subscribers The subscribers by session, the new subscriber is added to them unless its session is
+     * subscribed already.
+     */
+    synchronized void subscribe( String sessionId, Browser subscriber, Collection<PDB> pdbs, Collection<PCtrl> pctrls, List<?> regressions, Map<String, Browser> subscribers ) {
+        if ( subscribers.containsKey( sessionId ) ) {
+            return;
+        }
+        tick( pdbs, pctrls, regressions, subscribers.values() );
+        send( subscriber, gson.toJson( new StatusFrame(
+                SNAPSHOT,
+                sequence,
+                System.currentTimeMillis(),
+                new ArrayList<>( sentPdbs.values() ),
+                new ArrayList<>( sentPctrls.values() ),
+                List.of(),
+                List.of(),
+                sentRegressions
+        ) ) );
+        subscribers.put( sessionId, subscriber );
+    }
+
+    private <T> List<JsonElement> changed( Map<String, JsonElement> sent, Collection<T> records, Function<T, String> key ) {
+        List<JsonElement> changed = new ArrayList<>();
+        for ( T record : records ) {
+            JsonElement tree = gson.toJsonTree( record );
+            JsonElement previous = sent.put( key.apply( record ), tree );
+            if ( ! tree.equals( previous ) ) {
+                changed.add( tree );
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Removes the records that are gone from the sent status.
+     *
+     * @return The keys of the removed records.
+     */
+    private static <T> List<String> removed( Map<String, JsonElement> sent, Collection<T> records, Function<T, String> key ) {
+        if ( sent.size() == records.size() ) {
+            // Every current record was put by changed, nothing else can be left
+            return List.of();
+        }
+        Set<String> current = new HashSet<>();
+        records.forEach( record -> current.add( key.apply( record ) ) );
+        List<String> removed = new ArrayList<>();
+        sent.keySet().removeIf( sentKey -> {
+            if ( current.contains( sentKey ) ) {
+                return false;
+            }
+            removed.add( sentKey );
+            return true;
+        } );
+        return removed;
+    }
+
+    private static void send( Browser browser, String frame ) {
+        try {
+            browser.getWsContext().send( frame );
+        } catch ( Exception e ) {
+            log.debug( "Could not send status to " + browser.getWsContext().getSessionId() + ": " + e.getMessage() );
+        }
+    }
+
+    /**
+     * A status frame. Deltas hold only the changed records, the keys of the removed records and the regressions only if
+     * they changed.
+     */
+    private record StatusFrame(
+            String type,
+            long sequence,
+            long time,
+            List<JsonElement> pdbClients,
+            List<JsonElement> pctrlClients,
+            List<String> removedPdbClients,
+            List<String> removedPctrlClients,
+            JsonElement regressions
+    ) implements Serializable {}
+
+}
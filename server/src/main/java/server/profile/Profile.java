@@ -59,4 +59,16 @@ public class Profile implements Serializable {
      */
     private final SeedsConfig issuedSeeds;
 
+    /**
+     * Combines the schema, data and query configuration into one key. Results of different store configurations that
+     * share this key and a seed are expected to be identical.
+     */
+    public long comparisonKey() {
+        return Config.rehash(
+                schemaConfig.hashAndString().getLeft(),
+                dataConfig.hashAndString().getLeft(),
+                queryConfig.hashAndString().getLeft()
+        );
+    }
+
 }
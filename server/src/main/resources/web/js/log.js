@@ -16,51 +16,73 @@
 
 const log = document.getElementById('log-area');
 
-document.addEventListener("DOMContentLoaded", function() {
+// Sequence number of the last line received, sent when reconnecting to catch up on the lines in between
+let last = null;
+
+function appendLog(content) {
+    if (content.dropped) {
+        log.textContent += "... " + content.dropped + " lines dropped ...\n"
+    }
+    log.textContent += content.log
+    log.scrollTop = log.scrollHeight
+    last = content.last;
+}
+
+// The history is replayed in one gzip compressed binary frame
+function readFrame(data) {
+    if (typeof data === "string") {
+        return Promise.resolve(JSON.parse(data));
+    }
+    return new Response(data.stream().pipeThrough(new DecompressionStream("gzip")))
+        .text()
+        .then(text => JSON.parse(text));
+}
+
+function connect() {
     const socketUrl = "ws://" + window.location.host + "/ws";
     const socket = new WebSocket(socketUrl);
+    let interval;
+    // Frames are applied in order, even though decompressing is asynchronous
+    let pending = Promise.resolve();
 
     socket.addEventListener("open", (event) => {
         console.log("WebSocket connected:", socket);
 
-        interval = setInterval(function() {
-            sendMessage(
-                JSON.stringify({
-                    clientCode:"BROWSER",
-                    messageCode:"BROWSER_LOG",
-                })
-            )
-        }, 5000 );
-
+        const subscribe = () => socket.send(
+            JSON.stringify({
+                clientCode:"BROWSER",
+                messageCode:"BROWSER_LOG",
+                body: last === null ? null : JSON.stringify({ after: last }),
+            })
+        );
+        subscribe();
+        interval = setInterval(subscribe, 5000);
     });
 
     socket.addEventListener("message", (event) => {
-        console.log("Received message:", event.data.toString());
-        // Process the message and optionally send a response back to the server.
-        var content = JSON.parse(event.data);
-        if (content.log) {
-            console.log("Log message:", content.log);
-            log.textContent += content.log
-            log.scrollTop = log.scrollHeight
-        } else if (content.sys) {
-            console.log("System message:", content.sys);
-        } else {
-            console.log("Unknown content:", content);
-        }
-        console.log(content.key)
+        pending = pending
+            .then(() => readFrame(event.data))
+            .then(content => {
+                if (content.log !== undefined) {
+                    appendLog(content);
+                } else {
+                    console.log("Unknown content:", content);
+                }
+            })
+            .catch(error => console.error("Could not read log frame:", error));
     });
 
     socket.addEventListener("close", (event) => {
         console.log("WebSocket closed:", event);
+        clearInterval(interval);
+        setTimeout(connect, 1000);
     });
 
     socket.addEventListener("error", (event) => {
         console.error("WebSocket error:", event);
     });
+}
 
-    // Example: sending a message to the server
-    function sendMessage(message) {
-        socket.send(message);
-    }
-
-});
\ No newline at end of file
+document.addEventListener("DOMContentLoaded", function() {
+    connect();
+});
@@ -17,50 +17,120 @@
 
 
 
-document.addEventListener("DOMContentLoaded", function() {
+function fillTable(table, header, rows) {
+    table.replaceChildren();
+    const head = table.insertRow();
+    header.forEach(title => {
+        const cell = document.createElement("th");
+        cell.textContent = title;
+        head.appendChild(cell);
+    });
+    rows.forEach(row => {
+        const tr = table.insertRow();
+        row.forEach(value => tr.insertCell().textContent = value);
+    });
+}
+
+function refreshTop() {
+    fetch("/api/analysis/top?limit=20")
+        .then(response => response.json())
+        .then(top => {
+            fillTable(document.getElementById("sys-slowest-table"),
+                ["Branch", "Seed", "Exec Time", "Physical Plan"],
+                top.slowest.map(r => [r.branch, r.seed, r.execTime, r.physicalHash]));
+            fillTable(document.getElementById("sys-errors-table"),
+                ["Count", "Signature"],
+                top.errors.map(e => [e.count, e.signature]));
+            fillTable(document.getElementById("sys-plans-table"),
+                ["Failures", "Physical Plan"],
+                top.failingPlans.map(p => [p.count, p.key]));
+        })
+        .catch(error => console.error("Could not fetch top queries:", error));
+}
+
+const status = {
+    sequence: null,
+    pdbClients: new Map(),
+    pctrlClients: new Map(),
+    regressions: []
+};
+
+// Applies a status snapshot or delta, returns false if a delta was missed.
+function applyStatus(frame) {
+    if (frame.type === "snapshot") {
+        status.pdbClients.clear();
+        status.pctrlClients.clear();
+        status.regressions = [];
+    } else if (status.sequence === null || frame.sequence !== status.sequence + 1) {
+        return false;
+    }
+    status.sequence = frame.sequence;
+    frame.pdbClients.forEach(pdb => status.pdbClients.set(pdb.pdbKey, pdb));
+    frame.pctrlClients.forEach(pctrl => status.pctrlClients.set(pctrl.pctrlKey, pctrl));
+    frame.removedPdbClients.forEach(key => status.pdbClients.delete(key));
+    frame.removedPctrlClients.forEach(key => status.pctrlClients.delete(key));
+    if (frame.regressions) {
+        status.regressions = frame.regressions;
+    }
+    return true;
+}
+
+const RECONNECT_MIN_MILLIS = 1000;
+const RECONNECT_MAX_MILLIS = 30000;
+let reconnectMillis = RECONNECT_MIN_MILLIS;
+
+function connect() {
     const socketUrl = "ws://" + window.location.host + "/ws";
     const socket = new WebSocket(socketUrl);
+    let interval;
 
     socket.addEventListener("open", (event) => {
         console.log("WebSocket connected:", socket);
+        reconnectMillis = RECONNECT_MIN_MILLIS;
 
-        interval = setInterval(function() {
-            sendMessage(
-                JSON.stringify({
-                    clientCode:"BROWSER",
-                    messageCode:"BROWSER_SYS",
-                })
-            )
-        }, 5000 );
-
+        const subscribe = () => socket.send(
+            JSON.stringify({
+                clientCode:"BROWSER",
+                messageCode:"BROWSER_SYS",
+            })
+        );
+        subscribe();
+        interval = setInterval(subscribe, 5000);
     });
 
     socket.addEventListener("message", (event) => {
-        console.log("Received message:", event.data.toString());
-        // Process the message and optionally send a response back to the server.
-        var content = JSON.parse(event.data);
-        if (content.log) {
-            console.log("Log message:", content.log);
-        } else if (content.sys) {
-            console.log("System message:", content.sys);
-            // Todo display info -> D3
+        const content = JSON.parse(event.data);
+        if (content.type === "snapshot" || content.type === "delta") {
+            if (!applyStatus(content)) {
+                // A delta was missed, a new session starts with a fresh snapshot
+                console.log("Missed status delta, resubscribing.");
+                status.sequence = null;
+                socket.close();
+                return;
+            }
+            console.log("System status #" + status.sequence + ":", status);
         } else {
             console.log("Unknown content:", content);
         }
-        console.log(content.key)
     });
 
     socket.addEventListener("close", (event) => {
         console.log("WebSocket closed:", event);
+        clearInterval(interval);
+        // Deltas sent while disconnected are lost, the new session starts with a fresh snapshot
+        status.sequence = null;
+        setTimeout(connect, reconnectMillis);
+        reconnectMillis = Math.min(reconnectMillis * 2, RECONNECT_MAX_MILLIS);
     });
 
     socket.addEventListener("error", (event) => {
         console.error("WebSocket error:", event);
     });
+}
 
-    // Example: sending a message to the server
-    function sendMessage(message) {
-        socket.send(message);
-    }
+document.addEventListener("DOMContentLoaded", function() {
+    refreshTop();
+    setInterval(refreshTop, 10000);
 
-});
\ No newline at end of file
+    connect();
+});
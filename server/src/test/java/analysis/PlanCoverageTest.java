@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PlanCoverageTest {
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long START = 1_700_000_000_000L - 1_700_000_000_000L % DAY;
+    private static final String[] BRANCHES = { "master", "feature", null };
+
+    private static void recordDays( PlanCoverage planCoverage, long seed, int fromDay, int toDay ) {
+        Random random = new Random( seed );
+        for ( int day = fromDay; day < toDay; day++ ) {
+            for ( int i = 0; i < 2000; i++ ) {
+                long time = START + day * DAY + random.nextInt( (int) DAY );
+                long logical = random.nextInt( 300 + 100 * day );
+                planCoverage.record(
+                        random.nextInt( 4 ),
+                        random.nextInt( 3 ),
+                        BRANCHES[random.nextInt( BRANCHES.length )],
+                        logical,
+                        random.nextInt( 10 ) == 0 ? null : logical * 31 + random.nextInt( 3 ),
+                        time
+                );
+            }
+        }
+    }
+
+    private static List<PlanCoverage.Coverage> coverage( PlanCoverage planCoverage, PlanCoverage.Dimension dimension, long from, long to ) {
+        return planCoverage.coverage( dimension, from, to ).stream()
+                .sorted( Comparator.comparing( PlanCoverage.Coverage::key ) )
+                .toList();
+    }
+
+    private static List<PlanCoverage.WindowSketch> checkpoint( PlanCoverage planCoverage ) {
+        List<PlanCoverage.WindowSketch> sketches = planCoverage.pending();
+        planCoverage.acknowledge( sketches );
+        return sketches;
+    }
+
+    private static void assertSameCoverage( PlanCoverage expected, PlanCoverage actual ) {
+        for ( PlanCoverage.Dimension dimension : PlanCoverage.Dimension.values() ) {
+            for ( int day = 0; day < 5; day++ ) {
+                long from = START + day * DAY;
+                assertEquals( coverage( expected, dimension, from, from + DAY ), coverage( actual, dimension, from, from + DAY ) );
+            }
+            assertEquals( coverage( expected, dimension, START, START + 5 * DAY ), coverage( actual, dimension, START, START + 5 * DAY ) );
+        }
+    }
+
+    @Test
+    public void restoreReproducesCoverage() {
+        PlanCoverage planCoverage = new PlanCoverage();
+        recordDays( planCoverage, 1, 0, 5 );
+        PlanCoverage restored = new PlanCoverage();
+        checkpoint( planCoverage ).forEach( restored::load );
+
+        assertSameCoverage( planCoverage, restored );
+        assertFalse( coverage( restored, PlanCoverage.Dimension.BRANCH, START, START + 5 * DAY ).isEmpty() );
+    }
+
+    @Test
+    public void restoreReproducesCoverageOfIncrementalCheckpoints() {
+        PlanCoverage planCoverage = new PlanCoverage();
+        PlanCoverage restored = new PlanCoverage();
+        // Checkpoints only hand out the windows that changed; a persisted window is replaced by its latest sketch
+        List<PlanCoverage.WindowSketch> first = checkpoint( planCoverage );
+        recordDays( planCoverage, 2, 0, 3 );
+        List<PlanCoverage.WindowSketch> second = checkpoint( planCoverage );
+        recordDays( planCoverage, 3, 2, 5 );
+        List<PlanCoverage.WindowSketch> third = checkpoint( planCoverage );
+
+        assertTrue( first.isEmpty() );
+        assertTrue( checkpoint( planCoverage ).isEmpty() );
+        second.stream()
+                .filter( sketch -> third.stream().noneMatch( later -> later.dimension() == sketch.dimension()
+                        && later.dimensionKey().equals( sketch.dimensionKey() ) && later.windowStart() == sketch.windowStart() ) )
+                .forEach( restored::load );
+        third.forEach( restored::load );
+
+        assertSameCoverage( planCoverage, restored );
+    }
+
+    @Test
+    public void keepsSketchesPendingUntilAcknowledged() {
+        PlanCoverage planCoverage = new PlanCoverage();
+        recordDays( planCoverage, 6, 0, 2 );
+        List<PlanCoverage.WindowSketch> failed = planCoverage.pending();
+        List<PlanCoverage.WindowSketch> retried = planCoverage.pending();
+        assertEquals( failed.size(), retried.size() );
+
+        // A window that recorded results after its sketch was handed out stays pending
+        recordDays( planCoverage, 7, 1, 2 );
+        planCoverage.acknowledge( retried );
+
+        List<PlanCoverage.WindowSketch> remaining = planCoverage.pending();
+        assertFalse( remaining.isEmpty() );
+        assertTrue( remaining.stream().allMatch( sketch -> sketch.windowStart() == START + DAY ) );
+        planCoverage.acknowledge( remaining );
+        assertTrue( planCoverage.pending().isEmpty() );
+    }
+
+    @Test
+    public void restoredCoverageKeepsCounting() {
+        PlanCoverage planCoverage = new PlanCoverage();
+        recordDays( planCoverage, 4, 0, 3 );
+        PlanCoverage restored = new PlanCoverage();
+        checkpoint( planCoverage ).forEach( restored::load );
+        recordDays( planCoverage, 5, 3, 5 );
+        recordDays( restored, 5, 3, 5 );
+
+        assertSameCoverage( planCoverage, restored );
+    }
+
+}
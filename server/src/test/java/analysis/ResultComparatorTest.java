@@ -0,0 +1,89 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis;
+
+import analysis.structures.DirectMemoryBudget;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResultComparatorTest {
+
+    @Test
+    public void detectsMismatch() throws IOException {
+        ResultComparator resultComparator = new ResultComparator( Files.createTempDirectory( "comparator" ), DirectMemoryBudget.UNBOUNDED );
+
+        assertFalse( resultComparator.compare( "pdb", 1, 10, 100, 1000 ).isPresent() );
+        assertFalse( resultComparator.compare( "pdb", 1, 20, 100, 1000 ).isPresent() );
+        Optional<ResultComparator.Mismatch> mismatch = resultComparator.compare( "pdb", 1, 30, 100, 2000 );
+
+        assertTrue( mismatch.isPresent() );
+        assertEquals( 10, mismatch.get().otherStoreConfigHash() );
+        assertEquals( 1000, mismatch.get().otherResultSetHash() );
+        assertEquals( 1, resultComparator.getMismatchCount() );
+    }
+
+    @Test
+    public void releasesIdleKeysAndReopensThem() throws IOException {
+        DirectMemoryBudget budget = new DirectMemoryBudget( 1 << 20 );
+        ResultComparator resultComparator = new ResultComparator( Files.createTempDirectory( "comparator" ), budget );
+        resultComparator.compare( "pdb", 1, 10, 100, 1000 );
+        resultComparator.compare( "pdb", 2, 10, 100, 1000 );
+
+        resultComparator.snapshot( 0 );
+
+        assertEquals( 0, resultComparator.offHeapBytes() );
+        assertEquals( 0, budget.reserved() );
+        assertTrue( resultComparator.compare( "pdb", 1, 20, 100, 2000 ).isPresent() );
+        assertEquals( resultComparator.offHeapBytes(), budget.reserved() );
+    }
+
+    @Test
+    public void keepsKeysInUse() throws IOException {
+        ResultComparator resultComparator = new ResultComparator( Files.createTempDirectory( "comparator" ), DirectMemoryBudget.UNBOUNDED );
+        resultComparator.compare( "pdb", 1, 10, 100, 1000 );
+        long bytes = resultComparator.offHeapBytes();
+
+        resultComparator.snapshot();
+
+        assertEquals( bytes, resultComparator.offHeapBytes() );
+    }
+
+    @Test
+    public void reopensSnapshotOnFirstUse() throws IOException {
+        Path directory = Files.createTempDirectory( "comparator" );
+        ResultComparator resultComparator = new ResultComparator( directory, DirectMemoryBudget.UNBOUNDED );
+        resultComparator.compare( "pdb", -1, -10, 100, 1000 );
+        resultComparator.snapshot();
+
+        ResultComparator reopened = ResultComparator.open( directory, DirectMemoryBudget.UNBOUNDED );
+
+        assertEquals( 0, reopened.offHeapBytes() );
+        Optional<ResultComparator.Mismatch> mismatch = reopened.compare( "pdb", -1, 20, 100, 2000 );
+        assertTrue( mismatch.isPresent() );
+        assertEquals( -10, mismatch.get().otherStoreConfigHash() );
+        assertFalse( reopened.compare( "pdb", 2, 20, 100, 2000 ).isPresent() );
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HyperLogLogTest {
+    private static final int PRECISION = 11;
+    // Four times the relative standard error of 1.04 / sqrt(2^11)
+    private static final double TOLERANCE = 4 * 1.04 / Math.sqrt( 1 << PRECISION );
+
+    private static void assertWithinTolerance( long expected, long estimate ) {
+        assertTrue( Math.abs( estimate - expected ) <= Math.max( 1, TOLERANCE * expected ), "estimated " + estimate + " of " + expected );
+    }
+
+    @Test
+    public void estimatesSequentialValues() {
+        HyperLogLog sketch = new HyperLogLog( PRECISION );
+        long added = 0;
+        for ( long expected : new long[]{ 10, 100, 1_000, 10_000, 100_000, 1_000_000 } ) {
+            while ( added < expected ) {
+                sketch.add( added++ );
+            }
+            assertWithinTolerance( expected, sketch.estimate() );
+        }
+    }
+
+    @Test
+    public void estimatesRandomValues() {
+        Random random = new Random( 3 );
+        for ( int run = 0; run < 10; run++ ) {
+            HyperLogLog sketch = new HyperLogLog( PRECISION );
+            for ( int i = 0; i < 50_000; i++ ) {
+                sketch.add( random.nextLong() );
+            }
+            assertWithinTolerance( 50_000, sketch.estimate() );
+        }
+    }
+
+    @Test
+    public void ignoresDuplicates() {
+        HyperLogLog sketch = new HyperLogLog( PRECISION );
+        for ( long value = 0; value < 1000; value++ ) {
+            sketch.add( value );
+        }
+        long estimate = sketch.estimate();
+        for ( long value = 0; value < 1000; value++ ) {
+            assertFalse( sketch.add( value ) );
+        }
+
+        assertEquals( estimate, sketch.estimate() );
+        assertEquals( 0, new HyperLogLog( PRECISION ).estimate() );
+    }
+
+    @Test
+    public void mergeEstimatesUnion() {
+        HyperLogLog first = new HyperLogLog( PRECISION );
+        HyperLogLog second = new HyperLogLog( PRECISION );
+        HyperLogLog union = new HyperLogLog( PRECISION );
+        for ( long value = 0; value < 60_000; value++ ) {
+            first.add( value );
+            union.add( value );
+        }
+        for ( long value = 40_000; value < 100_000; value++ ) {
+            second.add( value );
+            union.add( value );
+        }
+        first.merge( second );
+
+        assertEquals( union.estimate(), first.estimate() );
+        assertWithinTolerance( 100_000, first.estimate() );
+        assertThrows( IllegalArgumentException.class, () -> first.merge( new HyperLogLog( PRECISION + 1 ) ) );
+    }
+
+    @Test
+    public void restoresFromBytes() {
+        HyperLogLog sketch = new HyperLogLog( PRECISION );
+        for ( long value = 0; value < 5000; value++ ) {
+            sketch.add( value * 17 );
+        }
+        HyperLogLog restored = HyperLogLog.fromBytes( sketch.toBytes() );
+
+        assertEquals( PRECISION, restored.precision() );
+        assertEquals( sketch.estimate(), restored.estimate() );
+        assertThrows( IllegalArgumentException.class, () -> HyperLogLog.fromBytes( new byte[100] ) );
+    }
+
+}
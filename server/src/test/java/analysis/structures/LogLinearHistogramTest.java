@@ -0,0 +1,112 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LogLinearHistogramTest {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final double[] QUANTILES = { 0, 0.1, 0.5, 0.9, 0.99, 0.999, 1 };
+
+    @Test
+    public void countsSmallValuesExactly() {
+        LogLinearHistogram histogram = new LogLinearHistogram( SUB_BUCKET_BITS );
+        for ( long value = 0; value < 32; value++ ) {
+            histogram.record( value );
+        }
+
+        assertEquals( 32, histogram.count() );
+        assertEquals( 0, histogram.min() );
+        assertEquals( 31, histogram.max() );
+        assertEquals( 15, histogram.valueAtQuantile( 0.5 ) );
+        assertEquals( 15.5, histogram.mean(), 1e-9 );
+    }
+
+    @Test
+    public void staysWithinRelativeError() {
+        Random random = new Random( 7 );
+        long[] values = new long[100_000];
+        LogLinearHistogram histogram = new LogLinearHistogram( SUB_BUCKET_BITS );
+        for ( int i = 0; i < values.length; i++ ) {
+            // Log-normally distributed latencies around a millisecond in microseconds
+            values[i] = (long) Math.exp( 7 + 2 * random.nextGaussian() );
+            histogram.record( values[i] );
+        }
+        Arrays.sort( values );
+
+        for ( double quantile : QUANTILES ) {
+            long exact = values[(int) Math.max( 0, Math.ceil( quantile * values.length ) - 1 )];
+            long reported = histogram.valueAtQuantile( quantile );
+            assertTrue( reported >= exact, "quantile " + quantile + " below the exact value" );
+            assertTrue( reported - exact <= exact >> SUB_BUCKET_BITS, "quantile " + quantile + ": " + reported + " vs. " + exact );
+        }
+        assertEquals( values[values.length - 1], histogram.valueAtQuantile( 1 ) );
+    }
+
+    @Test
+    public void recordsExtremeValues() {
+        LogLinearHistogram histogram = new LogLinearHistogram( SUB_BUCKET_BITS );
+        histogram.record( -5 );
+        histogram.record( Long.MAX_VALUE );
+
+        assertEquals( 0, histogram.min() );
+        assertEquals( 0, histogram.valueAtQuantile( 0.5 ) );
+        assertEquals( Long.MAX_VALUE, histogram.valueAtQuantile( 1 ) );
+    }
+
+    @Test
+    public void addEqualsRecordingBoth() {
+        LogLinearHistogram first = new LogLinearHistogram( SUB_BUCKET_BITS );
+        LogLinearHistogram second = new LogLinearHistogram( SUB_BUCKET_BITS );
+        LogLinearHistogram both = new LogLinearHistogram( SUB_BUCKET_BITS );
+        for ( long value = 1; value < 100_000; value *= 3 ) {
+            first.record( value, 2 );
+            both.record( value, 2 );
+        }
+        for ( long value = 5; value < 10_000_000; value *= 7 ) {
+            second.record( value );
+            both.record( value );
+        }
+        first.add( second );
+
+        assertEquals( both.count(), first.count() );
+        assertEquals( both.min(), first.min() );
+        assertEquals( both.max(), first.max() );
+        assertEquals( both.mean(), first.mean(), 1e-9 );
+        assertArrayEquals( both.nonEmptyBuckets(), first.nonEmptyBuckets() );
+        assertThrows( IllegalArgumentException.class, () -> first.add( new LogLinearHistogram( SUB_BUCKET_BITS + 1 ) ) );
+    }
+
+    @Test
+    public void emptyHistogram() {
+        LogLinearHistogram histogram = new LogLinearHistogram( SUB_BUCKET_BITS );
+
+        assertEquals( 0, histogram.valueAtQuantile( 0.5 ) );
+        assertEquals( 0, histogram.min() );
+        assertEquals( 0, histogram.nonEmptyBuckets().length );
+        assertThrows( IllegalArgumentException.class, () -> new LogLinearHistogram( 0 ) );
+    }
+
+}
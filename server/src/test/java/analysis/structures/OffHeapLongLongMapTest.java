@@ -0,0 +1,179 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OffHeapLongLongMapTest {
+
+    @Test
+    public void putAndGet() {
+        OffHeapLongLongMap map = new OffHeapLongLongMap( 4 );
+        map.put( 1, 10 );
+        map.put( -1, 20 );
+        map.put( 0, 30 );
+        map.put( 1, 11 );
+
+        assertEquals( 3, map.size() );
+        assertEquals( 11, map.get( 1, -1 ) );
+        assertEquals( 20, map.get( -1, -1 ) );
+        assertEquals( 30, map.get( 0, -1 ) );
+        assertEquals( -1, map.get( 2, -1 ) );
+        assertTrue( map.containsKey( 0 ) );
+        assertFalse( map.containsKey( 2 ) );
+    }
+
+    @Test
+    public void growsWhileRehashing() {
+        OffHeapLongLongMap map = new OffHeapLongLongMap( 2 );
+        long initialBytes = map.offHeapBytes();
+        for ( long key = 1; key <= 100_000; key++ ) {
+            map.put( key * 31, key );
+        }
+
+        assertEquals( 100_000, map.size() );
+        assertTrue( map.offHeapBytes() > initialBytes );
+        for ( long key = 1; key <= 100_000; key++ ) {
+            assertEquals( key, map.get( key * 31, -1 ) );
+        }
+        assertFalse( map.isFull() );
+        assertEquals( 0, map.droppedCount() );
+    }
+
+    @Test
+    public void dropsNewKeysOnceFull() {
+        OffHeapLongLongMap map = new OffHeapLongLongMap( 2, 16 );
+        long key = 1;
+        while ( ! map.isFull() ) {
+            map.put( key, key );
+            key++;
+        }
+        int size = map.size();
+        long bytes = map.offHeapBytes();
+
+        map.put( key, key );
+        map.put( 1, 42 );
+
+        assertEquals( size, map.size() );
+        assertEquals( bytes, map.offHeapBytes() );
+        assertEquals( 1, map.droppedCount() );
+        assertFalse( map.containsKey( key ) );
+        // Present keys are still updated
+        assertEquals( 42, map.get( 1, -1 ) );
+    }
+
+    @Test
+    public void rejectsInvalidMaximumCapacity() {
+        assertThrows( IllegalArgumentException.class, () -> new OffHeapLongLongMap( 2, 12 ) );
+        assertThrows( IllegalArgumentException.class, () -> new OffHeapLongLongMap( 2, OffHeapLongLongMap.MAX_CAPACITY << 1 ) );
+    }
+
+    @Test
+    public void stopsGrowingOnceBudgetIsSpent() {
+        DirectMemoryBudget budget = new DirectMemoryBudget( 1024 );
+        OffHeapLongLongMap first = new OffHeapLongLongMap( 2, OffHeapLongLongMap.MAX_CAPACITY, budget );
+        OffHeapLongLongMap second = new OffHeapLongLongMap( 2, OffHeapLongLongMap.MAX_CAPACITY, budget );
+        long key = 1;
+        while ( ! first.isFull() ) {
+            first.put( key, key );
+            key++;
+        }
+
+        assertTrue( budget.reserved() <= budget.limit() );
+        assertEquals( first.offHeapBytes() + second.offHeapBytes(), budget.reserved() );
+        assertTrue( second.isFull() || second.size() < 2 );
+        first.put( key, key );
+        assertEquals( 1, first.droppedCount() );
+
+        // Released memory lets the other map grow
+        first.release();
+        for ( long other = 1; other < key; other++ ) {
+            second.put( other, other );
+        }
+        assertEquals( key - 1, second.size() );
+        assertEquals( second.offHeapBytes(), budget.reserved() );
+    }
+
+    @Test
+    public void copyIntoReusesLargerBuffer() {
+        OffHeapLongLongMap large = new OffHeapLongLongMap();
+        OffHeapLongLongMap small = new OffHeapLongLongMap( 2 );
+        small.put( 1, 1 );
+        small.put( 2, 2 );
+        large.put( 3, 3 );
+
+        OffHeapLongLongMap scratch = large.copyInto( new OffHeapLongLongMap( 2 ) );
+        long bytes = scratch.offHeapBytes();
+        small.copyInto( scratch );
+
+        assertEquals( 2, scratch.size() );
+        assertEquals( 1, scratch.get( 1, -1 ) );
+        assertEquals( 2, scratch.get( 2, -1 ) );
+        assertFalse( scratch.containsKey( 3 ) );
+        assertEquals( small.offHeapBytes(), scratch.offHeapBytes() );
+        assertTrue( bytes > scratch.offHeapBytes() );
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        OffHeapLongLongMap map = new OffHeapLongLongMap();
+        map.put( 1, 1 );
+        OffHeapLongLongMap copy = map.copy();
+        map.put( 1, 2 );
+        map.put( 2, 2 );
+
+        assertEquals( 1, copy.get( 1, -1 ) );
+        assertFalse( copy.containsKey( 2 ) );
+        assertEquals( 1, copy.size() );
+    }
+
+    @Test
+    public void reopensSnapshot() throws IOException {
+        Path directory = Files.createTempDirectory( "map" );
+        Path file = directory.resolve( "test.map" );
+        OffHeapLongLongMap map = new OffHeapLongLongMap();
+        for ( long key = 0; key < 5000; key++ ) {
+            map.put( key, ~key );
+        }
+        map.snapshot( file );
+
+        OffHeapLongLongMap reopened = OffHeapLongLongMap.open( file );
+        assertEquals( 5000, reopened.size() );
+        for ( long key = 0; key < 5000; key++ ) {
+            assertEquals( ~key, reopened.get( key, 0 ) );
+        }
+        assertFalse( Files.exists( directory.resolve( "test.map.tmp" ) ) );
+    }
+
+    @Test
+    public void rejectsForeignFile() throws IOException {
+        Path file = Files.createTempFile( "map", ".map" );
+        Files.write( file, new byte[64] );
+
+        assertThrows( IOException.class, () -> OffHeapLongLongMap.open( file ) );
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OffHeapTripleLongMapTest {
+
+    @Test
+    public void keepsKeysWithEqualComponentsApart() {
+        OffHeapTripleLongMap map = new OffHeapTripleLongMap( 4 );
+        map.put( 1, 2, 3, 10 );
+        map.put( 3, 2, 1, 20 );
+        map.put( 0, 0, 0, 30 );
+        map.put( 1, 2, 3, 11 );
+
+        assertEquals( 3, map.size() );
+        assertEquals( 11, map.get( 1, 2, 3, -1 ) );
+        assertEquals( 20, map.get( 3, 2, 1, -1 ) );
+        assertEquals( 30, map.get( 0, 0, 0, -1 ) );
+        assertEquals( -1, map.get( 2, 1, 3, -1 ) );
+        assertTrue( map.containsKey( 0, 0, 0 ) );
+        assertFalse( map.containsKey( 1, 2, 0 ) );
+    }
+
+    @Test
+    public void growsWhileRehashing() {
+        OffHeapTripleLongMap map = new OffHeapTripleLongMap( 2 );
+        for ( long key = 1; key <= 50_000; key++ ) {
+            map.put( key, -key, key * 31, key );
+        }
+
+        assertEquals( 50_000, map.size() );
+        for ( long key = 1; key <= 50_000; key++ ) {
+            assertEquals( key, map.get( key, -key, key * 31, -1 ) );
+        }
+        assertFalse( map.isFull() );
+    }
+
+    @Test
+    public void dropsNewKeysOnceFull() {
+        OffHeapTripleLongMap map = new OffHeapTripleLongMap( 2, 16 );
+        long key = 1;
+        while ( ! map.isFull() ) {
+            map.put( key, key, key, key );
+            key++;
+        }
+        int size = map.size();
+
+        map.put( key, key, key, key );
+        map.put( 1, 1, 1, 42 );
+
+        assertEquals( size, map.size() );
+        assertEquals( 1, map.droppedCount() );
+        assertFalse( map.containsKey( key, key, key ) );
+        assertEquals( 42, map.get( 1, 1, 1, -1 ) );
+    }
+
+    @Test
+    public void reopensSnapshot() throws IOException {
+        Path file = Files.createTempDirectory( "map" ).resolve( "test.map" );
+        OffHeapTripleLongMap map = new OffHeapTripleLongMap();
+        for ( long key = 0; key < 5000; key++ ) {
+            map.put( key, key + 1, 0, ~key );
+        }
+        map.snapshot( file );
+
+        OffHeapTripleLongMap reopened = OffHeapTripleLongMap.open( file );
+        assertEquals( 5000, reopened.size() );
+        for ( long key = 0; key < 5000; key++ ) {
+            assertEquals( ~key, reopened.get( key, key + 1, 0, 0 ) );
+        }
+    }
+
+    @Test
+    public void rejectsLongLongMapSnapshot() throws IOException {
+        Path file = Files.createTempFile( "map", ".map" );
+        new OffHeapLongLongMap().snapshot( file );
+
+        assertThrows( IOException.class, () -> OffHeapTripleLongMap.open( file ) );
+    }
+
+}
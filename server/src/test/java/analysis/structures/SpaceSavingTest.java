@@ -0,0 +1,134 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package analysis.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpaceSavingTest {
+    private static final int CAPACITY = 64;
+
+    /**
+     * Skewed keys: key k is drawn with a probability proportional to 1 / (k + 1).
+     */
+    private static long[] skewedStream( long seed, int length ) {
+        Random random = new Random( seed );
+        double[] cumulative = new double[10_000];
+        double sum = 0;
+        for ( int k = 0; k < cumulative.length; k++ ) {
+            sum += 1d / ( k + 1 );
+            cumulative[k] = sum;
+        }
+        long[] stream = new long[length];
+        for ( int i = 0; i < length; i++ ) {
+            double u = random.nextDouble() * sum;
+            int k = 0;
+            while ( cumulative[k] < u ) {
+                k++;
+            }
+            stream[i] = k;
+        }
+        return stream;
+    }
+
+    private static Map<Long, Long> exactCounts( long[]... streams ) {
+        Map<Long, Long> counts = new HashMap<>();
+        for ( long[] stream : streams ) {
+            for ( long key : stream ) {
+                counts.merge( key, 1L, Long::sum );
+            }
+        }
+        return counts;
+    }
+
+    private static void assertWithinBounds( SpaceSaving sketch, Map<Long, Long> exact, long total ) {
+        List<SpaceSaving.Item> items = sketch.top( CAPACITY );
+        for ( SpaceSaving.Item item : items ) {
+            long count = exact.getOrDefault( item.key(), 0L );
+            assertTrue( item.count() >= count, "count of " + item.key() + " underestimated" );
+            assertTrue( item.count() - item.error() <= count, "error of " + item.key() + " too small" );
+            assertTrue( item.error() <= total / CAPACITY, "error of " + item.key() + " above n / capacity" );
+        }
+        // Every key occurring more than n / capacity times is monitored
+        exact.forEach( ( key, count ) -> {
+            if ( count > total / CAPACITY ) {
+                assertTrue( items.stream().anyMatch( item -> item.key() == key ), "frequent key " + key + " not monitored" );
+            }
+        } );
+    }
+
+    @Test
+    public void countsExactlyWithinCapacity() {
+        SpaceSaving sketch = new SpaceSaving( CAPACITY );
+        for ( long key = 0; key < CAPACITY; key++ ) {
+            sketch.add( key, key + 1 );
+        }
+
+        List<SpaceSaving.Item> top = sketch.top( 3 );
+        assertEquals( 3, top.size() );
+        assertEquals( new SpaceSaving.Item( CAPACITY - 1, CAPACITY, 0 ), top.get( 0 ) );
+        assertEquals( new SpaceSaving.Item( CAPACITY - 2, CAPACITY - 1, 0 ), top.get( 1 ) );
+        assertEquals( (long) CAPACITY * ( CAPACITY + 1 ) / 2, sketch.total() );
+    }
+
+    @Test
+    public void staysWithinErrorBound() {
+        long[] stream = skewedStream( 42, 200_000 );
+        SpaceSaving sketch = new SpaceSaving( CAPACITY );
+        for ( long key : stream ) {
+            sketch.add( key );
+        }
+
+        assertEquals( stream.length, sketch.total() );
+        assertWithinBounds( sketch, exactCounts( stream ), stream.length );
+    }
+
+    @Test
+    public void mergeStaysWithinErrorBound() {
+        long[] first = skewedStream( 1, 100_000 );
+        long[] second = skewedStream( 2, 100_000 );
+        SpaceSaving sketch = new SpaceSaving( CAPACITY );
+        SpaceSaving other = new SpaceSaving( CAPACITY );
+        for ( long key : first ) {
+            sketch.add( key );
+        }
+        for ( long key : second ) {
+            other.add( key + 5 );
+        }
+        for ( int i = 0; i < second.length; i++ ) {
+            second[i] += 5;
+        }
+        sketch.add( other );
+
+        assertEquals( first.length + second.length, sketch.total() );
+        assertWithinBounds( sketch, exactCounts( first, second ), first.length + second.length );
+    }
+
+    @Test
+    public void rejectsEmptyCapacity() {
+        assertThrows( IllegalArgumentException.class, () -> new SpaceSaving( 0 ) );
+    }
+
+}
@@ -0,0 +1,662 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package connect;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory stand-in for the query log, understanding the statements of the {@link QueryLogAdapter} migrations and the
+ * catalog queries they make through {@link DatabaseMetaData}. Data changes become durable on commit, schema changes
+ * commit implicitly. A statement can be made to fail to interrupt a migration, a new connection then starts from the
+ * durable state like a restarted server.
+ */
+class FakeQueryLog {
+    private static final Pattern CREATE_TABLE = pattern( "CREATE TABLE (\\S+) \\( (.*) \\) ON STORE \\S+" );
+    private static final Pattern DROP_TABLE = pattern( "DROP TABLE (IF EXISTS )?(\\S+)" );
+    private static final Pattern RENAME_TABLE = pattern( "ALTER TABLE (\\S+) RENAME TO (\\S+)" );
+    private static final Pattern ADD_FOREIGN_KEY = pattern( "ALTER TABLE (\\S+) ADD CONSTRAINT (\\S+) FOREIGN KEY \\( (\\S+) \\) REFERENCES (\\S+) \\( (\\S+) \\).*" );
+    private static final Pattern ADD_UNIQUE = pattern( "ALTER TABLE (\\S+) ADD CONSTRAINT (\\S+) UNIQUE \\( (\\S+) \\)" );
+    private static final Pattern ADD_COLUMN = pattern( "ALTER TABLE (\\S+) ADD COLUMN (\\S+) (\\S+) (NOT NULL|NULL)" );
+    private static final Pattern SET_NOT_NULL = pattern( "ALTER TABLE (\\S+) MODIFY COLUMN (\\S+) SET NOT NULL" );
+    private static final Pattern ADD_INDEX = pattern( "ALTER TABLE (\\S+) ADD INDEX (\\S+) ON (\\S+) ON STORE \\S+" );
+    private static final Pattern INSERT = pattern( "INSERT INTO (\\S+) \\( (.*?) \\) VALUES \\( (.*) \\)" );
+    private static final Pattern SELECT_MAX = pattern( "SELECT MAX\\((\\S+)\\) FROM (\\S+)" );
+    private static final Pattern SELECT = pattern( "SELECT (.*?) FROM (\\S+)( WHERE (\\S+) > \\?)?( ORDER BY (\\S+))?" );
+    private static final Pattern UPDATE = pattern( "UPDATE (\\S+) SET (\\S+) = \\? WHERE (\\S+) = \\?" );
+
+    private State durable = new State();
+    private State working = new State();
+    private String failOn;
+    private int failAfter;
+    private final List<String> executed = new ArrayList<>();
+
+    private static Pattern pattern( String regex ) {
+        return Pattern.compile( regex, Pattern.CASE_INSENSITIVE | Pattern.DOTALL );
+    }
+
+    /**
+     * Opens a connection on the durable state, uncommitted changes of earlier connections are lost.
+     */
+    Connection connect() {
+        working = durable.copy();
+        return proxy( Connection.class, ( proxy, method, args ) -> switch ( method.getName() ) {
+            case "createStatement" -> statement( (Connection) proxy, null );
+            case "prepareStatement" -> statement( (Connection) proxy, (String) args[0] );
+            case "getMetaData" -> metaData();
+            case "commit" -> {
+                durable = working.copy();
+                yield null;
+            }
+            case "rollback" -> {
+                working = durable.copy();
+                yield null;
+            }
+            case "setAutoCommit", "close" -> null;
+            case "getAutoCommit", "isClosed" -> false;
+            case "isValid" -> true;
+            default -> throw new UnsupportedOperationException( method.getName() );
+        } );
+    }
+
+    /**
+     * Runs the statements of a fixture, separated by semicolons at line ends, and commits them.
+     */
+    void load( String resource ) throws IOException, SQLException {
+        String script;
+        try ( InputStream in = Objects.requireNonNull( FakeQueryLog.class.getResourceAsStream( resource ), resource ) ) {
+            script = new String( in.readAllBytes(), StandardCharsets.UTF_8 );
+        }
+        working = durable.copy();
+        for ( String sql : script.split( ";\\s*\\n" ) ) {
+            String statement = sql.replaceAll( "(?m)^\\s*--.*$", "" ).trim();
+            if ( ! statement.isEmpty() ) {
+                execute( statement, List.of() );
+            }
+        }
+        durable = working.copy();
+    }
+
+    /**
+     * Fails the given occurrence of a statement containing the fragment, simulating a crash.
+     */
+    void failOn( String fragment, int occurrence ) {
+        this.failOn = fragment.toLowerCase( Locale.ROOT );
+        this.failAfter = occurrence;
+    }
+
+    /**
+     * Drops a column of the durable state, e.g. to simulate a schema altered by hand.
+     */
+    void dropColumn( String table, String column ) {
+        Table t = durable.tables.get( name( table ) );
+        t.columns.remove( column.toLowerCase( Locale.ROOT ) );
+        t.rows.forEach( row -> row.remove( column.toLowerCase( Locale.ROOT ) ) );
+    }
+
+    /**
+     * @return The executed statements with normalized whitespace.
+     */
+    List<String> executed() {
+        return executed;
+    }
+
+    boolean hasTable( String table ) {
+        return durable.tables.containsKey( name( table ) );
+    }
+
+    /**
+     * @return The SQL type of the column, see {@link Types}, {@link Types#NULL} if there is no such column.
+     */
+    int columnType( String table, String column ) {
+        Column c = durable.tables.get( name( table ) ).columns.get( column.toLowerCase( Locale.ROOT ) );
+        return c == null ? Types.NULL : c.type();
+    }
+
+    Set<String> foreignKeys( String table ) {
+        Set<String> names = new LinkedHashSet<>();
+        durable.tables.get( name( table ) ).foreignKeys.forEach( foreignKey -> names.add( foreignKey.name() ) );
+        return names;
+    }
+
+    Set<String> indexes( String table ) {
+        return new LinkedHashSet<>( durable.tables.get( name( table ) ).indexes );
+    }
+
+    Set<String> uniqueConstraints( String table ) {
+        return new LinkedHashSet<>( durable.tables.get( name( table ) ).uniques.keySet() );
+    }
+
+    /**
+     * @return The values of a column in the order the rows were inserted.
+     */
+    List<Object> values( String table, String column ) {
+        List<Object> values = new ArrayList<>();
+        durable.tables.get( name( table ) ).rows.forEach( row -> values.add( row.get( column.toLowerCase( Locale.ROOT ) ) ) );
+        return values;
+    }
+
+    private Statement statement( Connection connection, String sql ) {
+        Map<Integer, Object> parameters = new HashMap<>();
+        List<List<Object>> batch = new ArrayList<>();
+        Class<? extends Statement> type = sql == null ? Statement.class : PreparedStatement.class;
+        return proxy( type, ( proxy, method, args ) -> switch ( method.getName() ) {
+            case "execute" -> execute( sql == null ? (String) args[0] : sql, bound( parameters ) ) instanceof ResultSet;
+            case "executeQuery" -> (ResultSet) execute( sql == null ? (String) args[0] : sql, bound( parameters ) );
+            case "executeUpdate" -> (Integer) execute( sql == null ? (String) args[0] : sql, bound( parameters ) );
+            case "setLong", "setString", "setObject", "setTimestamp", "setInt", "setBoolean" -> {
+                parameters.put( (Integer) args[0], args[1] );
+                yield null;
+            }
+            case "setNull" -> {
+                parameters.put( (Integer) args[0], null );
+                yield null;
+            }
+            case "addBatch" -> {
+                batch.add( bound( parameters ) );
+                yield null;
+            }
+            case "executeBatch" -> {
+                int[] counts = new int[batch.size()];
+                for ( int i = 0; i < counts.length; i++ ) {
+                    counts[i] = (Integer) execute( sql, batch.get( i ) );
+                }
+                batch.clear();
+                yield counts;
+            }
+            case "getConnection" -> connection;
+            case "setFetchSize", "close", "clearParameters" -> null;
+            default -> throw new UnsupportedOperationException( method.getName() );
+        } );
+    }
+
+    private static List<Object> bound( Map<Integer, Object> parameters ) {
+        List<Object> values = new ArrayList<>();
+        for ( int i = 1; i <= parameters.size(); i++ ) {
+            values.add( parameters.get( i ) );
+        }
+        return values;
+    }
+
+    private Object execute( String sql, List<Object> parameters ) throws SQLException {
+        String statement = sql.trim().replaceAll( "\\s+", " " );
+        executed.add( statement );
+        if ( failOn != null && statement.toLowerCase( Locale.ROOT ).contains( failOn ) && --failAfter <= 0 ) {
+            failOn = null;
+            throw new SQLException( "Injected failure of: " + statement );
+        }
+        Matcher m;
+        if ( statement.toUpperCase( Locale.ROOT ).startsWith( "ALTER ADAPTERS" ) ) {
+            return false;
+        }
+        if ( statement.equalsIgnoreCase( "CREATE SCHEMA polyfier" ) ) {
+            working.schema = true;
+            return ddl();
+        }
+        if ( ( m = CREATE_TABLE.matcher( statement ) ).matches() ) {
+            String name = name( m.group( 1 ) );
+            if ( working.tables.containsKey( name ) ) {
+                throw new SQLException( "Table " + name + " exists." );
+            }
+            working.tables.put( name, createTable( name, m.group( 2 ) ) );
+            return ddl();
+        }
+        if ( ( m = DROP_TABLE.matcher( statement ) ).matches() ) {
+            if ( working.tables.remove( name( m.group( 2 ) ) ) == null && m.group( 1 ) == null ) {
+                throw new SQLException( "Unknown table " + m.group( 2 ) );
+            }
+            return ddl();
+        }
+        if ( ( m = RENAME_TABLE.matcher( statement ) ).matches() ) {
+            Table table = working.tables.remove( name( m.group( 1 ) ) );
+            working.tables.put( name( m.group( 2 ) ), table.renamed( name( m.group( 2 ) ) ) );
+            return ddl();
+        }
+        if ( ( m = ADD_FOREIGN_KEY.matcher( statement ) ).matches() ) {
+            Table table = working.table( m.group( 1 ) );
+            working.table( m.group( 4 ) ).column( m.group( 5 ) );
+            table.column( m.group( 3 ) );
+            String name = m.group( 2 );
+            if ( table.foreignKeys.stream().anyMatch( foreignKey -> foreignKey.name().equalsIgnoreCase( name ) ) ) {
+                throw new SQLException( "Constraint " + m.group( 2 ) + " exists." );
+            }
+            table.foreignKeys.add( new ForeignKey( m.group( 2 ), m.group( 3 ), name( m.group( 4 ) ), m.group( 5 ) ) );
+            return ddl();
+        }
+        if ( ( m = ADD_UNIQUE.matcher( statement ) ).matches() ) {
+            Table table = working.table( m.group( 1 ) );
+            String column = table.column( m.group( 3 ) ).name();
+            if ( table.uniques.containsKey( m.group( 2 ) ) ) {
+                throw new SQLException( "Constraint " + m.group( 2 ) + " exists." );
+            }
+            if ( table.rows.stream().map( row -> row.get( column.toLowerCase( Locale.ROOT ) ) ).distinct().count() != table.rows.size() ) {
+                throw new SQLException( "Duplicate values in " + column );
+            }
+            table.uniques.put( m.group( 2 ), column );
+            return ddl();
+        }
+        if ( ( m = ADD_COLUMN.matcher( statement ) ).matches() ) {
+            Table table = working.table( m.group( 1 ) );
+            String column = m.group( 2 ).toLowerCase( Locale.ROOT );
+            table.columns.put( column, new Column( m.group( 2 ), type( m.group( 3 ) ), true ) );
+            table.rows.forEach( row -> row.put( column, null ) );
+            return ddl();
+        }
+        if ( ( m = SET_NOT_NULL.matcher( statement ) ).matches() ) {
+            Table table = working.table( m.group( 1 ) );
+            Column column = table.column( m.group( 2 ) );
+            if ( table.rows.stream().anyMatch( row -> row.get( column.name().toLowerCase( Locale.ROOT ) ) == null ) ) {
+                throw new SQLException( "Column " + column.name() + " holds null values." );
+            }
+            table.columns.put( column.name().toLowerCase( Locale.ROOT ), new Column( column.name(), column.type(), false ) );
+            return ddl();
+        }
+        if ( ( m = ADD_INDEX.matcher( statement ) ).matches() ) {
+            Table table = working.table( m.group( 1 ) );
+            table.column( m.group( 3 ) );
+            table.indexes.add( m.group( 2 ) );
+            return ddl();
+        }
+        if ( ( m = INSERT.matcher( statement ) ).matches() ) {
+            Table table = working.table( m.group( 1 ) );
+            List<String> columns = split( m.group( 2 ) );
+            List<Object> values = literals( m.group( 3 ), parameters );
+            Map<String, Object> row = new HashMap<>();
+            table.columns.keySet().forEach( column -> row.put( column, null ) );
+            for ( int i = 0; i < columns.size(); i++ ) {
+                Column column = table.column( columns.get( i ) );
+                row.put( column.name().toLowerCase( Locale.ROOT ), convert( values.get( i ), column.type() ) );
+            }
+            table.insert( row );
+            return 1;
+        }
+        if ( ( m = SELECT_MAX.matcher( statement ) ).matches() ) {
+            Table table = working.table( m.group( 2 ) );
+            Column column = table.column( m.group( 1 ) );
+            Object max = table.rows.stream()
+                    .map( row -> row.get( column.name().toLowerCase( Locale.ROOT ) ) )
+                    .filter( Objects::nonNull )
+                    .max( FakeQueryLog::compare )
+                    .orElse( null );
+            List<Object[]> rows = new ArrayList<>();
+            rows.add( new Object[]{ max } );
+            return resultSet( List.of( column.name() ), List.of( column.type() ), rows );
+        }
+        if ( ( m = SELECT.matcher( statement ) ).matches() ) {
+            Table table = working.table( m.group( 2 ) );
+            List<Column> columns = new ArrayList<>();
+            for ( String column : split( m.group( 1 ) ) ) {
+                columns.add( table.column( column ) );
+            }
+            List<Map<String, Object>> selected = new ArrayList<>( table.rows );
+            if ( m.group( 4 ) != null ) {
+                String column = table.column( m.group( 4 ) ).name().toLowerCase( Locale.ROOT );
+                Object bound = convert( parameters.get( 0 ), table.column( m.group( 4 ) ).type() );
+                selected.removeIf( row -> compare( row.get( column ), bound ) <= 0 );
+            }
+            if ( m.group( 6 ) != null ) {
+                String column = table.column( m.group( 6 ) ).name().toLowerCase( Locale.ROOT );
+                selected.sort( Comparator.comparing( row -> row.get( column ), FakeQueryLog::compare ) );
+            }
+            List<Object[]> rows = new ArrayList<>();
+            for ( Map<String, Object> row : selected ) {
+                rows.add( columns.stream().map( column -> row.get( column.name().toLowerCase( Locale.ROOT ) ) ).toArray() );
+            }
+            return resultSet( columns.stream().map( Column::name ).toList(), columns.stream().map( Column::type ).toList(), rows );
+        }
+        if ( ( m = UPDATE.matcher( statement ) ).matches() ) {
+            Table table = working.table( m.group( 1 ) );
+            Column target = table.column( m.group( 2 ) );
+            Column key = table.column( m.group( 3 ) );
+            int updated = 0;
+            for ( Map<String, Object> row : table.rows ) {
+                if ( Objects.equals( row.get( key.name().toLowerCase( Locale.ROOT ) ), convert( parameters.get( 1 ), key.type() ) ) ) {
+                    row.put( target.name().toLowerCase( Locale.ROOT ), convert( parameters.get( 0 ), target.type() ) );
+                    updated++;
+                }
+            }
+            table.checkUnique();
+            return updated;
+        }
+        throw new SQLException( "Statement not understood: " + statement );
+    }
+
+    /**
+     * Schema changes commit implicitly.
+     */
+    private boolean ddl() {
+        durable = working.copy();
+        return false;
+    }
+
+    private static Table createTable( String name, String body ) throws SQLException {
+        Table table = new Table( name );
+        for ( String definition : split( body ) ) {
+            String[] parts = definition.split( " " );
+            if ( parts[0].equalsIgnoreCase( "PRIMARY" ) ) {
+                String keys = definition.substring( definition.indexOf( '(' ) + 1, definition.lastIndexOf( ')' ) );
+                split( keys ).forEach( key -> table.primaryKey.add( key.toLowerCase( Locale.ROOT ) ) );
+                continue;
+            }
+            boolean nullable = ! definition.toUpperCase( Locale.ROOT ).contains( "NOT NULL" );
+            table.columns.put( parts[0].toLowerCase( Locale.ROOT ), new Column( parts[0], type( parts[1] ), nullable ) );
+        }
+        for ( String key : table.primaryKey ) {
+            table.column( key );
+        }
+        return table;
+    }
+
+    private static int type( String name ) throws SQLException {
+        String type = name.toLowerCase( Locale.ROOT ).replaceAll( "\\(.*\\)", "" );
+        return switch ( type ) {
+            case "bigint" -> Types.BIGINT;
+            case "integer" -> Types.INTEGER;
+            case "varchar" -> Types.VARCHAR;
+            case "boolean" -> Types.BOOLEAN;
+            case "timestamp" -> Types.TIMESTAMP;
+            case "double" -> Types.DOUBLE;
+            default -> throw new SQLException( "Unknown type " + name );
+        };
+    }
+
+    private static Object convert( Object value, int type ) throws SQLException {
+        if ( value == null ) {
+            return null;
+        }
+        return switch ( type ) {
+            case Types.BIGINT -> ( (Number) value ).longValue();
+            case Types.INTEGER -> ( (Number) value ).intValue();
+            case Types.DOUBLE -> ( (Number) value ).doubleValue();
+            case Types.BOOLEAN -> (Boolean) value;
+            case Types.VARCHAR -> (String) value;
+            case Types.TIMESTAMP -> value instanceof Timestamp ? value : Timestamp.valueOf( (String) value );
+            default -> throw new SQLException( "Unknown type " + type );
+        };
+    }
+
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    private static int compare( Object a, Object b ) {
+        return ( (Comparable) a ).compareTo( b );
+    }
+
+    /**
+     * Splits at the commas outside of parentheses and quotes.
+     */
+    private static List<String> split( String list ) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        boolean quoted = false;
+        int start = 0;
+        for ( int i = 0; i < list.length(); i++ ) {
+            char c = list.charAt( i );
+            if ( c == '\'' ) {
+                quoted = ! quoted;
+            } else if ( ! quoted && c == '(' ) {
+                depth++;
+            } else if ( ! quoted && c == ')' ) {
+                depth--;
+            } else if ( ! quoted && depth == 0 && c == ',' ) {
+                parts.add( list.substring( start, i ).trim() );
+                start = i + 1;
+            }
+        }
+        parts.add( list.substring( start ).trim() );
+        return parts;
+    }
+
+    private static List<Object> literals( String list, List<Object> parameters ) throws SQLException {
+        List<Object> values = new ArrayList<>();
+        int parameter = 0;
+        for ( String literal : split( list ) ) {
+            if ( literal.equals( "?" ) ) {
+                values.add( parameters.get( parameter++ ) );
+            } else if ( literal.equalsIgnoreCase( "NULL" ) ) {
+                values.add( null );
+            } else if ( literal.equalsIgnoreCase( "TRUE" ) || literal.equalsIgnoreCase( "FALSE" ) ) {
+                values.add( Boolean.parseBoolean( literal ) );
+            } else if ( literal.toUpperCase( Locale.ROOT ).startsWith( "TIMESTAMP " ) ) {
+                values.add( Timestamp.valueOf( unquote( literal.substring( "TIMESTAMP ".length() ) ) ) );
+            } else if ( literal.startsWith( "'" ) ) {
+                values.add( unquote( literal ) );
+            } else {
+                try {
+                    values.add( Long.parseLong( literal ) );
+                } catch ( NumberFormatException e ) {
+                    throw new SQLException( "Literal not understood: " + literal );
+                }
+            }
+        }
+        return values;
+    }
+
+    private static String unquote( String literal ) {
+        return literal.substring( 1, literal.length() - 1 ).replace( "''", "'" );
+    }
+
+    private static String name( String qualified ) {
+        String name = qualified.toLowerCase( Locale.ROOT );
+        return name.startsWith( QueryLogAdapter.SCHEMA_NAME + "." ) ? name.substring( QueryLogAdapter.SCHEMA_NAME.length() + 1 ) : name;
+    }
+
+    private DatabaseMetaData metaData() {
+        return proxy( DatabaseMetaData.class, ( proxy, method, args ) -> switch ( method.getName() ) {
+            case "getSchemas" -> resultSet(
+                    List.of( "TABLE_SCHEM" ),
+                    List.of( Types.VARCHAR ),
+                    working.schema || ! working.tables.isEmpty() ? List.<Object[]>of( new Object[]{ QueryLogAdapter.SCHEMA_NAME } ) : List.of()
+            );
+            case "getTables" -> {
+                List<Object[]> rows = new ArrayList<>();
+                if ( working.tables.containsKey( name( (String) args[2] ) ) ) {
+                    rows.add( new Object[]{ name( (String) args[2] ) } );
+                }
+                yield resultSet( List.of( "TABLE_NAME" ), List.of( Types.VARCHAR ), rows );
+            }
+            case "getColumns" -> {
+                List<Object[]> rows = new ArrayList<>();
+                Table table = working.tables.get( name( (String) args[2] ) );
+                if ( table != null ) {
+                    table.columns.values().forEach( column -> rows.add( new Object[]{
+                            column.name(), column.type(), column.nullable() ? DatabaseMetaData.columnNullable : DatabaseMetaData.columnNoNulls
+                    } ) );
+                }
+                yield resultSet( List.of( "COLUMN_NAME", "DATA_TYPE", "NULLABLE" ), List.of( Types.VARCHAR, Types.INTEGER, Types.INTEGER ), rows );
+            }
+            case "getImportedKeys" -> {
+                List<Object[]> rows = new ArrayList<>();
+                Table table = working.tables.get( name( (String) args[2] ) );
+                if ( table != null ) {
+                    table.foreignKeys.forEach( foreignKey -> rows.add( new Object[]{
+                            foreignKey.name(), foreignKey.column(), foreignKey.referencedTable(), foreignKey.referencedColumn()
+                    } ) );
+                }
+                yield resultSet(
+                        List.of( "FK_NAME", "FKCOLUMN_NAME", "PKTABLE_NAME", "PKCOLUMN_NAME" ),
+                        List.of( Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR ),
+                        rows
+                );
+            }
+            case "getIndexInfo" -> {
+                List<Object[]> rows = new ArrayList<>();
+                Table table = working.tables.get( name( (String) args[2] ) );
+                if ( table != null ) {
+                    table.indexes.forEach( index -> rows.add( new Object[]{ index, true } ) );
+                    table.uniques.keySet().forEach( index -> rows.add( new Object[]{ index, false } ) );
+                }
+                yield resultSet( List.of( "INDEX_NAME", "NON_UNIQUE" ), List.of( Types.VARCHAR, Types.BOOLEAN ), rows );
+            }
+            default -> throw new UnsupportedOperationException( method.getName() );
+        } );
+    }
+
+    private static ResultSet resultSet( List<String> labels, List<Integer> types, List<Object[]> rows ) {
+        int[] position = { -1 };
+        boolean[] wasNull = { false };
+        ResultSetMetaData metaData = proxy( ResultSetMetaData.class, ( proxy, method, args ) -> switch ( method.getName() ) {
+            case "getColumnCount" -> labels.size();
+            case "getColumnType" -> types.get( (Integer) args[0] - 1 );
+            case "getColumnName", "getColumnLabel" -> labels.get( (Integer) args[0] - 1 );
+            default -> throw new UnsupportedOperationException( method.getName() );
+        } );
+        return proxy( ResultSet.class, ( proxy, method, args ) -> {
+            switch ( method.getName() ) {
+                case "next":
+                    return ++position[0] < rows.size();
+                case "close":
+                    return null;
+                case "getMetaData":
+                    return metaData;
+                case "wasNull":
+                    return wasNull[0];
+                default:
+            }
+            int column = args[0] instanceof Integer index ? index - 1 : labels.indexOf( (String) args[0] );
+            Object value = rows.get( position[0] )[column];
+            wasNull[0] = value == null;
+            return switch ( method.getName() ) {
+                case "getObject" -> value;
+                case "getString" -> value == null ? null : value.toString();
+                case "getLong" -> value == null ? 0L : ( (Number) value ).longValue();
+                case "getInt" -> value == null ? 0 : ( (Number) value ).intValue();
+                case "getBoolean" -> value != null && (Boolean) value;
+                case "getTimestamp" -> (Timestamp) value;
+                default -> throw new UnsupportedOperationException( method.getName() );
+            };
+        } );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static <T> T proxy( Class<T> type, InvocationHandler handler ) {
+        return (T) Proxy.newProxyInstance( FakeQueryLog.class.getClassLoader(), new Class<?>[]{ type }, ( proxy, method, args ) -> {
+            if ( method.getDeclaringClass() == Object.class ) {
+                return switch ( method.getName() ) {
+                    case "hashCode" -> System.identityHashCode( proxy );
+                    case "equals" -> proxy == args[0];
+                    default -> type.getSimpleName();
+                };
+            }
+            return handler.invoke( proxy, method, args );
+        } );
+    }
+
+    private static final class State {
+        private final Map<String, Table> tables = new LinkedHashMap<>();
+        private boolean schema;
+
+        private Table table( String qualified ) throws SQLException {
+            Table table = tables.get( name( qualified ) );
+            if ( table == null ) {
+                throw new SQLException( "Unknown table " + qualified );
+            }
+            return table;
+        }
+
+        private State copy() {
+            State copy = new State();
+            copy.schema = schema;
+            tables.forEach( ( name, table ) -> copy.tables.put( name, table.renamed( name ) ) );
+            return copy;
+        }
+    }
+
+    private static final class Table {
+        private final String name;
+        private final Map<String, Column> columns = new LinkedHashMap<>();
+        private final List<String> primaryKey = new ArrayList<>();
+        private final List<Map<String, Object>> rows = new ArrayList<>();
+        private final List<ForeignKey> foreignKeys = new ArrayList<>();
+        private final List<String> indexes = new ArrayList<>();
+        private final Map<String, String> uniques = new LinkedHashMap<>();
+
+        private Table( String name ) {
+            this.name = name;
+        }
+
+        private Column column( String name ) throws SQLException {
+            Column column = columns.get( name.toLowerCase( Locale.ROOT ) );
+            if ( column == null ) {
+                throw new SQLException( "Unknown column " + name + " of " + this.name );
+            }
+            return column;
+        }
+
+        private void insert( Map<String, Object> row ) throws SQLException {
+            for ( Column column : columns.values() ) {
+                if ( ! column.nullable() && row.get( column.name().toLowerCase( Locale.ROOT ) ) == null ) {
+                    throw new SQLException( "Column " + column.name() + " of " + name + " is not nullable." );
+                }
+            }
+            for ( Map<String, Object> other : rows ) {
+                if ( primaryKey.stream().allMatch( key -> Objects.equals( other.get( key ), row.get( key ) ) ) ) {
+                    throw new SQLException( "Duplicate primary key in " + name );
+                }
+            }
+            rows.add( row );
+            checkUnique();
+        }
+
+        private void checkUnique() throws SQLException {
+            for ( String column : uniques.values() ) {
+                String key = column.toLowerCase( Locale.ROOT );
+                if ( rows.stream().map( row -> row.get( key ) ).distinct().count() != rows.size() ) {
+                    throw new SQLException( "Duplicate value of unique column " + column + " in " + name );
+                }
+            }
+        }
+
+        private Table renamed( String name ) {
+            Table copy = new Table( name );
+            copy.columns.putAll( columns );
+            copy.primaryKey.addAll( primaryKey );
+            rows.forEach( row -> copy.rows.add( new HashMap<>( row ) ) );
+            copy.foreignKeys.addAll( foreignKeys );
+            copy.indexes.addAll( indexes );
+            copy.uniques.putAll( uniques );
+            return copy;
+        }
+    }
+
+    private record Column( String name, int type, boolean nullable ) {}
+
+    private record ForeignKey( String name, String column, String referencedTable, String referencedColumn ) {}
+
+}
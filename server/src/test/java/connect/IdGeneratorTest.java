@@ -0,0 +1,120 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package connect;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IdGeneratorTest {
+    private static final long MILLIS = IdGenerator.EPOCH + 1_000_000;
+
+    @Test
+    public void encodesTime() {
+        IdGenerator generator = new IdGenerator( 7 );
+
+        long first = generator.next( MILLIS );
+        long second = generator.next( MILLIS );
+        long later = generator.next( MILLIS + 1 );
+
+        assertEquals( MILLIS, IdGenerator.millisOf( first ) );
+        assertEquals( MILLIS, IdGenerator.millisOf( second ) );
+        assertEquals( MILLIS + 1, IdGenerator.millisOf( later ) );
+        assertTrue( first < second && second < later );
+    }
+
+    @Test
+    public void staysMonotonicWhenClockGoesBack() {
+        IdGenerator generator = new IdGenerator( 0 );
+        long last = generator.next( MILLIS );
+
+        for ( long millis = MILLIS - 1; millis > MILLIS - 100; millis-- ) {
+            long id = generator.next( millis );
+            assertTrue( id > last );
+            // Continues after the last identifier instead of going back with the clock
+            assertEquals( MILLIS, IdGenerator.millisOf( id ) );
+            last = id;
+        }
+        assertEquals( MILLIS + 5, IdGenerator.millisOf( generator.next( MILLIS + 5 ) ) );
+    }
+
+    @Test
+    public void borrowsFromNextMillisecondOnceSequenceIsUsedUp() {
+        IdGenerator generator = new IdGenerator( 0 );
+        long last = generator.next( MILLIS );
+        for ( int i = 1; i < 4096; i++ ) {
+            long id = generator.next( MILLIS );
+            assertTrue( id > last );
+            assertEquals( MILLIS, IdGenerator.millisOf( id ) );
+            last = id;
+        }
+
+        long borrowed = generator.next( MILLIS );
+
+        assertTrue( borrowed > last );
+        assertEquals( MILLIS + 1, IdGenerator.millisOf( borrowed ) );
+        assertTrue( generator.next( MILLIS + 1 ) > borrowed );
+    }
+
+    @Test
+    public void separatesNodes() {
+        long first = new IdGenerator( 1 ).next( MILLIS );
+        long second = new IdGenerator( 2 ).next( MILLIS );
+
+        assertNotEquals( first, second );
+        assertEquals( IdGenerator.millisOf( first ), IdGenerator.millisOf( second ) );
+    }
+
+    @Test
+    public void continuesAfterGivenIdentifier() {
+        IdGenerator generator = new IdGenerator( 3 );
+        long last = 0;
+        for ( int i = 0; i < 10; i++ ) {
+            last = generator.next( MILLIS );
+        }
+
+        IdGenerator continued = new IdGenerator( 3, last );
+
+        long next = continued.next( MILLIS );
+        assertTrue( next > last );
+        assertEquals( MILLIS, IdGenerator.millisOf( next ) );
+        assertEquals( generator.next( MILLIS ), next );
+    }
+
+    @Test
+    public void seedContinuesServerIdentifiers() {
+        long ahead = new IdGenerator( IdGenerator.NODE ).next( System.currentTimeMillis() + 60_000 );
+
+        IdGenerator.seed( ahead );
+        long next = IdGenerator.nextId();
+        // An earlier identifier does not set the server back
+        IdGenerator.seed( ahead - 1_000_000 );
+
+        assertTrue( next > ahead );
+        assertTrue( IdGenerator.nextId() > next );
+    }
+
+    @Test
+    public void rejectsInvalidNode() {
+        assertThrows( IllegalArgumentException.class, () -> new IdGenerator( -1 ) );
+        assertThrows( IllegalArgumentException.class, () -> new IdGenerator( IdGenerator.MAX_NODE + 1 ) );
+    }
+
+}
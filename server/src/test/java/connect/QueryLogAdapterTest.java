@@ -0,0 +1,288 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package connect;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryLogAdapterTest {
+    private static final Set<String> RESULT_FOREIGN_KEYS = Set.of( "res_fk1", "res_fk2", "res_fk3", "res_fk4" );
+    private static final Set<String> PDB_FOREIGN_KEYS = Set.of( "pdb_fk1", "pro_fk1", "pro_fk2", "pro_fk3", "pro_fk4", "pro_fk5", "pro_fk6" );
+
+    private final QueryLogAdapter adapter = new QueryLogAdapter();
+
+    @Test
+    public void createsSchema() throws SQLException {
+        FakeQueryLog queryLog = new FakeQueryLog();
+
+        adapter.configure( queryLog.connect() );
+
+        assertEquals( QueryLogAdapter.SCHEMA_VERSION, adapter.schemaVersion( queryLog.connect() ) );
+        assertEquals( Types.BIGINT, queryLog.columnType( "results", "resultKey" ) );
+        assertEquals( Types.BIGINT, queryLog.columnType( "pdb", "pdbId" ) );
+        assertEquals( RESULT_FOREIGN_KEYS, queryLog.foreignKeys( "results" ) );
+        assertEquals( PDB_FOREIGN_KEYS, queryLog.foreignKeys( "pdb" ) );
+        assertEquals( Set.of( "mis_fk1" ), queryLog.foreignKeys( "mismatches" ) );
+        assertEquals( Set.of( "flp_fk1" ), queryLog.foreignKeys( "flips" ) );
+        assertEquals( Set.of( "pct_uk1" ), queryLog.uniqueConstraints( "pctrl" ) );
+        assertEquals( Set.of( "pdb_uk1" ), queryLog.uniqueConstraints( "pdb" ) );
+        assertEquals( 6, queryLog.indexes( "results" ).size() );
+        assertEquals( 8, queryLog.indexes( "pdb" ).size() );
+    }
+
+    @Test
+    public void leavesCurrentSchemaUntouched() throws SQLException {
+        FakeQueryLog queryLog = new FakeQueryLog();
+        adapter.configure( queryLog.connect() );
+        int executed = queryLog.executed().size();
+
+        adapter.configure( queryLog.connect() );
+
+        List<String> restart = queryLog.executed().subList( executed, queryLog.executed().size() );
+        assertEquals( List.of( "SELECT MAX(version) FROM polyfier.schema_version" ), restart );
+    }
+
+    @Test
+    public void buildsDeferredIndexesOfCurrentSchema() throws SQLException {
+        FakeQueryLog queryLog = new FakeQueryLog();
+        System.setProperty( "polyfier.indexes", "deferred" );
+        try {
+            adapter.configure( queryLog.connect() );
+        } finally {
+            System.clearProperty( "polyfier.indexes" );
+        }
+        assertTrue( queryLog.indexes( "results" ).isEmpty() );
+
+        adapter.configure( queryLog.connect() );
+
+        assertEquals( 6, queryLog.indexes( "results" ).size() );
+        assertEquals( 8, queryLog.indexes( "pdb" ).size() );
+    }
+
+    @Test
+    public void findsLargestIdentifier() throws IOException, SQLException {
+        FakeQueryLog empty = new FakeQueryLog();
+        adapter.configure( empty.connect() );
+        assertEquals( 0, adapter.maxId( empty.connect() ) );
+
+        FakeQueryLog queryLog = new FakeQueryLog();
+        queryLog.load( "/connect/query-log-v3.sql" );
+        adapter.configure( queryLog.connect() );
+
+        long maxId = 0;
+        for ( String table : List.of( "pctrl", "pdb" ) ) {
+            for ( Object id : queryLog.values( table, table + "Id" ) ) {
+                maxId = Math.max( maxId, (long) id );
+            }
+        }
+        for ( Object key : queryLog.values( "results", "resultKey" ) ) {
+            maxId = Math.max( maxId, (long) key );
+        }
+        assertTrue( maxId > 0 );
+        assertEquals( maxId, adapter.maxId( queryLog.connect() ) );
+    }
+
+    @Test
+    public void migratesFromVersion1() throws IOException, SQLException {
+        assertMigrates( "/connect/query-log-v1.sql", 1 );
+    }
+
+    @Test
+    public void migratesFromVersion2() throws IOException, SQLException {
+        assertMigrates( "/connect/query-log-v2.sql", 2 );
+    }
+
+    @Test
+    public void migratesFromVersion3() throws IOException, SQLException {
+        assertMigrates( "/connect/query-log-v3.sql", 3 );
+    }
+
+    @Test
+    public void completesMigrationInterruptedAfterCopy() throws IOException, SQLException {
+        FakeQueryLog queryLog = new FakeQueryLog();
+        queryLog.load( "/connect/query-log-v3.sql" );
+        // Crash after the old results table is dropped, before the foreign keys of the new one are added
+        queryLog.failOn( "ADD CONSTRAINT res_fk1", 1 );
+
+        assertThrows( SQLException.class, () -> adapter.configure( queryLog.connect() ) );
+        assertEquals( 3, adapter.schemaVersion( queryLog.connect() ) );
+        assertFalse( queryLog.hasTable( "results_uuid" ) );
+        assertEquals( Types.BIGINT, queryLog.columnType( "results", "resultKey" ) );
+        assertTrue( queryLog.foreignKeys( "results" ).isEmpty() );
+
+        adapter.configure( queryLog.connect() );
+
+        assertMigrated( queryLog );
+    }
+
+    @Test
+    public void completesMigrationInterruptedDuringCopy() throws IOException, SQLException {
+        FakeQueryLog queryLog = new FakeQueryLog();
+        queryLog.load( "/connect/query-log-v1.sql" );
+        queryLog.failOn( "INSERT INTO polyfier.results", 3 );
+
+        assertThrows( SQLException.class, () -> adapter.configure( queryLog.connect() ) );
+        assertEquals( 1, adapter.schemaVersion( queryLog.connect() ) );
+        assertTrue( queryLog.hasTable( "results_uuid" ) );
+
+        adapter.configure( queryLog.connect() );
+
+        assertMigrated( queryLog );
+    }
+
+    @Test
+    public void resumesInterruptedCopyAfterLastBatch() throws IOException, SQLException {
+        FakeQueryLog queryLog = new FakeQueryLog();
+        queryLog.load( "/connect/query-log-v1.sql" );
+        // Two results per millisecond, such that a batch boundary falls between results of the same receive time
+        int added = 2500;
+        long start = Timestamp.valueOf( "2023-05-03 00:00:00" ).getTime();
+        Connection connection = queryLog.connect();
+        PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO polyfier.results ( resultKey, pdbKey, seed, success, receivedAt ) VALUES ( ?, ?, ?, ?, ? )"
+        );
+        for ( int i = 0; i < added; i++ ) {
+            insert.setString( 1, "00000000-0000-4000-8000-" + "%012d".formatted( i ) );
+            insert.setString( 2, "c3d4e5f6-a7b8-4c9d-8e0f-1a2b3c4d5e6f" );
+            insert.setLong( 3, 1000 + i );
+            insert.setBoolean( 4, true );
+            insert.setTimestamp( 5, new Timestamp( start + i / 2 ) );
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        connection.commit();
+        queryLog.failOn( "INSERT INTO polyfier.results", 1500 );
+
+        assertThrows( SQLException.class, () -> adapter.configure( queryLog.connect() ) );
+        int copied = queryLog.values( "results", "seed" ).size();
+        assertTrue( copied > 1000 && copied < 1500, "Copied " + copied );
+        int executed = queryLog.executed().size();
+
+        adapter.configure( queryLog.connect() );
+
+        long resumed = queryLog.executed().subList( executed, queryLog.executed().size() ).stream()
+                .filter( statement -> statement.startsWith( "INSERT INTO polyfier.results (" ) )
+                .count();
+        assertEquals( 5 + added - copied, resumed );
+        List<Object> seeds = queryLog.values( "results", "seed" );
+        assertEquals( 5 + added, seeds.size() );
+        assertEquals( seeds.size(), new HashSet<>( seeds ).size() );
+        assertKeyedByTime( queryLog.values( "results", "resultKey" ), queryLog.values( "results", "receivedAt" ) );
+        assertFalse( queryLog.hasTable( "results_uuid" ) );
+    }
+
+    @Test
+    public void refusesToRecordIncompleteSchema() throws IOException, SQLException {
+        FakeQueryLog queryLog = new FakeQueryLog();
+        queryLog.load( "/connect/query-log-v3.sql" );
+        queryLog.dropColumn( "mismatches", "detectedAt" );
+
+        IllegalStateException e = assertThrows( IllegalStateException.class, () -> adapter.configure( queryLog.connect() ) );
+        assertTrue( e.getMessage().contains( "mismatches.detectedAt" ), e.getMessage() );
+        assertEquals( 3, adapter.schemaVersion( queryLog.connect() ) );
+    }
+
+    @Test
+    public void refusesNewerSchema() throws IOException, SQLException {
+        FakeQueryLog queryLog = new FakeQueryLog();
+        queryLog.load( "/connect/query-log-v3.sql" );
+        Connection connection = queryLog.connect();
+        connection.createStatement().execute( "INSERT INTO polyfier.schema_version ( version, appliedAt ) VALUES ( 99, 0 )" );
+        connection.commit();
+
+        assertThrows( IllegalStateException.class, () -> adapter.configure( queryLog.connect() ) );
+    }
+
+    @Test
+    public void rejectsInvalidIndexMode() {
+        System.setProperty( "polyfier.indexes", "lazy" );
+        try {
+            IllegalArgumentException e = assertThrows( IllegalArgumentException.class, adapter::indexParameter );
+            assertTrue( e.getMessage().contains( "polyfier.indexes=lazy" ), e.getMessage() );
+        } finally {
+            System.clearProperty( "polyfier.indexes" );
+        }
+        assertEquals( QueryLogAdapter.IndexMode.EAGER, adapter.indexParameter() );
+    }
+
+    private void assertMigrates( String fixture, int version ) throws IOException, SQLException {
+        FakeQueryLog queryLog = new FakeQueryLog();
+        queryLog.load( fixture );
+        assertEquals( version, adapter.schemaVersion( queryLog.connect() ) );
+
+        adapter.configure( queryLog.connect() );
+
+        assertMigrated( queryLog );
+    }
+
+    private void assertMigrated( FakeQueryLog queryLog ) throws SQLException {
+        assertEquals( QueryLogAdapter.SCHEMA_VERSION, adapter.schemaVersion( queryLog.connect() ) );
+        assertFalse( queryLog.hasTable( "results_uuid" ) );
+        assertTrue( queryLog.hasTable( "pdb_jobs" ) );
+
+        // The results are rekeyed in the order they were received, by ids of their receive time
+        assertEquals( Types.BIGINT, queryLog.columnType( "results", "resultKey" ) );
+        assertEquals( List.of( 101L, 102L, 103L, 104L, 105L ), queryLog.values( "results", "seed" ) );
+        assertKeyedByTime( queryLog.values( "results", "resultKey" ), queryLog.values( "results", "receivedAt" ) );
+
+        for ( String table : List.of( "pctrl", "pdb" ) ) {
+            List<Object> ids = queryLog.values( table, table + "Id" );
+            assertFalse( ids.contains( null ), table );
+            assertEquals( ids.size(), new HashSet<>( ids ).size() );
+            assertKeyedByTime( ids, queryLog.values( table, "registeredAt" ) );
+        }
+        assertEquals( Set.of( "pct_uk1" ), queryLog.uniqueConstraints( "pctrl" ) );
+        assertEquals( Set.of( "pdb_uk1" ), queryLog.uniqueConstraints( "pdb" ) );
+
+        assertEquals( RESULT_FOREIGN_KEYS, queryLog.foreignKeys( "results" ) );
+        assertEquals( PDB_FOREIGN_KEYS, queryLog.foreignKeys( "pdb" ) );
+        assertEquals( 6, queryLog.indexes( "results" ).size() );
+        assertEquals( 8, queryLog.indexes( "pdb" ).size() );
+    }
+
+    /**
+     * Asserts ids that encode the given times and increase with them.
+     */
+    private static void assertKeyedByTime( List<Object> ids, List<Object> times ) {
+        List<Integer> order = new ArrayList<>();
+        for ( int i = 0; i < ids.size(); i++ ) {
+            assertEquals( ( (Timestamp) times.get( i ) ).getTime(), IdGenerator.millisOf( (Long) ids.get( i ) ) );
+            order.add( i );
+        }
+        order.sort( Comparator.comparing( i -> (Timestamp) times.get( i ) ) );
+        for ( int i = 1; i < order.size(); i++ ) {
+            assertTrue( (Long) ids.get( order.get( i ) ) > (Long) ids.get( order.get( i - 1 ) ) );
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package export;
+
+import export.ColumnarWriter.Column;
+import export.ColumnarWriter.ColumnType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ColumnarWriterTest {
+    private static final List<Column> COLUMNS = List.of(
+            new Column( "key", ColumnType.LONG ),
+            new Column( "success", ColumnType.BOOLEAN ),
+            new Column( "error", ColumnType.STRING ),
+            new Column( "hash", ColumnType.DICTIONARY_LONG ),
+            new Column( "branch", ColumnType.DICTIONARY_STRING )
+    );
+
+    private static Object[] row( long i ) {
+        return new Object[]{
+                i,
+                i % 3 == 0 ? null : i % 2 == 0,
+                i % 5 == 0 ? "error " + i : null,
+                i % 7 == 0 ? null : i % 11,
+                "branch-" + ( i % 4 )
+        };
+    }
+
+    private static byte[] write( int rows, int rowGroupSize, int maxDictionarySize ) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try ( ColumnarWriter writer = new ColumnarWriter( out, COLUMNS, rowGroupSize, maxDictionarySize ) ) {
+            for ( long i = 0; i < rows; i++ ) {
+                writer.writeRow( row( i ) );
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Object[]> readAll( byte[] file ) throws IOException {
+        List<Object[]> rows = new ArrayList<>();
+        try ( ColumnarReader reader = new ColumnarReader( new ByteArrayInputStream( file ) ) ) {
+            assertEquals( COLUMNS, reader.getColumns() );
+            Object[] row;
+            while ( ( row = reader.readRow() ) != null ) {
+                rows.add( row );
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    public void roundTripsOverRowGroups() throws IOException {
+        List<Object[]> rows = readAll( write( 1000, 64, ColumnarWriter.DEFAULT_MAX_DICTIONARY_SIZE ) );
+
+        assertEquals( 1000, rows.size() );
+        for ( int i = 0; i < rows.size(); i++ ) {
+            assertArrayEquals( row( i ), rows.get( i ) );
+        }
+    }
+
+    @Test
+    public void roundTripsEmptyFile() throws IOException {
+        assertTrue( readAll( write( 0, 64, 16 ) ).isEmpty() );
+    }
+
+    @Test
+    public void fallsBackToPlainEncoding() throws IOException {
+        List<Column> columns = List.of( new Column( "value", ColumnType.DICTIONARY_STRING ) );
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try ( ColumnarWriter writer = new ColumnarWriter( out, columns, 10, 8 ) ) {
+            for ( int i = 0; i < 100; i++ ) {
+                writer.writeRow( i < 50 ? "value " + ( i % 3 ) : "value " + i );
+            }
+        }
+
+        try ( ColumnarReader reader = new ColumnarReader( new ByteArrayInputStream( out.toByteArray() ) ) ) {
+            for ( int i = 0; i < 100; i++ ) {
+                assertEquals( i < 50 ? "value " + ( i % 3 ) : "value " + i, reader.readRow()[0] );
+            }
+            assertNull( reader.readRow() );
+            assertEquals( 100, reader.getRowCount() );
+        }
+    }
+
+    @Test
+    public void rejectsAbortedFile() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ColumnarWriter writer = new ColumnarWriter( out, COLUMNS, 64 );
+        for ( long i = 0; i < 200; i++ ) {
+            writer.writeRow( row( i ) );
+        }
+        writer.abort();
+        writer.close();
+
+        assertThrows( EOFException.class, () -> readAll( out.toByteArray() ) );
+    }
+
+    @Test
+    public void rejectsTruncatedFile() throws IOException {
+        byte[] file = write( 200, 64, 16 );
+
+        assertThrows( EOFException.class, () -> readAll( Arrays.copyOf( file, file.length - 20 ) ) );
+    }
+
+    @Test
+    public void rejectsForeignFile() {
+        assertThrows( IOException.class, () -> new ColumnarReader( new ByteArrayInputStream( "PFCOL001".getBytes() ) ) );
+    }
+
+    @Test
+    public void rejectsRowOfWrongWidth() throws IOException {
+        ColumnarWriter writer = new ColumnarWriter( new ByteArrayOutputStream(), COLUMNS, 64 );
+
+        assertThrows( IllegalArgumentException.class, () -> writer.writeRow( 1L ) );
+    }
+
+}
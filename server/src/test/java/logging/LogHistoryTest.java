@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package logging;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LogHistoryTest {
+
+    @Test
+    public void replaysFromSequence() {
+        LogHistory history = new LogHistory( 1024 );
+        assertEquals( 0, history.append( "a\n" ) );
+        assertEquals( 1, history.append( "b\n" ) );
+        assertEquals( 2, history.append( "c\n" ) );
+
+        StringBuilder all = new StringBuilder();
+        assertEquals( 0, history.replay( 0, all ) );
+        assertEquals( "a\nb\nc\n", all.toString() );
+
+        StringBuilder tail = new StringBuilder();
+        assertEquals( 1, history.replay( 1, tail ) );
+        assertEquals( "b\nc\n", tail.toString() );
+    }
+
+    @Test
+    public void replayBeyondHistoryIsEmpty() {
+        LogHistory history = new LogHistory( 1024 );
+        history.append( "a\n" );
+        StringBuilder builder = new StringBuilder();
+
+        assertEquals( history.nextSequence(), history.replay( 5, builder ) );
+        assertEquals( "", builder.toString() );
+    }
+
+    @Test
+    public void evictsOldestLinesWhileWrapping() {
+        // Records of 12 header bytes and 8 line bytes, three of them fit
+        LogHistory history = new LogHistory( 64 );
+        for ( int i = 0; i < 10; i++ ) {
+            history.append( "line " + i + "\n\n" );
+        }
+
+        assertEquals( 7, history.firstSequence() );
+        assertEquals( 10, history.nextSequence() );
+        StringBuilder builder = new StringBuilder();
+        // Lines a subscriber asks for that are no longer retained are skipped
+        assertEquals( 7, history.replay( 2, builder ) );
+        assertEquals( "line 7\n\nline 8\n\nline 9\n\n", builder.toString() );
+    }
+
+    @Test
+    public void keepsMultiByteLines() {
+        // Records of 12 header bytes and 7 line bytes
+        LogHistory history = new LogHistory( 64 );
+        for ( int i = 0; i < 7; i++ ) {
+            history.append( "\u00fc" + i + "\u20ac\n" );
+        }
+        StringBuilder builder = new StringBuilder();
+        history.replay( history.firstSequence(), builder );
+
+        assertEquals( "\u00fc4\u20ac\n\u00fc5\u20ac\n\u00fc6\u20ac\n", builder.toString() );
+    }
+
+    @Test
+    public void truncatesLinesLongerThanBuffer() {
+        LogHistory history = new LogHistory( 32 );
+        history.append( "x".repeat( 100 ) );
+        StringBuilder builder = new StringBuilder();
+        history.replay( 0, builder );
+
+        assertEquals( "x".repeat( 20 ), builder.toString() );
+        assertEquals( 0, history.firstSequence() );
+    }
+
+}
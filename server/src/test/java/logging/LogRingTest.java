@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LogRingTest {
+
+    @Test
+    public void drainsInOrder() {
+        LogRing ring = new LogRing( 8 );
+        List<String> lines = new ArrayList<>();
+        assertEquals( 0, ring.drainTo( lines, 100 ) );
+        assertTrue( lines.isEmpty() );
+
+        for ( int i = 0; i < 5; i++ ) {
+            ring.publish( "line " + i );
+        }
+
+        assertEquals( 0, ring.drainTo( lines, 100 ) );
+        assertEquals( List.of( "line 0", "line 1", "line 2", "line 3", "line 4" ), lines );
+        assertEquals( 5, ring.cursor() );
+    }
+
+    @Test
+    public void respectsLimit() {
+        LogRing ring = new LogRing( 8 );
+        for ( int i = 0; i < 6; i++ ) {
+            ring.publish( "line " + i );
+        }
+        List<String> lines = new ArrayList<>();
+
+        ring.drainTo( lines, 4 );
+        assertEquals( 4, lines.size() );
+        ring.drainTo( lines, 4 );
+        assertEquals( 6, lines.size() );
+        assertEquals( "line 5", lines.get( 5 ) );
+    }
+
+    @Test
+    public void wrapsAndCountsOverwrittenLines() {
+        LogRing ring = new LogRing( 8 );
+        for ( int i = 0; i < 20; i++ ) {
+            ring.publish( "line " + i );
+        }
+        List<String> lines = new ArrayList<>();
+
+        // The first 12 lines were overwritten, the last 8 are retained
+        assertEquals( 12, ring.drainTo( lines, 100 ) );
+        assertEquals( 8, lines.size() );
+        assertEquals( "line 12", lines.get( 0 ) );
+        assertEquals( "line 19", lines.get( 7 ) );
+
+        // The ring keeps working after a wrap
+        lines.clear();
+        ring.publish( "line 20" );
+        assertEquals( 0, ring.drainTo( lines, 100 ) );
+        assertEquals( List.of( "line 20" ), lines );
+    }
+
+    @Test
+    public void roundsCapacityUpToPowerOfTwo() {
+        LogRing ring = new LogRing( 5 );
+        for ( int i = 0; i < 8; i++ ) {
+            ring.publish( "line " + i );
+        }
+        List<String> lines = new ArrayList<>();
+
+        assertEquals( 0, ring.drainTo( lines, 100 ) );
+        assertEquals( 8, lines.size() );
+    }
+
+    @Test
+    public void concurrentPublishersLoseNothingWithinCapacity() throws InterruptedException {
+        LogRing ring = new LogRing( 1 << 14 );
+        List<Thread> publishers = new ArrayList<>();
+        for ( int t = 0; t < 4; t++ ) {
+            int publisher = t;
+            publishers.add( new Thread( () -> {
+                for ( int i = 0; i < 1000; i++ ) {
+                    ring.publish( publisher + ":" + i );
+                }
+            } ) );
+        }
+        publishers.forEach( Thread::start );
+        for ( Thread publisher : publishers ) {
+            publisher.join();
+        }
+        List<String> lines = new ArrayList<>();
+
+        assertEquals( 0, ring.drainTo( lines, Integer.MAX_VALUE ) );
+        assertEquals( 4000, lines.size() );
+        Set<String> distinct = new HashSet<>( lines );
+        assertEquals( 4000, distinct.size() );
+    }
+
+    @Test
+    public void neverTakesOverwrittenLineForExpectedOne() throws InterruptedException {
+        LogRing ring = new LogRing( 8 );
+        int count = 200_000;
+        Thread publisher = new Thread( () -> {
+            for ( int i = 0; i < count; i++ ) {
+                ring.publish( Integer.toString( i ) );
+            }
+        } );
+        publisher.start();
+        List<String> lines = new ArrayList<>();
+        long dropped = 0;
+        while ( publisher.isAlive() ) {
+            dropped += ring.drainTo( lines, 4 );
+        }
+        publisher.join();
+        dropped += ring.drainTo( lines, Integer.MAX_VALUE );
+
+        // Lines read while they were overwritten would show up out of order or twice
+        int last = -1;
+        for ( String line : lines ) {
+            int value = Integer.parseInt( line );
+            assertTrue( value > last );
+            last = value;
+        }
+        assertEquals( count, lines.size() + dropped );
+    }
+
+}
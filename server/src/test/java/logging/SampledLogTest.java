@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019-2023 The Polypheny Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package logging;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Marker;
+import org.slf4j.event.Level;
+import org.slf4j.helpers.LegacyAbstractLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SampledLogTest {
+
+    @Test
+    public void limitsLinesPerKeyAndSecond() throws InterruptedException {
+        RecordingLogger logger = new RecordingLogger( Level.INFO );
+        SampledLog sampledLog = new SampledLog( logger, Level.INFO, 3 );
+
+        awaitNextSecond();
+        for ( int i = 0; i < 10; i++ ) {
+            sampledLog.log( "a", 1, () -> "line" );
+        }
+        sampledLog.log( "b", 1, () -> "other" );
+
+        assertEquals( List.of( "line", "line", "line", "other" ), logger.lines );
+    }
+
+    @Test
+    public void reportsSuppressedLines() throws InterruptedException {
+        RecordingLogger logger = new RecordingLogger( Level.INFO );
+        SampledLog sampledLog = new SampledLog( logger, Level.INFO, 1 );
+
+        awaitNextSecond();
+        for ( int i = 0; i < 5; i++ ) {
+            sampledLog.log( "a", 1, () -> "line" );
+        }
+        awaitNextSecond();
+        sampledLog.log( "a", 1, () -> "line" );
+
+        assertEquals( List.of( "line", "line suppressed=4" ), logger.lines );
+    }
+
+    @Test
+    public void samplesAndTagsRate() {
+        RecordingLogger logger = new RecordingLogger( Level.INFO );
+        SampledLog sampledLog = new SampledLog( logger, Level.INFO, Integer.MAX_VALUE );
+
+        for ( int i = 0; i < 1000; i++ ) {
+            sampledLog.log( "a", 10, () -> "line" );
+        }
+
+        // One in ten expected, the bounds are more than six standard deviations away
+        assertTrue( logger.lines.size() > 40 && logger.lines.size() < 200, "Sampled " + logger.lines.size() );
+        assertTrue( logger.lines.stream().allMatch( "line sample=1/10"::equals ) );
+    }
+
+    @Test
+    public void skipsDisabledLevelWithoutBuildingLine() {
+        RecordingLogger logger = new RecordingLogger( Level.INFO );
+        SampledLog sampledLog = new SampledLog( logger, Level.DEBUG, 10 );
+        boolean[] built = new boolean[1];
+
+        sampledLog.log( "a", 1, () -> {
+            built[0] = true;
+            return "line";
+        } );
+
+        assertFalse( built[0] );
+        assertTrue( logger.lines.isEmpty() );
+    }
+
+    @Test
+    public void formatsFields() {
+        assertEquals( "a=1 b=\"x y\" c=\"say \\\"hi\\\" now\" d=null", SampledLog.fields(
+                "a", 1,
+                "b", "x y",
+                "c", "say \"hi\" now",
+                "d", null
+        ) );
+        // A key without value is ignored
+        assertEquals( "a=1", SampledLog.fields( "a", 1, "b" ) );
+    }
+
+    private static void awaitNextSecond() throws InterruptedException {
+        long second = System.nanoTime() / 1_000_000_000L;
+        while ( System.nanoTime() / 1_000_000_000L == second ) {
+            Thread.sleep( 1 );
+        }
+    }
+
+    /**
+     * Logger keeping the messages of the enabled levels.
+     */
+    private static class RecordingLogger extends LegacyAbstractLogger {
+        private final Level threshold;
+        private final List<String> lines = new ArrayList<>();
+
+        private RecordingLogger( Level threshold ) {
+            this.threshold = threshold;
+            this.name = "test";
+        }
+
+        private boolean enabled( Level level ) {
+            return level.toInt() >= threshold.toInt();
+        }
+
+        @Override
+        public boolean isTraceEnabled() {
+            return enabled( Level.TRACE );
+        }
+
+        @Override
+        public boolean isDebugEnabled() {
+            return enabled( Level.DEBUG );
+        }
+
+        @Override
+        public boolean isInfoEnabled() {
+            return enabled( Level.INFO );
+        }
+
+        @Override
+        public boolean isWarnEnabled() {
+            return enabled( Level.WARN );
+        }
+
+        @Override
+        public boolean isErrorEnabled() {
+            return enabled( Level.ERROR );
+        }
+
+        @Override
+        protected String getFullyQualifiedCallerName() {
+            return null;
+        }
+
+        @Override
+        protected void handleNormalizedLoggingCall( Level level, Marker marker, String messagePattern, Object[] arguments, Throwable throwable ) {
+            lines.add( messagePattern );
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+-- Query log at schema version 3, as left by a server of that version with a few rows of a campaign.
+-- Results are keyed by UUID strings, the registry tables have no surrogate ids yet.
+
+CREATE TABLE polyfier.schema_configs (
+    schema_config_hash bigint NOT NULL,
+    schema_config varchar NOT NULL,
+    PRIMARY KEY ( schema_config_hash )
+) ON STORE doc_query_log;
+
+CREATE TABLE polyfier.query_configs (
+    query_config_hash bigint NOT NULL,
+    query_config varchar NOT NULL,
+    PRIMARY KEY ( query_config_hash )
+) ON STORE doc_query_log;
+
+CREATE TABLE polyfier.data_configs (
+    data_config_hash bigint NOT NULL,
+    data_config varchar NOT NULL,
+    PRIMARY KEY ( data_config_hash )
+) ON STORE doc_query_log;
+
+CREATE TABLE polyfier.error_configs (
+    error_config_hash bigint NOT NULL,
+    error_config varchar NOT NULL,
+    PRIMARY KEY ( error_config_hash )
+) ON STORE doc_query_log;
+
+CREATE TABLE polyfier.physical_configs (
+    physical_config_hash bigint NOT NULL,
+    physical_config varchar NOT NULL,
+    PRIMARY KEY ( physical_config_hash )
+) ON STORE doc_query_log;
+
+CREATE TABLE polyfier.logical_configs (
+    logical_config_hash bigint NOT NULL,
+    logical_config varchar NOT NULL,
+    PRIMARY KEY ( logical_config_hash )
+) ON STORE doc_query_log;
+
+CREATE TABLE polyfier.store_configs (
+    store_config_hash bigint NOT NULL,
+    store_config varchar NOT NULL,
+    PRIMARY KEY ( store_config_hash )
+) ON STORE doc_query_log;
+
+CREATE TABLE polyfier.part_configs (
+    part_config_hash bigint NOT NULL,
+    part_config varchar NOT NULL,
+    PRIMARY KEY ( part_config_hash )
+) ON STORE doc_query_log;
+
+CREATE TABLE polyfier.start_configs (
+    start_config_hash bigint NOT NULL,
+    start_config varchar NOT NULL,
+    PRIMARY KEY ( start_config_hash )
+) ON STORE doc_query_log;
+
+CREATE TABLE polyfier.pctrl (
+    pctrlKey varchar(36) NOT NULL,
+    branch varchar NOT NULL,
+    registeredAt timestamp NOT NULL,
+    PRIMARY KEY ( pctrlKey )
+) ON STORE rel_query_log;
+
+CREATE TABLE polyfier.pdb (
+    pdbKey varchar(36) NOT NULL,
+    branch varchar NOT NULL,
+    registeredAt timestamp NOT NULL,
+    pctrlKey varchar(36) NOT NULL,
+    schema_config_hash bigint NOT NULL,
+    data_config_hash bigint NOT NULL,
+    query_config_hash bigint NOT NULL,
+    store_config_hash bigint NOT NULL,
+    start_config_hash bigint NOT NULL,
+    part_config_hash bigint NOT NULL,
+    PRIMARY KEY ( pdbKey )
+) ON STORE rel_query_log;
+
+CREATE TABLE polyfier.results (
+    resultKey varchar(36) NOT NULL,
+    pdbKey varchar(36) NOT NULL,
+    seed bigint NOT NULL,
+    success boolean NOT NULL,
+    receivedAt timestamp NOT NULL,
+    errorHash bigint NULL DEFAULT NULL,
+    resultSetHash bigint NULL DEFAULT NULL,
+    logicalHash bigint NULL DEFAULT NULL,
+    physicalHash bigint NULL DEFAULT NULL,
+    execTime bigint NULL DEFAULT NULL,
+    predicted bigint NULL DEFAULT NULL,
+    PRIMARY KEY ( resultKey )
+) ON STORE rel_query_log;
+
+CREATE TABLE polyfier.mismatches (
+    mismatchKey varchar(36) NOT NULL,
+    pdbKey varchar(36) NOT NULL,
+    comparisonKey bigint NOT NULL,
+    seed bigint NOT NULL,
+    storeConfigHash bigint NOT NULL,
+    resultSetHash bigint NOT NULL,
+    otherStoreConfigHash bigint NOT NULL,
+    otherResultSetHash bigint NOT NULL,
+    detectedAt timestamp NOT NULL,
+    PRIMARY KEY ( mismatchKey )
+) ON STORE rel_query_log;
+
+CREATE TABLE polyfier.error_signatures (
+    signatureHash bigint NOT NULL,
+    signature varchar NOT NULL,
+    errorCount bigint NOT NULL,
+    firstSeen timestamp NOT NULL,
+    lastSeen timestamp NOT NULL,
+    exampleSeeds varchar NOT NULL,
+    PRIMARY KEY ( signatureHash )
+) ON STORE rel_query_log;
+
+CREATE TABLE polyfier.latency_histograms (
+    histogramType varchar(16) NOT NULL,
+    hash bigint NOT NULL,
+    checkpointedAt timestamp NOT NULL,
+    valueCount bigint NOT NULL,
+    p50 bigint NOT NULL,
+    p90 bigint NOT NULL,
+    p99 bigint NOT NULL,
+    maxValue bigint NOT NULL,
+    buckets varchar NOT NULL,
+    PRIMARY KEY ( histogramType, hash, checkpointedAt )
+) ON STORE rel_query_log;
+
+CREATE TABLE polyfier.regressions (
+    regressionKey varchar(36) NOT NULL,
+    branch varchar NOT NULL,
+    baselineBranch varchar NOT NULL,
+    planHash bigint NOT NULL,
+    pairCount bigint NOT NULL,
+    geoMeanRatio double NOT NULL,
+    p50Ratio double NOT NULL,
+    p90Ratio double NOT NULL,
+    tStatistic double NOT NULL,
+    detectedAt timestamp NOT NULL,
+    PRIMARY KEY ( regressionKey )
+) ON STORE rel_query_log;
+
+CREATE TABLE polyfier.flips (
+    flipKey varchar(36) NOT NULL,
+    pdbKey varchar(36) NOT NULL,
+    comparisonKey bigint NOT NULL,
+    storeConfigHash bigint NOT NULL,
+    seed bigint NOT NULL,
+    previousFingerprint bigint NOT NULL,
+    resultSetHash bigint NOT NULL,
+    runCount bigint NOT NULL,
+    detectedAt timestamp NOT NULL,
+    PRIMARY KEY ( flipKey )
+) ON STORE rel_query_log;
+
+CREATE TABLE polyfier.plan_coverage (
+    dimension varchar(16) NOT NULL,
+    dimensionKey varchar NOT NULL,
+    windowStart timestamp NOT NULL,
+    resultCount bigint NOT NULL,
+    logicalSketch varchar NOT NULL,
+    physicalSketch varchar NOT NULL,
+    PRIMARY KEY ( dimension, dimensionKey, windowStart )
+) ON STORE rel_query_log;
+
+CREATE TABLE polyfier.result_rollups (
+    dimension varchar(16) NOT NULL,
+    dimensionKey varchar NOT NULL,
+    hourStart timestamp NOT NULL,
+    resultCount bigint NOT NULL,
+    successCount bigint NOT NULL,
+    errorCount bigint NOT NULL,
+    execTimeSum bigint NOT NULL,
+    execTimeCount bigint NOT NULL,
+    PRIMARY KEY ( dimension, dimensionKey, hourStart )
+) ON STORE rel_query_log;
+
+ALTER TABLE polyfier.results ADD CONSTRAINT res_fk1 FOREIGN KEY ( pdbKey ) REFERENCES polyfier.pdb ( pdbKey ) ON UPDATE RESTRICT ON DELETE NONE;
+ALTER TABLE polyfier.results ADD CONSTRAINT res_fk2 FOREIGN KEY ( errorHash ) REFERENCES polyfier.error_configs ( error_config_hash ) ON UPDATE RESTRICT ON DELETE NONE;
+ALTER TABLE polyfier.results ADD CONSTRAINT res_fk3 FOREIGN KEY ( logicalHash ) REFERENCES polyfier.logical_configs ( logical_config_hash ) ON UPDATE RESTRICT ON DELETE NONE;
+ALTER TABLE polyfier.results ADD CONSTRAINT res_fk4 FOREIGN KEY ( physicalHash ) REFERENCES polyfier.physical_configs ( physical_config_hash ) ON UPDATE RESTRICT ON DELETE NONE;
+ALTER TABLE polyfier.mismatches ADD CONSTRAINT mis_fk1 FOREIGN KEY ( pdbKey ) REFERENCES polyfier.pdb ( pdbKey ) ON UPDATE RESTRICT ON DELETE NONE;
+ALTER TABLE polyfier.flips ADD CONSTRAINT flp_fk1 FOREIGN KEY ( pdbKey ) REFERENCES polyfier.pdb ( pdbKey ) ON UPDATE RESTRICT ON DELETE NONE;
+ALTER TABLE polyfier.pdb ADD CONSTRAINT pdb_fk1 FOREIGN KEY ( pctrlKey ) REFERENCES polyfier.pctrl ( pctrlKey ) ON UPDATE RESTRICT ON DELETE NONE;
+ALTER TABLE polyfier.pdb ADD CONSTRAINT pro_fk1 FOREIGN KEY ( start_config_hash ) REFERENCES polyfier.start_configs ( start_config_hash ) ON UPDATE RESTRICT ON DELETE NONE;
+ALTER TABLE polyfier.pdb ADD CONSTRAINT pro_fk2 FOREIGN KEY ( schema_config_hash ) REFERENCES polyfier.schema_configs ( schema_config_hash ) ON UPDATE RESTRICT ON DELETE NONE;
+ALTER TABLE polyfier.pdb ADD CONSTRAINT pro_fk3 FOREIGN KEY ( query_config_hash ) REFERENCES polyfier.query_configs ( query_config_hash ) ON UPDATE RESTRICT ON DELETE NONE;
+ALTER TABLE polyfier.pdb ADD CONSTRAINT pro_fk4 FOREIGN KEY ( data_config_hash ) REFERENCES polyfier.data_configs ( data_config_hash ) ON UPDATE RESTRICT ON DELETE NONE;
+ALTER TABLE polyfier.pdb ADD CONSTRAINT pro_fk5 FOREIGN KEY ( store_config_hash ) REFERENCES polyfier.store_configs ( store_config_hash ) ON UPDATE RESTRICT ON DELETE NONE;
+ALTER TABLE polyfier.pdb ADD CONSTRAINT pro_fk6 FOREIGN KEY ( part_config_hash ) REFERENCES polyfier.part_configs ( part_config_hash ) ON UPDATE RESTRICT ON DELETE NONE;
+
+CREATE TABLE polyfier.pdb_jobs (
+    pdbKey varchar(36) NOT NULL,
+    registeredAt timestamp NOT NULL,
+    job varchar NOT NULL,
+    PRIMARY KEY ( pdbKey )
+) ON STORE doc_query_log;
+
+INSERT INTO polyfier.pdb_jobs ( pdbKey, registeredAt, job ) VALUES ( 'c3d4e5f6-a7b8-4c9d-8e0f-1a2b3c4d5e6f', TIMESTAMP '2023-05-02 09:01:00', '{"seeds":[101,102]}' );
+
+ALTER TABLE polyfier.results ADD INDEX res_idx1 ON pdbKey ON STORE rel_query_log;
+ALTER TABLE polyfier.results ADD INDEX res_idx2 ON seed ON STORE rel_query_log;
+ALTER TABLE polyfier.results ADD INDEX res_idx3 ON receivedAt ON STORE rel_query_log;
+ALTER TABLE polyfier.results ADD INDEX res_idx4 ON logicalHash ON STORE rel_query_log;
+ALTER TABLE polyfier.results ADD INDEX res_idx5 ON physicalHash ON STORE rel_query_log;
+ALTER TABLE polyfier.results ADD INDEX res_idx6 ON errorHash ON STORE rel_query_log;
+ALTER TABLE polyfier.pdb ADD INDEX pdb_idx1 ON pctrlKey ON STORE rel_query_log;
+ALTER TABLE polyfier.pdb ADD INDEX pdb_idx2 ON registeredAt ON STORE rel_query_log;
+ALTER TABLE polyfier.pdb ADD INDEX pdb_idx3 ON schema_config_hash ON STORE rel_query_log;
+ALTER TABLE polyfier.pdb ADD INDEX pdb_idx4 ON data_config_hash ON STORE rel_query_log;
+ALTER TABLE polyfier.pdb ADD INDEX pdb_idx5 ON query_config_hash ON STORE rel_query_log;
+ALTER TABLE polyfier.pdb ADD INDEX pdb_idx6 ON store_config_hash ON STORE rel_query_log;
+ALTER TABLE polyfier.pdb ADD INDEX pdb_idx7 ON start_config_hash ON STORE rel_query_log;
+ALTER TABLE polyfier.pdb ADD INDEX pdb_idx8 ON part_config_hash ON STORE rel_query_log;
+
+INSERT INTO polyfier.pctrl ( pctrlKey, branch, registeredAt ) VALUES ( '0b6f0d2e-6d8c-4c1e-9d0a-1f2b3c4d5e6f', 'master', TIMESTAMP '2023-05-02 09:00:00' );
+INSERT INTO polyfier.pctrl ( pctrlKey, branch, registeredAt ) VALUES ( '9a1e7c3b-2f4d-4b6a-8c5e-7d9f0a1b2c3d', 'feature', TIMESTAMP '2023-05-01 08:00:00' );
+INSERT INTO polyfier.pdb ( pdbKey, branch, registeredAt, pctrlKey, schema_config_hash, data_config_hash, query_config_hash, store_config_hash, start_config_hash, part_config_hash ) VALUES ( 'c3d4e5f6-a7b8-4c9d-8e0f-1a2b3c4d5e6f', 'master', TIMESTAMP '2023-05-02 09:01:00', '0b6f0d2e-6d8c-4c1e-9d0a-1f2b3c4d5e6f', 1, 2, 3, 4, 5, 6 );
+INSERT INTO polyfier.pdb ( pdbKey, branch, registeredAt, pctrlKey, schema_config_hash, data_config_hash, query_config_hash, store_config_hash, start_config_hash, part_config_hash ) VALUES ( 'd4e5f6a7-b8c9-4d0e-9f1a-2b3c4d5e6f7a', 'feature', TIMESTAMP '2023-05-01 08:01:00', '9a1e7c3b-2f4d-4b6a-8c5e-7d9f0a1b2c3d', 1, 2, 3, 4, 5, 6 );
+INSERT INTO polyfier.results ( resultKey, pdbKey, seed, success, receivedAt, errorHash, resultSetHash, logicalHash, physicalHash, execTime, predicted ) VALUES ( '5f0c1d2e-0000-4000-8000-000000000003', 'c3d4e5f6-a7b8-4c9d-8e0f-1a2b3c4d5e6f', 103, TRUE, TIMESTAMP '2023-05-02 10:00:03', NULL, 11, 21, 31, 120, 100 );
+INSERT INTO polyfier.results ( resultKey, pdbKey, seed, success, receivedAt, errorHash, resultSetHash, logicalHash, physicalHash, execTime, predicted ) VALUES ( '5f0c1d2e-0000-4000-8000-000000000001', 'd4e5f6a7-b8c9-4d0e-9f1a-2b3c4d5e6f7a', 101, TRUE, TIMESTAMP '2023-05-01 10:00:01', NULL, 12, 22, 32, 80, 90 );
+INSERT INTO polyfier.results ( resultKey, pdbKey, seed, success, receivedAt, errorHash, resultSetHash, logicalHash, physicalHash, execTime, predicted ) VALUES ( '5f0c1d2e-0000-4000-8000-000000000005', 'c3d4e5f6-a7b8-4c9d-8e0f-1a2b3c4d5e6f', 105, FALSE, TIMESTAMP '2023-05-02 10:00:05', 41, NULL, 23, 33, NULL, NULL );
+INSERT INTO polyfier.results ( resultKey, pdbKey, seed, success, receivedAt, errorHash, resultSetHash, logicalHash, physicalHash, execTime, predicted ) VALUES ( '5f0c1d2e-0000-4000-8000-000000000002', 'd4e5f6a7-b8c9-4d0e-9f1a-2b3c4d5e6f7a', 102, TRUE, TIMESTAMP '2023-05-01 10:00:02', NULL, 13, 24, 34, 95, 70 );
+INSERT INTO polyfier.results ( resultKey, pdbKey, seed, success, receivedAt, errorHash, resultSetHash, logicalHash, physicalHash, execTime, predicted ) VALUES ( '5f0c1d2e-0000-4000-8000-000000000004', 'c3d4e5f6-a7b8-4c9d-8e0f-1a2b3c4d5e6f', 104, TRUE, TIMESTAMP '2023-05-02 10:00:04', NULL, 14, 25, 35, 60, 65 );
+
+CREATE TABLE polyfier.schema_version (
+    version integer NOT NULL,
+    appliedAt bigint NOT NULL,
+    PRIMARY KEY ( version )
+) ON STORE rel_query_log;
+
+INSERT INTO polyfier.schema_version ( version, appliedAt ) VALUES ( 1, 1683000000000 );
+INSERT INTO polyfier.schema_version ( version, appliedAt ) VALUES ( 2, 1684000000000 );
+INSERT INTO polyfier.schema_version ( version, appliedAt ) VALUES ( 3, 1685000000000 );